@@ -0,0 +1,142 @@
+package com.example.cameralib;
+
+
+/**
+ *      This class lowers the JPEG quality, when the pictures are written slower than they are captured. The capture rate is measured from the arrival
+ *      of the pictures, the write rate from the time the writers need per picture (divided by the number of writer threads). Both are smoothed.
+ *      If the writers are busier than the capture interval allows, the quality goes down by {@value #STEP}, if they are idle most of the time, it goes
+ *      up again. After a pause in capturing the highest quality is used again
+ * <p>
+ *      @version 1.0
+ *      @since 1.4
+ * </p>
+ */
+final class AdaptiveJpegQuality {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    /**
+     * the quality changes by this many points
+     */
+    static final int STEP = 5;
+
+    /**
+     * the number of written pictures between two changes, so the averages can follow the last change
+     */
+    static final int PICTURES_PER_STEP = 3;
+
+    /**
+     * the weight of a new sample in the averages
+     */
+    private static final double SMOOTHING = 0.25;
+
+    /**
+     * the writers are behind, if they need more than this part of the capture interval
+     */
+    private static final double HIGH_LOAD = 1.0;
+
+    /**
+     * the writers have enough headroom for a better quality below this part of the capture interval
+     */
+    private static final double LOW_LOAD = 0.6;
+
+    /**
+     * a longer time between two pictures is a pause, not a capture rate
+     */
+    private static final long PAUSE_NANOS = 2000000000L;
+
+    private final int mMaxQuality;
+    private final int mMinQuality;
+
+    private int mQuality;
+    private long mLastPictureNanos = -1;
+    /**
+     * the average time between two pictures and the average write time in nanoseconds, 0 if not known yet
+     */
+    private double mCaptureIntervalNanos;
+    private double mWriteNanos;
+    private int mPicturesSinceStep;
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    /**
+     *      The constructor for an AdaptiveJpegQuality
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param maxQuality the quality, that is used as long as the writers keep up
+     *      @param minQuality the lowest quality, the same as maxQuality if the quality isn't adapted
+     * </p>
+     */
+    AdaptiveJpegQuality(int maxQuality, int minQuality) {
+        this.mMaxQuality = maxQuality;
+        this.mMinQuality = Math.max(1, Math.min(minQuality, maxQuality));
+        this.mQuality = maxQuality;
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    /**
+     *      This method is called, when a picture of the camera is available
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param nanos the time (System.nanoTime()) the picture was available
+     * </p>
+     */
+    synchronized void onPictureAvailable(long nanos) {
+        if(this.mLastPictureNanos >= 0) {
+            long interval = nanos - this.mLastPictureNanos;
+            if(interval > PAUSE_NANOS) {
+                this.mCaptureIntervalNanos = 0;         // the writers had enough time to catch up
+                this.mQuality = this.mMaxQuality;
+                this.mPicturesSinceStep = 0;
+            } else {
+                this.mCaptureIntervalNanos = smooth(this.mCaptureIntervalNanos, interval);
+            }
+        }
+        this.mLastPictureNanos = nanos;
+    }
+
+    /**
+     *      This method is called, when a picture is written
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param writeNanos the time the writer needed for the picture
+     *      @param writerThreads the number of threads, that write pictures
+     * </p>
+     */
+    synchronized void onPictureWritten(long writeNanos, int writerThreads) {
+        this.mWriteNanos = smooth(this.mWriteNanos, writeNanos);
+        if(this.mMinQuality == this.mMaxQuality || this.mCaptureIntervalNanos <= 0 || ++this.mPicturesSinceStep < PICTURES_PER_STEP) {
+            return;
+        }
+
+        double load = this.mWriteNanos / Math.max(1, writerThreads) / this.mCaptureIntervalNanos;
+        if(load > HIGH_LOAD && this.mQuality > this.mMinQuality) {
+            this.mQuality = Math.max(this.mMinQuality, this.mQuality - STEP);
+            this.mPicturesSinceStep = 0;
+        } else if(load < LOW_LOAD && this.mQuality < this.mMaxQuality) {
+            this.mQuality = Math.min(this.mMaxQuality, this.mQuality + STEP);
+            this.mPicturesSinceStep = 0;
+        }
+    }
+
+    /**
+     * @return the JPEG quality for the next picture
+     */
+    synchronized int getQuality() {
+        return this.mQuality;
+    }
+
+    private static double smooth(double average, long sample) {
+        return average <= 0 ? sample : average + SMOOTHING * (sample - average);
+    }
+}
@@ -0,0 +1,321 @@
+package com.example.cameralib;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+
+/**
+ *      This class selects the sharpest pictures of a burst. Every picture is scored on the executor as soon as it arrives, so the pictures are
+ *      scored in parallel while the burst is still captured. When all pictures are scored, the best ones are handed to the ImageWriterPool and
+ *      the others are dropped
+ * <p>
+ *      The pictures are held until the burst is finished, so a burst must not be longer than the ImageReader can hold
+ * </p>
+ * <p>
+ *      @version 1.1
+ *      @since 1.4
+ * </p>
+ */
+final class BestShotSelector {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    private final int mKeep;
+    private final Scorer mScorer;
+    private final Executor mExecutor;
+    private final ImageWriterPool mImageWriterPool;
+
+    /**
+     * the sensor timestamps of the pictures of the burst, that are captured but didn't arrive yet
+     */
+    private final HashSet<Long> mExpected = new HashSet<>();
+
+    /**
+     * the scored pictures
+     */
+    private final List<Candidate> mCandidates = new ArrayList<>();
+
+    /**
+     * the number of pictures, that are neither scored nor failed
+     */
+    private int mRemaining;
+
+    /**
+     * the number of pictures, that are scored at the moment
+     */
+    private int mScoring;
+
+    private boolean mCancelled;
+
+    /**
+     * the callbacks of cancel(), that wait for the pictures, that are scored at the moment
+     */
+    private final List<Runnable> mCancelCallbacks = new ArrayList<>();
+    private volatile double mBestScore = Double.NaN;
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    /**
+     *      The constructor for a BestShotSelector
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param frameCount the number of pictures of the burst
+     *      @param keep the number of pictures, that are saved
+     *      @param scorer scores the sharpness of a picture, it is called on the threads of the executor
+     *      @param executor the threads, that score the pictures
+     *      @param imageWriterPool the pool, that writes the selected pictures
+     *      @throws IllegalArgumentException is thrown, if keep isn't between 1 and frameCount
+     * </p>
+     */
+    BestShotSelector(int frameCount, int keep, @NonNull Scorer scorer, @NonNull Executor executor, @NonNull ImageWriterPool imageWriterPool)
+            throws IllegalArgumentException {
+        if(keep < 1 || keep > frameCount) {
+            throw new IllegalArgumentException("At least one and at most all pictures of the burst can be kept!");
+        }
+        this.mRemaining = frameCount;
+        this.mKeep = keep;
+        this.mScorer = scorer;
+        this.mExecutor = executor;
+        this.mImageWriterPool = imageWriterPool;
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    /**
+     *      This method tells the selector, that a picture of the burst was captured
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param timestamp the sensor timestamp of the picture
+     * </p>
+     */
+    synchronized void expect(long timestamp) {
+        this.mExpected.add(timestamp);
+    }
+
+    /**
+     *      This method takes a picture, if it belongs to the burst. The picture is scored on the executor
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param frame the picture
+     *      @param task the task, that saves the picture
+     *      @return true ... the selector took the picture -- false ... the picture isn't part of the burst
+     * </p>
+     */
+    boolean offer(@NonNull final CameraFrame frame, @NonNull final ImageWriterPool.WriteTask task) {
+        synchronized(this) {
+            if(!this.mExpected.remove(frame.getTimestamp())) {
+                return false;
+            }
+            if(this.mCancelled) {
+                task.discard();
+                return true;
+            }
+            this.mScoring++;
+        }
+
+        try {
+            this.mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    double score;
+                    try {
+                        score = mScorer.score(frame);
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                        score = -1;     // the picture can still be chosen, if there is no better one
+                    }
+                    onScored(new Candidate(score, task));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            this.onScored(new Candidate(-1, task));
+        }
+        return true;
+    }
+
+    /**
+     *      This method tells the selector, that a picture of the burst failed, so it doesn't wait for it
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    void onFrameFailed() {
+        List<Candidate> candidates;
+        synchronized(this) {
+            this.mRemaining--;
+            candidates = this.takeCandidatesIfDone();
+        }
+        this.select(candidates);
+    }
+
+    /**
+     *      This method drops all held pictures. It doesn't wait for the pictures, that are scored at the moment. They are dropped, when their
+     *      score is finished, and the callback runs afterwards in the scoring thread (or right away, if nothing is scored), so the ImageReader
+     *      can be closed in the callback
+     * <p>
+     *      @version 1.1
+     * </p>
+     * <p>
+     *      @param onCancelled is called, when the selector holds no pictures anymore
+     * </p>
+     */
+    void cancel(@NonNull Runnable onCancelled) {
+        List<Candidate> candidates;
+        boolean idle;
+        synchronized(this) {
+            this.mCancelled = true;
+            candidates = new ArrayList<>(this.mCandidates);
+            this.mCandidates.clear();
+            idle = this.mScoring == 0;
+            if(!idle) {
+                this.mCancelCallbacks.add(onCancelled);
+            }
+        }
+
+        for(Candidate candidate : candidates) {
+            candidate.mTask.discard();
+        }
+        if(idle) {
+            onCancelled.run();
+        }
+    }
+
+    /**
+     * @return the score of the sharpest picture, NaN until the pictures are selected
+     */
+    double getBestScore() {
+        return this.mBestScore;
+    }
+
+    private void onScored(Candidate candidate) {
+        List<Candidate> candidates;
+        List<Runnable> cancelCallbacks = Collections.emptyList();
+        synchronized(this) {
+            this.mScoring--;
+            this.mRemaining--;
+            if(this.mCancelled) {
+                candidates = null;
+                if(this.mScoring == 0 && !this.mCancelCallbacks.isEmpty()) {
+                    cancelCallbacks = new ArrayList<>(this.mCancelCallbacks);
+                    this.mCancelCallbacks.clear();
+                }
+            } else {
+                this.mCandidates.add(candidate);
+                candidates = this.takeCandidatesIfDone();
+            }
+        }
+
+        if(candidates == null) {
+            candidate.mTask.discard();
+            for(Runnable callback : cancelCallbacks) {
+                callback.run();
+            }
+        } else {
+            this.select(candidates);
+        }
+    }
+
+    /**
+     *      This method returns the scored pictures, if all pictures of the burst are scored or failed. It is called with the lock of the selector
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @return the pictures, an empty list if the burst isn't finished yet
+     * </p>
+     */
+    private List<Candidate> takeCandidatesIfDone() {
+        if(this.mRemaining > 0 || this.mCancelled) {
+            return Collections.emptyList();
+        }
+        List<Candidate> candidates = new ArrayList<>(this.mCandidates);
+        this.mCandidates.clear();
+        return candidates;
+    }
+
+    /**
+     *      This method saves the sharpest pictures and drops the others
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param candidates all scored pictures of the burst
+     * </p>
+     */
+    private void select(List<Candidate> candidates) {
+        if(candidates.isEmpty()) {
+            return;
+        }
+
+        Collections.sort(candidates, new Comparator<Candidate>() {
+            @Override
+            public int compare(Candidate first, Candidate second) {
+                return Double.compare(second.mScore, first.mScore);
+            }
+        });
+        this.mBestScore = candidates.get(0).mScore;
+
+        for(int i = 0; i < candidates.size(); i++) {
+            if(i < this.mKeep) {
+                this.mImageWriterPool.submit(candidates.get(i).mTask);
+            } else {
+                candidates.get(i).mTask.discard();
+            }
+        }
+    }
+
+
+    // *************************************************************** Class Section ***************************************************************
+
+
+    /**
+     *      This class contains a scored picture
+     * <p>
+     *      @version 1.0
+     *      @since 1.4
+     * </p>
+     */
+    private static class Candidate {
+        private final double mScore;
+        private final ImageWriterPool.WriteTask mTask;
+
+        Candidate(double score, ImageWriterPool.WriteTask task) {
+            this.mScore = score;
+            this.mTask = task;
+        }
+    }
+
+
+    // *************************************************************** Interface Section ***************************************************************
+
+
+    /**
+     *      Scores the sharpness of a picture
+     * <p>
+     *      @since 1.4
+     * </p>
+     */
+    interface Scorer {
+        /**
+         * @param frame the picture, it must not be closed
+         * @return the sharpness, higher is sharper
+         */
+        double score(@NonNull CameraFrame frame);
+    }
+}
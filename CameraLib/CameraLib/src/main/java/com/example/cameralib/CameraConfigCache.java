@@ -0,0 +1,317 @@
+package com.example.cameralib;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Rect;
+import android.os.Build;
+import android.util.Size;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ *      This class caches the camera characteristics and the output sizes, that were chosen for a camera. The values are kept in memory and
+ *      in the SharedPreferences, so the cameras don't have to be enumerated on every start of the camera
+ * <p>
+ *      An entry is only valid for the requested preview size and the display size it was created for. If one of them changes, the entry is ignored
+ * </p>
+ * <p>
+ *      @version 1.1
+ *      @since 1.4
+ * </p>
+ */
+class CameraConfigCache {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    /**
+     * name of the SharedPreferences file
+     */
+    private static final String PREFERENCES_NAME = "com.example.cameralib.CameraConfigCache";
+
+    /**
+     * keys of the values in the SharedPreferences, the values of a camera are prefixed with its ID
+     */
+    private static final String KEY_SELECTED_CAMERA = "selectedCameraId";
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final String KEY_REQUEST = ".request";
+    private static final String KEY_LARGEST_JPEG = ".largestJpeg";
+    private static final String KEY_JPEG_SIZES = ".jpegSizes";
+    private static final String KEY_THUMBNAIL_SIZES = ".thumbnailSizes";
+    private static final String KEY_PREVIEW_SIZE = ".previewSize";
+    private static final String KEY_ANALYSIS_SIZE = ".analysisSize";
+    private static final String KEY_ACTIVE_ARRAY = ".activeArray";
+    private static final String KEY_MAX_ZOOM = ".maxDigitalZoom";
+    private static final String KEY_REALTIME_TIMESTAMPS = ".realtimeTimestamps";
+
+    /**
+     * the persisted values
+     */
+    private final SharedPreferences mPreferences;
+
+    /**
+     * the entries, that are already loaded or created in this process
+     */
+    private final Map<String, Entry> mEntries = new HashMap<>();
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    /**
+     *      The constructor for a CameraConfigCache. If the system was updated since the values were persisted, the persisted values are deleted
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param context the context, that is used to open the SharedPreferences
+     * </p>
+     */
+    CameraConfigCache(@NonNull Context context) {
+        this.mPreferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+
+        if(!Build.FINGERPRINT.equals(this.mPreferences.getString(KEY_FINGERPRINT, null))) {
+            this.mPreferences.edit().clear().putString(KEY_FINGERPRINT, Build.FINGERPRINT).apply();
+        }
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    /**
+     *      This method returns the cached entry of the camera, that was selected last time
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param requestWidth the requested width of the preview
+     *      @param requestHeight the requested height of the preview
+     *      @param displayWidth the width of the display
+     *      @param displayHeight the height of the display
+     *      @return the cached entry or null, if there is no entry for these sizes
+     * </p>
+     */
+    @Nullable
+    synchronized Entry getSelected(int requestWidth, int requestHeight, int displayWidth, int displayHeight) {
+        String cameraId = this.mPreferences.getString(KEY_SELECTED_CAMERA, null);
+        if(cameraId == null) {
+            return null;
+        }
+
+        return this.get(cameraId, requestWidth, requestHeight, displayWidth, displayHeight);
+    }
+
+    /**
+     *      This method returns the cached entry of a camera
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param cameraId the ID of the camera
+     *      @param requestWidth the requested width of the preview
+     *      @param requestHeight the requested height of the preview
+     *      @param displayWidth the width of the display
+     *      @param displayHeight the height of the display
+     *      @return the cached entry or null, if there is no entry for these sizes
+     * </p>
+     */
+    @Nullable
+    synchronized Entry get(@NonNull String cameraId, int requestWidth, int requestHeight, int displayWidth, int displayHeight) {
+        String request = requestKey(requestWidth, requestHeight, displayWidth, displayHeight);
+
+        Entry entry = this.mEntries.get(cameraId);
+        if(entry == null) {
+            entry = this.load(cameraId);
+            if(entry == null) {
+                return null;
+            }
+            this.mEntries.put(cameraId, entry);
+        }
+
+        return request.equals(entry.mRequest) ? entry : null;
+    }
+
+    /**
+     *      This method stores an entry in memory and in the SharedPreferences and marks its camera as selected
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param entry the entry, that is stored
+     * </p>
+     */
+    synchronized void put(@NonNull Entry entry) {
+        this.mEntries.put(entry.mCameraId, entry);
+
+        String prefix = entry.mCameraId;
+        this.mPreferences.edit()
+                .putString(KEY_SELECTED_CAMERA, entry.mCameraId)
+                .putString(prefix + KEY_REQUEST, entry.mRequest)
+                .putString(prefix + KEY_LARGEST_JPEG, entry.mLargestJpegSize.toString())
+                .putString(prefix + KEY_JPEG_SIZES, joinSizes(entry.mJpegSizes))
+                .putString(prefix + KEY_THUMBNAIL_SIZES, joinSizes(entry.mThumbnailSizes))
+                .putString(prefix + KEY_PREVIEW_SIZE, entry.mPreviewSize.toString())
+                .putString(prefix + KEY_ANALYSIS_SIZE, entry.mAnalysisSize.toString())
+                .putString(prefix + KEY_ACTIVE_ARRAY, entry.mActiveArraySize.flattenToString())
+                .putFloat(prefix + KEY_MAX_ZOOM, entry.mMaxDigitalZoom)
+                .putBoolean(prefix + KEY_REALTIME_TIMESTAMPS, entry.mRealtimeTimestamps)
+                .apply();
+    }
+
+    /**
+     *      This method marks a camera as selected, so it is used on the next start of the camera
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param cameraId the ID of the camera
+     * </p>
+     */
+    synchronized void select(@NonNull String cameraId) {
+        this.mPreferences.edit().putString(KEY_SELECTED_CAMERA, cameraId).apply();
+    }
+
+    /**
+     *      This method deletes all cached entries
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    synchronized void invalidate() {
+        this.mEntries.clear();
+        this.mPreferences.edit().clear().putString(KEY_FINGERPRINT, Build.FINGERPRINT).apply();
+    }
+
+    /**
+     *      This method loads the persisted entry of a camera
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param cameraId the ID of the camera
+     *      @return the entry or null, if no (valid) entry is persisted
+     * </p>
+     */
+    @Nullable
+    private Entry load(@NonNull String cameraId) {
+        String request = this.mPreferences.getString(cameraId + KEY_REQUEST, null);
+        String largest = this.mPreferences.getString(cameraId + KEY_LARGEST_JPEG, null);
+        String jpegSizes = this.mPreferences.getString(cameraId + KEY_JPEG_SIZES, null);
+        String thumbnailSizes = this.mPreferences.getString(cameraId + KEY_THUMBNAIL_SIZES, null);
+        String preview = this.mPreferences.getString(cameraId + KEY_PREVIEW_SIZE, null);
+        String analysis = this.mPreferences.getString(cameraId + KEY_ANALYSIS_SIZE, null);
+        String activeArray = this.mPreferences.getString(cameraId + KEY_ACTIVE_ARRAY, null);
+        Rect activeArraySize = activeArray != null ? Rect.unflattenFromString(activeArray) : null;
+
+        if(request == null || largest == null || jpegSizes == null || thumbnailSizes == null || preview == null || analysis == null
+                || activeArraySize == null || !this.mPreferences.contains(cameraId + KEY_REALTIME_TIMESTAMPS)) {
+            return null;
+        }
+
+        try {
+            return new Entry(cameraId, request, Size.parseSize(largest), splitSizes(jpegSizes), splitSizes(thumbnailSizes), Size.parseSize(preview),
+                    Size.parseSize(analysis), activeArraySize, this.mPreferences.getFloat(cameraId + KEY_MAX_ZOOM, 1),
+                    this.mPreferences.getBoolean(cameraId + KEY_REALTIME_TIMESTAMPS, false));
+        } catch (NumberFormatException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     *      This method creates the key, an entry is valid for
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param requestWidth the requested width of the preview
+     *      @param requestHeight the requested height of the preview
+     *      @param displayWidth the width of the display
+     *      @param displayHeight the height of the display
+     *      @return the key
+     * </p>
+     */
+    @NonNull
+    static String requestKey(int requestWidth, int requestHeight, int displayWidth, int displayHeight) {
+        return requestWidth + "x" + requestHeight + "@" + displayWidth + "x" + displayHeight;
+    }
+
+    private static String joinSizes(Size[] sizes) {
+        StringBuilder builder = new StringBuilder();
+        for(Size size : sizes) {
+            if(builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(size.toString());
+        }
+        return builder.toString();
+    }
+
+    private static Size[] splitSizes(String sizes) throws NumberFormatException {
+        if(sizes.isEmpty()) {
+            return new Size[0];
+        }
+
+        String[] parts = sizes.split(",");
+        Size[] result = new Size[parts.length];
+        for(int i = 0; i < parts.length; i++) {
+            result[i] = Size.parseSize(parts[i]);
+        }
+        return result;
+    }
+
+
+    // *************************************************************** Class Section ***************************************************************
+
+
+    /**
+     *      This class contains the cached values of one camera
+     * <p>
+     *      @version 1.0
+     *      @since 1.4
+     * </p>
+     */
+    static class Entry {
+        final String mCameraId;
+        final String mRequest;
+        final Size mLargestJpegSize;
+        final Size[] mJpegSizes;
+        /**
+         * the thumbnail sizes of the camera (JPEG_AVAILABLE_THUMBNAIL_SIZES)
+         */
+        final Size[] mThumbnailSizes;
+        final Size mPreviewSize;
+        /**
+         * the size of the YUV stream for the frame analyzers
+         */
+        final Size mAnalysisSize;
+        /**
+         * the pixels of the sensor, the crop region is given in this coordinates
+         */
+        final Rect mActiveArraySize;
+        final float mMaxDigitalZoom;
+        /**
+         * true ... the sensor timestamps use the clock of SystemClock.elapsedRealtimeNanos() (SENSOR_INFO_TIMESTAMP_SOURCE_REALTIME)
+         */
+        final boolean mRealtimeTimestamps;
+
+        Entry(@NonNull String cameraId, @NonNull String request, @NonNull Size largestJpegSize,
+              @NonNull Size[] jpegSizes, @NonNull Size[] thumbnailSizes, @NonNull Size previewSize, @NonNull Size analysisSize,
+              @NonNull Rect activeArraySize, float maxDigitalZoom, boolean realtimeTimestamps) {
+            this.mCameraId = cameraId;
+            this.mRequest = request;
+            this.mLargestJpegSize = largestJpegSize;
+            this.mJpegSizes = jpegSizes;
+            this.mThumbnailSizes = thumbnailSizes;
+            this.mPreviewSize = previewSize;
+            this.mAnalysisSize = analysisSize;
+            this.mActiveArraySize = activeArraySize;
+            this.mMaxDigitalZoom = maxDigitalZoom;
+            this.mRealtimeTimestamps = realtimeTimestamps;
+        }
+    }
+}
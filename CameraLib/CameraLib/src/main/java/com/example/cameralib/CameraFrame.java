@@ -0,0 +1,70 @@
+package com.example.cameralib;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ *      A frame of a {@link FrameSource}. It is either a JPEG (one plane) or a YUV_420_888 frame (three planes). The frame belongs to its source,
+ *      it must be closed after it is used, so the source can reuse its buffers
+ * <p>
+ *      @version 1.0
+ *      @since 1.4
+ * </p>
+ */
+public interface CameraFrame extends AutoCloseable {
+
+    /**
+     * @return the format of the frame, {@link android.graphics.ImageFormat#JPEG} or {@link android.graphics.ImageFormat#YUV_420_888}
+     */
+    int getFormat();
+
+    /**
+     * @return the width of the frame in pixels
+     */
+    int getWidth();
+
+    /**
+     * @return the height of the frame in pixels
+     */
+    int getHeight();
+
+    /**
+     * @return the sensor timestamp of the frame in nanoseconds
+     */
+    long getTimestamp();
+
+    /**
+     * @return the number of planes, 1 for JPEG and 3 for YUV_420_888
+     */
+    int getPlaneCount();
+
+    /**
+     * @param plane the index of the plane
+     * @return the buffer of the plane, for JPEG the data is between position and limit
+     */
+    @NonNull
+    ByteBuffer getPlane(int plane);
+
+    /**
+     * @param plane the index of the plane
+     * @return the distance between the starts of two rows in bytes, 0 for JPEG
+     */
+    int getRowStride(int plane);
+
+    /**
+     * @param plane the index of the plane
+     * @return the distance between two pixels of a row in bytes, 0 for JPEG
+     */
+    int getPixelStride(int plane);
+
+    /**
+     *      This method gives the frame back to its source. The buffers must not be used after that
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    @Override
+    void close();
+}
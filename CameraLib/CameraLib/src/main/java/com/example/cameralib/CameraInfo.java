@@ -0,0 +1,92 @@
+package com.example.cameralib;
+
+import android.hardware.camera2.CameraCharacteristics;
+
+import androidx.annotation.NonNull;
+
+
+/**
+ *      This class describes one camera of the device, so the app can choose the camera for {@link CameraObject#switchCamera(String)}
+ * <p>
+ *      @version 1.0
+ *      @since 1.4
+ * </p>
+ */
+public final class CameraInfo {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    private final String mCameraId;
+    private final int mLensFacing;
+    private final int mSensorOrientation;
+    private final float[] mFocalLengths;
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    /**
+     *      The constructor for a CameraInfo
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param cameraId the ID of the camera
+     *      @param lensFacing the direction of the lens (CameraCharacteristics.LENS_FACING_*)
+     *      @param sensorOrientation the orientation of the camera sensor in degrees
+     *      @param focalLengths the available focal lengths in millimeters
+     * </p>
+     */
+    CameraInfo(@NonNull String cameraId, int lensFacing, int sensorOrientation, @NonNull float[] focalLengths) {
+        this.mCameraId = cameraId;
+        this.mLensFacing = lensFacing;
+        this.mSensorOrientation = sensorOrientation;
+        this.mFocalLengths = focalLengths.clone();
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    /**
+     * @return the ID of the camera
+     */
+    @NonNull
+    public String getCameraId() {
+        return this.mCameraId;
+    }
+
+    /**
+     * @return the direction of the lens (CameraCharacteristics.LENS_FACING_FRONT, _BACK or _EXTERNAL)
+     */
+    public int getLensFacing() {
+        return this.mLensFacing;
+    }
+
+    /**
+     * @return true ... it is a selfie camera
+     */
+    public boolean isFrontFacing() {
+        return this.mLensFacing == CameraCharacteristics.LENS_FACING_FRONT;
+    }
+
+    /**
+     * @return the orientation of the camera sensor in degrees
+     */
+    public int getSensorOrientation() {
+        return this.mSensorOrientation;
+    }
+
+    /**
+     * @return the available focal lengths in millimeters, a copy
+     */
+    @NonNull
+    public float[] getFocalLengths() {
+        return this.mFocalLengths.clone();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "Camera " + this.mCameraId + (this.isFrontFacing() ? " (front)" : "");
+    }
+}
@@ -9,6 +9,7 @@ import android.content.pm.PackageManager;
 import android.graphics.ImageFormat;
 import android.graphics.Matrix;
 import android.graphics.Point;
+import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.SurfaceTexture;
 import android.hardware.camera2.CameraAccessException;
@@ -17,18 +18,18 @@ import android.hardware.camera2.CameraCharacteristics;
 import android.hardware.camera2.CameraDevice;
 import android.hardware.camera2.CameraManager;
 import android.hardware.camera2.CameraMetadata;
+import android.hardware.camera2.CaptureFailure;
 import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.CaptureResult;
 import android.hardware.camera2.TotalCaptureResult;
 import android.hardware.camera2.params.StreamConfigurationMap;
 import android.media.Image;
 import android.media.ImageReader;
-import android.media.MediaScannerConnection;
 import android.net.Uri;
 import android.os.Build;
-import android.os.Environment;
 import android.os.Handler;
 import android.os.HandlerThread;
-import android.util.Log;
+import android.os.SystemClock;
 import android.util.Size;
 import android.util.SparseIntArray;
 import android.view.Surface;
@@ -36,25 +37,24 @@ import android.view.TextureView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
-import androidx.annotation.RequiresApi;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
-import java.util.Objects;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 /**
@@ -72,10 +72,26 @@ public class CameraObject {
     private Context context;
 
     /**
-     * a Semaphore is important, because it prevents the app from closing/exiting without closing the Camera.
-     * So the Camera is not locked by this app and another can't use it
+     * the lifecycle state of the camera. It is only changed in the background thread, but can be read from any thread
      */
-    private Semaphore mCameraOpenCloseLock = new Semaphore(1);
+    private final AtomicReference<CameraState> mState = new AtomicReference<>(CameraState.CLOSED);
+
+    /**
+     * true ... the camera is opened again, as soon as it is closed. Only used in the background thread
+     */
+    private boolean mPendingOpen;
+    private int mPendingOpenWidth;
+    private int mPendingOpenHeight;
+
+    /**
+     * guards the creation and the stop of the background thread
+     */
+    private final Object mBackgroundThreadLock = new Object();
+
+    /**
+     * is increased with every open / close request, so an idle background thread is only stopped if nothing was requested in the meantime
+     */
+    private int mLifecycleGeneration;
 
     /**
      * TextureView is used to draw the Preview
@@ -83,19 +99,60 @@ public class CameraObject {
     private TextureView mTextureView;
 
     /**
-     * Variable for the file / picture that is capture
+     * the URI of the most recent picture, null if no picture is saved yet or the picture is kept in memory
+     */
+    private volatile Uri mLatestUri;
+
+    /**
+     * creates the file names of the pictures
+     */
+    private final CaptureFileNames mFileNames = new CaptureFileNames();
+
+    /**
+     * the folder, whose pictures mFileNames continues after, null if no folder is listed yet
+     */
+    private volatile File mFileNamesFolder;
+
+    /**
+     * records the metadata of every saved picture, null if the metadata isn't recorded
      */
-    private File mFile;
+    private volatile CaptureJournal mCaptureJournal;
 
     /**
      * the Size of the Preview
      */
-    private Size mPreviewSize;
+    private volatile Size mPreviewSize;
 
     /**
      * The ID of the Camera in the Device
      */
-    private String mCameraId;
+    private volatile String mCameraId;
+
+    /**
+     * the ID of the camera, that was chosen with switchCamera. null ... the camera, that was selected last time or the first camera, that is not a selfie camera
+     */
+    private volatile String mRequestedCameraId;
+
+    /**
+     * the cameras of the device, they are enumerated once. null until they are enumerated
+     */
+    private volatile List<CameraInfo> mCameraInfos;
+
+    /**
+     * the size, the camera was opened with last. A switch of the camera opens the other camera with the same size. Only used in the background thread
+     */
+    private int mOpenWidth;
+    private int mOpenHeight;
+
+    /**
+     * the cached configuration (characteristics and chosen sizes) of the camera
+     */
+    private volatile CameraConfigCache.Entry mCameraConfig;
+
+    /**
+     * caches the camera configuration across openings of the camera and app starts
+     */
+    private final CameraConfigCache mConfigCache;
 
     /**
      * constant integer var for the permission request
@@ -107,6 +164,48 @@ public class CameraObject {
     private static final int MAX_PREVIEW_WIDTH = 480;
     private static final int MAX_PREVIEW_HEIGHT = 480;
 
+    /**
+     * the maximum number of images the ImageReader for pictures may hold. Every image is a full size JPEG buffer, so bigger bursts are pipelined through this number of buffers
+     */
+    private static final int MAX_IMAGE_READER_IMAGES = 10;
+
+    /**
+     * the maximum size of the YUV stream for the frame analyzers
+     */
+    private static final int MAX_ANALYSIS_WIDTH = 640;
+    private static final int MAX_ANALYSIS_HEIGHT = 480;
+
+    /**
+     * the maxImages value of the ImageReader for the frame analyzers. 2 images are always left to the camera, the others may be held by analyzers
+     */
+    private static final int ANALYSIS_MAX_IMAGES = 4;
+
+    /**
+     * the capacity of the queue of the processing stage. Every image of the ImageReaders fits in, so pictures are only rejected if the stage is stopped
+     */
+    private static final int PROCESSING_QUEUE_DEPTH = MAX_IMAGE_READER_IMAGES + ANALYSIS_MAX_IMAGES;
+
+    /**
+     * the time in milliseconds the background thread is kept alive, after the camera is closed
+     */
+    private static final long BACKGROUND_THREAD_IDLE_MS = 3000;
+
+    /**
+     * the default memory budget for the frames of the zero shutter lag ring in bytes
+     */
+    private static final long DEFAULT_ZSL_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+    /**
+     * the maximum number of frames in the zero shutter lag ring, independent of the memory budget
+     */
+    private static final int MAX_ZSL_DEPTH = 8;
+
+    /**
+     * the maximum number of zero shutter lag pictures, that are written at the same time. Their images stay open, even if the ring drops them,
+     * so the ImageReader has this number of additional images
+     */
+    private static final int MAX_ZSL_PENDING_SAVES = 2;
+
     /**
      * SparseArray with the specific int values for the possible picture rotations
      */
@@ -121,12 +220,12 @@ public class CameraObject {
     /**
      * a CameraCaptureSession is used to get the Preview of the Camera
      */
-    private CameraCaptureSession mCaptureSession;
+    private volatile CameraCaptureSession mCaptureSession;
 
     /**
      * The Camera "itself", a Camera is represented with this var
      */
-    private CameraDevice mCameraDevice;
+    private volatile CameraDevice mCameraDevice;
 
     /**
      * Is the Builder for the camera preview
@@ -138,19 +237,281 @@ public class CameraObject {
     private CaptureRequest mPreviewRequest;
 
     /**
-     * Handler for running Tasks in the Background
+     * the region of the field of view, that is captured, in normalized coordinates (0 - 1). null for the whole field of view
+     */
+    private volatile RectF mRegionOfInterest;
+
+    /**
+     * Handler for running Tasks in the Background. All lifecycle changes of the camera are serialized on its thread
      */
-    private Handler mBackgroundHandler;
+    private volatile Handler mBackgroundHandler;
     /**
      * additional Thread for running tasks that must not block the UI (User Interface)
      */
     private HandlerThread mBackgroundThread;
 
     /**
-     * Handles image-capturing
+     * the stages of the camera pipeline. The camera callbacks and the lifecycle run in the background thread, the pictures and the analysis frames
+     * are handed over to the processing thread, the pictures are written by the ImageWriterPool. Between the stages are bounded queues, so a slow
+     * stage doesn't block the camera callbacks
+     */
+    private final PipelineStage mCallbackStage = new PipelineStage("CameraBackground", Integer.MAX_VALUE);
+    private final PipelineStage mProcessingStage = new PipelineStage("CameraProcessing", PROCESSING_QUEUE_DEPTH);
+
+    /**
+     * Handler and Thread of the processing stage, they are started and stopped with the background thread
+     */
+    private volatile Handler mProcessingHandler;
+    private HandlerThread mProcessingThread;
+
+    /**
+     * Handles image-capturing. It is created once in setUpCameraOutputs and is part of the preview session, so a picture can be taken without rebuilding the session
      */
     private ImageReader mImageReader;
 
+    /**
+     * delivers the low resolution YUV frames to the frame analyzers, it is only created if there is an analyzer
+     */
+    private ImageReader mAnalysisImageReader;
+
+    /**
+     * hands the frames of mAnalysisImageReader to the registered analyzers
+     */
+    private final FrameAnalysisDispatcher mFrameAnalysisDispatcher = new FrameAnalysisDispatcher(ANALYSIS_MAX_IMAGES - 2);
+
+    /**
+     * dispatches the frames of mAnalysisImageReader, it is closed before the reader
+     */
+    private FrameAnalysisDispatcher.Stream mAnalysisStream;
+
+    /**
+     * encodes the analysis frames for the preview stream, null if the stream isn't running
+     */
+    private MjpegStreamAnalyzer mStreamAnalyzer;
+
+    /**
+     * This listener is called, when a frame of mAnalysisImageReader is available. Only the latest frame is taken, older ones are dropped
+     */
+    private final ImageReader.OnImageAvailableListener mOnAnalysisImageAvailableListener = new ImageReader.OnImageAvailableListener() {
+        @Override
+        public void onImageAvailable(ImageReader reader) {
+            Image image;
+            try {
+                image = reader.acquireLatestImage();
+            } catch (IllegalStateException e) {
+                return;     // all images are held by analyzers
+            }
+            if(image == null) {
+                return;
+            }
+
+            FrameAnalysisDispatcher.Stream stream = mAnalysisStream;
+            if(stream == null || !stream.post(image, mProcessingHandler)) {
+                image.close();      // the reader is closing or the processing stage is full, the analysis skips this frame
+            }
+        }
+    };
+
+    /**
+     * true ... the zero shutter lag mode is enabled, the preview session continuously delivers full size pictures to mZslImageReader
+     */
+    private volatile boolean mZslEnabled = false;
+
+    /**
+     * the memory budget for the frames of the zero shutter lag ring in bytes
+     */
+    private volatile long mZslMemoryBudget = DEFAULT_ZSL_MEMORY_BUDGET;
+
+    /**
+     * receives the full size pictures of the preview session in the zero shutter lag mode, null if the mode is disabled. It is replaced in the
+     * background thread, but read by the threads of the callers
+     */
+    private volatile ImageReader mZslImageReader;
+
+    /**
+     * the last pictures of mZslImageReader
+     */
+    private volatile ZslRingBuffer<Image> mZslRingBuffer;
+
+    /**
+     * true ... the sensor timestamps use the same clock as SystemClock.elapsedRealtimeNanos()
+     */
+    private boolean mZslRealtimeTimestamps;
+
+    /**
+     * the difference between the sensor timestamps and SystemClock.elapsedRealtimeNanos(), it is only estimated, if the sensor uses another clock
+     */
+    private volatile long mZslClockOffsetNanos;
+
+    /**
+     * the number of zero shutter lag pictures, that are written at the moment. Only used in the background thread
+     */
+    private int mZslPendingSaves;
+
+    /**
+     * the shutter presses, that couldn't be served from the ring. The next frames are saved for them. Only used in the background thread
+     */
+    private final ArrayDeque<PendingCapture> mZslPendingShutters = new ArrayDeque<>();
+
+    /**
+     * This listener is called, when a picture of mZslImageReader is available. The picture is put in the ring, the oldest picture of the ring is released
+     */
+    private final ImageReader.OnImageAvailableListener mOnZslImageAvailableListener = new ImageReader.OnImageAvailableListener() {
+        @Override
+        public void onImageAvailable(ImageReader reader) {
+            Image image;
+            try {
+                image = reader.acquireNextImage();
+            } catch (IllegalStateException e) {
+                return;     // all images are held by the ring and the writer
+            }
+            if(image == null) {
+                return;
+            }
+
+            ZslRingBuffer<Image> ring = mZslRingBuffer;
+            if(ring == null) {
+                image.close();
+                return;
+            }
+            if(!mZslRealtimeTimestamps) {
+                mZslClockOffsetNanos = image.getTimestamp() - SystemClock.elapsedRealtimeNanos();
+            }
+            ring.add(image.getTimestamp(), image);
+
+            if(!mZslPendingShutters.isEmpty() && mZslPendingSaves < MAX_ZSL_PENDING_SAVES) {
+                saveZslFrame(ring.acquireClosest(image.getTimestamp()), mZslPendingShutters.poll());
+            }
+        }
+    };
+
+    /**
+     * true ... pictures are captured on the running preview session (fast) -- false ... a new session is created for every picture (legacy)
+     */
+    private boolean mFastCaptureEnabled = true;
+
+    /**
+     * writes the pictures on its own threads, so a slow storage doesn't block the camera callbacks in the background thread
+     */
+    private volatile ImageWriterPool mImageWriterPool = new ImageWriterPool(1, MAX_IMAGE_READER_IMAGES, ImageWriterPool.OverflowPolicy.BLOCK);
+
+    /**
+     * the resolution, JPEG quality and thumbnail of the pictures
+     */
+    private volatile OutputPolicy mOutputPolicy = OutputPolicy.DEFAULT;
+
+    /**
+     * the JPEG quality of the next picture, it is lowered if the writers can't keep up (see {@link OutputPolicy#withAdaptiveQuality(int)})
+     */
+    private volatile AdaptiveJpegQuality mJpegQuality = new AdaptiveJpegQuality(OutputPolicy.DEFAULT.getJpegQuality(), 0);
+
+    /**
+     * the latencies of the camera pipeline (open, session configuration, capture, saving, scanning)
+     */
+    private final CaptureMetrics mMetrics = new CaptureMetrics();
+
+    /**
+     * the times (System.nanoTime()) the opening of the camera and the configuration of the last session were started
+     */
+    private volatile long mOpenStartNanos;
+
+    /**
+     * the time (System.nanoTime()) the running switch of the camera was started, 0 if no switch is running. Only used in the background thread
+     */
+    private long mSwitchStartNanos;
+
+    /**
+     * tells the system about the written pictures, the pictures of a burst / time window are published with one call
+     */
+    private final MediaScanCoalescer mMediaScanCoalescer;
+
+    /**
+     * the default destination of the pictures: the gallery folder DCIM/SickCameraApplication
+     */
+    private final FileCaptureSink mDcimSink;
+
+    /**
+     * the destination of the pictures
+     */
+    private volatile CaptureSink mCaptureSink;
+
+    /**
+     * the maxImages value of mImageReader, it is also the maximum number of pictures that are captured but not saved yet. It is only changed,
+     * when mImageReader is created
+     */
+    private volatile int mMaxImages = 2;
+
+    /**
+     * the burst depth of {@link #setBurstDepth(int)}, mImageReader gets it, when it is created the next time
+     */
+    private volatile int mBurstDepth = 2;
+
+    /**
+     * the single pictures, that are requested but not saved yet. Every capture has its own state, so captures can overlap
+     */
+    private final List<PendingCapture> mPendingCaptures = new ArrayList<>();
+
+    /**
+     * number of pictures that are requested from mImageReader, but not saved yet
+     */
+    private final AtomicInteger mImagesInFlight = new AtomicInteger();
+
+    /**
+     * the burst that is currently running, null if there is no burst
+     */
+    private volatile BurstCapture mBurstCapture;
+
+    /**
+     * the sustained frames per second of the last finished burst
+     */
+    private volatile double mLastBurstFramesPerSecond;
+
+    /**
+     * this listener is informed, when a burst is finished
+     */
+    private OnBurstCompletedListener mOnBurstCompletedListener;
+
+    /**
+     * scores the sharpness of the pictures of a best shot burst, every thread of mScoringExecutor has its own buffers
+     */
+    private final JpegSharpnessScorer mSharpnessScorer = new JpegSharpnessScorer();
+
+    /**
+     * the threads, that score the pictures of a best shot burst (one per core). Idle threads are stopped
+     */
+    private final ThreadPoolExecutor mScoringExecutor = createScoringExecutor();
+
+    /**
+     * This listener gets the pictures of the long-lived mImageReader (or of any other FrameSource) and saves them to the CaptureSink
+     */
+    private final FrameSource.Listener mOnStillFrameListener = new FrameSource.Listener() {
+        @Override
+        public void onFrame(@NonNull final CameraFrame frame) {
+            final long availableNanos = System.nanoTime();
+
+            // Save picture via FrameSaver class, the CaptureSink publishes the picture after it is written
+            final StillImageSaveTask task = new StillImageSaveTask(new FrameSaver(frame, mCaptureSink, createImageName(), mMetrics, availableNanos),
+                    frame.getTimestamp());
+
+            // the processing thread hands the picture to the writers, so a full ImageWriterPool (OverflowPolicy.BLOCK) doesn't block the camera callbacks
+            Handler handler = mProcessingHandler;
+            if(handler == null || !handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mJpegQuality.onPictureAvailable(availableNanos);
+
+                    BurstCapture burst = mBurstCapture;
+                    if(burst != null && burst.mSelector != null && burst.mSelector.offer(frame, task)) {
+                        return;     // the picture is only saved, if it is one of the sharpest of the best shot burst
+                    }
+                    mImageWriterPool.submit(task);
+                }
+            })) {
+                task.discard();
+            }
+        }
+    };
+
     /**
      * This SurfaceTextureListener handles several lifestyles, it opens the Camera, when the initializing is finished. It also changes the preview size, when a size change is detected
      */
@@ -177,29 +538,33 @@ public class CameraObject {
     };
 
     /**
-     * a CameraStateCallback is called, when the state of the Camera is changed (closed, opened, error)
+     * a CameraStateCallback is called, when the state of the Camera is changed (closed, opened, error). It is called in the background thread
      */
     private final CameraDevice.StateCallback mStateCallback = new CameraDevice.StateCallback() {
         @Override
         public void onOpened(@NonNull CameraDevice camera) {
-            mCameraOpenCloseLock.release();
+            mMetrics.recordSince(CaptureMetrics.Stage.CAMERA_OPEN, mOpenStartNanos);
+
+            if(!mState.compareAndSet(CameraState.OPENING, CameraState.OPEN)) {
+                // the camera was closed while it was opening
+                camera.close();
+                releaseCamera();
+                return;
+            }
             mCameraDevice = camera;
             createCameraPreviewSession();
         }
 
         @Override
         public void onDisconnected(@NonNull CameraDevice camera) {
-            mCameraOpenCloseLock.release();
-            mCameraDevice.close();
-            mCameraDevice = null;
+            onCameraLost(camera);
         }
 
         @Override
         public void onError(@NonNull CameraDevice camera, int error) {
-            mCameraOpenCloseLock.release();
-            camera.close();
-            mCameraDevice = null;
-            ((Activity)context).finish();
+            if(onCameraLost(camera)) {
+                ((Activity)context).finish();
+            }
         }
     };
 
@@ -225,6 +590,10 @@ public class CameraObject {
 
         this.mTextureView = textureView;
         this.context = context;
+        this.mConfigCache = new CameraConfigCache(context);
+        this.mMediaScanCoalescer = new MediaScanCoalescer(context, this.mMetrics);
+        this.mDcimSink = FileCaptureSink.dcim(this.mMediaScanCoalescer);
+        this.mCaptureSink = this.mDcimSink;
     }
 
 
@@ -247,89 +616,411 @@ public class CameraObject {
     }
 
     /**
-     *      This Method opens the camera properly
+     *      This Method opens the camera properly. The camera is opened in the background thread, the method returns immediately
      * <p>
-     *      @version 1.0
+     *      If the camera is closing at the moment, it is opened again as soon as it is closed
      * </p>
      * <p>
-     *      @param width the width of the output size of the camera picture / preview
-     *      @param height the height of the output size of the camera picture / preview
+     *      @version 1.1
      * </p>
      * <p>
-     *      @throws RuntimeException
+     *      @param width the width of the output size of the camera picture / preview
+     *      @param height the height of the output size of the camera picture / preview
      * </p>
      */
-    public void openCamera(int width, int height) throws RuntimeException {
+    public void openCamera(final int width, final int height) {
         if((ContextCompat.checkSelfPermission(context, Manifest.permission.CAMERA) != PackageManager.PERMISSION_GRANTED)) {
             this.requestCameraPermission();
             return;
         }
 
-        this.setUpCameraOutputs(width, height);
-        this.configureTransform(width, height);
+        this.postLifecycleTask(new Runnable() {
+            @Override
+            public void run() {
+                openCameraInternal(width, height);
+            }
+        });
+    }
+
+    /**
+     *      This method opens the camera. It runs in the background thread
+     * <p>
+     *      @version 1.1
+     * </p>
+     * <p>
+     *      @param width the width of the output size of the camera picture / preview
+     *      @param height the height of the output size of the camera picture / preview
+     * </p>
+     */
+    private void openCameraInternal(final int width, final int height) {
+        if(this.mState.get() == CameraState.CLOSING) {
+            this.mPendingOpen = true;
+            this.mPendingOpenWidth = width;
+            this.mPendingOpenHeight = height;
+            return;
+        }
+        if(!this.mState.compareAndSet(CameraState.CLOSED, CameraState.OPENING)) {
+            return;     // the camera is already open
+        }
+
+        if(!this.setUpCameraOutputs(width, height)) {
+            this.mSwitchStartNanos = 0;
+            this.mState.set(CameraState.CLOSED);
+            return;
+        }
+        this.mOpenWidth = width;
+        this.mOpenHeight = height;
+        ((Activity)context).runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                configureTransform(width, height);
+            }
+        });
 
         CameraManager manager = (CameraManager)this.context.getSystemService(Context.CAMERA_SERVICE);
 
         try {
-            if(!mCameraOpenCloseLock.tryAcquire(2500, TimeUnit.MILLISECONDS)) {
-                throw new RuntimeException("TIMEOUT: Could not lock the Camera opening!");
-            }
+            this.mOpenStartNanos = System.nanoTime();
             manager.openCamera(mCameraId, mStateCallback, mBackgroundHandler);
-        } catch (InterruptedException e) {
-            throw new RuntimeException("Interrupted while trying to lock the camera opening!", e);
+            this.seedFileNames();       // while the camera opens, so the first picture doesn't wait for the folder
         } catch (CameraAccessException e) {
             e.printStackTrace();
+            this.mState.set(CameraState.CLOSING);
+            this.releaseCamera();
         }
     }
 
     /**
-     *      This method closes the camera, sets all camera devices free and stops all background-activities
+     *      This method closes the camera, sets all camera devices free and stops all background-activities. The camera is closed in the background thread,
+     *      the method returns immediately. The background thread stops itself, after the camera is closed for a while
      * <p>
      *      It must be called before the super constructor of "onPause()"!!!!
      * </p>
      * <p>
-     *      @version  1.0
-     * </p>
-     * <p>
-     *      @throws RuntimeException
+     *      @version  1.1
      * </p>
      */
-    public void closeCamera() throws RuntimeException {
-        try {
-            mCameraOpenCloseLock.acquire();
-            if(mCaptureSession != null) {
-                mCaptureSession.close();
-                mCaptureSession = null;
-            }
-            if(mCameraDevice != null) {
-                mCameraDevice.close();
-                mCameraDevice = null;
-            }
-            if(mImageReader != null) {
-                mImageReader.close();
-                mImageReader = null;
+    public void closeCamera() {
+        this.postLifecycleTask(new Runnable() {
+            @Override
+            public void run() {
+                closeCameraInternal();
             }
-        } catch (InterruptedException e) {
-            throw new RuntimeException("Interrupted while trying to lock camera closing!", e);
-        } finally {
-            mCameraOpenCloseLock.release();
-        }
-
-        this.stopBackgroundThread();
+        });
     }
 
     /**
-     *      This method handles all things for resuming the camera (check if the camera is available, open the camera, etc.)
-     * <p>
-     *      It must be called after the super constructor of "onResume()"!!!!
-     * </p>
+     *      This method closes the camera. It runs in the background thread. If the camera is still opening, it is closed as soon as it is opened
      * <p>
-     *      @version  1.0
+     *      @version 1.0
      * </p>
      */
-    public void resumeCamera() {
-        this.startBackgroundThread();
+    private void closeCameraInternal() {
+        this.mPendingOpen = false;
+        this.mSwitchStartNanos = 0;
 
+        CameraState state = this.mState.get();
+        if(state == CameraState.CLOSED || state == CameraState.CLOSING) {
+            return;
+        }
+        this.mState.set(CameraState.CLOSING);
+        if(state == CameraState.OPENING) {
+            return;     // the device isn't available yet, it is closed in onOpened / onError
+        }
+        this.releaseCamera();
+    }
+
+    /**
+     *      This method switches to another camera. Only the device, its session and the ImageReaders are closed and opened again, the background thread,
+     *      the TextureView surface, the ImageWriterPool and the cached configurations are reused. The switch runs in the background thread, the
+     *      method returns immediately
+     * <p>
+     *      If the camera is closed, the camera is used on the next opening. The time until the preview of the other camera is streaming is recorded
+     *      as {@link CaptureMetrics.Stage#CAMERA_SWITCH}. Pictures, that aren't taken yet, fail with {@link PictureFailure#CAMERA_CLOSED}
+     * </p>
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param cameraId the ID of the camera (see {@link #getAvailableCameras()})
+     *      @throws IllegalArgumentException is thrown if the device has no camera with this ID
+     * </p>
+     */
+    public void switchCamera(final String cameraId) throws IllegalArgumentException {
+        boolean known = false;
+        for(CameraInfo info : this.getAvailableCameras()) {
+            known |= info.getCameraId().equals(cameraId);
+        }
+        if(!known) {
+            throw new IllegalArgumentException("There is no camera with the ID " + cameraId);
+        }
+
+        this.postLifecycleTask(new Runnable() {
+            @Override
+            public void run() {
+                switchCameraInternal(cameraId);
+            }
+        });
+    }
+
+    /**
+     *      This method switches to another camera. It runs in the background thread. The camera is released like closeCamera does, but the
+     *      background thread is kept and the other camera is opened right away
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param cameraId the ID of the camera
+     * </p>
+     */
+    private void switchCameraInternal(String cameraId) {
+        this.mRequestedCameraId = cameraId;
+
+        CameraState state = this.mState.get();
+        if(state == CameraState.CLOSED || state == CameraState.CLOSING || cameraId.equals(this.mCameraId)) {
+            return;     // the camera is chosen on the next opening (or is already open)
+        }
+
+        this.mSwitchStartNanos = System.nanoTime();
+        this.mPendingOpen = true;
+        this.mPendingOpenWidth = this.mOpenWidth;
+        this.mPendingOpenHeight = this.mOpenHeight;
+        this.mState.set(CameraState.CLOSING);
+        if(state == CameraState.OPENING) {
+            return;     // the device isn't available yet, it is released in onOpened / onError and the other camera is opened afterwards
+        }
+        this.releaseCamera();
+    }
+
+    /**
+     *      This method returns the cameras of the device. They are enumerated on the first call, the characteristics don't change
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @return the cameras, an empty list if they can't be enumerated
+     * </p>
+     */
+    public List<CameraInfo> getAvailableCameras() {
+        List<CameraInfo> infos = this.mCameraInfos;
+        if(infos != null) {
+            return infos;
+        }
+
+        CameraManager manager = (CameraManager)this.context.getSystemService(Context.CAMERA_SERVICE);
+        try {
+            String[] cameraIds = manager.getCameraIdList();
+            infos = new ArrayList<>(cameraIds.length);
+            for(String cameraId : cameraIds) {
+                CameraCharacteristics characteristics = manager.getCameraCharacteristics(cameraId);
+                Integer facing = characteristics.get(CameraCharacteristics.LENS_FACING);
+                Integer sensorOrientation = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+                float[] focalLengths = characteristics.get(CameraCharacteristics.LENS_INFO_AVAILABLE_FOCAL_LENGTHS);
+
+                infos.add(new CameraInfo(cameraId, facing != null ? facing : CameraCharacteristics.LENS_FACING_BACK,
+                        sensorOrientation != null ? sensorOrientation : 0, focalLengths != null ? focalLengths : new float[0]));
+            }
+        } catch (CameraAccessException e) {
+            e.printStackTrace();
+            return Collections.emptyList();
+        }
+
+        infos = Collections.unmodifiableList(infos);
+        this.mCameraInfos = infos;
+        return infos;
+    }
+
+    /**
+     *      This method returns the ID of the camera, that is open (or was open last)
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @return the ID of the camera, null if no camera was opened yet
+     * </p>
+     */
+    public String getCameraId() {
+        return this.mCameraId;
+    }
+
+    /**
+     *      This method releases the session, the device and the ImageReaders. It runs in the background thread, when the state is CLOSING.
+     *      Afterwards the camera is opened again, if this was requested while it was closing
+     * <p>
+     *      The device is closed right away. The images of the readers become invalid, when they are closed, so the readers are closed by
+     *      drainImageReaders(), when the queued pictures are handed over and written. Nothing waits for this, the camera can be opened again
+     *      in the meantime
+     * </p>
+     * <p>
+     *      @version 1.1
+     * </p>
+     */
+    private void releaseCamera() {
+        if(mCaptureSession != null) {
+            mCaptureSession.close();
+            mCaptureSession = null;
+        }
+        if(mCameraDevice != null) {
+            mCameraDevice.close();
+            mCameraDevice = null;
+        }
+
+        final ImageReader imageReader = this.mImageReader;
+        final ImageReader zslImageReader = this.mZslImageReader;
+        this.mImageReader = null;
+        this.mZslImageReader = null;
+        if(this.mZslRingBuffer != null) {
+            this.mZslRingBuffer.clear();
+            this.mZslRingBuffer = null;
+        }
+        if(mAnalysisImageReader != null) {
+            this.closeAnalysisImageReader();
+        }
+        final List<PendingCapture> captures;
+        synchronized(this.mPendingCaptures) {
+            captures = new ArrayList<>(this.mPendingCaptures);
+        }
+        this.mState.set(CameraState.CLOSED);
+
+        // the images, that are already delivered, are queued before this message
+        this.mBackgroundHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                drainImageReaders(imageReader, zslImageReader, captures);
+            }
+        });
+
+        if(this.mPendingOpen) {
+            this.mPendingOpen = false;
+            this.openCameraInternal(this.mPendingOpenWidth, this.mPendingOpenHeight);
+        }
+    }
+
+    /**
+     *      This method closes the ImageReaders of a released camera, when their images aren't used anymore: the processing stage hands over its
+     *      frames, the best shot burst is cancelled and the writers finish the queued pictures. Every step is started by the idle callback of the
+     *      one before, no thread waits for it. It runs in the background thread
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param imageReader the ImageReader of the pictures, null if there is none
+     *      @param zslImageReader the ImageReader of the zero shutter lag mode, null if there is none
+     *      @param captures the pictures, that were pending when the camera was released. They fail, if they aren't finished afterwards
+     * </p>
+     */
+    private void drainImageReaders(final ImageReader imageReader, final ImageReader zslImageReader, final List<PendingCapture> captures) {
+        final BurstCapture burst = this.mBurstCapture;
+        final Runnable onWritten = new Runnable() {
+            @Override
+            public void run() {
+                onImageReadersDrained(imageReader, zslImageReader, captures);
+            }
+        };
+        this.mProcessingStage.whenIdle(new Runnable() {
+            @Override
+            public void run() {
+                Runnable writePictures = new Runnable() {
+                    @Override
+                    public void run() {
+                        mImageWriterPool.whenIdle(onWritten);
+                    }
+                };
+                if(burst != null && burst.mSelector != null) {
+                    burst.mSelector.cancel(writePictures);
+                } else {
+                    writePictures.run();
+                }
+            }
+        });
+    }
+
+    /**
+     *      This method closes the ImageReaders of a released camera. It is called in the thread, that finished the last picture. The pictures,
+     *      that aren't finished, fail in the background thread afterwards and the background thread is stopped, if the camera stays closed
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param imageReader the ImageReader of the pictures, null if there is none
+     *      @param zslImageReader the ImageReader of the zero shutter lag mode, null if there is none
+     *      @param captures the pictures, that were pending when the camera was released
+     * </p>
+     */
+    private void onImageReadersDrained(ImageReader imageReader, ImageReader zslImageReader, final List<PendingCapture> captures) {
+        if(imageReader != null) {
+            imageReader.close();
+        }
+        if(zslImageReader != null) {
+            zslImageReader.close();
+        }
+
+        // the pictures, that are written already, report back before (their messages are queued before this one)
+        Runnable finish = new Runnable() {
+            @Override
+            public void run() {
+                failPendingCaptures(captures, PictureFailure.CAMERA_CLOSED);
+
+                CaptureJournal journal = mCaptureJournal;
+                if(journal != null) {
+                    journal.sync();
+                }
+                if(mState.get() == CameraState.CLOSED && !mPendingOpen && mBackgroundThread != null) {
+                    scheduleBackgroundThreadStop();
+                }
+            }
+        };
+        Handler handler = this.mBackgroundHandler;
+        if(handler == null || !handler.post(finish)) {
+            finish.run();       // the background thread was stopped by the release of a later session
+        }
+    }
+
+    /**
+     *      This method is called in the background thread, when a camera is disconnected or has an error
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param camera the camera
+     *      @return true ... it was the current camera -- false ... it was a camera, that is already released
+     * </p>
+     */
+    private boolean onCameraLost(CameraDevice camera) {
+        camera.close();
+
+        CameraState state = this.mState.get();
+        if(camera != this.mCameraDevice && state != CameraState.OPENING && state != CameraState.CLOSING) {
+            return false;
+        }
+        this.mState.set(CameraState.CLOSING);
+        this.releaseCamera();
+        return true;
+    }
+
+    /**
+     *      This method returns the lifecycle state of the camera
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @return the state
+     * </p>
+     */
+    public CameraState getCameraState() {
+        return this.mState.get();
+    }
+
+    /**
+     *      This method handles all things for resuming the camera (check if the camera is available, open the camera, etc.)
+     * <p>
+     *      It must be called after the super constructor of "onResume()"!!!!
+     * </p>
+     * <p>
+     *      @version  1.0
+     * </p>
+     */
+    public void resumeCamera() {
         if(this.mTextureView.isAvailable()) {
             this.openCamera(this.mTextureView.getWidth(), this.mTextureView.getHeight());
         } else {
@@ -340,23 +1031,137 @@ public class CameraObject {
     /**
      *      This method sets up vars, that are related to the camera (preview size, camera characteristics, etc.)
      *<p>
+     *      The configuration is taken from the CameraConfigCache, if the camera was already set up for the same sizes. Otherwise the cameras are enumerated.
+     *      The camera chosen with switchCamera is preferred
+     *</p>
+     *<p>
+     *      @version 1.3
+     *</p>
+     * <p>
+     *      @param width the width of the output size of the camera picture / preview
+     *      @param height the height of the output size of the camera picture / preview
+     *      @return false ... there is no suitable camera
+     * </p>
+     */
+    private boolean setUpCameraOutputs(int width, int height)  {
+        Point displaySize = new Point();
+        ((Activity)context).getWindowManager().getDefaultDisplay().getSize(displaySize);
+
+        String requestedId = this.mRequestedCameraId;
+        CameraConfigCache.Entry config = requestedId != null
+                ? this.mConfigCache.get(requestedId, width, height, displaySize.x, displaySize.y)
+                : this.mConfigCache.getSelected(width, height, displaySize.x, displaySize.y);
+        if(config == null) {
+            config = this.findCameraConfig(width, height, displaySize, requestedId);
+            if(config == null) {
+                return false;
+            }
+            this.mConfigCache.put(config);
+        } else if(requestedId != null) {
+            this.mConfigCache.select(requestedId);
+        }
+
+        this.mCameraConfig = config;
+        this.mCameraId = config.mCameraId;
+        this.mPreviewSize = config.mPreviewSize;
+
+        Size size = this.chooseStillSize();
+        this.mMaxImages = this.mBurstDepth;
+        this.mImageReader = ImageReader.newInstance(size.getWidth(), size.getHeight(), ImageFormat.JPEG, this.mMaxImages);
+        new ImageReaderFrameSource(this.mImageReader, this.mBackgroundHandler).start(this.mOnStillFrameListener);
+
+        if(!this.mFrameAnalysisDispatcher.isEmpty()) {
+            this.createAnalysisImageReader();
+        }
+        if(this.mZslEnabled) {
+            this.createZslImageReader();
+        }
+        return true;
+    }
+
+    /**
+     *      This method creates the ImageReader for the frame analyzers
+     * <p>
+     *      @version 1.1
+     * </p>
+     */
+    private void createAnalysisImageReader() {
+        Size size = this.mCameraConfig.mAnalysisSize;
+        this.mAnalysisStream = this.mFrameAnalysisDispatcher.openStream();
+        this.mAnalysisImageReader = ImageReader.newInstance(size.getWidth(), size.getHeight(), ImageFormat.YUV_420_888, ANALYSIS_MAX_IMAGES);
+        this.mAnalysisImageReader.setOnImageAvailableListener(this.mOnAnalysisImageAvailableListener, this.mBackgroundHandler);
+    }
+
+    /**
+     *      This method stops the analysis of the frames of mAnalysisImageReader. The images of a reader become invalid, when it is closed, so the
+     *      reader is closed after the analyzers have released its images. It runs in the background thread
+     * <p>
      *      @version 1.0
+     * </p>
+     */
+    private void closeAnalysisImageReader() {
+        final ImageReader reader = this.mAnalysisImageReader;
+        this.mAnalysisImageReader = null;
+        reader.setOnImageAvailableListener(null, null);
+
+        this.mAnalysisStream.close(new Runnable() {
+            @Override
+            public void run() {
+                reader.close();
+            }
+        });
+        this.mAnalysisStream = null;
+    }
+
+    /**
+     *      This method creates the ImageReader and the ring for the zero shutter lag mode. The depth of the ring is limited by the memory budget
+     * <p>
+     *      @version 1.1
+     * </p>
+     */
+    private void createZslImageReader() {
+        Size size = this.chooseStillSize();
+
+        // the buffers of a JPEG ImageReader are sized for the worst case JPEG, which is about 1.5 bytes per pixel
+        long frameBytes = (long) size.getWidth() * size.getHeight() * 3 / 2;
+        int depth = ZslRingBuffer.depthForBudget(this.mZslMemoryBudget, frameBytes, MAX_ZSL_DEPTH);
+
+        this.mZslRingBuffer = new ZslRingBuffer<>(depth);
+        this.mZslImageReader = ImageReader.newInstance(size.getWidth(), size.getHeight(), ImageFormat.JPEG, depth + MAX_ZSL_PENDING_SAVES + 1);
+        this.mZslImageReader.setOnImageAvailableListener(this.mOnZslImageAvailableListener, this.mBackgroundHandler);
+        this.mZslRealtimeTimestamps = this.mCameraConfig.mRealtimeTimestamps;
+        this.mZslClockOffsetNanos = 0;
+        this.mZslPendingSaves = 0;
+        this.mZslPendingShutters.clear();
+    }
+
+    /**
+     *      This method enumerates the cameras of the device and creates the configuration for the requested camera or, if no camera is requested,
+     *      for the first camera, that is not a selfie camera
+     *<p>
+     *      @version 1.1
      *</p>
      * <p>
      *      @param width the width of the output size of the camera picture / preview
      *      @param height the height of the output size of the camera picture / preview
+     *      @param displaySize the size of the display
+     *      @param requestedId the ID of the requested camera, null for the first camera, that is not a selfie camera
+     *      @return the configuration of the camera or null, if there is no suitable camera
      * </p>
      */
-    private void setUpCameraOutputs(int width, int height)  {
+    private CameraConfigCache.Entry findCameraConfig(int width, int height, Point displaySize, String requestedId) {
         CameraManager manager = (CameraManager)this.context.getSystemService(Context.CAMERA_SERVICE);
 
         try {
             for(String cameraID : manager.getCameraIdList()) {
+                if(requestedId != null && !requestedId.equals(cameraID)) {
+                    continue;
+                }
                 CameraCharacteristics characteristics = manager.getCameraCharacteristics(cameraID);
 
-                // The Vuzix Blade has no Selfi Camera, so we just skip it
+                // The Vuzix Blade has no Selfi Camera, so we just skip it (unless it is requested)
                 Integer facing = characteristics.get(CameraCharacteristics.LENS_FACING);
-                if(facing != null && facing == CameraCharacteristics.LENS_FACING_FRONT)
+                if(requestedId == null && facing != null && facing == CameraCharacteristics.LENS_FACING_FRONT)
                     continue; // skip
 
                 StreamConfigurationMap map = characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
@@ -364,13 +1169,8 @@ public class CameraObject {
                     continue;
                 }
 
-                Size largest = Collections.max(Arrays.asList(map.getOutputSizes(ImageFormat.JPEG)), new CompareSizesByArea());
-
-                this.mImageReader = ImageReader.newInstance(largest.getWidth(), largest.getHeight(), ImageFormat.JPEG, 2);
-                this.mImageReader.setOnImageAvailableListener(null, this.mBackgroundHandler);
-
-                Point displaySize = new Point();
-                ((Activity)context).getWindowManager().getDefaultDisplay().getSize(displaySize);
+                Size[] jpegSizes = map.getOutputSizes(ImageFormat.JPEG);
+                Size largest = Collections.max(Arrays.asList(jpegSizes), new OutputSizes.CompareSizesByArea());
 
                 int maxPreviewWidth = displaySize.x;
                 int maxPreviewHeight = displaySize.y;
@@ -382,10 +1182,19 @@ public class CameraObject {
                     maxPreviewHeight = MAX_PREVIEW_HEIGHT;
                 }
 
-                this.mPreviewSize = chooseOptimalSize(map.getOutputSizes(SurfaceTexture.class), width, height, maxPreviewWidth, maxPreviewHeight, largest);
+                Size previewSize = OutputSizes.chooseOptimalSize(map.getOutputSizes(SurfaceTexture.class), width, height, maxPreviewWidth, maxPreviewHeight, largest);
+                Size analysisSize = OutputSizes.chooseOptimalSize(map.getOutputSizes(ImageFormat.YUV_420_888), MAX_ANALYSIS_WIDTH, MAX_ANALYSIS_HEIGHT,
+                        MAX_ANALYSIS_WIDTH, MAX_ANALYSIS_HEIGHT, largest);
 
-                this.mCameraId = cameraID;
-                return;
+                Rect activeArray = characteristics.get(CameraCharacteristics.SENSOR_INFO_ACTIVE_ARRAY_SIZE);
+                Float maxZoom = characteristics.get(CameraCharacteristics.SCALER_AVAILABLE_MAX_DIGITAL_ZOOM);
+                Size[] thumbnailSizes = characteristics.get(CameraCharacteristics.JPEG_AVAILABLE_THUMBNAIL_SIZES);
+                Integer timestampSource = characteristics.get(CameraCharacteristics.SENSOR_INFO_TIMESTAMP_SOURCE);
+
+                return new CameraConfigCache.Entry(cameraID, CameraConfigCache.requestKey(width, height, displaySize.x, displaySize.y),
+                        largest, jpegSizes, thumbnailSizes != null ? thumbnailSizes : new Size[0], previewSize, analysisSize,
+                        activeArray != null ? activeArray : new Rect(0, 0, largest.getWidth(), largest.getHeight()), maxZoom != null ? maxZoom : 1,
+                        timestampSource != null && timestampSource == CameraMetadata.SENSOR_INFO_TIMESTAMP_SOURCE_REALTIME);
             }
         } catch (CameraAccessException e) {
             e.printStackTrace();
@@ -395,15 +1204,41 @@ public class CameraObject {
                     "Because of the official Blade-Documentation we know, that Camera2-API is supported!");
             e.printStackTrace();
         }
+        return null;
+    }
+
+    /**
+     *      This method deletes the cached camera configuration, so the cameras are enumerated again on the next start of the camera
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    public void invalidateCameraConfigCache() {
+        this.mConfigCache.invalidate();
     }
 
     /**
-     *      This method creates a CameraCaptureSession for a camera preview
+     *      This method calculates the JPEG orientation from the display rotation
      * <p>
      *      @version 1.0
      * </p>
+     * <p>
+     *      @return the JPEG orientation in degrees
+     * </p>
+     */
+    private int getJpegOrientation() {
+        int rotation = ((Activity)context).getWindowManager().getDefaultDisplay().getRotation();
+        return ORIENTATIONS.get(rotation);
+    }
+
+    /**
+     *      This method creates a CameraCaptureSession for a camera preview. The state is CONFIGURING until the session is configured, then STREAMING
+     * <p>
+     *      @version 1.1
+     * </p>
      */
     private void createCameraPreviewSession() {
+        this.mState.set(CameraState.CONFIGURING);
         try {
             SurfaceTexture texture = mTextureView.getSurfaceTexture();
             assert texture != null;
@@ -417,14 +1252,39 @@ public class CameraObject {
             // with the output surface we set up a CaptureRequest.Builder
             this.mPreviewRequestBuilder = this.mCameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
             this.mPreviewRequestBuilder.addTarget(surface);
+            this.applyCropRegion(this.mPreviewRequestBuilder);
+
+            List<Surface> outputSurfaces = new ArrayList<>();
+            outputSurfaces.add(surface);
+
+            if(this.mZslImageReader != null) {
+                // in the zero shutter lag mode every preview frame is also captured as full size picture. The pictures are taken from the ring,
+                // so mImageReader isn't needed (two JPEG streams aren't supported by every device)
+                outputSurfaces.add(this.mZslImageReader.getSurface());
+                this.mPreviewRequestBuilder.addTarget(this.mZslImageReader.getSurface());
+                this.mPreviewRequestBuilder.set(CaptureRequest.JPEG_ORIENTATION, this.getJpegOrientation());
+                this.applyJpegSettings(this.mPreviewRequestBuilder);
+            } else {
+                outputSurfaces.add(this.mImageReader.getSurface());
+            }
+
+            // the frame analyzers get the preview frames as low resolution YUV images
+            if(this.mAnalysisImageReader != null) {
+                outputSurfaces.add(this.mAnalysisImageReader.getSurface());
+                this.mPreviewRequestBuilder.addTarget(this.mAnalysisImageReader.getSurface());
+            }
 
             //Create a CameraCaptureSession for the Preview
-            this.mCameraDevice.createCaptureSession(Arrays.asList(surface, this.mImageReader.getSurface()),
+            final long configureStartNanos = System.nanoTime();
+            this.mCameraDevice.createCaptureSession(outputSurfaces,
                     new CameraCaptureSession.StateCallback() {
                         @Override
                         public void onConfigured(@NonNull CameraCaptureSession session) {
+                            mMetrics.recordSince(CaptureMetrics.Stage.SESSION_CONFIGURE, configureStartNanos);
+
                             // if the camera is already closed
-                            if(mCameraDevice == null) {
+                            if(mCameraDevice == null || mState.get() != CameraState.CONFIGURING) {
+                                session.close();
                                 return;
                             }
 
@@ -437,6 +1297,11 @@ public class CameraObject {
                                 //start displaying the preview
                                 mPreviewRequest = mPreviewRequestBuilder.build();
                                 mCaptureSession.setRepeatingRequest(mPreviewRequest, null, mBackgroundHandler);     // the repeating request is in the Background
+                                mState.compareAndSet(CameraState.CONFIGURING, CameraState.STREAMING);
+                                if(mSwitchStartNanos != 0) {
+                                    mMetrics.recordSince(CaptureMetrics.Stage.CAMERA_SWITCH, mSwitchStartNanos);
+                                    mSwitchStartNanos = 0;
+                                }
                             } catch (CameraAccessException e) {
                                 e.printStackTrace();
                             }
@@ -444,9 +1309,10 @@ public class CameraObject {
 
                         @Override
                         public void onConfigureFailed(@NonNull CameraCaptureSession session) {
+                            mState.compareAndSet(CameraState.CONFIGURING, CameraState.OPEN);
                             showToast("Failed");
                         }
-                    }, null);
+                    }, this.mBackgroundHandler);
         } catch (CameraAccessException e) {
             e.printStackTrace();
         }
@@ -502,75 +1368,84 @@ public class CameraObject {
     }
 
     /**
-     *      This method creates a new Background thread
+     *      This method runs a lifecycle task (open / close) in the background thread. The thread is started, if it isn't running.
+     *      The tasks run in the order they are posted
      * <p>
      *      @version 1.0
      * </p>
+     * <p>
+     *      @param task the task
+     * </p>
      */
-    private void startBackgroundThread() {
-        this.mBackgroundThread = new HandlerThread("CameraBackground");
-        this.mBackgroundThread.start();
-        this.mBackgroundHandler = new Handler(this.mBackgroundThread.getLooper());  // Create a Background Handler with the Loop Message of the Handler Thread (in this case: "CameraBackground")
+    private void postLifecycleTask(Runnable task) {
+        synchronized(this.mBackgroundThreadLock) {
+            this.mLifecycleGeneration++;
+
+            // post returns false, if the looper of the thread is already quitting
+            if(this.mBackgroundHandler == null || !this.mBackgroundHandler.post(task)) {
+                this.startBackgroundThread();
+                this.mBackgroundHandler.post(task);
+            }
+        }
     }
 
     /**
-     *      This method stops the Background Thread and the Background Handler
+     *      This method creates a new Background thread and the thread of the processing stage. It is called with the lock of the background thread
      * <p>
-     *      @version 1.0
+     *      @version 1.2
      * </p>
      */
-    private void stopBackgroundThread() {
-        this.mBackgroundThread.quitSafely();
-        try {
-            this.mBackgroundThread.join();
-            this.mBackgroundThread = null;
-            this.mBackgroundHandler = null;
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+    private void startBackgroundThread() {
+        this.mProcessingThread = new HandlerThread(this.mProcessingStage.getName());
+        this.mProcessingThread.start();
+        this.mProcessingHandler = this.mProcessingStage.createHandler(this.mProcessingThread.getLooper());
+
+        this.mBackgroundThread = new HandlerThread(this.mCallbackStage.getName());
+        this.mBackgroundThread.start();
+        this.mBackgroundHandler = this.mCallbackStage.createHandler(this.mBackgroundThread.getLooper());  // Create a Background Handler with the Loop Message of the Handler Thread (in this case: "CameraBackground")
     }
 
     /**
-     *      This method selects the best fitting Size for the Preview
+     *      This method stops the background thread, if the camera stays closed and nothing else is requested for BACKGROUND_THREAD_IDLE_MS.
+     *      It runs in the background thread
      * <p>
      *      @version 1.0
      * </p>
-     * <p>
-     *      @param choices  the available Sizes
-     *      @param textureViewWidth the width of the texture View element in activity_main.xml
-     *      @param textureViewHeight the height of the texture View element in activity_main.xml
-     *      @param maxWidth the maximum width = width of the display
-     *      @param maxHeight the maximum height = height of the display
-     *      @param aspectRatio the Ratio in which the display's height and width are (for example: 4:3, 16:4, ...)
-     *      @return The best fitting Size for the Preview
-     * </p>
      */
-    private static Size chooseOptimalSize(@NonNull Size[] choices, int textureViewWidth, int textureViewHeight, int maxWidth, int maxHeight, @NonNull Size aspectRatio) {
-        List<Size> bigEnough = new ArrayList<>();       // Sizes, that are bigger than the preview Surface
-        List<Size> notBigEnough = new ArrayList<>();    // Sizes, tat are smaller than the preview Surface
-
-        int w = aspectRatio.getWidth();
-        int h = aspectRatio.getHeight();
+    private void scheduleBackgroundThreadStop() {
+        final int generation;
+        synchronized(this.mBackgroundThreadLock) {
+            generation = this.mLifecycleGeneration;
+        }
 
-        for(Size option : choices) {
-            if(option.getWidth() <= maxWidth && option.getHeight() <= maxHeight && option.getHeight() == (option.getWidth() * h / w)) {
-                if(option.getWidth() >= textureViewWidth && option.getHeight() >= textureViewHeight) {
-                    bigEnough.add(option);
-                } else {
-                    notBigEnough.add(option);
+        // the timer isn't posted through the handler of the stage, it would be counted as waiting task
+        new Handler(this.mBackgroundThread.getLooper()).postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                synchronized(mBackgroundThreadLock) {
+                    if(generation == mLifecycleGeneration && mState.get() == CameraState.CLOSED) {
+                        stopBackgroundThread();
+                    }
                 }
             }
-        }
-
-        // Pick best fitting Size (smallest that is big enough or largest that is not big enough (if no size is big enough))
-        if(bigEnough.size() > 0) {
-            return Collections.min(bigEnough, new CompareSizesByArea());
-        } else if (notBigEnough.size() > 0) {
-            return Collections.max(notBigEnough, new CompareSizesByArea());
-        } else {
-            Log.e("Camera2", "Couldn't find any suitable preview size");
-            return choices[0];
-        }
+        }, BACKGROUND_THREAD_IDLE_MS);
+    }
+
+    /**
+     *      This method stops the Background Thread and the Background Handler and the thread of the processing stage. It is called in the background
+     *      thread with the lock of the background thread, so the thread isn't joined. The tasks, that are already posted, are still executed
+     * <p>
+     *      @version 1.2
+     * </p>
+     */
+    private void stopBackgroundThread() {
+        this.mProcessingThread.quitSafely();
+        this.mProcessingThread = null;
+        this.mProcessingHandler = null;
+
+        this.mBackgroundThread.quitSafely();
+        this.mBackgroundThread = null;
+        this.mBackgroundHandler = null;
     }
 
     /**
@@ -631,192 +1506,1925 @@ public class CameraObject {
     /**
      *      This method is responsible for taking pictures via an request, and saves the taken image to the gallery
      * <p>
-     *      @version 1.4
+     *      If the zero shutter lag mode is enabled, the picture is taken from the ring of the last frames. If the fast capture mode is enabled (default),
+     *      the picture is captured on the running preview session. Otherwise a new session is created for the picture
+     * </p>
+     * <p>
+     *      @version 1.6
      * </p>
      * <p>
      * @throws CameraAccessException is thrown, when the camera access is denied
      * </p>
      */
     public void takePicture() throws CameraAccessException {
+        this.takePicture(null);
+    }
+
+    /**
+     *      This method takes a picture and informs the listener, when it is saved. Every picture has its own result, so pictures can be taken while
+     *      the previous ones are still captured or written
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param listener the listener, that gets the file, the timestamp and the metadata of this picture. It is called in the background thread, it may be null
+     *      @throws CameraAccessException is thrown, when the camera access is denied
+     * </p>
+     */
+    public void takePicture(OnPictureTakenListener listener) throws CameraAccessException {
         if(this.mCameraDevice == null) {
             throw new CameraAccessException(CameraAccessException.CAMERA_ERROR);
         }
 
-        CameraManager manager = (CameraManager)((Activity)context).getSystemService(Context.CAMERA_SERVICE);
-
-        try {
-            CameraCharacteristics characteristics = manager.getCameraCharacteristics(mCameraId);
-            Size[] jpegSizes = null;
-
-            jpegSizes = Objects.requireNonNull(characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP)).getOutputSizes(ImageFormat.JPEG);
-
-            int width = 1600;
-            int height = 1200;
-            if (jpegSizes != null && 0 < jpegSizes.length) {
-                width = jpegSizes[5].getWidth();
-                height = jpegSizes[5].getHeight();
-            }
+        if(this.mZslImageReader != null && this.mCaptureSession != null) {
+            this.takeZslPicture(new PendingCapture(listener, false));
+        } else if(this.mFastCaptureEnabled && this.mCaptureSession != null && this.mImageReader != null) {
+            this.captureStillPicture(new PendingCapture(listener, true));
+        } else {
+            this.takePictureWithNewSession(listener);
+        }
+    }
 
-            ImageReader imageReader = ImageReader.newInstance(width, height, ImageFormat.JPEG, 1);
+    /**
+     *      This method enables or disables the fast capture mode
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param enabled true ... pictures are captured on the running preview session -- false ... a new session is created for every picture
+     * </p>
+     */
+    public void setFastCaptureEnabled(boolean enabled) {
+        this.mFastCaptureEnabled = enabled;
+    }
 
-            List<Surface> outputSurface = new ArrayList<>(2);
-            outputSurface.add(imageReader.getSurface());
-            outputSurface.add(new Surface(mTextureView.getSurfaceTexture()));
+    /**
+     *      This method enables or disables the zero shutter lag mode. In this mode every preview frame is also captured as full size picture and the
+     *      last frames are kept in a ring. takePicture saves the frame, that was captured closest to the moment it was called
+     * <p>
+     *      Bursts are not available in this mode. If the camera is already running, the preview session is created again
+     * </p>
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param enabled true ... the zero shutter lag mode is enabled
+     * </p>
+     */
+    public void setZslEnabled(boolean enabled) {
+        this.mZslEnabled = enabled;
 
-            final CaptureRequest.Builder captureBuilder = mCameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_STILL_CAPTURE);
+        Handler handler = this.mBackgroundHandler;
+        if(handler != null) {
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    updateZslOutputs();
+                }
+            });
+        }
+    }
 
-            captureBuilder.addTarget(imageReader.getSurface());
-            captureBuilder.set(CaptureRequest.CONTROL_MODE, CameraMetadata.CONTROL_MODE_AUTO);
+    /**
+     *      This method sets the memory budget for the frames of the zero shutter lag ring. It is used, when the ring is created the next time
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param budgetBytes the memory budget in bytes, at least one frame is kept
+     * </p>
+     */
+    public void setZslMemoryBudget(long budgetBytes) {
+        this.mZslMemoryBudget = budgetBytes;
+    }
 
-            int rotation = ((Activity)context).getWindowManager().getDefaultDisplay().getRotation();
-            captureBuilder.set(CaptureRequest.JPEG_ORIENTATION, ORIENTATIONS.get(rotation));
+    /**
+     *      This method creates or removes the outputs of the zero shutter lag mode, when the mode was changed. It runs in the background thread
+     * <p>
+     *      @version 1.1
+     * </p>
+     */
+    private void updateZslOutputs() {
+        if(this.mCameraConfig == null) {
+            return;
+        }
 
+        if(this.mZslEnabled && this.mZslImageReader == null) {
+            this.createZslImageReader();
+            this.restartPreviewSession();
+        } else if(!this.mZslEnabled && this.mZslImageReader != null) {
+            final ImageReader oldReader = this.mZslImageReader;
+            ZslRingBuffer<Image> oldRing = this.mZslRingBuffer;
+            this.mZslImageReader = null;
+            this.mZslRingBuffer = null;
+            while(!this.mZslPendingShutters.isEmpty()) {
+                this.mZslPendingShutters.poll().fail(PictureFailure.NOT_SAVED);
+            }
+            this.restartPreviewSession();
 
-            ImageReader.OnImageAvailableListener readerListener = new ImageReader.OnImageAvailableListener() {
-                @RequiresApi(api = Build.VERSION_CODES.O)
+            oldRing.clear();
+            // the images become invalid, when the reader is closed, so it is closed when the queued pictures are written
+            this.mImageWriterPool.whenIdle(new Runnable() {
                 @Override
-                public void onImageAvailable(ImageReader reader) {
-                    String fileName = "IMG_" +  new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date()) + ".jpg";
-
-                    // Create Folder in gallery for the application
-                    File folder = new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DCIM) + "/SickCameraApplication");
-                    if(!folder.exists()) {
-                        //noinspection ResultOfMethodCallIgnored
-                        folder.mkdirs();
-                    }
+                public void run() {
+                    oldReader.close();
+                }
+            });
+        }
+    }
 
-                    mFile = new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DCIM) + "/SickCameraApplication", fileName);      // create new File
+    /**
+     *      This method takes the picture in the zero shutter lag mode. The frame of the ring, that is the closest to the time of the call, is saved.
+     *      If the ring is empty or too many pictures are written at the moment, the next frame is saved
+     * <p>
+     *      @version 1.1
+     * </p>
+     * <p>
+     *      @param capture the state of the picture
+     * </p>
+     */
+    private void takeZslPicture(final PendingCapture capture) {
+        final long pressNanos = SystemClock.elapsedRealtimeNanos();
 
-                    mBackgroundHandler.post(new ImageSaver(reader.acquireNextImage(), mFile)); // Save picture via ImageSaver class
+        this.mBackgroundHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                ZslRingBuffer<Image> ring = mZslRingBuffer;
+                if(ring == null) {
+                    capture.fail(PictureFailure.NOT_SAVED);
+                    return;
+                }
 
-                    scanFile(context, mFile, MIME_TYPES_IMAGE.JPG.toString());  // Tell the MediaScanner about the new file to refresh the system
+                ZslRingBuffer.Handle<Image> handle = null;
+                if(mZslPendingSaves < MAX_ZSL_PENDING_SAVES) {
+                    handle = ring.acquireClosest(pressNanos + mZslClockOffsetNanos);
+                }
+                if(handle == null) {
+                    mZslPendingShutters.add(capture);
+                    return;
                 }
-            };
+                saveZslFrame(handle, capture);
+            }
+        });
+    }
 
-            imageReader.setOnImageAvailableListener(readerListener, this.mBackgroundHandler);
+    /**
+     *      This method writes a frame of the zero shutter lag ring. It runs in the background thread, the processing thread hands the frame to
+     *      the writers, so a full ImageWriterPool (OverflowPolicy.BLOCK) doesn't block the camera callbacks
+     * <p>
+     *      @version 1.2
+     * </p>
+     * <p>
+     *      @param handle the acquired frame, it is released after it is written
+     *      @param capture the state of the picture
+     * </p>
+     */
+    private void saveZslFrame(ZslRingBuffer.Handle<Image> handle, PendingCapture capture) {
+        this.mZslPendingSaves++;
+        capture.mTimestamp = handle.getTimestamp();
+        this.mJpegQuality.onPictureAvailable(System.nanoTime());
 
-            final CameraCaptureSession.CaptureCallback captureListener  = new CameraCaptureSession.CaptureCallback() {
-                @Override
-                public void onCaptureCompleted(@NonNull CameraCaptureSession session, @NonNull CaptureRequest request, @NonNull TotalCaptureResult result) {
-                    super.onCaptureCompleted(session, request, result);
-                    showToast("Saved!");
-                    createCameraPreviewSession();
-                }
-            };
+        final ZslSaveTask task = new ZslSaveTask(new FrameSaver(ImageFrame.ofHandle(handle), this.mCaptureSink, this.createImageName(),
+                this.mMetrics, capture.mShutterNanos), capture);
 
-            mCameraDevice.createCaptureSession(outputSurface, new CameraCaptureSession.StateCallback() {
-                @Override
-                public void onConfigured(@NonNull CameraCaptureSession session) {
-                    try {
-                        session.capture(captureBuilder.build(), captureListener, mBackgroundHandler);
-                    } catch (CameraAccessException e) {
-                        e.printStackTrace();
-                    }
-                }
+        Handler handler = this.mProcessingHandler;
+        if(handler == null || !handler.post(new Runnable() {
+            @Override
+            public void run() {
+                mImageWriterPool.submit(task);
+            }
+        })) {
+            task.discard();
+        }
+    }
 
-                @Override
-                public void onConfigureFailed(@NonNull CameraCaptureSession session) {
+    /**
+     *      This method reserves an image for a single picture. If all images are held by pictures, that are still written, the picture fails
+     *      with {@link PictureFailure#BUSY}
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param capture the state of the picture
+     *      @return true ... the image is reserved (mImagesInFlight is incremented) -- false ... the picture failed
+     * </p>
+     */
+    private boolean reserveImage(final PendingCapture capture) {
+        int inFlight;
+        do {
+            inFlight = this.mImagesInFlight.get();
+            if(inFlight >= this.mMaxImages) {
+                this.mBackgroundHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        capture.fail(PictureFailure.BUSY);
+                    }
+                });
+                return false;
+            }
+        } while(!this.mImagesInFlight.compareAndSet(inFlight, inFlight + 1));
+        return true;
+    }
 
-                }
-            }, mBackgroundHandler);
+    /**
+     *      This method captures a still picture with a single request on the running preview session. The picture is delivered to mImageReader, the preview keeps running
+     * <p>
+     *      Every picture holds an image of mImageReader until it is written. If all images are held, the picture fails with {@link PictureFailure#BUSY},
+     *      because the reader couldn't deliver another image
+     * </p>
+     * <p>
+     *      @version 1.2
+     * </p>
+     * <p>
+     *      @param capture the state of the picture, it receives the callbacks of the request
+     *      @throws CameraAccessException is thrown, when the camera access is denied
+     * </p>
+     */
+    private void captureStillPicture(final PendingCapture capture) throws CameraAccessException {
+        if(!this.reserveImage(capture)) {
+            return;
+        }
 
+        try {
+            this.mCaptureSession.capture(this.createStillCaptureRequest(), capture, this.mBackgroundHandler);
         } catch (CameraAccessException e) {
-            e.printStackTrace();
+            this.mImagesInFlight.decrementAndGet();
+            capture.remove();
+            throw e;
         }
     }
 
     /**
-     *      This method forces an update for the filesystem via the MediaScanner, in order to see the taken pictures in the filesystem
+     *      This method sets, if the file of a picture in the gallery folder is set to its final length before the picture is written
+     * <p>
+     *      @version 1.1
+     * </p>
+     * <p>
+     *      @param preallocate true ... the file is set to the size of the picture first (no space is reserved, the file is sparse until it
+     *                         is written) -- false ... the file grows while it is written
+     * </p>
+     */
+    public void setPreallocateFiles(boolean preallocate) {
+        this.mDcimSink.setPreallocate(preallocate);
+    }
+
+    /**
+     *      This method sets, if the pictures of the gallery folder are written atomically: to a temporary file, that is synced and renamed afterwards.
+     *      The syncs of a time window or a burst are done together, so a crash or a power loss never leaves a truncated picture in the gallery
      * <p>
      *      @version 1.0
      * </p>
      * <p>
-     *      @param context the application context, that triggers the update
-     *      @param file the file that is new in the system
-     *      @param mimeType the type of the file
+     *      @param atomic true ... the pictures are written atomically
+     *      @param windowMillis the time in milliseconds pictures are collected before they are committed, the longest time a written picture can be lost
+     *      @param maxGroupSize the maximum number of pictures in one commit
+     *      @throws IllegalArgumentException is thrown, if the window is negative or the group size smaller than 1
+     * </p>
+     */
+    public void setAtomicWrites(boolean atomic, long windowMillis, int maxGroupSize) throws IllegalArgumentException {
+        this.mDcimSink.setAtomicWrites(atomic, windowMillis, maxGroupSize);
+    }
+
+    /**
+     *      This method sets a storage quota for the gallery folder DCIM/SickCameraApplication. The pictures are indexed by a {@link CaptureCatalog},
+     *      when the quota is exceeded the oldest pictures are deleted in the background. When the index is loaded, it is reconciled with the
+     *      names of the folder, so pictures of sessions without a quota are counted too
+     * <p>
+     *      The deleted pictures are removed from the MediaStore by the MediaScanCoalescer, so the gallery doesn't show them anymore. A listener,
+     *      that is set on {@link #getCaptureCatalog()}, replaces this
+     * </p>
+     * <p>
+     *      @version 1.1
+     * </p>
+     * <p>
+     *      @param maxBytes the maximum size of all pictures in bytes, 0 ... no limit
+     *      @param maxCount the maximum number of pictures, 0 ... no limit
+     *      @throws IllegalArgumentException is thrown, if a value is negative
      * </p>
      */
-    private void scanFile(Context context, File file, String mimeType) {
-        MediaScannerConnection.scanFile(context, new String[] {file.getAbsolutePath()}, new String[] {mimeType}, null);
+    public void setStorageQuota(long maxBytes, int maxCount) throws IllegalArgumentException {
+        CaptureCatalog catalog;
+        synchronized(this.mDcimSink) {
+            catalog = this.mDcimSink.getCatalog();
+            if(catalog == null) {
+                catalog = new CaptureCatalog(this.mDcimSink.getFolder());
+                catalog.setListener(new CaptureCatalog.Listener() {
+                    @Override
+                    public void onEvicted(@NonNull List<File> files) {
+                        mMediaScanCoalescer.remove(files);     // the gallery mustn't show the deleted pictures
+                    }
+                });
+                this.mDcimSink.setCatalog(catalog);
+            }
+        }
+        catalog.setQuota(maxBytes, maxCount);
+    }
+
+    /**
+     * @return the index of the pictures in the gallery folder, null if no storage quota was set
+     */
+    public CaptureCatalog getCaptureCatalog() {
+        return this.mDcimSink.getCatalog();
     }
 
     /**
-     *      This method returns the URI / path of the most recent picture
+     *      This method sets the destination of the pictures, for example {@link FileCaptureSink#appPrivate(Context)}, a {@link MemoryCaptureSink}
+     *      or a {@link MediaStoreCaptureSink}. Pictures, that are already taken, are stored in the old sink
      * <p>
      *      @version 1.0
      * </p>
      * <p>
-     *      @return the URI from the most recent file
+     *      @param sink the destination of the pictures, null for the gallery folder DCIM/SickCameraApplication
      * </p>
      */
-    public Uri returnLatestFileUri() {
-        return Uri.fromFile(this.mFile);
+    public void setCaptureSink(CaptureSink sink) {
+        CaptureSink old = this.mCaptureSink;
+        this.mCaptureSink = sink != null ? sink : this.mDcimSink;
+        if(old != this.mCaptureSink) {
+            old.flush();
+        }
     }
 
+    /**
+     * @return the destination of the pictures
+     */
+    public CaptureSink getCaptureSink() {
+        return this.mCaptureSink;
+    }
 
-    // *************************************************************** Class Section ***************************************************************
+    /**
+     *      This method sets the journal, that records the metadata (sensor timestamp, exposure time, ISO, focus distance and file name) of every
+     *      saved picture. The journal belongs to the caller, it is synced when the camera is closed but never closed by the camera
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param journal the journal, null if the metadata isn't recorded
+     * </p>
+     */
+    public void setCaptureJournal(CaptureJournal journal) {
+        this.mCaptureJournal = journal;
+    }
 
+    /**
+     * @return the journal of the metadata, null if the metadata isn't recorded
+     */
+    public CaptureJournal getCaptureJournal() {
+        return this.mCaptureJournal;
+    }
 
     /**
-     *      This class compares sizes based on their areas
+     *      This method records the metadata of a saved picture in the capture journal, if there is one. It runs in the background thread
      * <p>
      *      @version 1.0
-     *      @since 1.0
+     * </p>
+     * <p>
+     *      @param timestamp the sensor timestamp of the picture
+     *      @param name the file name of the picture
+     *      @param result the metadata of the capture, null if there is no capture request for the picture (zero shutter lag)
      * </p>
      */
-    private static class CompareSizesByArea implements Comparator<Size> {
+    private void recordCapture(long timestamp, String name, TotalCaptureResult result) {
+        CaptureJournal journal = this.mCaptureJournal;
+        if(journal == null) {
+            return;
+        }
 
-        @Override
-        public int compare(Size o1, Size o2) {
-            // Casts to prevent overflows
-            return Long.signum((long) o1.getWidth() * o1.getHeight() -
-                    (long) o2.getWidth() * o2.getHeight());
+        long exposureTime = CaptureJournal.UNKNOWN;
+        int iso = CaptureJournal.UNKNOWN;
+        float focusDistance = Float.NaN;
+        if(result != null) {
+            Long exposure = result.get(CaptureResult.SENSOR_EXPOSURE_TIME);
+            Integer sensitivity = result.get(CaptureResult.SENSOR_SENSITIVITY);
+            Float focus = result.get(CaptureResult.LENS_FOCUS_DISTANCE);
+            exposureTime = exposure != null ? exposure : CaptureJournal.UNKNOWN;
+            iso = sensitivity != null ? sensitivity : CaptureJournal.UNKNOWN;
+            focusDistance = focus != null ? focus : Float.NaN;
+        }
+
+        try {
+            journal.append(timestamp, name, exposureTime, iso, focusDistance);
+        } catch (IOException | IllegalStateException e) {
+            e.printStackTrace();
         }
     }
 
     /**
-     *      This class is responsible for storing a picture
+     *      This method creates a still capture request, that delivers a picture to mImageReader
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @return the request for a still picture
+     *      @throws CameraAccessException is thrown, when the camera access is denied
+     * </p>
+     */
+    private CaptureRequest createStillCaptureRequest() throws CameraAccessException {
+        return this.createStillCaptureRequestBuilder().build();
+    }
+
+    /**
+     *      This method creates the builder of a still capture request, that delivers a picture to mImageReader
      * <p>
      *      @version 1.0
-     *      @since 1.2
+     * </p>
+     * <p>
+     *      @return the builder, the JPEG settings of the OutputPolicy are already set
+     *      @throws CameraAccessException is thrown, when the camera access is denied
      * </p>
      */
-    private static class ImageSaver implements Runnable {
-        private final Image mImage;
-        private final File mFile;
+    private CaptureRequest.Builder createStillCaptureRequestBuilder() throws CameraAccessException {
+        CaptureRequest.Builder captureBuilder = this.mCameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_STILL_CAPTURE);
 
-        ImageSaver(Image image, File file) {
-            this.mImage = image;
-            this.mFile = file;
-        }
+        captureBuilder.addTarget(this.mImageReader.getSurface());
+        captureBuilder.set(CaptureRequest.CONTROL_MODE, CameraMetadata.CONTROL_MODE_AUTO);
+        captureBuilder.set(CaptureRequest.CONTROL_AF_MODE, CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
+        captureBuilder.set(CaptureRequest.JPEG_ORIENTATION, this.getJpegOrientation());
+        this.applyJpegSettings(captureBuilder);
+        this.applyCropRegion(captureBuilder);
 
-        @Override
-        public void run() {
-            ByteBuffer buffer = mImage.getPlanes()[0].getBuffer();
-            byte[] bytes = new byte[buffer.remaining()];
-            buffer.get(bytes);
-            FileOutputStream output = null;
-            try {
-                output = new FileOutputStream(mFile);
-                output.write(bytes);
-            } catch (IOException e) {
-                e.printStackTrace();
-            } finally {
-                mImage.close();
-                if (null != output) {
-                    try {
-                        output.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
+        return captureBuilder;
+    }
+
+    /**
+     *      This method creates the threads, that score the pictures of a best shot burst. There is one thread per core, idle threads are stopped
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @return the executor
+     * </p>
+     */
+    private static ThreadPoolExecutor createScoringExecutor() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger mThreadNumber = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "CameraSharpness-" + mThreadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
                     }
-                }
-            }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     *      This method takes a burst of pictures on the running preview session. The pictures are requested via captureBurst, but never more than
+     *      the ImageReader can hold at once. Further pictures are requested, as soon as the previous ones are saved
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param frameCount the number of pictures of the burst
+     *      @throws CameraAccessException is thrown, when the camera access is denied or the preview session is not running
+     *      @throws IllegalArgumentException is thrown, if the frame count is smaller than 1
+     *      @throws IllegalStateException is thrown, if another burst is still running or the zero shutter lag mode is enabled
+     * </p>
+     */
+    public void takeBurst(int frameCount) throws CameraAccessException, IllegalArgumentException, IllegalStateException {
+        if(frameCount < 1) {
+            throw new IllegalArgumentException("The frame count of a burst must be at least 1!");
         }
+        this.startBurst(frameCount, null);
     }
 
+    /**
+     *      This method takes a burst of pictures and saves only the sharpest ones. This helps against motion blur of a head-mounted camera
+     * <p>
+     *      Every picture is decoded downsampled and scored by the variance of the Laplacian of its luma, as soon as it arrives. The pictures
+     *      are scored in parallel on all cores. When the burst is finished, the sharpest pictures are written, the others are dropped without
+     *      being written. The OnBurstCompletedListener gets the number of saved pictures
+     * </p>
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param frameCount the number of pictures of the burst, at most the burst depth (all pictures are held until the best ones are chosen)
+     *      @param keep the number of pictures, that are saved
+     *      @throws CameraAccessException is thrown, when the camera access is denied or the preview session is not running
+     *      @throws IllegalArgumentException is thrown, if keep isn't between 1 and the frame count or the frame count is bigger than the burst depth
+     *      @throws IllegalStateException is thrown, if another burst is still running or the zero shutter lag mode is enabled
+     * </p>
+     */
+    public void takeBestShot(int frameCount, int keep) throws CameraAccessException, IllegalArgumentException, IllegalStateException {
+        if(frameCount > this.mMaxImages) {
+            throw new IllegalArgumentException("A best shot burst can't be longer than the burst depth (" + this.mMaxImages + ")!");
+        }
+        this.startBurst(frameCount, new BestShotSelector(frameCount, keep, this.mSharpnessScorer, this.mScoringExecutor, this.mImageWriterPool));
+    }
 
-    // *************************************************************** Enum Section ***************************************************************
+    /**
+     *      This method starts a burst on the running preview session
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param frameCount the number of pictures of the burst
+     *      @param selector selects the pictures, that are saved. null ... all pictures are saved
+     *      @throws CameraAccessException is thrown, when the camera access is denied or the preview session is not running
+     *      @throws IllegalStateException is thrown, if another burst is still running or the zero shutter lag mode is enabled
+     * </p>
+     */
+    private void startBurst(int frameCount, BestShotSelector selector) throws CameraAccessException, IllegalStateException {
+        if(this.mCameraDevice == null || this.mCaptureSession == null || this.mImageReader == null) {
+            throw new CameraAccessException(CameraAccessException.CAMERA_ERROR);
+        }
+        if(this.mBurstCapture != null) {
+            throw new IllegalStateException("A burst is already running!");
+        }
+        if(this.mZslImageReader != null) {
+            throw new IllegalStateException("Bursts are not available in the zero shutter lag mode!");
+        }
+
+        final BurstCapture burst = new BurstCapture(frameCount, this.createStillCaptureRequestBuilder(), selector);
+        this.mBurstCapture = burst;
 
+        this.mBackgroundHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                burst.submitFrames();
+            }
+        });
+    }
+
+    /**
+     *      This method sets how many pictures the ImageReader can hold at once. A bigger depth allows faster bursts, but every picture needs a full size buffer
+     * <p>
+     *      The depth is limited to {@value #MAX_IMAGE_READER_IMAGES}. If the camera is already running, the ImageReader and the preview session are created again
+     *      in the background thread. If a picture is captured meanwhile, the depth is used when the camera is opened the next time
+     * </p>
+     * <p>
+     *      @version 1.1
+     * </p>
+     * <p>
+     *      @param depth the number of pictures, the ImageReader can hold at once
+     *      @throws IllegalStateException is thrown, if pictures are captured at the moment
+     * </p>
+     */
+    public void setBurstDepth(int depth) throws IllegalStateException {
+        if(this.mImagesInFlight.get() > 0 || this.mBurstCapture != null) {
+            throw new IllegalStateException("The burst depth can't be changed while pictures are captured!");
+        }
+
+        this.mBurstDepth = Math.max(2, Math.min(depth, MAX_IMAGE_READER_IMAGES));
+        this.postUpdateImageReader();
+    }
+
+    /**
+     *      This method sets the resolution, the JPEG quality and the thumbnail of the pictures. If the camera is already running and the resolution
+     *      changes, the ImageReader and the preview session are created again in the background thread. If a picture is captured meanwhile, the
+     *      resolution is used when the camera is opened the next time. The zero shutter lag mode uses the new resolution, when it is started again
+     * <p>
+     *      @version 1.1
+     * </p>
+     * <p>
+     *      @param policy the output policy, null for {@link OutputPolicy#DEFAULT}
+     *      @throws IllegalStateException is thrown, if pictures are captured at the moment
+     * </p>
+     */
+    public void setOutputPolicy(OutputPolicy policy) throws IllegalStateException {
+        if(this.mImagesInFlight.get() > 0 || this.mBurstCapture != null) {
+            throw new IllegalStateException("The output policy can't be changed while pictures are captured!");
+        }
+
+        this.mOutputPolicy = policy != null ? policy : OutputPolicy.DEFAULT;
+        this.mJpegQuality = new AdaptiveJpegQuality(this.mOutputPolicy.getJpegQuality(), this.mOutputPolicy.getMinAdaptiveQuality());
+        this.postUpdateImageReader();
+    }
+
+    /**
+     * @return the resolution, JPEG quality and thumbnail of the pictures
+     */
+    public OutputPolicy getOutputPolicy() {
+        return this.mOutputPolicy;
+    }
+
+    /**
+     * @return the JPEG quality of the next picture, it is lower than the quality of the OutputPolicy, if the adaptive quality had to lower it
+     */
+    public int getCurrentJpegQuality() {
+        return this.mJpegQuality.getQuality();
+    }
+
+    /**
+     *      This method posts {@link #updateImageReader()} to the background thread, if the camera is running
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    private void postUpdateImageReader() {
+        Handler handler = this.mBackgroundHandler;
+        if(handler != null) {
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    updateImageReader();
+                }
+            });
+        }
+    }
+
+    /**
+     *      This method creates mImageReader again, if the burst depth or the resolution of the pictures changed. It runs in the background thread.
+     *      Pictures, that are captured at the moment, hold images of the reader, so the reader is kept then and the change is used, when the
+     *      camera is opened the next time
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    private void updateImageReader() {
+        if(this.mCameraConfig == null || this.mImageReader == null) {
+            return;     // the reader is created with the new values, when the camera is opened
+        }
+        if(this.mImagesInFlight.get() > 0 || this.mBurstCapture != null) {
+            return;
+        }
+
+        Size size = this.chooseStillSize();
+        if(size.getWidth() != this.mImageReader.getWidth() || size.getHeight() != this.mImageReader.getHeight()
+                || this.mImageReader.getMaxImages() != this.mBurstDepth) {
+            this.recreateImageReader(size);
+        }
+    }
+
+    /**
+     *      This method replaces mImageReader with a new one and restarts the preview session. The new reader gets the burst depth
+     * <p>
+     *      @version 1.1
+     * </p>
+     * <p>
+     *      @param size the size of the pictures
+     * </p>
+     */
+    private void recreateImageReader(Size size) {
+        ImageReader oldReader = this.mImageReader;
+        this.mMaxImages = this.mBurstDepth;
+        this.mImageReader = ImageReader.newInstance(size.getWidth(), size.getHeight(), ImageFormat.JPEG, this.mMaxImages);
+        new ImageReaderFrameSource(this.mImageReader, this.mBackgroundHandler).start(this.mOnStillFrameListener);
+
+        this.restartPreviewSession();
+        oldReader.close();
+    }
+
+    /**
+     *      This method selects the resolution of the pictures via the OutputPolicy. With a region of interest the resolution is limited to the pixels
+     *      of the crop region, so the camera crops on the sensor and doesn't upscale
+     * <p>
+     *      @version 1.1
+     * </p>
+     * <p>
+     *      @return the size of the pictures, the largest size if the OutputPolicy can't select one
+     * </p>
+     */
+    private Size chooseStillSize() {
+        CameraConfigCache.Entry config = this.mCameraConfig;
+        long maxPixels = 0;
+        int[] crop = this.computeCropRegion(config);
+        if(crop != null) {
+            Size largest = config.mLargestJpegSize;
+            maxPixels = CropRegion.outputPixels(crop, config.mActiveArraySize.width(), config.mActiveArraySize.height(),
+                    (long) largest.getWidth() * largest.getHeight());
+        }
+
+        Size size = this.mOutputPolicy.chooseSize(config.mJpegSizes, maxPixels);
+        return size != null ? size : config.mLargestJpegSize;
+    }
+
+    /**
+     *      This method sets the region of the field of view, that is captured. The camera crops the preview and the pictures on the sensor
+     *      (SCALER_CROP_REGION), and the pictures get a smaller resolution, that matches the pixels of the region. The region is enlarged to the aspect
+     *      ratio of the sensor and to the maximum digital zoom, if necessary
+     * <p>
+     *      If the resolution changes, the ImageReader and the preview session are created again, as soon as no pictures are captured
+     * </p>
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param region the region in normalized coordinates (0,0 is the top left and 1,1 the bottom right corner of the sensor), null for the whole field of view
+     * </p>
+     */
+    public void setRegionOfInterest(RectF region) {
+        this.mRegionOfInterest = region != null ? new RectF(region) : null;
+
+        Handler handler = this.mBackgroundHandler;
+        if(handler != null) {
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    updateCropRegion();
+                }
+            });
+        }
+    }
+
+    /**
+     *      This method sets a digital zoom to the center of the field of view
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param zoom the zoom factor, 1 for the whole field of view. It is limited to {@link #getMaxZoom()}
+     * </p>
+     */
+    public void setZoom(float zoom) {
+        if(zoom <= 1) {
+            this.setRegionOfInterest(null);
+            return;
+        }
+        float half = 0.5f / zoom;
+        this.setRegionOfInterest(new RectF(0.5f - half, 0.5f - half, 0.5f + half, 0.5f + half));
+    }
+
+    /**
+     * @return the region of interest in normalized coordinates, null for the whole field of view
+     */
+    public RectF getRegionOfInterest() {
+        RectF region = this.mRegionOfInterest;
+        return region != null ? new RectF(region) : null;
+    }
+
+    /**
+     * @return the maximum digital zoom of the camera, 1 if the camera isn't opened yet
+     */
+    public float getMaxZoom() {
+        CameraConfigCache.Entry config = this.mCameraConfig;
+        return config != null ? Math.max(1, config.mMaxDigitalZoom) : 1;
+    }
+
+    /**
+     *      This method calculates the crop region of the region of interest
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param config the configuration of the camera
+     *      @return the crop region {left, top, right, bottom} in pixels of the active array, null for the whole field of view
+     * </p>
+     */
+    private int[] computeCropRegion(CameraConfigCache.Entry config) {
+        RectF region = this.mRegionOfInterest;
+        if(region == null || config == null) {
+            return null;
+        }
+
+        Rect array = config.mActiveArraySize;
+        return CropRegion.fit(array.width(), array.height(), region.left, region.top, region.right, region.bottom, config.mMaxDigitalZoom);
+    }
+
+    /**
+     *      This method sets the crop region of the region of interest on a request
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param builder the builder of a request
+     * </p>
+     */
+    private void applyCropRegion(CaptureRequest.Builder builder) {
+        CameraConfigCache.Entry config = this.mCameraConfig;
+        if(config == null) {
+            return;
+        }
+
+        int[] crop = this.computeCropRegion(config);
+        Rect array = config.mActiveArraySize;
+        builder.set(CaptureRequest.SCALER_CROP_REGION, crop != null
+                ? new Rect(crop[CropRegion.LEFT], crop[CropRegion.TOP], crop[CropRegion.RIGHT], crop[CropRegion.BOTTOM])
+                : new Rect(0, 0, array.width(), array.height()));
+    }
+
+    /**
+     *      This method applies a new region of interest to the running camera. It runs in the background thread
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    private void updateCropRegion() {
+        if(this.mCameraConfig == null || this.mImageReader == null) {
+            return;     // the region is applied, when the camera is opened
+        }
+
+        Size size = this.chooseStillSize();
+        boolean resize = (size.getWidth() != this.mImageReader.getWidth() || size.getHeight() != this.mImageReader.getHeight())
+                && this.mImagesInFlight.get() == 0 && this.mBurstCapture == null && this.mZslImageReader == null;
+        if(resize) {
+            this.recreateImageReader(size);     // the new preview session gets the crop region
+            return;
+        }
+
+        CameraCaptureSession session = this.mCaptureSession;
+        if(session != null && this.mPreviewRequestBuilder != null && this.mState.get() == CameraState.STREAMING) {
+            this.applyCropRegion(this.mPreviewRequestBuilder);
+            try {
+                this.mPreviewRequest = this.mPreviewRequestBuilder.build();
+                session.setRepeatingRequest(this.mPreviewRequest, null, this.mBackgroundHandler);
+            } catch (CameraAccessException | IllegalStateException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     *      This method sets the JPEG quality and the thumbnail of the OutputPolicy on a request. The thumbnail is snapped to the nearest size,
+     *      that the camera supports, an unsupported size would fail the request
+     * <p>
+     *      @version 1.1
+     * </p>
+     * <p>
+     *      @param builder the builder of a request with a JPEG target
+     * </p>
+     */
+    private void applyJpegSettings(CaptureRequest.Builder builder) {
+        builder.set(CaptureRequest.JPEG_QUALITY, (byte) this.mJpegQuality.getQuality());
+
+        CameraConfigCache.Entry config = this.mCameraConfig;
+        Size thumbnail = config != null ? this.mOutputPolicy.chooseThumbnailSize(config.mThumbnailSizes) : null;
+        if(thumbnail != null) {
+            builder.set(CaptureRequest.JPEG_THUMBNAIL_SIZE, thumbnail);
+        }
+    }
+
+    /**
+     *      This method closes the running preview session and creates a new one, for example if the outputs changed
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    private void restartPreviewSession() {
+        if(this.mCameraDevice == null || this.mState.get() == CameraState.CLOSING) {
+            return;
+        }
+        if(this.mCaptureSession != null) {
+            this.mCaptureSession.close();
+            this.mCaptureSession = null;
+        }
+        this.createCameraPreviewSession();
+    }
+
+    /**
+     *      This method registers a frame analyzer. The analyzer gets the preview frames as low resolution YUV_420_888 images on its own thread.
+     *      Frames, that arrive while the analyzer is busy, are dropped for it
+     * <p>
+     *      If the camera is already running, the preview session is created again with the YUV stream
+     * </p>
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param analyzer the analyzer
+     *      @return the registration, it contains the number of delivered and dropped frames of the analyzer
+     *      @throws IllegalArgumentException is thrown, if the analyzer is null
+     * </p>
+     */
+    public FrameAnalysisDispatcher.Registration addFrameAnalyzer(FrameAnalyzer analyzer) throws IllegalArgumentException {
+        if(analyzer == null) {
+            throw new IllegalArgumentException("The analyzer must have a Value!");
+        }
+
+        FrameAnalysisDispatcher.Registration registration = this.mFrameAnalysisDispatcher.add(analyzer);
+
+        final Handler handler = this.mBackgroundHandler;
+        if(handler != null) {
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if(mAnalysisImageReader == null && mCameraConfig != null) {
+                        createAnalysisImageReader();
+                        restartPreviewSession();
+                    }
+                }
+            });
+        }
+        return registration;
+    }
+
+    /**
+     *      This method removes a frame analyzer
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param analyzer the analyzer
+     *      @return true ... the analyzer was registered
+     * </p>
+     */
+    public boolean removeFrameAnalyzer(FrameAnalyzer analyzer) {
+        return analyzer != null && this.mFrameAnalysisDispatcher.remove(analyzer);
+    }
+
+    /**
+     *      This method registers a motion detector, that takes a picture whenever it detects motion. The detector runs on the analysis stream,
+     *      the picture is taken like with takePicture(listener). It is removed with removeFrameAnalyzer
+     * <p>
+     *      Motion, that is detected while all images of the camera are held by pictures, that are still captured or written, is skipped. So a
+     *      short cooldown can't take pictures faster than they are written
+     * </p>
+     * <p>
+     *      @version 1.1
+     * </p>
+     * <p>
+     *      @param detector the detector, its listener is replaced
+     *      @param listener the listener, that gets every triggered picture, it may be null
+     *      @return the registration of the detector, it contains the number of analyzed and dropped frames
+     *      @throws IllegalArgumentException is thrown, if the detector is null
+     * </p>
+     */
+    public FrameAnalysisDispatcher.Registration addMotionTrigger(MotionDetector detector, final OnPictureTakenListener listener) throws IllegalArgumentException {
+        if(detector == null) {
+            throw new IllegalArgumentException("The detector must have a Value!");
+        }
+
+        detector.setListener(new MotionDetector.Listener() {
+            @Override
+            public void onMotion(float changedArea, long timestamp) {
+                // the picture is taken in the background thread, like the other camera requests
+                Handler handler = mBackgroundHandler;
+                if(handler != null) {
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if(mState.get() != CameraState.STREAMING || mImagesInFlight.get() >= mMaxImages) {
+                                return;
+                            }
+                            try {
+                                takePicture(listener);
+                            } catch (CameraAccessException e) {
+                                e.printStackTrace();
+                            }
+                        }
+                    });
+                }
+            }
+        });
+        return this.addFrameAnalyzer(detector);
+    }
+
+    /**
+     *      This method starts a MJPEG stream of the preview on a HTTP port, it can be watched with a browser (http://&lt;device&gt;:&lt;port&gt;/).
+     *      The stream uses the analysis stream, so it has its resolution. A slow viewer gets fewer frames, it never slows the camera or the other viewers
+     * <p>
+     *      The server only runs while the stream is started, the library declares the permission android.permission.INTERNET for it
+     * </p>
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param port the port, 0 for any free port
+     *      @return the port of the stream
+     *      @throws IOException is thrown, if the port can't be opened
+     *      @throws IllegalStateException is thrown, if the stream is already running
+     * </p>
+     */
+    public synchronized int startPreviewStream(int port) throws IOException, IllegalStateException {
+        if(this.mStreamAnalyzer != null) {
+            throw new IllegalStateException("The preview stream is already running!");
+        }
+
+        MjpegStreamServer server = new MjpegStreamServer();
+        int localPort = server.start(port);
+        this.mStreamAnalyzer = new MjpegStreamAnalyzer(server);
+        this.addFrameAnalyzer(this.mStreamAnalyzer);
+        return localPort;
+    }
+
+    /**
+     *      This method stops the preview stream and disconnects all viewers
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    public synchronized void stopPreviewStream() {
+        if(this.mStreamAnalyzer == null) {
+            return;
+        }
+        this.removeFrameAnalyzer(this.mStreamAnalyzer);
+        this.mStreamAnalyzer.getServer().stop();
+        this.mStreamAnalyzer.release();
+        this.mStreamAnalyzer = null;
+    }
+
+    /**
+     *      This method returns the sustained frames per second of the last finished burst (saved pictures per second from the start of the burst)
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @return the frames per second of the last burst, 0 if no burst was taken yet
+     * </p>
+     */
+    public double getLastBurstFramesPerSecond() {
+        return this.mLastBurstFramesPerSecond;
+    }
+
+    /**
+     *      This method sets the listener, that is informed when a burst is finished
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param listener the listener or null
+     * </p>
+     */
+    public void setOnBurstCompletedListener(OnBurstCompletedListener listener) {
+        this.mOnBurstCompletedListener = listener;
+    }
+
+    /**
+     *      This method is called in the background thread, after a picture of mImageReader is saved or dropped. The image is released, but a
+     *      picture, that is written atomically, is only finished when it is committed
+     * <p>
+     *      @version 1.3
+     * </p>
+     * <p>
+     *      @param timestamp the sensor timestamp of the picture
+     *      @param name the file name of the picture
+     *      @param output where the picture is stored, null if it isn't saved
+     *      @param saved true ... the picture is saved -- false ... the picture was dropped by the ImageWriterPool or couldn't be written
+     * </p>
+     */
+    private void onStillImageFinished(final long timestamp, final String name, final CaptureSink.Output output, boolean saved) {
+        this.mImagesInFlight.decrementAndGet();
+        if(saved && output.isPending()) {
+            BurstCapture burst = this.mBurstCapture;
+            if(burst != null) {
+                burst.onFrameWritten();
+            }
+            this.postWhenStored(output, new CaptureSink.Output.OnStoredListener() {
+                @Override
+                public void onStored(boolean stored) {
+                    onStillImageStored(timestamp, name, output, stored);
+                }
+            });
+            return;
+        }
+        this.onStillImageStored(timestamp, name, output, saved);
+    }
+
+    /**
+     *      This method finishes a picture of mImageReader, when it is stored or failed. It runs in the background thread
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param timestamp the sensor timestamp of the picture
+     *      @param name the file name of the picture
+     *      @param output where the picture is stored, null if it isn't saved
+     *      @param saved true ... the picture is stored -- false ... the picture was dropped, couldn't be written or couldn't be committed
+     * </p>
+     */
+    private void onStillImageStored(long timestamp, String name, CaptureSink.Output output, boolean saved) {
+        if(saved) {
+            this.mLatestUri = output.getUri();
+        }
+
+        PendingCapture capture = this.findPendingCapture(timestamp);
+        if(capture != null) {
+            capture.onImageFinished(name, output, saved);
+            return;
+        }
+
+        BurstCapture burst = this.mBurstCapture;
+        if(burst != null) {
+            burst.onFrameFinished(timestamp, name, saved);
+        }
+    }
+
+    /**
+     *      This method calls a listener in the background thread, when a pending picture is committed
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param output the output of the pending picture
+     *      @param listener the listener, it isn't called if the camera is closed meanwhile (the pending pictures are failed then)
+     * </p>
+     */
+    private void postWhenStored(CaptureSink.Output output, final CaptureSink.Output.OnStoredListener listener) {
+        output.whenStored(new CaptureSink.Output.OnStoredListener() {
+            @Override
+            public void onStored(final boolean stored) {
+                Handler handler = mBackgroundHandler;
+                if(handler != null) {
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.onStored(stored);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     *      This method returns the single picture, that was captured at a timestamp
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param timestamp the sensor timestamp of the picture
+     *      @return the state of the picture, null if it isn't a single picture (for example a picture of a burst)
+     * </p>
+     */
+    private PendingCapture findPendingCapture(long timestamp) {
+        synchronized(this.mPendingCaptures) {
+            for(PendingCapture capture : this.mPendingCaptures) {
+                if(capture.mTimestamp == timestamp) {
+                    return capture;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     *      This method fails the single pictures, that are not finished yet. It runs in the background thread
+     * <p>
+     *      @version 1.1
+     * </p>
+     * <p>
+     *      @param captures the pictures, the finished ones are skipped
+     *      @param failure the reason
+     * </p>
+     */
+    private void failPendingCaptures(List<PendingCapture> captures, PictureFailure failure) {
+        for(PendingCapture capture : captures) {
+            capture.fail(failure);
+        }
+    }
+
+    /**
+     *      This method returns the stages of the camera pipeline: the camera callbacks (background thread), the processing of the frames and the
+     *      writing of the pictures. Every stage reports its queue depth and service time, so the bottleneck can be found
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @return the stages in the order, a picture passes them
+     * </p>
+     */
+    public List<PipelineStage> getPipelineStages() {
+        return Arrays.asList(this.mCallbackStage, this.mProcessingStage, this.mImageWriterPool.getStage());
+    }
+
+    /**
+     *      This method configures the threads, that write the pictures. Pictures, that are already queued are still written by the old threads
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param threads the number of pictures, that are written at the same time
+     *      @param queueDepth the number of pictures, that can wait for a free thread
+     *      @param overflowPolicy what happens, if a picture is taken while the queue is full
+     *      @throws IllegalArgumentException is thrown if a passed argument is not valid
+     * </p>
+     */
+    public void setImageWriterConfig(int threads, int queueDepth, ImageWriterPool.OverflowPolicy overflowPolicy) throws IllegalArgumentException {
+        ImageWriterPool oldPool = this.mImageWriterPool;
+        this.mImageWriterPool = new ImageWriterPool(threads, queueDepth, overflowPolicy);
+        oldPool.shutdown();
+    }
+
+    /**
+     *      This method returns the pool, that writes the pictures. It provides the queue depth and the write latency
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @return the ImageWriterPool
+     * </p>
+     */
+    public ImageWriterPool getImageWriterPool() {
+        return this.mImageWriterPool;
+    }
+
+    /**
+     *      This method takes a picture with its own ImageReader and CameraCaptureSession. After the capture the preview session is created again.
+     *      The ImageReader is closed, when its picture is written or failed
+     * <p>
+     *      @version 1.6
+     * </p>
+     * <p>
+     *      @param listener the listener of the picture, it may be null
+     * @throws CameraAccessException is thrown, when the camera access is denied
+     * </p>
+     */
+    private void takePictureWithNewSession(OnPictureTakenListener listener) throws CameraAccessException {
+        // the sizes are cached, no need to ask the CameraManager on every picture
+        Size size = this.mCameraConfig != null ? this.chooseStillSize() : null;
+
+        int width = 1600;
+        int height = 1200;
+        if (size != null) {
+            width = size.getWidth();
+            height = size.getHeight();
+        }
+
+        final ImageReader imageReader = ImageReader.newInstance(width, height, ImageFormat.JPEG, 1);
+
+        final PendingCapture captureListener = new PendingCapture(listener, true) {
+            @Override
+            public void onCaptureCompleted(@NonNull CameraCaptureSession session, @NonNull CaptureRequest request, @NonNull TotalCaptureResult result) {
+                super.onCaptureCompleted(session, request, result);
+                createCameraPreviewSession();
+            }
+
+            @Override
+            public void onCaptureFailed(@NonNull CameraCaptureSession session, @NonNull CaptureRequest request, @NonNull CaptureFailure failure) {
+                super.onCaptureFailed(session, request, failure);
+                imageReader.close();
+                createCameraPreviewSession();
+            }
+        };
+        if(!this.reserveImage(captureListener)) {
+            imageReader.close();
+            return;
+        }
+
+        try {
+            List<Surface> outputSurface = new ArrayList<>(2);
+            outputSurface.add(imageReader.getSurface());
+            outputSurface.add(new Surface(mTextureView.getSurfaceTexture()));
+
+            final CaptureRequest.Builder captureBuilder = mCameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_STILL_CAPTURE);
+
+            captureBuilder.addTarget(imageReader.getSurface());
+            captureBuilder.set(CaptureRequest.CONTROL_MODE, CameraMetadata.CONTROL_MODE_AUTO);
+            captureBuilder.set(CaptureRequest.JPEG_ORIENTATION, this.getJpegOrientation());
+            this.applyJpegSettings(captureBuilder);
+            this.applyCropRegion(captureBuilder);
+
+            // the reader only delivers this picture, it is closed with the image after the picture is written
+            imageReader.setOnImageAvailableListener(new ImageReader.OnImageAvailableListener() {
+                @Override
+                public void onImageAvailable(ImageReader reader) {
+                    Image image = reader.acquireNextImage();
+                    if(image != null) {
+                        mOnStillFrameListener.onFrame(ImageFrame.ofSingleImageReader(image, reader));
+                    }
+                }
+            }, this.mBackgroundHandler);
+
+            mCameraDevice.createCaptureSession(outputSurface, new CameraCaptureSession.StateCallback() {
+                @Override
+                public void onConfigured(@NonNull CameraCaptureSession session) {
+                    try {
+                        session.capture(captureBuilder.build(), captureListener, mBackgroundHandler);
+                    } catch (CameraAccessException e) {
+                        e.printStackTrace();
+                        mImagesInFlight.decrementAndGet();
+                        imageReader.close();
+                        captureListener.fail(PictureFailure.CAPTURE_FAILED);
+                    }
+                }
+
+                @Override
+                public void onConfigureFailed(@NonNull CameraCaptureSession session) {
+                    mImagesInFlight.decrementAndGet();
+                    imageReader.close();
+                    captureListener.fail(PictureFailure.CAPTURE_FAILED);
+                }
+            }, mBackgroundHandler);
+
+        } catch (CameraAccessException e) {
+            this.mImagesInFlight.decrementAndGet();
+            imageReader.close();
+            captureListener.remove();
+            throw e;
+        }
+    }
+
+    /**
+     *      This method creates the name of a new picture, the CaptureSink decides where it is stored
+     * <p>
+     *      @version 2.1
+     * </p>
+     * <p>
+     *      @return the name of the picture
+     * </p>
+     */
+    private String createImageName() {
+        this.seedFileNames();
+        return this.mFileNames.next(System.currentTimeMillis());
+    }
+
+    /**
+     *      This method continues the file names after the pictures in the folder of the CaptureSink, so pictures of earlier sessions aren't
+     *      overwritten. Every folder is only listed once
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    private void seedFileNames() {
+        CaptureSink sink = this.mCaptureSink;
+        if(!(sink instanceof FileCaptureSink)) {
+            return;     // the MediaStore finds unique names itself
+        }
+
+        File folder = ((FileCaptureSink) sink).getFolder();
+        if(!folder.equals(this.mFileNamesFolder)) {
+            this.mFileNames.seed(folder);
+            this.mFileNamesFolder = folder;
+        }
+    }
+
+    /**
+     *      This method sets how the written pictures are published to the system (MediaScanner, MediaStore or not at all)
+     * <p>
+     *      The pictures, that are written within the time window (or a burst) are published with a single call
+     * </p>
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param mode how the pictures are published
+     *      @param windowMillis the time in milliseconds pictures are collected, before they are published
+     * </p>
+     */
+    public void setMediaScanConfig(MediaScanCoalescer.Mode mode, long windowMillis) {
+        this.mMediaScanCoalescer.setConfig(mode, windowMillis);
+    }
+
+    /**
+     *      This method returns the MediaScanCoalescer, it provides the number of calls to the MediaScanner / MediaStore
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @return the MediaScanCoalescer
+     * </p>
+     */
+    public MediaScanCoalescer getMediaScanCoalescer() {
+        return this.mMediaScanCoalescer;
+    }
+
+    /**
+     *      This method returns the latencies of the camera pipeline. A snapshot with percentiles is created via {@link CaptureMetrics#snapshot()},
+     *      a listener for every measured latency can be set via {@link CaptureMetrics#setListener(CaptureMetrics.Listener)}
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @return the CaptureMetrics
+     * </p>
+     */
+    public CaptureMetrics getCaptureMetrics() {
+        return this.mMetrics;
+    }
+
+    /**
+     *      This method returns the URI / path of the most recent picture. If pictures overlap, use {@link #takePicture(OnPictureTakenListener)} to get the URI of each picture
+     * <p>
+     *      @version 1.1
+     * </p>
+     * <p>
+     *      @return the URI from the most recent picture, null if no picture is saved yet or the pictures are kept in memory
+     * </p>
+     */
+    public Uri returnLatestFileUri() {
+        return this.mLatestUri;
+    }
+
+
+    // *************************************************************** Class Section ***************************************************************
+
+
+    /**
+     *      This class handles a running burst. All methods are called in the background thread
+     * <p>
+     *      @version 1.1
+     *      @since 1.4
+     * </p>
+     */
+    private class BurstCapture extends CameraCaptureSession.CaptureCallback {
+        private final int mFrameCount;
+        /**
+         * selects the pictures of a best shot burst, null if all pictures are saved
+         */
+        private final BestShotSelector mSelector;
+        /**
+         * the request of the pictures, it is built again when the adaptive JPEG quality changes during the burst
+         */
+        private final CaptureRequest.Builder mRequestBuilder;
+        private CaptureRequest mRequest;
+        private int mRequestQuality;
+        private final long mStartNanos = SystemClock.elapsedRealtimeNanos();
+        private final HashSet<Long> mPendingTimestamps = new HashSet<>();
+        /**
+         * the metadata and the names of the saved pictures, that wait for each other to be recorded in the capture journal
+         */
+        private final HashMap<Long, TotalCaptureResult> mUnrecordedResults = new HashMap<>();
+        private final HashMap<Long, String> mUnrecordedNames = new HashMap<>();
+        /**
+         * the times the requests were submitted by the sequence ID of captureBurst(). An entry is removed, when all results of its requests arrived
+         */
+        private final HashMap<Integer, SubmittedRequests> mSubmittedRequests = new HashMap<>();
+        private int mSubmitted;
+        private int mSaved;
+        private int mFailed;
+
+        BurstCapture(int frameCount, CaptureRequest.Builder requestBuilder, BestShotSelector selector) {
+            this.mFrameCount = frameCount;
+            this.mSelector = selector;
+            this.mRequestBuilder = requestBuilder;
+            this.mRequestQuality = mJpegQuality.getQuality();
+            this.mRequest = requestBuilder.build();
+        }
+
+        /**
+         * requests as many pictures as the ImageReader can take at the moment
+         */
+        void submitFrames() {
+            if(mCaptureSession == null) {
+                this.onFramesFailed(this.mFrameCount - this.mSubmitted);
+                this.mSubmitted = this.mFrameCount;
+                this.finishIfDone();
+                return;
+            }
+
+            int quality = mJpegQuality.getQuality();
+            if(quality != this.mRequestQuality) {
+                this.mRequestBuilder.set(CaptureRequest.JPEG_QUALITY, (byte) quality);
+                this.mRequest = this.mRequestBuilder.build();
+                this.mRequestQuality = quality;
+            }
+
+            List<CaptureRequest> requests = new ArrayList<>();
+            while(this.mSubmitted + requests.size() < this.mFrameCount && mImagesInFlight.get() < mMaxImages) {
+                mImagesInFlight.incrementAndGet();
+                requests.add(this.mRequest);
+            }
+            if(requests.isEmpty()) {
+                return;
+            }
+
+            long now = System.nanoTime();
+            this.mSubmitted += requests.size();
+            try {
+                // the callbacks run in this thread, so the requests are recorded before their first result arrives
+                int sequenceId = mCaptureSession.captureBurst(requests, this, mBackgroundHandler);
+                this.mSubmittedRequests.put(sequenceId, new SubmittedRequests(now, requests.size()));
+            } catch (CameraAccessException e) {
+                e.printStackTrace();
+                mImagesInFlight.addAndGet(-requests.size());
+                this.onFramesFailed(requests.size());
+                this.finishIfDone();
+            }
+        }
+
+        /**
+         * the image of a picture, that is written atomically, is released. The next pictures can be requested, before the picture is committed
+         */
+        void onFrameWritten() {
+            this.submitFrames();
+            if(this.mSubmitted == this.mFrameCount && mImagesInFlight.get() == 0) {
+                mCaptureSink.flush();    // all pictures of the burst are written, they are committed right away
+            }
+        }
+
+        void onFrameFinished(long timestamp, String name, boolean saved) {
+            if(!this.mPendingTimestamps.remove(timestamp)) {
+                return;     // a single picture, that was taken during the burst
+            }
+
+            TotalCaptureResult result = this.mUnrecordedResults.remove(timestamp);
+            if(saved) {
+                this.mSaved++;
+                if(result != null) {
+                    recordCapture(timestamp, name, result);
+                } else {
+                    this.mUnrecordedNames.put(timestamp, name);    // the metadata arrives later
+                }
+            } else {
+                this.mFailed++;
+            }
+            this.finishIfDone();
+            this.submitFrames();
+        }
+
+        /**
+         * counts pictures, for which no image will arrive
+         */
+        private void onFramesFailed(int count) {
+            this.mFailed += count;
+            for(int i = 0; this.mSelector != null && i < count; i++) {
+                this.mSelector.onFrameFailed();
+            }
+        }
+
+        /**
+         * counts the result of a request and returns the time the request was submitted, or 0 if the request is unknown
+         */
+        private long onResult(int sequenceId) {
+            SubmittedRequests submitted = this.mSubmittedRequests.get(sequenceId);
+            if(submitted == null) {
+                return 0;
+            }
+            if(--submitted.mRemaining == 0) {
+                this.mSubmittedRequests.remove(sequenceId);
+            }
+            return submitted.mShutterNanos;
+        }
+
+        private void finishIfDone() {
+            if(this.mSaved + this.mFailed < this.mFrameCount || mBurstCapture != this) {
+                return;
+            }
+
+            long durationNanos = SystemClock.elapsedRealtimeNanos() - this.mStartNanos;
+            mLastBurstFramesPerSecond = durationNanos > 0 ? this.mSaved * 1e9 / durationNanos : 0;
+            mBurstCapture = null;
+            mCaptureSink.flush();    // the pictures of the burst are published right away
+
+            showToast("Saved " + this.mSaved + " pictures!");
+            if(mOnBurstCompletedListener != null) {
+                mOnBurstCompletedListener.onBurstCompleted(this.mSaved, mLastBurstFramesPerSecond);
+            }
+        }
+
+        @Override
+        public void onCaptureStarted(@NonNull CameraCaptureSession session, @NonNull CaptureRequest request, long timestamp, long frameNumber) {
+            this.mPendingTimestamps.add(timestamp);
+            if(this.mSelector != null) {
+                this.mSelector.expect(timestamp);
+            }
+        }
+
+        @Override
+        public void onCaptureCompleted(@NonNull CameraCaptureSession session, @NonNull CaptureRequest request, @NonNull TotalCaptureResult result) {
+            long shutterNanos = this.onResult(result.getSequenceId());
+            if(shutterNanos != 0) {
+                mMetrics.recordSince(CaptureMetrics.Stage.SHUTTER_TO_CAPTURE_COMPLETED, shutterNanos);
+            }
+
+            Long timestamp = result.get(CaptureResult.SENSOR_TIMESTAMP);
+            if(timestamp == null || mCaptureJournal == null) {
+                return;
+            }
+            String name = this.mUnrecordedNames.remove(timestamp);
+            if(name != null) {
+                recordCapture(timestamp, name, result);
+            } else if(this.mPendingTimestamps.contains(timestamp)) {
+                this.mUnrecordedResults.put(timestamp, result);     // the picture isn't saved yet
+            }
+        }
+
+        @Override
+        public void onCaptureFailed(@NonNull CameraCaptureSession session, @NonNull CaptureRequest request, @NonNull CaptureFailure failure) {
+            mImagesInFlight.decrementAndGet();    // no image will arrive for this request
+            this.onResult(failure.getSequenceId());
+            this.onFramesFailed(1);
+            this.finishIfDone();
+            this.submitFrames();
+        }
+    }
+
+
+    /**
+     *      This class contains the requests of one captureBurst() call of a burst, that wait for their results
+     * <p>
+     *      @version 1.0
+     *      @since 1.4
+     * </p>
+     */
+    private static class SubmittedRequests {
+        private final long mShutterNanos;
+        private int mRemaining;
+
+        SubmittedRequests(long shutterNanos, int count) {
+            this.mShutterNanos = shutterNanos;
+            this.mRemaining = count;
+        }
+    }
+
+
+    /**
+     *      This class saves a picture of mImageReader and informs the background thread, when the picture is saved or dropped
+     * <p>
+     *      @version 1.1
+     *      @since 1.4
+     * </p>
+     */
+    private class StillImageSaveTask implements ImageWriterPool.WriteTask {
+        private final FrameSaver mSaver;
+        private final long mTimestamp;
+
+        StillImageSaveTask(FrameSaver saver, long timestamp) {
+            this.mSaver = saver;
+            this.mTimestamp = timestamp;
+        }
+
+        @Override
+        public void run() {
+            long startNanos = System.nanoTime();
+            try {
+                this.mSaver.run();
+            } finally {
+                mJpegQuality.onPictureWritten(System.nanoTime() - startNanos, mImageWriterPool.getThreadCount());
+                this.finish(true);
+            }
+        }
+
+        @Override
+        public void discard() {
+            try {
+                this.mSaver.discard();
+            } finally {
+                this.finish(false);
+            }
+        }
+
+        private void finish(final boolean saved) {
+            Handler handler = mBackgroundHandler;
+            if(handler == null || !handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onStillImageFinished(mTimestamp, mSaver.getName(), mSaver.getOutput(), saved && mSaver.isWritten());
+                }
+            })) {
+                mImagesInFlight.decrementAndGet();  // the camera is already closed
+            }
+        }
+    }
+
+
+    /**
+     *      This class saves a picture of the zero shutter lag ring and informs the background thread, when the picture is saved or dropped.
+     *      A picture, that is written atomically, is finished when it is committed
+     * <p>
+     *      @version 1.1
+     *      @since 1.4
+     * </p>
+     */
+    private class ZslSaveTask implements ImageWriterPool.WriteTask {
+        private final FrameSaver mSaver;
+        private final PendingCapture mCapture;
+
+        ZslSaveTask(FrameSaver saver, PendingCapture capture) {
+            this.mSaver = saver;
+            this.mCapture = capture;
+        }
+
+        @Override
+        public void run() {
+            long startNanos = System.nanoTime();
+            try {
+                this.mSaver.run();
+            } finally {
+                mJpegQuality.onPictureWritten(System.nanoTime() - startNanos, mImageWriterPool.getThreadCount());
+                this.finish(true);
+            }
+        }
+
+        @Override
+        public void discard() {
+            try {
+                this.mSaver.discard();
+            } finally {
+                this.finish(false);
+            }
+        }
+
+        private void finish(final boolean saved) {
+            Handler handler = mBackgroundHandler;
+            if(handler != null) {
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(mZslPendingSaves > 0) {
+                            mZslPendingSaves--;
+                        }
+                        final CaptureSink.Output output = mSaver.getOutput();
+                        boolean written = saved && mSaver.isWritten();
+                        if(written && output.isPending()) {
+                            postWhenStored(output, new CaptureSink.Output.OnStoredListener() {
+                                @Override
+                                public void onStored(boolean stored) {
+                                    onPictureStored(output, stored);
+                                }
+                            });
+                        } else {
+                            onPictureStored(output, written);
+                        }
+                    }
+                });
+            }
+        }
+
+        /**
+         * finishes the capture, when the picture is stored or failed. It runs in the background thread
+         */
+        private void onPictureStored(CaptureSink.Output output, boolean stored) {
+            if(stored) {
+                mLatestUri = output.getUri();
+            }
+            mCapture.onImageFinished(this.mSaver.getName(), output, stored);
+        }
+    }
+
+
+    /**
+     *      This class contains the state of a single picture. It receives the callbacks of the capture request and is informed, when the picture is written.
+     *      When both the metadata and the file are available, the listener of the picture is called. All callbacks run in the background thread
+     * <p>
+     *      @version 1.0
+     *      @since 1.4
+     * </p>
+     */
+    private class PendingCapture extends CameraCaptureSession.CaptureCallback {
+        private final OnPictureTakenListener mListener;
+        /**
+         * false ... there is no capture request for this picture (zero shutter lag), so there is no metadata
+         */
+        private final boolean mExpectsResult;
+        /**
+         * the time (System.nanoTime()) the picture was requested
+         */
+        private final long mShutterNanos = System.nanoTime();
+        /**
+         * the sensor timestamp of the picture, -1 until the capture is started. It is used to find the picture, when its image is written
+         */
+        private volatile long mTimestamp = -1;
+        private TotalCaptureResult mResult;
+        private CaptureSink.Output mOutput;
+        private String mName;
+        private boolean mImageFinished;
+        private boolean mSaved;
+
+        PendingCapture(OnPictureTakenListener listener, boolean expectsResult) {
+            this.mListener = listener;
+            this.mExpectsResult = expectsResult;
+
+            synchronized(mPendingCaptures) {
+                mPendingCaptures.add(this);
+            }
+        }
+
+        @Override
+        public void onCaptureStarted(@NonNull CameraCaptureSession session, @NonNull CaptureRequest request, long timestamp, long frameNumber) {
+            this.mTimestamp = timestamp;
+        }
+
+        @Override
+        public void onCaptureCompleted(@NonNull CameraCaptureSession session, @NonNull CaptureRequest request, @NonNull TotalCaptureResult result) {
+            mMetrics.recordSince(CaptureMetrics.Stage.SHUTTER_TO_CAPTURE_COMPLETED, this.mShutterNanos);
+            showToast("Saved!");
+
+            this.mResult = result;
+            this.completeIfReady();
+        }
+
+        @Override
+        public void onCaptureFailed(@NonNull CameraCaptureSession session, @NonNull CaptureRequest request, @NonNull CaptureFailure failure) {
+            mImagesInFlight.decrementAndGet();    // no image will arrive for this request
+            this.fail(PictureFailure.CAPTURE_FAILED);
+        }
+
+        void onImageFinished(String name, CaptureSink.Output output, boolean saved) {
+            this.mName = name;
+            this.mOutput = output;
+            this.mSaved = saved;
+            this.mImageFinished = true;
+            this.completeIfReady();
+        }
+
+        private void completeIfReady() {
+            if(!this.mImageFinished || (this.mExpectsResult && this.mResult == null)) {
+                return;
+            }
+            if(!this.mSaved) {
+                this.fail(PictureFailure.NOT_SAVED);
+                return;
+            }
+
+            if(!this.remove()) {
+                return;
+            }
+            recordCapture(this.mTimestamp, this.mName, this.mResult);
+            if(this.mListener != null) {
+                this.mListener.onPictureTaken(new PictureResult(this.mOutput, this.mTimestamp, this.mResult));
+            }
+        }
+
+        void fail(PictureFailure failure) {
+            if(this.remove() && this.mListener != null) {
+                this.mListener.onPictureFailed(failure);
+            }
+        }
+
+        /**
+         * @return true ... the picture was pending -- false ... it is already finished
+         */
+        boolean remove() {
+            synchronized(mPendingCaptures) {
+                return mPendingCaptures.remove(this);
+            }
+        }
+    }
+
+
+    // *************************************************************** Interface Section ***************************************************************
+
+
+    /**
+     *      Listener, that is informed when a picture of {@link #takePicture(OnPictureTakenListener)} is saved or failed. It is called in the background thread
+     * <p>
+     *      @since 1.4
+     * </p>
+     */
+    public interface OnPictureTakenListener {
+        /**
+         * @param result the file, the timestamp and the metadata of the picture
+         */
+        void onPictureTaken(@NonNull PictureResult result);
+
+        /**
+         * @param failure the reason, why the picture wasn't saved
+         */
+        void onPictureFailed(@NonNull PictureFailure failure);
+    }
+
+
+    /**
+     *      Listener, that is informed when a burst is finished. It is called in the background thread
+     * <p>
+     *      @since 1.4
+     * </p>
+     */
+    public interface OnBurstCompletedListener {
+        /**
+         * @param savedFrames the number of pictures of the burst, that are saved
+         * @param framesPerSecond the sustained frames per second of the burst
+         */
+        void onBurstCompleted(int savedFrames, double framesPerSecond);
+    }
+
+
+    // *************************************************************** Enum Section ***************************************************************
+
+
+    /**
+     *      This enum contains the reasons, why a picture of {@link #takePicture(OnPictureTakenListener)} wasn't saved
+     * <p>
+     *      @since 1.4
+     * </p>
+     */
+    public enum PictureFailure {
+        /**
+         * the camera couldn't capture the picture
+         */
+        CAPTURE_FAILED,
+        /**
+         * the picture was captured, but it was dropped by the ImageWriterPool or couldn't be written
+         */
+        NOT_SAVED,
+        /**
+         * the camera was closed before the picture was saved
+         */
+        CAMERA_CLOSED,
+        /**
+         * all images of the camera are held by pictures, that are still captured or written
+         */
+        BUSY
+    }
+
+    /**
+     *      This enum contains the lifecycle states of the camera
+     * <p>
+     *      @since 1.4
+     * </p>
+     */
+    public enum CameraState {
+        /**
+         * the camera is closed
+         */
+        CLOSED,
+        /**
+         * the camera is requested, but not opened yet
+         */
+        OPENING,
+        /**
+         * the camera is open, but there is no session
+         */
+        OPEN,
+        /**
+         * the preview session is created
+         */
+        CONFIGURING,
+        /**
+         * the preview is running, pictures can be taken
+         */
+        STREAMING,
+        /**
+         * the camera is closing
+         */
+        CLOSING
+    }
 
     /**
      *      This enum contains the valid mime_Types
@@ -0,0 +1,642 @@
+package com.example.cameralib;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+
+/**
+ *      This class keeps an index of the pictures in a folder (name, size and time), so the folder never has to be listed to find the oldest pictures.
+ *      The index is kept in memory and persisted in the hidden file {@value #INDEX_NAME} of the folder. If there is no index yet, the folder is
+ *      listed once to create it. When an index is loaded, it is reconciled with the names of the folder, so pictures, that were written or deleted
+ *      while no catalog was attached, are counted correctly. Only the pictures, that aren't indexed, are read
+ * <p>
+ *      A storage quota (bytes and/or number of pictures) can be set. When it is exceeded, the oldest pictures are deleted in the background
+ * </p>
+ * <p>
+ *      All changes run on one background thread: {@link #add(String, long)} only queues the picture, so the threads, that write the pictures, never
+ *      wait for the index or the eviction. The index is an append-only log of added and removed pictures, it is compacted when it contains more
+ *      removed than existing pictures
+ * </p>
+ * <p>
+ *      @version 1.1
+ *      @since 1.4
+ * </p>
+ */
+public final class CaptureCatalog {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    /**
+     * the name of the index file in the folder. Files starting with a dot are ignored by the MediaScanner
+     */
+    static final String INDEX_NAME = ".catalog";
+
+    private static final int MAGIC = 0x43434154;       // "CCAT"
+    private static final int VERSION = 1;
+    private static final byte RECORD_ADD = 1;
+    private static final byte RECORD_REMOVE = 2;
+
+    /**
+     * the index is only compacted, if it contains at least this many removed pictures
+     */
+    private static final int MIN_COMPACT_RECORDS = 256;
+
+    /**
+     * accepts the pictures of the folder, hidden files (the index, pictures that aren't committed yet) are ignored
+     */
+    private static final FilenameFilter PICTURE_FILTER = new FilenameFilter() {
+        @Override
+        public boolean accept(File dir, String name) {
+            return !name.startsWith(".") && name.toLowerCase().endsWith(".jpg");
+        }
+    };
+
+    private final File mFolder;
+    private final File mIndexFile;
+
+    /**
+     * the thread, that changes the index and deletes the pictures
+     */
+    private final ScheduledThreadPoolExecutor mExecutor;
+
+    /**
+     * the pictures from the oldest to the newest. Only changed by the thread of the executor, read with its lock
+     */
+    private final ArrayDeque<Entry> mEntries = new ArrayDeque<>();
+
+    /**
+     * the pictures by their names. Only used by the thread of the executor
+     */
+    private final HashMap<String, Entry> mEntriesByName = new HashMap<>();
+    private volatile long mTotalBytes;
+    private volatile int mCount;
+
+    /**
+     * the number of removed pictures in the index file
+     */
+    private int mRemovedRecords;
+
+    /**
+     * the quota, 0 ... no limit
+     */
+    private volatile long mMaxBytes;
+    private volatile int mMaxCount;
+
+    @Nullable
+    private volatile Listener mListener;
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    /**
+     *      The constructor for a CaptureCatalog. The index is loaded in the background
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param folder the folder of the pictures
+     * </p>
+     */
+    public CaptureCatalog(@NonNull File folder) {
+        this.mFolder = folder;
+        this.mIndexFile = new File(folder, INDEX_NAME);
+        this.mExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "CameraCatalog");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.mExecutor.setKeepAliveTime(5, TimeUnit.SECONDS);
+        this.mExecutor.allowCoreThreadTimeOut(true);
+
+        this.mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    /**
+     *      This method adds a written picture. The oldest pictures are deleted, if the quota is exceeded
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param name the file name of the picture in the folder
+     *      @param size the size of the picture in bytes
+     * </p>
+     */
+    public void add(@NonNull final String name, final long size) {
+        final long time = System.currentTimeMillis();
+        this.mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if(!new File(mFolder, name).exists()) {
+                    return;     // the picture was listed while the index was created and is already evicted
+                }
+
+                Entry entry = new Entry(name, size, time);
+                Entry replaced = mEntriesByName.put(name, entry);
+                synchronized(mEntries) {
+                    // a picture, that was written while the folder was listed, or an overwritten picture is only counted once
+                    if(replaced != null && mEntries.remove(replaced)) {
+                        mTotalBytes -= replaced.mSize;
+                        mCount--;
+                    }
+                    mEntries.addLast(entry);
+                }
+                mTotalBytes += size;
+                mCount++;
+                appendRecords(Arrays.asList(entry), RECORD_ADD);
+                evict();
+            }
+        });
+    }
+
+    /**
+     *      This method sets the storage quota. When it is exceeded, the oldest pictures are deleted until the quota is met
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param maxBytes the maximum size of all pictures in bytes, 0 ... no limit
+     *      @param maxCount the maximum number of pictures, 0 ... no limit
+     *      @throws IllegalArgumentException is thrown, if a value is negative
+     * </p>
+     */
+    public void setQuota(long maxBytes, int maxCount) throws IllegalArgumentException {
+        if(maxBytes < 0 || maxCount < 0) {
+            throw new IllegalArgumentException("The quota must not be negative!");
+        }
+        this.mMaxBytes = maxBytes;
+        this.mMaxCount = maxCount;
+        this.mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                evict();
+            }
+        });
+    }
+
+    /**
+     *      This method sets the listener, that is informed about deleted pictures, for example to remove them from the MediaStore
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param listener the listener or null, it is called in the background thread of the catalog
+     * </p>
+     */
+    public void setListener(@Nullable Listener listener) {
+        this.mListener = listener;
+    }
+
+    /**
+     * @return the number of pictures in the catalog
+     */
+    public int getCount() {
+        return this.mCount;
+    }
+
+    /**
+     * @return the size of all pictures in the catalog in bytes
+     */
+    public long getTotalBytes() {
+        return this.mTotalBytes;
+    }
+
+    /**
+     * @return the pictures from the oldest to the newest
+     */
+    @NonNull
+    public List<Entry> getEntries() {
+        synchronized(this.mEntries) {
+            return new ArrayList<>(this.mEntries);
+        }
+    }
+
+    /**
+     * @return the folder of the pictures
+     */
+    @NonNull
+    public File getFolder() {
+        return this.mFolder;
+    }
+
+    /**
+     *      This method waits until all changes, that were requested before, are done
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param timeout the maximum time to wait
+     *      @param unit the unit of the timeout
+     *      @return true ... the catalog is idle -- false ... the timeout elapsed
+     *      @throws InterruptedException is thrown, if the waiting thread is interrupted
+     * </p>
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            // the executor has one thread, so this task runs after all changes, that were requested before
+            this.mExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get(timeout, unit);
+            return true;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    /**
+     *      This method loads the index. If there is no index or it can't be read, the folder is listed once and the index is created again.
+     *      A loaded index is reconciled with the folder. It runs in the background thread
+     * <p>
+     *      @version 1.1
+     * </p>
+     */
+    private void load() {
+        HashMap<String, Entry> entries = new HashMap<>();
+        List<Entry> order = new ArrayList<>();
+        boolean complete = false;
+
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(this.mIndexFile)));
+            try {
+                if(input.readInt() != MAGIC || input.readInt() != VERSION) {
+                    throw new IOException(this.mIndexFile + " isn't a capture catalog");
+                }
+                while(true) {
+                    int type = input.read();
+                    if(type < 0) {
+                        complete = true;
+                        break;
+                    }
+                    String name = input.readUTF();
+                    if(type == RECORD_ADD) {
+                        Entry entry = new Entry(name, input.readLong(), input.readLong());
+                        entries.put(name, entry);
+                        order.add(entry);
+                    } else if(type == RECORD_REMOVE) {
+                        entries.remove(name);
+                        this.mRemovedRecords++;
+                    } else {
+                        break;      // a broken record
+                    }
+                }
+            } catch (EOFException e) {
+                // the last record is incomplete (the app was killed while writing it), the index is written again
+            } finally {
+                input.close();
+            }
+        } catch (FileNotFoundException e) {
+            order = this.listFolder();
+            for(Entry entry : order) {
+                entries.put(entry.mName, entry);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            entries.clear();
+            order = this.listFolder();
+            for(Entry entry : order) {
+                entries.put(entry.mName, entry);
+            }
+        }
+
+        // only the last add of a name counts, if the picture was removed its add doesn't count at all
+        List<Entry> pictures = new ArrayList<>(entries.size());
+        for(Entry entry : order) {
+            if(entries.get(entry.mName) == entry) {
+                pictures.add(entry);
+            }
+        }
+
+        // pictures may be written or deleted while no catalog is attached to the folder
+        if(complete) {
+            List<Entry> reconciled = this.reconcile(pictures);
+            if(reconciled != null) {
+                pictures = reconciled;
+                complete = false;       // the index is written again
+            }
+        }
+
+        long totalBytes = 0;
+        synchronized(this.mEntries) {
+            for(Entry entry : pictures) {
+                this.mEntries.addLast(entry);
+                this.mEntriesByName.put(entry.mName, entry);
+                totalBytes += entry.mSize;
+            }
+            this.mCount = this.mEntries.size();
+        }
+        this.mTotalBytes = totalBytes;
+
+        if(!complete) {
+            this.compact();
+        }
+        this.evict();
+    }
+
+    /**
+     *      This method compares the indexed pictures with the pictures of the folder. Pictures, that aren't in the index anymore, are removed,
+     *      pictures, that aren't indexed, are added by the time they were modified
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param pictures the indexed pictures from the oldest to the newest
+     *      @return the pictures of the folder from the oldest to the newest, null if the index matches the folder
+     * </p>
+     */
+    @Nullable
+    private List<Entry> reconcile(List<Entry> pictures) {
+        String[] names = this.mFolder.list(PICTURE_FILTER);
+        if(names == null) {
+            return null;        // the folder can't be read, the index is kept
+        }
+
+        HashSet<String> indexed = new HashSet<>(pictures.size() * 2);
+        for(Entry entry : pictures) {
+            indexed.add(entry.mName);
+        }
+
+        // only the pictures, that aren't indexed, are read
+        List<Entry> reconciled = new ArrayList<>(names.length);
+        List<Entry> added = new ArrayList<>();
+        Arrays.sort(names);
+        for(String name : names) {
+            if(!indexed.contains(name)) {
+                File file = new File(this.mFolder, name);
+                added.add(new Entry(name, file.length(), file.lastModified()));
+            }
+        }
+        for(Entry entry : pictures) {
+            if(Arrays.binarySearch(names, entry.mName) >= 0) {
+                reconciled.add(entry);
+            }
+        }
+        if(added.isEmpty() && reconciled.size() == pictures.size()) {
+            return null;
+        }
+
+        reconciled.addAll(added);
+        // the sort is stable, so pictures with the same time keep the order of the index and the names
+        Collections.sort(reconciled, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry first, Entry second) {
+                return Long.compare(first.mTime, second.mTime);
+            }
+        });
+        return reconciled;
+    }
+
+    /**
+     *      This method lists the pictures of the folder. It is only used, when there is no index yet
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @return the pictures sorted by name. The names of the pictures sort by the time they were taken
+     * </p>
+     */
+    private List<Entry> listFolder() {
+        File[] files = this.mFolder.listFiles(PICTURE_FILTER);
+        if(files == null) {
+            return new ArrayList<>();
+        }
+
+        Arrays.sort(files);
+        List<Entry> entries = new ArrayList<>(files.length);
+        for(File file : files) {
+            entries.add(new Entry(file.getName(), file.length(), file.lastModified()));
+        }
+        return entries;
+    }
+
+    /**
+     *      This method deletes the oldest pictures, until the quota is met. It runs in the background thread
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    private void evict() {
+        long maxBytes = this.mMaxBytes;
+        int maxCount = this.mMaxCount;
+        List<Entry> evicted = new ArrayList<>();
+        List<File> deleted = new ArrayList<>();
+
+        while((maxBytes > 0 && this.mTotalBytes > maxBytes) || (maxCount > 0 && this.mCount > maxCount)) {
+            Entry oldest;
+            synchronized(this.mEntries) {
+                oldest = this.mEntries.pollFirst();
+            }
+            if(oldest == null) {
+                break;
+            }
+            this.mEntriesByName.remove(oldest.mName);
+            this.mTotalBytes -= oldest.mSize;
+            this.mCount--;
+            evicted.add(oldest);
+
+            File file = new File(this.mFolder, oldest.mName);
+            if(file.delete()) {
+                deleted.add(file);
+            }       // otherwise the picture was already deleted by someone else
+        }
+
+        if(evicted.isEmpty()) {
+            return;
+        }
+        this.mRemovedRecords += evicted.size();
+        if(this.mRemovedRecords >= MIN_COMPACT_RECORDS && this.mRemovedRecords > this.mCount) {
+            this.compact();
+        } else {
+            this.appendRecords(evicted, RECORD_REMOVE);
+        }
+
+        Listener listener = this.mListener;
+        if(listener != null && !deleted.isEmpty()) {
+            listener.onEvicted(deleted);
+        }
+    }
+
+    /**
+     *      This method appends records to the index file
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param entries the pictures
+     *      @param type RECORD_ADD or RECORD_REMOVE
+     * </p>
+     */
+    private void appendRecords(List<Entry> entries, byte type) {
+        boolean exists = this.mIndexFile.exists();
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.mIndexFile, true)));
+            try {
+                if(!exists) {
+                    output.writeInt(MAGIC);
+                    output.writeInt(VERSION);
+                }
+                for(Entry entry : entries) {
+                    writeRecord(output, entry, type);
+                }
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     *      This method writes the index again with only the existing pictures. The new index is written to a temporary file and renamed, so
+     *      there is always a complete index. It runs in the background thread
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    private void compact() {
+        File temp = new File(this.mFolder, INDEX_NAME + ".tmp");
+        try {
+            //noinspection ResultOfMethodCallIgnored
+            this.mFolder.mkdirs();
+            FileOutputStream file = new FileOutputStream(temp);
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file));
+            try {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                synchronized(this.mEntries) {
+                    Iterator<Entry> entries = this.mEntries.iterator();
+                    while(entries.hasNext()) {
+                        writeRecord(output, entries.next(), RECORD_ADD);
+                    }
+                }
+                output.flush();
+                file.getFD().sync();
+            } finally {
+                output.close();
+            }
+            if(!temp.renameTo(this.mIndexFile)) {
+                throw new IOException("The index can't be renamed to " + this.mIndexFile);
+            }
+            this.mRemovedRecords = 0;
+        } catch (IOException e) {
+            e.printStackTrace();
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+        }
+    }
+
+    private static void writeRecord(DataOutputStream output, Entry entry, byte type) throws IOException {
+        output.writeByte(type);
+        output.writeUTF(entry.mName);
+        if(type == RECORD_ADD) {
+            output.writeLong(entry.mSize);
+            output.writeLong(entry.mTime);
+        }
+    }
+
+
+    // *************************************************************** Class Section ***************************************************************
+
+
+    /**
+     *      This class contains a picture of the catalog
+     * <p>
+     *      @version 1.0
+     *      @since 1.4
+     * </p>
+     */
+    public static final class Entry {
+        private final String mName;
+        private final long mSize;
+        private final long mTime;
+
+        Entry(String name, long size, long time) {
+            this.mName = name;
+            this.mSize = size;
+            this.mTime = time;
+        }
+
+        /**
+         * @return the file name of the picture
+         */
+        @NonNull
+        public String getName() {
+            return this.mName;
+        }
+
+        /**
+         * @return the size of the picture in bytes
+         */
+        public long getSize() {
+            return this.mSize;
+        }
+
+        /**
+         * @return the time (System.currentTimeMillis()) the picture was added
+         */
+        public long getTime() {
+            return this.mTime;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return this.mName + " (" + this.mSize + " bytes)";
+        }
+    }
+
+
+    // *************************************************************** Interface Section ***************************************************************
+
+
+    /**
+     *      Listener, that is informed when pictures are deleted because of the quota. It is called in the background thread of the catalog
+     * <p>
+     *      @since 1.4
+     * </p>
+     */
+    public interface Listener {
+        /**
+         * @param files the deleted pictures
+         */
+        void onEvicted(@NonNull List<File> files);
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.cameralib;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.util.Calendar;
+
+
+/**
+ *      This class creates the file names of the pictures ("IMG_yyyyMMdd_HHmmss_SSS.jpg", local time with milliseconds). The names are unique and
+ *      sort in the order the pictures were taken: if a name isn't greater than the last one (two pictures in the same millisecond, or the clock
+ *      went back), the last name gets a sequence number with a fixed number of digits ("IMG_yyyyMMdd_HHmmss_SSS_000001.jpg")
+ * <p>
+ *      The names of a process only know each other. {@link #seed(File)} continues the names after the pictures of a folder, so a picture of an
+ *      earlier session isn't overwritten, even if the clock went back since then
+ * </p>
+ * <p>
+ *      The digits are written directly into a reused buffer with a reused Calendar, so no formatter is created for a name
+ * </p>
+ * <p>
+ *      @version 1.2
+ *      @since 1.4
+ * </p>
+ */
+final class CaptureFileNames {
+
+    private static final String PREFIX = "IMG_";
+    private static final String EXTENSION = ".jpg";
+
+    /**
+     * "IMG_yyyyMMdd_HHmmss_SSS"
+     */
+    private static final int BASE_LENGTH = PREFIX.length() + 8 + 1 + 6 + 1 + 3;
+
+    /**
+     * the digits of the sequence number, a million pictures with the same base aren't expected
+     */
+    private static final int SEQUENCE_DIGITS = 6;
+
+    private final Calendar mCalendar = Calendar.getInstance();
+    private final char[] mBase = new char[BASE_LENGTH];
+
+    /**
+     * the name (without sequence number and extension) of the last picture and the sequence number, that was added to it
+     */
+    private final char[] mLastBase = new char[BASE_LENGTH];
+    private int mSequence;
+
+    CaptureFileNames() {
+        PREFIX.getChars(0, PREFIX.length(), this.mBase, 0);
+    }
+
+    /**
+     *      This method creates the file name for a new picture
+     * <p>
+     *      @version 1.2
+     * </p>
+     * <p>
+     *      @param millis the time the picture was taken (System.currentTimeMillis())
+     *      @return the file name
+     * </p>
+     */
+    synchronized String next(long millis) {
+        Calendar calendar = this.mCalendar;
+        calendar.setTimeInMillis(millis);
+
+        char[] base = this.mBase;
+        int position = PREFIX.length();
+        position = putDigits(base, position, calendar.get(Calendar.YEAR), 4);
+        position = putDigits(base, position, calendar.get(Calendar.MONTH) + 1, 2);
+        position = putDigits(base, position, calendar.get(Calendar.DAY_OF_MONTH), 2);
+        base[position++] = '_';
+        position = putDigits(base, position, calendar.get(Calendar.HOUR_OF_DAY), 2);
+        position = putDigits(base, position, calendar.get(Calendar.MINUTE), 2);
+        position = putDigits(base, position, calendar.get(Calendar.SECOND), 2);
+        base[position++] = '_';
+        putDigits(base, position, calendar.get(Calendar.MILLISECOND), 3);
+
+        StringBuilder name = new StringBuilder(BASE_LENGTH + 1 + SEQUENCE_DIGITS + EXTENSION.length());
+        if(compare(base, this.mLastBase) > 0) {
+            System.arraycopy(base, 0, this.mLastBase, 0, BASE_LENGTH);
+            this.mSequence = 0;
+            name.append(base);
+        } else {
+            // the base of the last picture is kept, so the names still sort in the order of the pictures
+            this.mSequence++;
+            char[] sequence = new char[SEQUENCE_DIGITS];
+            putDigits(sequence, 0, this.mSequence, SEQUENCE_DIGITS);
+            name.append(this.mLastBase).append('_').append(sequence);
+        }
+        return name.append(EXTENSION).toString();
+    }
+
+    /**
+     *      This method continues the names after the newest picture of a folder, pictures that aren't committed yet included
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param folder the folder of the pictures
+     * </p>
+     */
+    void seed(@NonNull File folder) {
+        String[] names = folder.list();
+        if(names == null) {
+            return;
+        }
+
+        for(String name : names) {
+            this.seed(name.startsWith(GroupCommitter.TEMP_PREFIX) ? name.substring(GroupCommitter.TEMP_PREFIX.length()) : name);
+        }
+    }
+
+    /**
+     *      This method continues the names after an existing name. Names, that aren't created by this class or that are smaller than the last name,
+     *      are ignored
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param name the file name of an existing picture
+     * </p>
+     */
+    synchronized void seed(@NonNull String name) {
+        int sequence = parseSequence(name);
+        if(sequence < 0) {
+            return;
+        }
+
+        int order = 0;
+        for(int i = 0; i < BASE_LENGTH && order == 0; i++) {
+            order = name.charAt(i) - this.mLastBase[i];
+        }
+        if(order > 0 || (order == 0 && sequence > this.mSequence)) {
+            name.getChars(0, BASE_LENGTH, this.mLastBase, 0);
+            this.mSequence = sequence;
+        }
+    }
+
+    /**
+     *      This method reads the sequence number of a name
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param name the file name
+     *      @return the sequence number, 0 if the name has none, -1 if the name isn't created by this class
+     * </p>
+     */
+    private static int parseSequence(String name) {
+        if(!name.startsWith(PREFIX) || !name.endsWith(EXTENSION) || name.length() < BASE_LENGTH + EXTENSION.length()) {
+            return -1;
+        }
+        for(int i = PREFIX.length(); i < BASE_LENGTH; i++) {
+            char c = name.charAt(i);
+            boolean separator = i == PREFIX.length() + 8 || i == PREFIX.length() + 8 + 1 + 6;
+            if(separator ? c != '_' : c < '0' || c > '9') {
+                return -1;
+            }
+        }
+
+        int end = name.length() - EXTENSION.length();
+        if(end == BASE_LENGTH) {
+            return 0;
+        }
+        if(name.charAt(BASE_LENGTH) != '_' || end - BASE_LENGTH - 1 > SEQUENCE_DIGITS || end - BASE_LENGTH - 1 < 1) {
+            return -1;
+        }
+        int sequence = 0;
+        for(int i = BASE_LENGTH + 1; i < end; i++) {
+            char c = name.charAt(i);
+            if(c < '0' || c > '9') {
+                return -1;
+            }
+            sequence = sequence * 10 + c - '0';
+        }
+        return sequence;
+    }
+
+    /**
+     *      This method writes a number with a fixed number of digits
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param output the buffer
+     *      @param position the position of the first digit
+     *      @param value the number, it must not have more digits
+     *      @param digits the number of digits
+     *      @return the position behind the last digit
+     * </p>
+     */
+    private static int putDigits(char[] output, int position, int value, int digits) {
+        for(int i = position + digits - 1; i >= position; i--) {
+            output[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return position + digits;
+    }
+
+    private static int compare(char[] first, char[] second) {
+        for(int i = 0; i < first.length; i++) {
+            if(first[i] != second[i]) {
+                return first[i] - second[i];
+            }
+        }
+        return 0;
+    }
+}
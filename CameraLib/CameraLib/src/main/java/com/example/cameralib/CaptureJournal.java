@@ -0,0 +1,445 @@
+package com.example.cameralib;
+
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ *      This class is an append-only binary journal of the metadata of the captured pictures (sensor timestamp, exposure time, ISO, focus distance
+ *      and file name). All pictures are recorded in one file, that is memory-mapped and grown in chunks, so appending an entry is a copy into memory
+ *      and doesn't need a system call
+ * <p>
+ *      The file starts with a header (magic number and version), followed by the entries. Every entry is [length][checksum][data], the length is
+ *      written last. The mapped file is filled with zeros, so a zero length marks the end of the journal. When a journal is opened, the entries
+ *      are read until the end or the first broken entry, new entries are appended there. An entry is in the page cache as soon as it is appended,
+ *      so it survives a crash of the app; {@link #sync()} writes it to the storage, so it also survives a power loss
+ * </p>
+ * <p>
+ *      @version 1.0
+ *      @since 1.4
+ * </p>
+ */
+public final class CaptureJournal implements Closeable {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    private static final int MAGIC = 0x434A4E4C;       // "CJNL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * length and checksum of an entry
+     */
+    private static final int ENTRY_HEADER_SIZE = 8;
+
+    /**
+     * timestamp, wall time, exposure time, ISO, focus distance and the length of the name
+     */
+    private static final int ENTRY_FIXED_SIZE = 8 + 8 + 8 + 4 + 4 + 2;
+
+    private static final int MAX_NAME_BYTES = 0xFFFF;
+
+    /**
+     * the default size, the file grows by
+     */
+    private static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+
+    /**
+     * the value of the exposure time and the ISO, if the metadata doesn't contain them
+     */
+    public static final int UNKNOWN = -1;
+
+    private final File mFile;
+    private final int mChunkSize;
+    private final RandomAccessFile mRandomAccessFile;
+    private final FileChannel mChannel;
+    private MappedByteBuffer mBuffer;
+
+    /**
+     * the position of the next entry
+     */
+    private int mPosition;
+    private int mEntryCount;
+    private boolean mClosed;
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    /**
+     *      The constructor for a CaptureJournal. An existing journal is continued, otherwise a new one is created
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param file the file of the journal
+     *      @throws IOException is thrown, if the file can't be opened or isn't a journal
+     * </p>
+     */
+    public CaptureJournal(@NonNull File file) throws IOException {
+        this(file, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     *      The constructor for a CaptureJournal. An existing journal is continued, otherwise a new one is created
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param file the file of the journal
+     *      @param chunkSize the number of bytes, the file grows by
+     *      @throws IOException is thrown, if the file can't be opened or isn't a journal
+     * </p>
+     */
+    CaptureJournal(@NonNull File file, int chunkSize) throws IOException {
+        if(chunkSize < HEADER_SIZE + ENTRY_HEADER_SIZE + ENTRY_FIXED_SIZE) {
+            throw new IllegalArgumentException("The chunk size is too small!");
+        }
+        this.mFile = file;
+        this.mChunkSize = chunkSize;
+        this.mRandomAccessFile = new RandomAccessFile(file, "rw");
+        this.mChannel = this.mRandomAccessFile.getChannel();
+
+        try {
+            long length = this.mChannel.size();
+            if(length > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large for a capture journal");
+            }
+            this.map((int) Math.max(length, chunkSize));
+
+            if(length < HEADER_SIZE) {
+                this.mBuffer.putInt(0, MAGIC);
+                this.mBuffer.putInt(4, VERSION);
+                this.mPosition = HEADER_SIZE;
+            } else {
+                checkHeader(this.mBuffer, file);
+                int[] end = scan(this.mBuffer, null);
+                this.mPosition = end[0];
+                this.mEntryCount = end[1];
+            }
+        } catch (IOException e) {
+            this.mRandomAccessFile.close();
+            throw e;
+        }
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    /**
+     *      This method appends the metadata of a picture. It only copies into the mapped file, the file is grown if it is full
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param timestamp the sensor timestamp of the picture in nanoseconds
+     *      @param name the file name of the picture
+     *      @param exposureTime the exposure time in nanoseconds, {@link #UNKNOWN} if it isn't known
+     *      @param iso the sensitivity (ISO), {@link #UNKNOWN} if it isn't known
+     *      @param focusDistance the focus distance in diopters, NaN if it isn't known
+     *      @throws IOException is thrown, if the file can't be grown
+     *      @throws IllegalStateException is thrown, if the journal is closed
+     * </p>
+     */
+    public synchronized void append(long timestamp, @NonNull String name, long exposureTime, int iso, float focusDistance)
+            throws IOException, IllegalStateException {
+        if(this.mClosed) {
+            throw new IllegalStateException("The journal is closed!");
+        }
+
+        int nameBytes = utf8Length(name);
+        if(nameBytes > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("The name is too long!");
+        }
+        int entrySize = ENTRY_HEADER_SIZE + ENTRY_FIXED_SIZE + nameBytes;
+        if(this.mPosition + entrySize + 4 > this.mBuffer.capacity()) {        // the end marker must fit behind the entry
+            long size = (long) this.mPosition + entrySize + 4 + this.mChunkSize;
+            if(size > Integer.MAX_VALUE) {
+                throw new IOException("The capture journal is full");
+            }
+            this.map((int) (size - size % this.mChunkSize));
+        }
+
+        // the data is written first and the length last, so a partly written entry is never read
+        MappedByteBuffer buffer = this.mBuffer;
+        int data = this.mPosition + ENTRY_HEADER_SIZE;
+        buffer.position(data);
+        buffer.putLong(timestamp);
+        buffer.putLong(System.currentTimeMillis());
+        buffer.putLong(exposureTime);
+        buffer.putInt(iso);
+        buffer.putFloat(focusDistance);
+        buffer.putShort((short) nameBytes);
+        putUtf8(buffer, name, nameBytes);
+
+        int length = ENTRY_FIXED_SIZE + nameBytes;
+        buffer.putInt(this.mPosition + entrySize, 0);       // older entries behind a broken one must not become readable again
+        buffer.putInt(this.mPosition + 4, checksum(buffer, data, length));
+        buffer.putInt(this.mPosition, length);
+        this.mPosition += entrySize;
+        this.mEntryCount++;
+    }
+
+    /**
+     *      This method writes the appended entries to the storage. It is slow (milliseconds), so it should be called at the end of a burst or when
+     *      the camera is closed and not for every picture
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    public synchronized void sync() {
+        if(!this.mClosed) {
+            this.mBuffer.force();
+        }
+    }
+
+    /**
+     *      This method writes the entries to the storage and closes the journal
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @throws IOException is thrown, if the file can't be closed
+     * </p>
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(this.mClosed) {
+            return;
+        }
+        this.mBuffer.force();
+        this.mClosed = true;
+        this.mRandomAccessFile.close();
+    }
+
+    /**
+     * @return the number of entries in the journal
+     */
+    public synchronized int getEntryCount() {
+        return this.mEntryCount;
+    }
+
+    /**
+     * @return the file of the journal
+     */
+    @NonNull
+    public File getFile() {
+        return this.mFile;
+    }
+
+    /**
+     *      This method reads all entries of a journal. Entries behind a broken entry (for example after a power loss) are not read
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param file the file of the journal
+     *      @return the entries in the order they were appended
+     *      @throws IOException is thrown, if the file can't be read or isn't a journal
+     * </p>
+     */
+    @NonNull
+    public static List<Entry> read(@NonNull File file) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            if(channel.size() < HEADER_SIZE) {
+                return entries;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), Integer.MAX_VALUE));
+            checkHeader(buffer, file);
+            scan(buffer, entries);
+        } finally {
+            randomAccessFile.close();
+        }
+        return entries;
+    }
+
+    /**
+     *      This method maps the file with a new size, the file is grown if it is smaller
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param size the size of the mapping in bytes
+     *      @throws IOException is thrown, if the file can't be mapped
+     * </p>
+     */
+    private void map(int size) throws IOException {
+        this.mBuffer = this.mChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private static void checkHeader(ByteBuffer buffer, File file) throws IOException {
+        if(buffer.getInt(0) != MAGIC) {
+            throw new IOException(file + " isn't a capture journal");
+        }
+        if(buffer.getInt(4) != VERSION) {
+            throw new IOException(file + " has the unknown journal version " + buffer.getInt(4));
+        }
+    }
+
+    /**
+     *      This method reads the entries until the end of the journal or the first broken entry
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param buffer the mapped journal
+     *      @param entries the list, the entries are added to, null if they are only counted
+     *      @return the position behind the last entry and the number of entries
+     * </p>
+     */
+    private static int[] scan(ByteBuffer buffer, List<Entry> entries) {
+        int position = HEADER_SIZE;
+        int count = 0;
+        while(position + ENTRY_HEADER_SIZE <= buffer.limit()) {
+            int length = buffer.getInt(position);
+            int data = position + ENTRY_HEADER_SIZE;
+            if(length < ENTRY_FIXED_SIZE || length > buffer.limit() - data) {
+                break;      // the end of the journal or a broken length
+            }
+            int nameBytes = buffer.getShort(data + ENTRY_FIXED_SIZE - 2) & 0xFFFF;
+            if(ENTRY_FIXED_SIZE + nameBytes != length || checksum(buffer, data, length) != buffer.getInt(position + 4)) {
+                break;
+            }
+
+            if(entries != null) {
+                byte[] name = new byte[nameBytes];
+                ByteBuffer entry = buffer.duplicate();
+                entry.position(data + ENTRY_FIXED_SIZE);
+                entry.get(name);
+                entries.add(new Entry(buffer.getLong(data), buffer.getLong(data + 8), buffer.getLong(data + 16), buffer.getInt(data + 24),
+                        buffer.getFloat(data + 28), new String(name, StandardCharsets.UTF_8)));
+            }
+            position = data + length;
+            count++;
+        }
+        return new int[] {position, count};
+    }
+
+    /**
+     * FNV-1a over the data of an entry. CRC32 can't read a ByteBuffer on all supported Android versions without a copy
+     */
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        int hash = 0x811C9DC5;
+        for(int i = offset; i < offset + length; i++) {
+            hash ^= buffer.get(i) & 0xFF;
+            hash *= 0x01000193;
+        }
+        return hash;
+    }
+
+    private static int utf8Length(String text) {
+        int length = 0;
+        for(int i = 0; i < text.length(); i++) {
+            if(text.charAt(i) >= 0x80) {
+                return text.getBytes(StandardCharsets.UTF_8).length;
+            }
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * writes the name without creating a byte[], if it only contains ASCII characters (like the names of the pictures)
+     */
+    private static void putUtf8(ByteBuffer buffer, String text, int length) {
+        if(length == text.length()) {
+            for(int i = 0; i < length; i++) {
+                buffer.put((byte) text.charAt(i));
+            }
+        } else {
+            buffer.put(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+
+    // *************************************************************** Class Section ***************************************************************
+
+
+    /**
+     *      This class contains the metadata of a recorded picture
+     * <p>
+     *      @version 1.0
+     *      @since 1.4
+     * </p>
+     */
+    public static final class Entry {
+        private final long mTimestamp;
+        private final long mWallTime;
+        private final long mExposureTime;
+        private final int mIso;
+        private final float mFocusDistance;
+        private final String mName;
+
+        Entry(long timestamp, long wallTime, long exposureTime, int iso, float focusDistance, String name) {
+            this.mTimestamp = timestamp;
+            this.mWallTime = wallTime;
+            this.mExposureTime = exposureTime;
+            this.mIso = iso;
+            this.mFocusDistance = focusDistance;
+            this.mName = name;
+        }
+
+        /**
+         * @return the sensor timestamp of the picture in nanoseconds
+         */
+        public long getTimestamp() {
+            return this.mTimestamp;
+        }
+
+        /**
+         * @return the time (System.currentTimeMillis()) the entry was appended
+         */
+        public long getWallTime() {
+            return this.mWallTime;
+        }
+
+        /**
+         * @return the exposure time in nanoseconds, {@link #UNKNOWN} if it isn't known
+         */
+        public long getExposureTime() {
+            return this.mExposureTime;
+        }
+
+        /**
+         * @return the sensitivity (ISO), {@link #UNKNOWN} if it isn't known
+         */
+        public int getIso() {
+            return this.mIso;
+        }
+
+        /**
+         * @return the focus distance in diopters (0 is infinity), NaN if it isn't known
+         */
+        public float getFocusDistance() {
+            return this.mFocusDistance;
+        }
+
+        /**
+         * @return the file name of the picture
+         */
+        @NonNull
+        public String getName() {
+            return this.mName;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return this.mName + " (timestamp " + this.mTimestamp + ", exposure " + this.mExposureTime + " ns, ISO " + this.mIso
+                    + ", focus " + this.mFocusDistance + " dpt)";
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.cameralib;
+
+import androidx.annotation.NonNull;
+
+
+/**
+ *      This class contains the latencies of the camera pipeline (open, session configuration, capture, saving and scanning).
+ *      Every stage has its own {@link LatencyHistogram}, so recording a latency doesn't allocate
+ * <p>
+ *      @version 1.0
+ *      @since 1.4
+ * </p>
+ */
+public class CaptureMetrics {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    /**
+     * the histograms, the index is the ordinal of the stage
+     */
+    private final LatencyHistogram[] mHistograms;
+
+    /**
+     * this listener is informed about every recorded latency, it may be null
+     */
+    private volatile Listener mListener;
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    /**
+     *      The constructor for CaptureMetrics
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    CaptureMetrics() {
+        Stage[] stages = Stage.values();
+        this.mHistograms = new LatencyHistogram[stages.length];
+        for(int i = 0; i < stages.length; i++) {
+            this.mHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    /**
+     *      This method records the latency of a stage
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param stage the stage
+     *      @param nanos the latency in nanoseconds
+     * </p>
+     */
+    void record(@NonNull Stage stage, long nanos) {
+        this.mHistograms[stage.ordinal()].record(nanos);
+
+        Listener listener = this.mListener;
+        if(listener != null) {
+            listener.onLatencyRecorded(stage, nanos);
+        }
+    }
+
+    /**
+     *      This method records the latency of a stage, that started at startNanos (System.nanoTime()) and ends now
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param stage the stage
+     *      @param startNanos the start of the stage
+     * </p>
+     */
+    void recordSince(@NonNull Stage stage, long startNanos) {
+        this.record(stage, System.nanoTime() - startNanos);
+    }
+
+    /**
+     *      This method sets the listener, that is informed about every recorded latency. It is called on the thread, that records the latency
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param listener the listener or null
+     * </p>
+     */
+    public void setListener(Listener listener) {
+        this.mListener = listener;
+    }
+
+    /**
+     *      This method copies the latencies of all stages
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @return the snapshot
+     * </p>
+     */
+    public Snapshot snapshot() {
+        LatencyHistogram.Snapshot[] snapshots = new LatencyHistogram.Snapshot[this.mHistograms.length];
+        for(int i = 0; i < this.mHistograms.length; i++) {
+            snapshots[i] = this.mHistograms[i].snapshot();
+        }
+        return new Snapshot(snapshots);
+    }
+
+    /**
+     *      This method deletes all recorded latencies
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    public void reset() {
+        for(LatencyHistogram histogram : this.mHistograms) {
+            histogram.reset();
+        }
+    }
+
+
+    // *************************************************************** Class Section ***************************************************************
+
+
+    /**
+     *      This class contains the latencies of all stages at one point in time
+     * <p>
+     *      @version 1.0
+     *      @since 1.4
+     * </p>
+     */
+    public static final class Snapshot {
+        private final LatencyHistogram.Snapshot[] mSnapshots;
+
+        Snapshot(LatencyHistogram.Snapshot[] snapshots) {
+            this.mSnapshots = snapshots;
+        }
+
+        /**
+         * @param stage the stage
+         * @return the latencies of the stage
+         */
+        public LatencyHistogram.Snapshot get(@NonNull Stage stage) {
+            return this.mSnapshots[stage.ordinal()];
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            for(Stage stage : Stage.values()) {
+                LatencyHistogram.Snapshot snapshot = this.get(stage);
+                builder.append(stage).append(": n=").append(snapshot.getCount())
+                        .append(" p50=").append(snapshot.getPercentileNanos(50) / 1000000.0).append("ms")
+                        .append(" p99=").append(snapshot.getPercentileNanos(99) / 1000000.0).append("ms")
+                        .append(" max=").append(snapshot.getMaxNanos() / 1000000.0).append("ms\n");
+            }
+            return builder.toString();
+        }
+    }
+
+
+    // *************************************************************** Interface Section ***************************************************************
+
+
+    /**
+     *      Listener, that is informed about every recorded latency
+     * <p>
+     *      @since 1.4
+     * </p>
+     */
+    public interface Listener {
+        /**
+         * @param stage the stage
+         * @param nanos the latency in nanoseconds
+         */
+        void onLatencyRecorded(@NonNull Stage stage, long nanos);
+    }
+
+
+    // *************************************************************** Enum Section ***************************************************************
+
+
+    /**
+     *      This enum contains the measured stages of the camera pipeline
+     * <p>
+     *      @since 1.4
+     * </p>
+     */
+    public enum Stage {
+        /**
+         * from openCamera until the camera is opened (onOpened)
+         */
+        CAMERA_OPEN,
+        /**
+         * from createCaptureSession until the session is configured (onConfigured)
+         */
+        SESSION_CONFIGURE,
+        /**
+         * from the capture request until onCaptureCompleted
+         */
+        SHUTTER_TO_CAPTURE_COMPLETED,
+        /**
+         * from the image being available until it is written
+         */
+        IMAGE_AVAILABLE_TO_SAVED,
+        /**
+         * from the image being written until the MediaScanner / MediaStore knows it
+         */
+        SAVED_TO_SCANNED,
+        /**
+         * from switchCamera until the preview of the other camera is streaming
+         */
+        CAMERA_SWITCH
+    }
+}
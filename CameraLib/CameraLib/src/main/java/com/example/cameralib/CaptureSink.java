@@ -0,0 +1,212 @@
+package com.example.cameralib;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ *      A CaptureSink is the destination of the pictures. It decides where a JPEG is stored (a file, the MediaStore, memory) and how the stored
+ *      pictures are published. {@link #write(ByteBuffer, String, long)} is called in the threads of the {@link ImageWriterPool}, so it may block
+ * <p>
+ *      @version 1.0
+ *      @since 1.4
+ * </p>
+ */
+public interface CaptureSink {
+
+    /**
+     *      This method stores a picture
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param jpeg the JPEG data between position and limit. The buffer belongs to the camera, it must not be used after the method returns
+     *      @param name the file name of the picture (IMG_yyyyMMdd_HHmmss_SSS.jpg, unique and in the order of the pictures)
+     *      @param timestamp the sensor timestamp of the picture in nanoseconds
+     *      @return where the picture is stored
+     *      @throws IOException is thrown, if the picture can't be stored
+     * </p>
+     */
+    @NonNull
+    Output write(@NonNull ByteBuffer jpeg, @NonNull String name, long timestamp) throws IOException;
+
+    /**
+     *      This method publishes the pictures, that are stored but not published yet, right away (for example at the end of a burst)
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    void flush();
+
+
+    /**
+     *      This class describes where a picture is stored. Depending on the sink it contains a file, a content URI or the data itself
+     * <p>
+     *      A picture, that is written atomically, is pending until it is committed: its file only exists afterwards, and the commit can fail
+     * </p>
+     * <p>
+     *      @version 1.1
+     *      @since 1.4
+     * </p>
+     */
+    final class Output {
+        @Nullable
+        private final File mFile;
+        @Nullable
+        private final Uri mUri;
+        @Nullable
+        private final ByteBuffer mData;
+
+        /**
+         * true ... the picture isn't committed yet. The commit state and the listeners are guarded by the output
+         */
+        private boolean mPending;
+        private boolean mStored = true;
+        @Nullable
+        private List<OnStoredListener> mStoredListeners;
+
+        private Output(@Nullable File file, @Nullable Uri uri, @Nullable ByteBuffer data) {
+            this.mFile = file;
+            this.mUri = uri;
+            this.mData = data;
+        }
+
+        /**
+         * @param file the written file
+         * @return the output of a picture, that is stored in a file
+         */
+        @NonNull
+        public static Output ofFile(@NonNull File file) {
+            return new Output(file, Uri.fromFile(file), null);
+        }
+
+        /**
+         * @param file the final file of a picture, that is written atomically
+         * @return the output of a picture, that is pending until {@link #setStored(boolean)} is called
+         */
+        @NonNull
+        static Output ofPendingFile(@NonNull File file) {
+            Output output = new Output(file, Uri.fromFile(file), null);
+            output.mPending = true;
+            return output;
+        }
+
+        /**
+         * @param uri the content URI
+         * @return the output of a picture, that is stored behind a content URI
+         */
+        @NonNull
+        public static Output ofUri(@NonNull Uri uri) {
+            return new Output(null, uri, null);
+        }
+
+        /**
+         * @param data the JPEG data
+         * @return the output of a picture, that is kept in memory
+         */
+        @NonNull
+        public static Output ofData(@NonNull ByteBuffer data) {
+            return new Output(null, null, data);
+        }
+
+        /**
+         * @return the file of the picture, null if it isn't stored in a file
+         */
+        @Nullable
+        public File getFile() {
+            return this.mFile;
+        }
+
+        /**
+         * @return the URI of the picture, null if it is kept in memory
+         */
+        @Nullable
+        public Uri getUri() {
+            return this.mUri;
+        }
+
+        /**
+         * @return the JPEG data (read only), null if the picture isn't kept in memory
+         */
+        @Nullable
+        public ByteBuffer getData() {
+            return this.mData != null ? this.mData.duplicate() : null;
+        }
+
+        /**
+         * @return true ... the picture is written atomically and not committed yet, its file doesn't exist yet
+         */
+        synchronized boolean isPending() {
+            return this.mPending;
+        }
+
+        /**
+         *      This method calls the listener, when the picture is committed. If it isn't pending, the listener is called right away
+         * <p>
+         *      @version 1.0
+         * </p>
+         * <p>
+         *      @param listener the listener, it is called in the thread, that commits the picture
+         * </p>
+         */
+        void whenStored(@NonNull OnStoredListener listener) {
+            synchronized(this) {
+                if(this.mPending) {
+                    if(this.mStoredListeners == null) {
+                        this.mStoredListeners = new ArrayList<>(1);
+                    }
+                    this.mStoredListeners.add(listener);
+                    return;
+                }
+            }
+            listener.onStored(this.mStored);
+        }
+
+        /**
+         *      This method ends the pending state of the picture and informs the listeners
+         * <p>
+         *      @version 1.0
+         * </p>
+         * <p>
+         *      @param stored true ... the picture is committed -- false ... the commit failed, the picture is lost
+         * </p>
+         */
+        void setStored(boolean stored) {
+            List<OnStoredListener> listeners;
+            synchronized(this) {
+                if(!this.mPending) {
+                    return;
+                }
+                this.mPending = false;
+                this.mStored = stored;
+                listeners = this.mStoredListeners;
+                this.mStoredListeners = null;
+            }
+            for(int i = 0; listeners != null && i < listeners.size(); i++) {
+                listeners.get(i).onStored(stored);
+            }
+        }
+
+
+        /**
+         *      Listener, that is informed when a pending picture is committed
+         * <p>
+         *      @since 1.4
+         * </p>
+         */
+        interface OnStoredListener {
+            /**
+             * @param stored true ... the picture is stored -- false ... the picture couldn't be committed
+             */
+            void onStored(boolean stored);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.cameralib;
+
+
+/**
+ *      This class calculates the crop region of the sensor (SCALER_CROP_REGION) for a region of interest. The region of interest is given in
+ *      normalized coordinates of the field of view (0 - 1), the crop region in pixels of the active array
+ * <p>
+ *      The crop region keeps the aspect ratio of the active array, so the whole region of interest stays in the pictures (the camera would otherwise
+ *      cut the crop region to the aspect ratio of the output). It is never smaller than the maximum digital zoom allows and never leaves the active array
+ * </p>
+ * <p>
+ *      @version 1.0
+ *      @since 1.4
+ * </p>
+ */
+final class CropRegion {
+
+    /**
+     * the indices of the returned region
+     */
+    static final int LEFT = 0;
+    static final int TOP = 1;
+    static final int RIGHT = 2;
+    static final int BOTTOM = 3;
+
+    private CropRegion() {
+    }
+
+    /**
+     *      This method calculates the crop region for a region of interest
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param arrayWidth the width of the active array in pixels
+     *      @param arrayHeight the height of the active array in pixels
+     *      @param left the left edge of the region of interest (0 - 1)
+     *      @param top the top edge of the region of interest (0 - 1)
+     *      @param right the right edge of the region of interest (0 - 1)
+     *      @param bottom the bottom edge of the region of interest (0 - 1)
+     *      @param maxZoom the maximum digital zoom of the camera (SCALER_AVAILABLE_MAX_DIGITAL_ZOOM)
+     *      @return the crop region {left, top, right, bottom} in pixels of the active array
+     * </p>
+     */
+    static int[] fit(int arrayWidth, int arrayHeight, float left, float top, float right, float bottom, float maxZoom) {
+        double centerX = clamp((left + right) / 2.0, 0, 1) * arrayWidth;
+        double centerY = clamp((top + bottom) / 2.0, 0, 1) * arrayHeight;
+        double width = Math.abs(right - left) * arrayWidth;
+        double height = Math.abs(bottom - top) * arrayHeight;
+
+        // grow the region to the aspect ratio of the active array
+        double aspect = (double) arrayWidth / arrayHeight;
+        if(width < height * aspect) {
+            width = height * aspect;
+        } else {
+            height = width / aspect;
+        }
+
+        double zoom = Math.max(1, maxZoom);
+        width = clamp(width, arrayWidth / zoom, arrayWidth);
+        height = clamp(height, arrayHeight / zoom, arrayHeight);
+
+        // move the region into the active array, the size stays the same
+        double x = clamp(centerX - width / 2, 0, arrayWidth - width);
+        double y = clamp(centerY - height / 2, 0, arrayHeight - height);
+
+        int cropLeft = (int) Math.round(x) & ~1;        // even coordinates, because of the chroma subsampling
+        int cropTop = (int) Math.round(y) & ~1;
+        int cropRight = Math.min(arrayWidth, cropLeft + ((int) Math.round(width) & ~1));
+        int cropBottom = Math.min(arrayHeight, cropTop + ((int) Math.round(height) & ~1));
+        return new int[] {cropLeft, cropTop, cropRight, cropBottom};
+    }
+
+    /**
+     *      This method calculates the number of pixels, a picture of the crop region needs, so it has the same sharpness as a full picture.
+     *      A larger picture would only contain upscaled pixels
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param region the crop region {left, top, right, bottom}
+     *      @param arrayWidth the width of the active array in pixels
+     *      @param arrayHeight the height of the active array in pixels
+     *      @param largestPixels the number of pixels of the largest output size
+     *      @return the number of pixels
+     * </p>
+     */
+    static long outputPixels(int[] region, int arrayWidth, int arrayHeight, long largestPixels) {
+        double fraction = (double) (region[RIGHT] - region[LEFT]) * (region[BOTTOM] - region[TOP]) / ((double) arrayWidth * arrayHeight);
+        return Math.round(largestPixels * fraction);
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
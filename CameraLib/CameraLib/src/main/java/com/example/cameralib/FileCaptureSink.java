@@ -0,0 +1,330 @@
+package com.example.cameralib;
+
+import android.content.Context;
+import android.os.Environment;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ *      This sink writes the pictures to files in a folder. The pictures of the public DCIM folder are handed to the MediaScanCoalescer, which publishes
+ *      them in batches. The pictures of the app-private folder aren't published at all, so the MediaScanner is never started for them
+ * <p>
+ *      With atomic writes a picture is written to a temporary file, that is synced and renamed by a {@link GroupCommitter}. The picture is only
+ *      published after it is committed, so the MediaScanner never sees a truncated picture. Until then its {@link CaptureSink.Output} is pending
+ * </p>
+ * <p>
+ *      @version 1.2
+ *      @since 1.4
+ * </p>
+ */
+public class FileCaptureSink implements CaptureSink {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    /**
+     * the name of the folder in the DCIM directory
+     */
+    private static final String DCIM_FOLDER = "SickCameraApplication";
+
+    private static final String MIME_TYPE_JPEG = "image/jpeg";
+
+    /**
+     * the folder of the pictures
+     */
+    private final File mFolder;
+
+    /**
+     * publishes the written pictures, null if they aren't published
+     */
+    @Nullable
+    private final MediaScanCoalescer mMediaScanCoalescer;
+
+    /**
+     * true ... the folder exists, it isn't checked again for every picture
+     */
+    private volatile boolean mFolderCreated;
+
+    /**
+     * true ... the files are set to their final length before they are written
+     */
+    private volatile boolean mPreallocate;
+
+    /**
+     * commits the pictures, that are written to temporary files. null until atomic writes are enabled the first time
+     */
+    private volatile GroupCommitter mCommitter;
+
+    /**
+     * true ... the pictures are written to temporary files and committed by mCommitter
+     */
+    private volatile boolean mAtomicWrites;
+
+    /**
+     * the outputs of the pictures, that wait for their commit. Guarded by its own lock
+     */
+    private final HashMap<File, Output> mPendingOutputs = new HashMap<>();
+
+    /**
+     * the index of the written pictures, null if there is none
+     */
+    @Nullable
+    private volatile CaptureCatalog mCatalog;
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    /**
+     *      The constructor for a FileCaptureSink
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param folder the folder of the pictures, it is created if it doesn't exist
+     *      @param mediaScanCoalescer publishes the written pictures, null if they aren't published
+     * </p>
+     */
+    FileCaptureSink(@NonNull File folder, @Nullable MediaScanCoalescer mediaScanCoalescer) {
+        this.mFolder = folder;
+        this.mMediaScanCoalescer = mediaScanCoalescer;
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    /**
+     *      This method creates the sink for the public gallery folder DCIM/SickCameraApplication
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param mediaScanCoalescer publishes the written pictures
+     *      @return the sink
+     * </p>
+     */
+    @NonNull
+    static FileCaptureSink dcim(@NonNull MediaScanCoalescer mediaScanCoalescer) {
+        return new FileCaptureSink(new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DCIM), DCIM_FOLDER), mediaScanCoalescer);
+    }
+
+    /**
+     *      This method creates a sink for the private pictures folder of the app. No permission is needed and the pictures don't appear in the gallery
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param context any context of the app
+     *      @return the sink
+     * </p>
+     */
+    @NonNull
+    public static FileCaptureSink appPrivate(@NonNull Context context) {
+        File folder = context.getExternalFilesDir(Environment.DIRECTORY_PICTURES);
+        if(folder == null) {
+            folder = new File(context.getFilesDir(), Environment.DIRECTORY_PICTURES);     // the external storage isn't available
+        }
+        return new FileCaptureSink(folder, null);
+    }
+
+    @NonNull
+    @Override
+    public Output write(@NonNull ByteBuffer jpeg, @NonNull String name, long timestamp) throws IOException {
+        File file = new File(this.getFolder(), name);
+        GroupCommitter committer = this.mAtomicWrites ? this.getCommitter() : null;
+        if(committer != null) {
+            JpegWriter.write(jpeg, GroupCommitter.tempFile(file), this.mPreallocate);
+
+            Output output = Output.ofPendingFile(file);
+            synchronized(this.mPendingOutputs) {
+                this.mPendingOutputs.put(file, output);
+            }
+            committer.add(file);     // the picture is published, when it is committed
+            return output;
+        }
+
+        long length = JpegWriter.write(jpeg, file, this.mPreallocate);
+
+        if(this.mMediaScanCoalescer != null) {
+            this.mMediaScanCoalescer.add(file, MIME_TYPE_JPEG);  // Tell the MediaScanner about the new file to refresh the system
+        }
+        CaptureCatalog catalog = this.mCatalog;
+        if(catalog != null) {
+            catalog.add(name, length);
+        }
+        return Output.ofFile(file);
+    }
+
+    @Override
+    public void flush() {
+        GroupCommitter committer = this.getCommitter();
+        if(committer != null) {
+            committer.flush();      // the committed pictures are published right away
+        }
+        if(this.mMediaScanCoalescer != null) {
+            this.mMediaScanCoalescer.flush();
+        }
+    }
+
+    /**
+     *      This method sets, if the file of a picture is set to its final length before the picture is written
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param preallocate true ... the file is set to the size of the picture first (no space is reserved, the file is sparse until it
+     *                         is written) -- false ... the file grows while it is written
+     * </p>
+     */
+    public void setPreallocate(boolean preallocate) {
+        this.mPreallocate = preallocate;
+    }
+
+    /**
+     *      This method sets, if the pictures are written atomically. A picture is written to a temporary file, synced to the storage and renamed
+     *      afterwards, so a crash or a power loss never leaves a truncated picture. The syncs of a time window (or a burst) are done together
+     *      on one thread, the writing threads don't wait for the storage
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param atomic true ... the pictures are written atomically -- false ... the pictures are written directly to their files
+     *      @param windowMillis the time in milliseconds pictures are collected before they are committed. It is the longest time a written picture
+     *                          can be lost and the latency until it appears under its name
+     *      @param maxGroupSize the maximum number of pictures in one commit, more pictures are committed right away
+     *      @throws IllegalArgumentException is thrown, if the window is negative or the group size smaller than 1
+     * </p>
+     */
+    public void setAtomicWrites(boolean atomic, long windowMillis, int maxGroupSize) throws IllegalArgumentException {
+        GroupCommitter committer;
+        synchronized(this) {
+            if(this.mCommitter == null && atomic) {
+                this.mCommitter = new GroupCommitter(new GroupCommitter.Listener() {
+                    @Override
+                    public void onCommitted(@NonNull List<File> files, @NonNull List<File> failed, boolean flushed) {
+                        publish(files, flushed);
+                        for(File file : failed) {
+                            completeOutput(file, false);
+                        }
+                    }
+                });
+                this.mCommitter.recoverAbandoned(this.getFolder());
+            }
+            committer = this.mCommitter;
+        }
+
+        if(committer != null) {
+            committer.setConfig(windowMillis, maxGroupSize);
+            if(!atomic) {
+                committer.flush();
+            }
+        }
+        this.mAtomicWrites = atomic;
+    }
+
+    /**
+     *      This method waits until all pictures, that are written atomically, are committed. For example before the app is closed
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param timeout the maximum time to wait
+     *      @param unit the unit of the timeout
+     *      @return true ... all pictures are committed -- false ... the timeout elapsed
+     *      @throws InterruptedException is thrown, if the waiting thread is interrupted
+     * </p>
+     */
+    public boolean awaitCommitted(long timeout, TimeUnit unit) throws InterruptedException {
+        GroupCommitter committer = this.getCommitter();
+        return committer == null || committer.awaitCommitted(timeout, unit);
+    }
+
+    /**
+     *      This method publishes the committed pictures and completes their outputs. It is called in the thread of the GroupCommitter
+     * <p>
+     *      @version 1.1
+     * </p>
+     * <p>
+     *      @param files the committed pictures
+     *      @param flushed true ... the commit was requested by flush(), so the pictures are published right away
+     * </p>
+     */
+    private void publish(List<File> files, boolean flushed) {
+        CaptureCatalog catalog = this.mCatalog;
+        for(File file : files) {
+            if(this.mMediaScanCoalescer != null) {
+                this.mMediaScanCoalescer.add(file, MIME_TYPE_JPEG);
+            }
+            if(catalog != null) {
+                catalog.add(file.getName(), file.length());
+            }
+            this.completeOutput(file, true);
+        }
+        if(flushed && this.mMediaScanCoalescer != null) {
+            this.mMediaScanCoalescer.flush();
+        }
+    }
+
+    private void completeOutput(File file, boolean stored) {
+        Output output;
+        synchronized(this.mPendingOutputs) {
+            output = this.mPendingOutputs.remove(file);
+        }
+        if(output != null) {
+            output.setStored(stored);
+        }
+    }
+
+    /**
+     *      This method sets the catalog, that indexes the written pictures. Pictures, that are written atomically, are added when they are committed
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param catalog the catalog of the folder, null if the pictures aren't indexed
+     *      @throws IllegalArgumentException is thrown, if the catalog belongs to another folder
+     * </p>
+     */
+    public void setCatalog(@Nullable CaptureCatalog catalog) throws IllegalArgumentException {
+        if(catalog != null && !catalog.getFolder().equals(this.mFolder)) {
+            throw new IllegalArgumentException("The catalog must belong to the folder of the sink!");
+        }
+        this.mCatalog = catalog;
+    }
+
+    /**
+     * @return the catalog of the written pictures, null if they aren't indexed
+     */
+    @Nullable
+    public CaptureCatalog getCatalog() {
+        return this.mCatalog;
+    }
+
+    /**
+     * @return the committer of the atomic writes, null if atomic writes were never enabled
+     */
+    GroupCommitter getCommitter() {
+        return this.mCommitter;
+    }
+
+    /**
+     * @return the folder of the pictures
+     */
+    @NonNull
+    public File getFolder() {
+        if(!this.mFolderCreated) {
+            //noinspection ResultOfMethodCallIgnored
+            this.mFolder.mkdirs();
+            this.mFolderCreated = this.mFolder.isDirectory();
+        }
+        return this.mFolder;
+    }
+}
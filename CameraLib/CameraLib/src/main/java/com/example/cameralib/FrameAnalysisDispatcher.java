@@ -0,0 +1,414 @@
+package com.example.cameralib;
+
+import android.media.Image;
+import android.os.Handler;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ *      This class hands the frames of the YUV analysis stream to the registered {@link FrameAnalyzer}s. An analyzer only gets a frame, if it is idle,
+ *      otherwise the frame is dropped for this analyzer. All analyzers share the same Image, it is closed when the last analyzer is finished
+ * <p>
+ *      The images of an ImageReader become invalid, when it is closed. So the frames of every reader are dispatched through their own {@link Stream},
+ *      that is closed before the reader. The reader is closed, when the stream has released all of its images
+ * </p>
+ * <p>
+ *      @version 1.1
+ *      @since 1.4
+ * </p>
+ */
+public class FrameAnalysisDispatcher {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    /**
+     * the registered analyzers
+     */
+    private final CopyOnWriteArrayList<Registration> mRegistrations = new CopyOnWriteArrayList<>();
+
+    /**
+     * the number of images, that are held by analyzers at the moment
+     */
+    private final AtomicInteger mHeldImages = new AtomicInteger();
+
+    /**
+     * the maximum number of images, that may be held by analyzers. The ImageReader needs the remaining images, to keep the camera running
+     */
+    private final int mMaxHeldImages;
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    /**
+     *      The constructor for a FrameAnalysisDispatcher
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param maxHeldImages the maximum number of images, that may be held by analyzers at the same time
+     * </p>
+     */
+    FrameAnalysisDispatcher(int maxHeldImages) {
+        this.mMaxHeldImages = Math.max(1, maxHeldImages);
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    /**
+     *      This method registers an analyzer
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param analyzer the analyzer
+     *      @return the registration, it contains the counters of the analyzer
+     * </p>
+     */
+    Registration add(@NonNull FrameAnalyzer analyzer) {
+        Registration registration = new Registration(analyzer);
+        this.mRegistrations.add(registration);
+        return registration;
+    }
+
+    /**
+     *      This method removes an analyzer. A running analysis is finished
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param analyzer the analyzer
+     *      @return true ... the analyzer was registered
+     * </p>
+     */
+    boolean remove(@NonNull FrameAnalyzer analyzer) {
+        for(Registration registration : this.mRegistrations) {
+            if(registration.mAnalyzer == analyzer) {
+                this.mRegistrations.remove(registration);
+                registration.mExecutor.shutdown();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true ... no analyzer is registered
+     */
+    boolean isEmpty() {
+        return this.mRegistrations.isEmpty();
+    }
+
+    /**
+     *      This method opens the stream for the frames of a new ImageReader
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @return the stream
+     * </p>
+     */
+    @NonNull
+    Stream openStream() {
+        return new Stream();
+    }
+
+    /**
+     *      This method hands an image to all idle analyzers. The image is closed, when all of them are finished. It runs in the thread of the handler,
+     *      the image was posted to
+     * <p>
+     *      @version 1.1
+     * </p>
+     * <p>
+     *      @param stream the stream of the image
+     *      @param image the YUV_420_888 image
+     * </p>
+     */
+    private void dispatch(@NonNull Stream stream, @NonNull Image image) {
+        if(stream.mClosed) {
+            // the reader is closing, its images aren't handed out anymore
+            image.close();
+            stream.release();
+            return;
+        }
+        if(this.mHeldImages.get() >= this.mMaxHeldImages) {
+            // the analyzers hold all images we can spare, the frame is dropped for everybody
+            for(Registration registration : this.mRegistrations) {
+                registration.mDropped.incrementAndGet();
+            }
+            image.close();
+            stream.release();
+            return;
+        }
+
+        SharedImage sharedImage = new SharedImage(stream, image);
+        for(Registration registration : this.mRegistrations) {
+            if(!registration.mBusy.compareAndSet(false, true)) {
+                registration.mDropped.incrementAndGet();
+                continue;
+            }
+
+            sharedImage.retain();
+            registration.mTask.mImage = sharedImage;
+            try {
+                registration.mExecutor.execute(registration.mTask);
+            } catch (RejectedExecutionException e) {
+                // the analyzer was removed in the meantime
+                registration.mTask.mImage = null;
+                sharedImage.release();
+                registration.mBusy.set(false);
+            }
+        }
+        sharedImage.release();
+    }
+
+    /**
+     *      This method fills the reused frame of an analyzer with an image. An analyzer, that has the image for itself, gets the buffers of the
+     *      image. If the image is shared, the buffers are duplicated, so every analyzer has its own positions
+     * <p>
+     *      @version 1.1
+     * </p>
+     * <p>
+     *      @param image the YUV_420_888 image
+     *      @param shared true ... other analyzers use the image at the same time
+     *      @param frame the frame of the analyzer
+     *      @return the frame
+     * </p>
+     */
+    static YuvFrame toYuvFrame(@NonNull Image image, boolean shared, @NonNull YuvFrame frame) {
+        Image.Plane[] planes = image.getPlanes();
+        frame.set(image.getWidth(), image.getHeight(), image.getTimestamp());
+        for(int i = 0; i < 3; i++) {
+            ByteBuffer buffer = planes[i].getBuffer();
+            frame.setPlane(i, shared ? buffer.duplicate() : buffer, planes[i].getRowStride(), planes[i].getPixelStride());
+        }
+        return frame;
+    }
+
+
+    // *************************************************************** Class Section ***************************************************************
+
+
+    /**
+     *      This class dispatches the frames of one ImageReader. The reader must not be closed before the stream is drained, because the
+     *      analyzers may still read its images
+     * <p>
+     *      @version 1.0
+     *      @since 1.4
+     * </p>
+     */
+    final class Stream {
+
+        /**
+         * the images of the stream, that are queued or held by analyzers. It is one higher while the stream is open
+         */
+        private final AtomicInteger mImages = new AtomicInteger(1);
+
+        /**
+         * runs once, when the stream is closed and all of its images are released
+         */
+        private final AtomicReference<Runnable> mOnDrained = new AtomicReference<>();
+
+        private volatile boolean mClosed;
+
+        private Stream() {
+        }
+
+        /**
+         *      This method posts an image to the handler, that dispatches it to the analyzers
+         * <p>
+         *      @version 1.0
+         * </p>
+         * <p>
+         *      @param image the YUV_420_888 image
+         *      @param handler the handler of the processing thread, null if there is none
+         *      @return true ... the image is posted -- false ... the stream is closed or the queue is full, the caller must close the image
+         * </p>
+         */
+        boolean post(@NonNull final Image image, @Nullable Handler handler) {
+            this.mImages.incrementAndGet();
+            if(this.mClosed || handler == null || !handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    dispatch(Stream.this, image);
+                }
+            })) {
+                this.release();
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         *      This method closes the stream. Its queued images aren't dispatched anymore, they are closed. The callback runs, when the analyzers
+         *      have released the images of the stream, in the thread, that released the last one (or right away)
+         * <p>
+         *      @version 1.0
+         * </p>
+         * <p>
+         *      @param onDrained is called, when the stream holds no images anymore. For example it closes the ImageReader
+         * </p>
+         */
+        void close(@NonNull Runnable onDrained) {
+            if(this.mClosed) {
+                return;
+            }
+            this.mOnDrained.set(onDrained);
+            this.mClosed = true;
+            this.release();
+        }
+
+        private void release() {
+            if(this.mImages.decrementAndGet() == 0) {
+                Runnable onDrained = this.mOnDrained.getAndSet(null);
+                if(onDrained != null) {
+                    onDrained.run();
+                }
+            }
+        }
+    }
+
+    /**
+     *      This class contains an analyzer, its thread, its counters and the frame, that is reused for all of its frames
+     * <p>
+     *      @version 1.1
+     *      @since 1.4
+     * </p>
+     */
+    public static class Registration {
+        private final FrameAnalyzer mAnalyzer;
+        private final ThreadPoolExecutor mExecutor;
+        private final AnalysisTask mTask;
+        private final AtomicBoolean mBusy = new AtomicBoolean();
+        private final AtomicLong mDelivered = new AtomicLong();
+        private final AtomicLong mDropped = new AtomicLong();
+
+        Registration(FrameAnalyzer analyzer) {
+            this.mAnalyzer = analyzer;
+            // the busy flag ensures, that there is never more than one task in the queue
+            this.mExecutor = new ThreadPoolExecutor(1, 1, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "CameraFrameAnalyzer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            this.mExecutor.allowCoreThreadTimeOut(true);
+            this.mTask = new AnalysisTask(this);
+        }
+
+        /**
+         * @return the analyzer
+         */
+        public FrameAnalyzer getAnalyzer() {
+            return this.mAnalyzer;
+        }
+
+        /**
+         * @return the number of frames, the analyzer got
+         */
+        public long getDeliveredFrameCount() {
+            return this.mDelivered.get();
+        }
+
+        /**
+         * @return the number of frames, that were dropped because the analyzer was busy
+         */
+        public long getDroppedFrameCount() {
+            return this.mDropped.get();
+        }
+    }
+
+    /**
+     *      This class analyzes the frames of one analyzer. There is one task per analyzer, the busy flag ensures, that it isn't queued twice
+     * <p>
+     *      @version 1.1
+     *      @since 1.4
+     * </p>
+     */
+    private static class AnalysisTask implements Runnable {
+        private final Registration mRegistration;
+        private final YuvFrame mFrame = new YuvFrame();
+
+        /**
+         * the image to analyze, it is set before the task is queued
+         */
+        private SharedImage mImage;
+
+        AnalysisTask(Registration registration) {
+            this.mRegistration = registration;
+        }
+
+        @Override
+        public void run() {
+            SharedImage image = this.mImage;
+            this.mImage = null;
+            try {
+                this.mRegistration.mDelivered.incrementAndGet();
+                this.mRegistration.mAnalyzer.analyze(toYuvFrame(image.mImage, image.isShared(), this.mFrame));
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            } finally {
+                for(int i = 0; i < 3; i++) {
+                    this.mFrame.setPlane(i, null, 0, 0);       // the buffers become invalid with the image
+                }
+                image.release();
+                this.mRegistration.mBusy.set(false);
+            }
+        }
+    }
+
+    /**
+     *      This class counts the analyzers, that use an image. The image is closed, when the count reaches 0
+     * <p>
+     *      @version 1.1
+     *      @since 1.4
+     * </p>
+     */
+    private class SharedImage {
+        private final Stream mStream;
+        private final Image mImage;
+        private final AtomicInteger mReferences = new AtomicInteger(1);
+
+        SharedImage(Stream stream, Image image) {
+            this.mStream = stream;
+            this.mImage = image;
+            mHeldImages.incrementAndGet();
+        }
+
+        void retain() {
+            this.mReferences.incrementAndGet();
+        }
+
+        /**
+         * @return true ... another analyzer or the dispatcher holds the image too
+         */
+        boolean isShared() {
+            return this.mReferences.get() > 1;
+        }
+
+        void release() {
+            if(this.mReferences.decrementAndGet() == 0) {
+                this.mImage.close();
+                mHeldImages.decrementAndGet();
+                this.mStream.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.cameralib;
+
+import androidx.annotation.NonNull;
+
+
+/**
+ *      An analyzer gets the frames of the low resolution YUV stream of the camera. Every analyzer runs on its own thread.
+ *      Frames, that arrive while the analyzer is still busy, are dropped for this analyzer, so a slow analyzer never backs up the camera
+ * <p>
+ *      @since 1.4
+ * </p>
+ */
+public interface FrameAnalyzer {
+    /**
+     * @param frame the frame, it is only valid until this method returns
+     */
+    void analyze(@NonNull YuvFrame frame);
+}
@@ -0,0 +1,77 @@
+package com.example.cameralib;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+
+
+/**
+ *      This class is responsible for storing a picture. The JPEG buffer of the frame is handed directly to the CaptureSink, which stores and
+ *      publishes it. The frame is closed after it is stored or dropped. If the picture can't be stored, run() throws a
+ *      {@link ImageWriterPool.WriteFailedException}, so the pool counts the failed write
+ * <p>
+ *      @version 1.7
+ *      @since 1.2
+ * </p>
+ */
+class FrameSaver implements ImageWriterPool.WriteTask {
+    private final CameraFrame mFrame;
+    private final CaptureSink mSink;
+    private final String mName;
+    private final CaptureMetrics mMetrics;
+    /**
+     * the time (System.nanoTime()) the frame was available
+     */
+    private final long mAvailableNanos;
+    /**
+     * where the picture is stored, null until the picture is written completely
+     */
+    private volatile CaptureSink.Output mOutput;
+
+    FrameSaver(@NonNull CameraFrame frame, @NonNull CaptureSink sink, @NonNull String name, @NonNull CaptureMetrics metrics, long availableNanos) {
+        this.mFrame = frame;
+        this.mSink = sink;
+        this.mName = name;
+        this.mMetrics = metrics;
+        this.mAvailableNanos = availableNanos;
+    }
+
+    @Override
+    public void run() {
+        try {
+            this.mOutput = this.mSink.write(this.mFrame.getPlane(0), this.mName, this.mFrame.getTimestamp());
+            this.mMetrics.recordSince(CaptureMetrics.Stage.IMAGE_AVAILABLE_TO_SAVED, this.mAvailableNanos);
+        } catch (IOException e) {
+            Log.e("Camera2", "Can't store the picture " + this.mName, e);
+            throw new ImageWriterPool.WriteFailedException(e);
+        } finally {
+            this.mFrame.close();
+        }
+    }
+
+    @Override
+    public void discard() {
+        this.mFrame.close();
+    }
+
+    /**
+     * @return the file name of the picture
+     */
+    @NonNull
+    String getName() {
+        return this.mName;
+    }
+
+    /**
+     * @return where the picture is stored, null if it isn't written
+     */
+    CaptureSink.Output getOutput() {
+        return this.mOutput;
+    }
+
+    boolean isWritten() {
+        return this.mOutput != null;
+    }
+}
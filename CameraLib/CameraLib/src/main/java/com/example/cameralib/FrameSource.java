@@ -0,0 +1,52 @@
+package com.example.cameralib;
+
+import androidx.annotation.NonNull;
+
+
+/**
+ *      A FrameSource delivers the frames of a stream. The camera implementation is {@link ImageReaderFrameSource}, {@link SyntheticFrameSource}
+ *      generates frames on any JVM, so the saving and analysis pipeline can be driven and load tested without a device
+ * <p>
+ *      A source holds a limited number of frames. If the listener doesn't close its frames, the source runs out of buffers and drops the next frames,
+ *      the same way as an ImageReader does
+ * </p>
+ * <p>
+ *      @version 1.0
+ *      @since 1.4
+ * </p>
+ */
+public interface FrameSource {
+
+    /**
+     *      This method starts the delivery of the frames
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param listener gets the frames, it must close every frame
+     * </p>
+     */
+    void start(@NonNull Listener listener);
+
+    /**
+     *      This method stops the delivery of the frames. Frames, that are already delivered, stay valid until they are closed
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    void stop();
+
+
+    /**
+     *      Listener, that gets the frames of a FrameSource. It is called in the thread of the source, so it should hand the frame to another thread
+     * <p>
+     *      @since 1.4
+     * </p>
+     */
+    interface Listener {
+        /**
+         * @param frame the frame, the listener is responsible for closing it
+         */
+        void onFrame(@NonNull CameraFrame frame);
+    }
+}
@@ -0,0 +1,498 @@
+package com.example.cameralib;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ *      This class makes written pictures durable. A picture is written to a temporary file first, the committer syncs it to the storage and
+ *      renames it to its final name afterwards. So after a crash or a power loss there is either the complete picture or only a temporary file,
+ *      but never a truncated picture under the final name
+ * <p>
+ *      The files of a time window (or a burst) are committed together by one thread: they are synced one after another and renamed afterwards.
+ *      The folder is synced after the renames, before the files are reported as committed. The writing threads never wait for the storage.
+ *      The window is the longest time a written picture can be lost and the latency until it appears under its final name
+ * </p>
+ * <p>
+ *      A folder can only be opened for the sync with java.nio.file (Android 8.0 and newer). On older versions the renames aren't synced, so
+ *      a committed picture can fall back to its temporary file after a power loss. {@link #recoverAbandoned(File)} commits such files again
+ * </p>
+ * <p>
+ *      @version 1.1
+ *      @since 1.4
+ * </p>
+ */
+final class GroupCommitter {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    /**
+     * the prefix of the temporary files. Files starting with a dot are ignored by the MediaScanner
+     */
+    static final String TEMP_PREFIX = ".pending-";
+
+    /**
+     * true ... folders can be opened to sync them (java.nio.file is available)
+     */
+    private static final boolean FOLDER_SYNC_SUPPORTED = isFolderSyncSupported();
+
+    /**
+     * the thread, that commits the files
+     */
+    private final ScheduledThreadPoolExecutor mExecutor;
+
+    /**
+     * is informed about the committed files
+     */
+    private final Listener mListener;
+
+    /**
+     * the files, that are written but not committed yet
+     */
+    private final List<Pending> mPending = new ArrayList<>();
+
+    /**
+     * the commit, that is scheduled for the pending files. null if nothing is scheduled
+     */
+    private ScheduledFuture<?> mScheduledCommit;
+
+    /**
+     * true ... the scheduled commit was requested by flush()
+     */
+    private boolean mFlushRequested;
+
+    /**
+     * the time in milliseconds files are collected, before they are committed
+     */
+    private volatile long mWindowMillis = 200;
+
+    /**
+     * the maximum number of files in one commit, if more files are pending they are committed right away
+     */
+    private volatile int mMaxGroupSize = 16;
+
+    /**
+     * statistics
+     */
+    private final AtomicLong mCommitCount = new AtomicLong();
+    private final AtomicLong mCommittedFileCount = new AtomicLong();
+    private final AtomicLong mFailedFileCount = new AtomicLong();
+    private final LatencyHistogram mCommitLatency = new LatencyHistogram();
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    /**
+     *      The constructor for a GroupCommitter
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param listener is informed about the committed files, it is called in the thread of the committer
+     * </p>
+     */
+    GroupCommitter(@NonNull Listener listener) {
+        this.mListener = listener;
+        this.mExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "CameraGroupCommit");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.mExecutor.setKeepAliveTime(5, TimeUnit.SECONDS);
+        this.mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    /**
+     * @param file the final file of a picture
+     * @return the temporary file, the picture is written to
+     */
+    @NonNull
+    static File tempFile(@NonNull File file) {
+        return new File(file.getParentFile(), TEMP_PREFIX + file.getName());
+    }
+
+    /**
+     *      This method adds a picture, that is written completely to its temporary file. It is committed at the end of the current time window
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param file the final file of the picture, the picture is written to {@link #tempFile(File)}
+     * </p>
+     */
+    void add(@NonNull File file) {
+        synchronized(this) {
+            this.mPending.add(new Pending(file, System.nanoTime()));
+
+            if(this.mPending.size() >= this.mMaxGroupSize) {
+                this.schedule(0);
+            } else if(this.mScheduledCommit == null) {
+                this.schedule(this.mWindowMillis);
+            }
+        }
+    }
+
+    /**
+     *      This method commits the pending files right away (for example at the end of a burst)
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    synchronized void flush() {
+        if(!this.mPending.isEmpty()) {
+            this.mFlushRequested = true;
+            this.schedule(0);
+        }
+    }
+
+    /**
+     *      This method waits until all files, that are added before, are committed
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param timeout the maximum time to wait
+     *      @param unit the unit of the timeout
+     *      @return true ... all files are committed -- false ... the timeout elapsed
+     *      @throws InterruptedException is thrown, if the waiting thread is interrupted
+     * </p>
+     */
+    boolean awaitCommitted(long timeout, TimeUnit unit) throws InterruptedException {
+        this.flush();
+        try {
+            // the executor has one thread, so this task runs after the scheduled commit
+            this.mExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    commit();
+                }
+            }).get(timeout, unit);
+            return true;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    /**
+     *      This method sets how long files are collected
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param windowMillis the time in milliseconds files are collected, before they are committed. This is the longest time a written picture
+     *                          can be lost after a crash
+     *      @param maxGroupSize the maximum number of files in one commit
+     *      @throws IllegalArgumentException is thrown, if the window is negative or the group size smaller than 1
+     * </p>
+     */
+    void setConfig(long windowMillis, int maxGroupSize) throws IllegalArgumentException {
+        if(windowMillis < 0 || maxGroupSize < 1) {
+            throw new IllegalArgumentException("The window must not be negative and a group needs at least one file!");
+        }
+        this.mWindowMillis = windowMillis;
+        this.mMaxGroupSize = maxGroupSize;
+    }
+
+    /**
+     *      This method handles the temporary files of pictures, that were never committed (the app was killed or the power was lost before the
+     *      rename was on the storage). A file, that contains a complete JPEG, was written completely, it is synced and renamed to its final name
+     *      and reported as committed. Incomplete files are deleted. It runs in the thread of the committer
+     * <p>
+     *      @version 1.1
+     * </p>
+     * <p>
+     *      @param folder the folder of the pictures
+     * </p>
+     */
+    void recoverAbandoned(@NonNull final File folder) {
+        final long startMillis = System.currentTimeMillis();
+        this.mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                File[] abandoned = folder.listFiles(new FilenameFilter() {
+                    @Override
+                    public boolean accept(File dir, String name) {
+                        return name.startsWith(TEMP_PREFIX);
+                    }
+                });
+
+                List<File> recovered = new ArrayList<>();
+                for(int i = 0; abandoned != null && i < abandoned.length; i++) {
+                    // newer files may still wait for their commit, the time of a file can be rounded to seconds
+                    if(abandoned[i].lastModified() >= startMillis - 1000) {
+                        continue;
+                    }
+                    File file = new File(folder, abandoned[i].getName().substring(TEMP_PREFIX.length()));
+                    if(!file.exists() && isCompleteJpeg(abandoned[i]) && sync(abandoned[i]) && abandoned[i].renameTo(file)) {
+                        recovered.add(file);
+                    } else {
+                        //noinspection ResultOfMethodCallIgnored
+                        abandoned[i].delete();
+                    }
+                }
+
+                if(!recovered.isEmpty()) {
+                    syncFolder(folder);
+                    mCommittedFileCount.addAndGet(recovered.size());
+                    mListener.onCommitted(recovered, Collections.<File>emptyList(), true);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the number of commits (groups)
+     */
+    long getCommitCount() {
+        return this.mCommitCount.get();
+    }
+
+    /**
+     * @return the number of committed files
+     */
+    long getCommittedFileCount() {
+        return this.mCommittedFileCount.get();
+    }
+
+    /**
+     * @return the number of files, that couldn't be committed
+     */
+    long getFailedFileCount() {
+        return this.mFailedFileCount.get();
+    }
+
+    /**
+     * @return the time from adding a file until it is committed
+     */
+    @NonNull
+    LatencyHistogram.Snapshot getCommitLatency() {
+        return this.mCommitLatency.snapshot();
+    }
+
+    private void schedule(long delayMillis) {
+        if(this.mScheduledCommit != null) {
+            this.mScheduledCommit.cancel(false);
+        }
+        this.mScheduledCommit = this.mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                commit();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     *      This method commits all pending files. First all files are synced, then they are renamed, so the storage can handle the syncs of
+     *      the group back to back. At last the folders are synced, so the renames are on the storage before the files are reported. It runs on
+     *      the thread of the executor
+     * <p>
+     *      @version 1.1
+     * </p>
+     */
+    private void commit() {
+        Pending[] pending;
+        boolean flushed;
+        synchronized(this) {
+            this.mScheduledCommit = null;
+            if(this.mPending.isEmpty()) {
+                return;
+            }
+            pending = this.mPending.toArray(new Pending[0]);
+            flushed = this.mFlushRequested;
+            this.mPending.clear();
+            this.mFlushRequested = false;
+        }
+
+        boolean[] synced = new boolean[pending.length];
+        for(int i = 0; i < pending.length; i++) {
+            synced[i] = sync(tempFile(pending[i].mFile));
+        }
+
+        List<File> committed = new ArrayList<>(pending.length);
+        List<File> failed = new ArrayList<>(0);
+        for(int i = 0; i < pending.length; i++) {
+            File temp = tempFile(pending[i].mFile);
+            if(synced[i] && temp.renameTo(pending[i].mFile)) {
+                committed.add(pending[i].mFile);
+                this.mCommitLatency.record(System.nanoTime() - pending[i].mAddNanos);
+            } else {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+                failed.add(pending[i].mFile);
+                this.mFailedFileCount.incrementAndGet();
+            }
+        }
+
+        LinkedHashSet<File> folders = new LinkedHashSet<>();
+        for(File file : committed) {
+            folders.add(file.getParentFile());
+        }
+        for(File folder : folders) {
+            syncFolder(folder);
+        }
+
+        this.mCommitCount.incrementAndGet();
+        this.mCommittedFileCount.addAndGet(committed.size());
+        this.mListener.onCommitted(committed, failed, flushed);
+    }
+
+    /**
+     *      This method writes the data of a file to the storage. The data of a file is synced through any descriptor of the file
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param file the file
+     *      @return true ... the data is on the storage -- false ... the file couldn't be synced or doesn't exist anymore
+     * </p>
+     */
+    private static boolean sync(File file) {
+        if(!file.isFile()) {
+            return false;       // "rw" would create an empty file
+        }
+        try {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                randomAccessFile.getChannel().force(false);
+                return true;
+            } finally {
+                randomAccessFile.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+
+    /**
+     *      This method writes the entries of a folder (the renames) to the storage. If the folder can't be synced, the files are still complete
+     *      and {@link #recoverAbandoned(File)} commits them again after a power loss
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param folder the folder
+     *      @return true ... the folder is on the storage -- false ... the folder couldn't be synced
+     * </p>
+     */
+    private static boolean syncFolder(File folder) {
+        if(!FOLDER_SYNC_SUPPORTED) {
+            return false;
+        }
+        try {
+            FileChannel channel = FileChannel.open(folder.toPath(), StandardOpenOption.READ);
+            try {
+                channel.force(true);
+                return true;
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private static boolean isFolderSyncSupported() {
+        try {
+            Class.forName("java.nio.file.StandardOpenOption");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     *      This method checks, if a file contains a complete JPEG: it starts with the SOI marker and ends with the EOI marker. A file, whose data
+     *      wasn't on the storage before a power loss, is empty or truncated
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param file the file
+     *      @return true ... the JPEG is complete
+     * </p>
+     */
+    private static boolean isCompleteJpeg(File file) {
+        try {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+            try {
+                long length = randomAccessFile.length();
+                if(length < 4 || randomAccessFile.readUnsignedShort() != 0xFFD8) {
+                    return false;
+                }
+                randomAccessFile.seek(length - 2);
+                return randomAccessFile.readUnsignedShort() == 0xFFD9;
+            } finally {
+                randomAccessFile.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+
+    // *************************************************************** Class Section ***************************************************************
+
+
+    /**
+     *      This class contains a file, that waits for its commit
+     * <p>
+     *      @version 1.0
+     *      @since 1.4
+     * </p>
+     */
+    private static class Pending {
+        private final File mFile;
+        private final long mAddNanos;
+
+        Pending(File file, long addNanos) {
+            this.mFile = file;
+            this.mAddNanos = addNanos;
+        }
+    }
+
+
+    // *************************************************************** Interface Section ***************************************************************
+
+
+    /**
+     *      Listener, that is informed when a group of files is committed. It is called in the thread of the committer
+     * <p>
+     *      @since 1.4
+     * </p>
+     */
+    interface Listener {
+        /**
+         * @param files the committed files under their final names
+         * @param failed the files, that couldn't be committed. Their temporary files are deleted
+         * @param flushed true ... the commit was requested by flush()
+         */
+        void onCommitted(@NonNull List<File> files, @NonNull List<File> failed, boolean flushed);
+    }
+}
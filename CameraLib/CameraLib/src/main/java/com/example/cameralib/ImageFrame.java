@@ -0,0 +1,113 @@
+package com.example.cameralib;
+
+import android.media.Image;
+import android.media.ImageReader;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ *      This class is a CameraFrame of the camera. It wraps an Image of an ImageReader, or a reference counted Image of the zero shutter lag ring
+ * <p>
+ *      @version 1.1
+ *      @since 1.4
+ * </p>
+ */
+final class ImageFrame implements CameraFrame {
+
+    private final Image mImage;
+    /**
+     * the handle of the image in the zero shutter lag ring, null if the image is closed directly
+     */
+    private final ZslRingBuffer.Handle<Image> mHandle;
+    /**
+     * the reader of the image, if it only delivers this image and is closed with the frame. null if the reader is kept
+     */
+    private final ImageReader mReader;
+
+    private ImageFrame(Image image, ZslRingBuffer.Handle<Image> handle, ImageReader reader) {
+        this.mImage = image;
+        this.mHandle = handle;
+        this.mReader = reader;
+    }
+
+    /**
+     * @param image the image, it is closed with the frame
+     * @return the frame of the image
+     */
+    static ImageFrame of(@NonNull Image image) {
+        return new ImageFrame(image, null, null);
+    }
+
+    /**
+     * @param image the image, it is closed with the frame
+     * @param reader the reader of the image, it is closed after the image
+     * @return the frame of the image
+     */
+    static ImageFrame ofSingleImageReader(@NonNull Image image, @NonNull ImageReader reader) {
+        return new ImageFrame(image, null, reader);
+    }
+
+    /**
+     * @param handle the acquired image of the zero shutter lag ring, it is released with the frame
+     * @return the frame of the image
+     */
+    static ImageFrame ofHandle(@NonNull ZslRingBuffer.Handle<Image> handle) {
+        return new ImageFrame(handle.get(), handle, null);
+    }
+
+    @Override
+    public int getFormat() {
+        return this.mImage.getFormat();
+    }
+
+    @Override
+    public int getWidth() {
+        return this.mImage.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return this.mImage.getHeight();
+    }
+
+    @Override
+    public long getTimestamp() {
+        return this.mHandle != null ? this.mHandle.getTimestamp() : this.mImage.getTimestamp();
+    }
+
+    @Override
+    public int getPlaneCount() {
+        return this.mImage.getPlanes().length;
+    }
+
+    @NonNull
+    @Override
+    public ByteBuffer getPlane(int plane) {
+        return this.mImage.getPlanes()[plane].getBuffer();
+    }
+
+    @Override
+    public int getRowStride(int plane) {
+        return this.mImage.getPlanes()[plane].getRowStride();
+    }
+
+    @Override
+    public int getPixelStride(int plane) {
+        return this.mImage.getPlanes()[plane].getPixelStride();
+    }
+
+    @Override
+    public void close() {
+        if(this.mHandle != null) {
+            this.mHandle.release();
+        } else {
+            this.mImage.close();
+        }
+        if(this.mReader != null) {
+            this.mReader.close();
+        }
+    }
+}
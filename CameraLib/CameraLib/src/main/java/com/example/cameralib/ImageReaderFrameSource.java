@@ -0,0 +1,68 @@
+package com.example.cameralib;
+
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Handler;
+
+import androidx.annotation.NonNull;
+
+
+/**
+ *      This class is the FrameSource of the camera. It delivers the images of an ImageReader in the thread of a Handler
+ * <p>
+ *      @version 1.1
+ *      @since 1.4
+ * </p>
+ */
+public class ImageReaderFrameSource implements FrameSource {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    private final ImageReader mImageReader;
+    private final Handler mHandler;
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    /**
+     *      The constructor for an ImageReaderFrameSource
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param imageReader the reader, that is a target of the camera
+     *      @param handler the frames are delivered in the thread of this handler
+     * </p>
+     */
+    public ImageReaderFrameSource(@NonNull ImageReader imageReader, Handler handler) {
+        this.mImageReader = imageReader;
+        this.mHandler = handler;
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    @Override
+    public void start(@NonNull final Listener listener) {
+        this.mImageReader.setOnImageAvailableListener(new ImageReader.OnImageAvailableListener() {
+            @Override
+            public void onImageAvailable(ImageReader reader) {
+                Image image;
+                try {
+                    image = reader.acquireNextImage();
+                } catch (IllegalStateException e) {
+                    return;     // all images are held by pictures, that are still written
+                }
+                if(image != null) {
+                    listener.onFrame(ImageFrame.of(image));
+                }
+            }
+        }, this.mHandler);
+    }
+
+    @Override
+    public void stop() {
+        this.mImageReader.setOnImageAvailableListener(null, null);
+    }
+}
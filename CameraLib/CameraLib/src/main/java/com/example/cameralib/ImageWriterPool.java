@@ -0,0 +1,462 @@
+package com.example.cameralib;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ *      This class writes pictures on its own threads, so a slow storage doesn't block the camera callbacks. The number of waiting pictures is bounded,
+ *      the {@link OverflowPolicy} decides what happens if the queue is full
+ * <p>
+ *      The pool is the writing stage of the camera pipeline, its queue and write times are also reported as {@link PipelineStage}
+ * </p>
+ * <p>
+ *      @version 1.4
+ *      @since 1.4
+ * </p>
+ */
+public class ImageWriterPool {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    /**
+     * the threads, that write the pictures
+     */
+    private final ThreadPoolExecutor mExecutor;
+
+    /**
+     * what happens, if the queue is full
+     */
+    private final OverflowPolicy mOverflowPolicy;
+
+    /**
+     * number of tasks, that are submitted but not written or dropped yet
+     */
+    private final AtomicInteger mPending = new AtomicInteger();
+
+    /**
+     * the callbacks, that run when all submitted tasks are finished. Guarded by the lock of mPending
+     */
+    private final List<Runnable> mIdleCallbacks = new ArrayList<>();
+
+    /**
+     * the free places (threads and queue) for {@link OverflowPolicy#BLOCK}, null for the other policies. A picture waits for a place before it
+     * is submitted, so the executor only rejects pictures after shutdown()
+     */
+    private final Semaphore mSlots;
+
+    /**
+     * statistics of the pool
+     */
+    private final AtomicLong mWrittenCount = new AtomicLong();
+    private final AtomicLong mDroppedCount = new AtomicLong();
+    private final AtomicLong mFailedCount = new AtomicLong();
+    private final AtomicLong mTotalWriteNanos = new AtomicLong();
+    private final AtomicLong mMaxWriteNanos = new AtomicLong();
+    private final AtomicInteger mMaxQueueDepth = new AtomicInteger();
+
+    /**
+     * the statistics of the pool as stage of the camera pipeline
+     */
+    private final PipelineStage mStage;
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    /**
+     *      The constructor for an ImageWriterPool
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param threads the number of threads, that write pictures at the same time
+     *      @param queueDepth the number of pictures, that can wait for a free thread
+     *      @param overflowPolicy what happens, if a picture is submitted while the queue is full
+     *      @throws IllegalArgumentException is thrown if a passed argument is not valid
+     * </p>
+     */
+    ImageWriterPool(int threads, int queueDepth, OverflowPolicy overflowPolicy) throws IllegalArgumentException {
+        if(threads < 1 || queueDepth < 1 || overflowPolicy == null) {
+            throw new IllegalArgumentException("The pool needs at least one thread, a queue depth of at least one and an overflow policy!");
+        }
+
+        this.mOverflowPolicy = overflowPolicy;
+        this.mSlots = overflowPolicy == OverflowPolicy.BLOCK ? new Semaphore(threads + queueDepth) : null;
+        this.mStage = new PipelineStage("CameraImageWriter", queueDepth);
+        this.mExecutor = new ThreadPoolExecutor(threads, threads, 5, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueDepth),
+                new ThreadFactory() {
+                    private final AtomicInteger mThreadNumber = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "CameraImageWriter-" + mThreadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }, new OverflowHandler());
+        this.mExecutor.allowCoreThreadTimeOut(true);    // idle pools don't keep threads alive
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    /**
+     *      This method submits a picture for writing. Depending on the overflow policy it blocks, drops the oldest waiting picture or drops this picture, if the queue is full
+     * <p>
+     *      @version 1.1
+     * </p>
+     * <p>
+     *      @param task the task that writes the picture
+     *      @return true ... the picture is queued -- false ... the picture was dropped (discard() of the task is already called)
+     * </p>
+     */
+    boolean submit(WriteTask task) {
+        Job job = new Job(task);
+        this.mPending.incrementAndGet();
+        this.mStage.onQueued();
+
+        if(this.mSlots != null) {
+            try {
+                this.mSlots.acquire();      // the camera waits, until a picture is written
+                job.mHoldsSlot = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                this.discard(job);
+                return false;
+            }
+        }
+        this.mExecutor.execute(job);
+
+        int depth = this.mExecutor.getQueue().size();
+        int max;
+        while(depth > (max = this.mMaxQueueDepth.get()) && !this.mMaxQueueDepth.compareAndSet(max, depth)) {
+            // retry, another thread changed the maximum
+        }
+
+        return !job.mDiscarded;
+    }
+
+    /**
+     *      This method waits until all submitted pictures are written or dropped
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param timeout the maximum time to wait
+     *      @param unit the unit of the timeout
+     *      @return true ... all pictures are written -- false ... the timeout elapsed
+     *      @throws InterruptedException is thrown, if the waiting thread is interrupted
+     * </p>
+     */
+    boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized(this.mPending) {
+            while(this.mPending.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if(remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this.mPending, remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     *      This method runs a callback, when all submitted pictures are written or dropped. It doesn't wait, the callback runs in the thread,
+     *      that finishes the last picture, or right away if the pool is idle
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param onIdle the callback
+     * </p>
+     */
+    void whenIdle(Runnable onIdle) {
+        synchronized(this.mPending) {
+            if(this.mPending.get() > 0) {
+                this.mIdleCallbacks.add(onIdle);
+                return;
+            }
+        }
+        onIdle.run();
+    }
+
+    /**
+     *      This method stops the pool. Pictures, that are already queued are still written, new pictures are dropped
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    void shutdown() {
+        this.mExecutor.shutdown();
+    }
+
+    /**
+     * @return the number of pictures, that are waiting for a free thread
+     */
+    public int getQueueDepth() {
+        return this.mExecutor.getQueue().size();
+    }
+
+    /**
+     * @return the highest number of waiting pictures since the pool was created
+     */
+    public int getMaxQueueDepth() {
+        return this.mMaxQueueDepth.get();
+    }
+
+    /**
+     * @return the number of pictures, that can wait for a free thread
+     */
+    public int getQueueCapacity() {
+        return this.mExecutor.getQueue().size() + this.mExecutor.getQueue().remainingCapacity();
+    }
+
+    /**
+     * @return the queue depth and the write times of the pool as stage of the camera pipeline
+     */
+    public PipelineStage getStage() {
+        return this.mStage;
+    }
+
+    /**
+     * @return the number of threads, that write pictures at the same time
+     */
+    public int getThreadCount() {
+        return this.mExecutor.getMaximumPoolSize();
+    }
+
+    /**
+     * @return the overflow policy of the pool
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return this.mOverflowPolicy;
+    }
+
+    /**
+     * @return the number of written pictures
+     */
+    public long getWrittenCount() {
+        return this.mWrittenCount.get();
+    }
+
+    /**
+     * @return the number of pictures, that were dropped because the queue was full
+     */
+    public long getDroppedCount() {
+        return this.mDroppedCount.get();
+    }
+
+    /**
+     * @return the number of pictures, whose write threw an exception. They aren't counted as written
+     */
+    public long getFailedCount() {
+        return this.mFailedCount.get();
+    }
+
+    /**
+     * @return the average time in milliseconds, that writing a picture takes
+     */
+    public double getAverageWriteMillis() {
+        long count = this.mWrittenCount.get();
+        return count > 0 ? this.mTotalWriteNanos.get() / 1e6 / count : 0;
+    }
+
+    /**
+     * @return the longest time in milliseconds, that writing a picture took
+     */
+    public double getMaxWriteMillis() {
+        return this.mMaxWriteNanos.get() / 1e6;
+    }
+
+    private void onJobFinished(Job job) {
+        if(job.mHoldsSlot) {
+            job.mHoldsSlot = false;
+            this.mSlots.release();
+        }
+        if(this.mPending.decrementAndGet() == 0) {
+            List<Runnable> callbacks;
+            synchronized(this.mPending) {
+                this.mPending.notifyAll();
+                if(this.mPending.get() > 0 || this.mIdleCallbacks.isEmpty()) {
+                    return;     // another picture was submitted in the meantime
+                }
+                callbacks = new ArrayList<>(this.mIdleCallbacks);
+                this.mIdleCallbacks.clear();
+            }
+            for(Runnable callback : callbacks) {
+                callback.run();
+            }
+        }
+    }
+
+    private void discard(Job job) {
+        job.mDiscarded = true;
+        this.mDroppedCount.incrementAndGet();
+        this.mStage.onRejected();
+        try {
+            job.mTask.discard();
+        } finally {
+            this.onJobFinished(job);
+        }
+    }
+
+
+    // *************************************************************** Class Section ***************************************************************
+
+
+    /**
+     *      This class wraps a submitted task and measures the time of the write. A task, that throws, is counted as failed and doesn't stop the thread
+     * <p>
+     *      @version 1.1
+     *      @since 1.4
+     * </p>
+     */
+    private class Job implements Runnable {
+        private final WriteTask mTask;
+        private volatile boolean mDiscarded;
+
+        /**
+         * true ... the job has a place of {@link #mSlots}, it is given back when the job is finished
+         */
+        private volatile boolean mHoldsSlot;
+
+        Job(WriteTask task) {
+            this.mTask = task;
+        }
+
+        @Override
+        public void run() {
+            mStage.onDequeued();
+            long start = System.nanoTime();
+            boolean written = false;
+            try {
+                this.mTask.run();
+                written = true;
+            } catch (WriteFailedException e) {
+                // the task already reported, why the picture couldn't be written
+            } catch (RuntimeException e) {
+                Log.e("Camera2", "Writing a picture failed", e);
+            } finally {
+                long duration = System.nanoTime() - start;
+                if(written) {
+                    mTotalWriteNanos.addAndGet(duration);
+                    mWrittenCount.incrementAndGet();
+
+                    long max;
+                    while(duration > (max = mMaxWriteNanos.get()) && !mMaxWriteNanos.compareAndSet(max, duration)) {
+                        // retry, another thread changed the maximum
+                    }
+                } else {
+                    mFailedCount.incrementAndGet();
+                }
+
+                mStage.onProcessed(duration);
+                onJobFinished(this);
+            }
+        }
+    }
+
+    /**
+     *      This class applies the overflow policy, if the queue is full. With {@link OverflowPolicy#BLOCK} the queue is never full, because a
+     *      picture waits for a place before it is submitted, so only pictures, that are submitted after shutdown(), are rejected
+     * <p>
+     *      @version 1.1
+     *      @since 1.4
+     * </p>
+     */
+    private class OverflowHandler implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            Job job = (Job) runnable;
+            if(executor.isShutdown()) {
+                discard(job);
+                return;
+            }
+
+            if(mOverflowPolicy == OverflowPolicy.DROP_OLDEST) {
+                // the queue is full, so the threads are busy and one of them takes the job from the queue
+                Runnable oldest;
+                while(!executor.getQueue().offer(job)) {
+                    if((oldest = executor.getQueue().poll()) != null) {
+                        discard((Job) oldest);
+                    }
+                }
+                if(executor.isShutdown() && executor.getQueue().remove(job)) {
+                    discard(job);       // the pool was stopped meanwhile, maybe no thread takes the job anymore
+                }
+            } else {
+                discard(job);
+            }
+        }
+    }
+
+
+    /**
+     *      This exception is thrown by a {@link WriteTask}, whose picture couldn't be written. The task reports the cause itself, the pool only counts
+     *      the picture as failed
+     * <p>
+     *      @since 1.4
+     * </p>
+     */
+    static class WriteFailedException extends RuntimeException {
+        WriteFailedException(Throwable cause) {
+            super(cause);
+        }
+    }
+
+
+    // *************************************************************** Interface Section ***************************************************************
+
+
+    /**
+     *      A task, that writes one picture. run() throws a RuntimeException, if the picture couldn't be written
+     * <p>
+     *      @since 1.4
+     * </p>
+     */
+    interface WriteTask extends Runnable {
+        /**
+         * is called instead of run(), if the picture is dropped. It must release the picture
+         */
+        void discard();
+    }
+
+
+    // *************************************************************** Enum Section ***************************************************************
+
+
+    /**
+     *      This enum contains what happens, if a picture is submitted while the queue is full
+     * <p>
+     *      @since 1.4
+     * </p>
+     */
+    public enum OverflowPolicy {
+        /**
+         * the camera waits until there is space in the queue
+         */
+        BLOCK,
+        /**
+         * the oldest waiting picture is dropped
+         */
+        DROP_OLDEST,
+        /**
+         * the new picture is dropped (the capture fails)
+         */
+        FAIL
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.cameralib;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ *      This scorer measures the sharpness of a JPEG picture. The JPEG is decoded downsampled (the decoder skips most of the work for a power of two),
+ *      so the picture is about {@value #TARGET_WIDTH} pixels wide, and scored with a {@link SharpnessScorer}
+ * <p>
+ *      Every thread has its own buffers (JPEG bytes, bitmap, pixels, luma), they are reused for every picture of the thread
+ * </p>
+ * <p>
+ *      @version 1.0
+ *      @since 1.4
+ * </p>
+ */
+final class JpegSharpnessScorer implements BestShotSelector.Scorer {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    /**
+     * the minimum width of the decoded picture in pixels
+     */
+    private static final int TARGET_WIDTH = 480;
+
+    private final ThreadLocal<Buffers> mBuffers = new ThreadLocal<Buffers>() {
+        @Override
+        protected Buffers initialValue() {
+            return new Buffers();
+        }
+    };
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    @Override
+    public double score(@NonNull CameraFrame frame) {
+        Buffers buffers = this.mBuffers.get();
+
+        // the buffer is also read by the FrameSaver later, so its position isn't changed
+        ByteBuffer jpeg = frame.getPlane(0).duplicate();
+        int length = jpeg.remaining();
+        if(buffers.mJpeg.length < length) {
+            buffers.mJpeg = new byte[length];
+        }
+        jpeg.get(buffers.mJpeg, 0, length);
+
+        BitmapFactory.Options options = buffers.mOptions;
+        options.inSampleSize = sampleSize(frame.getWidth(), TARGET_WIDTH);
+        options.inMutable = true;
+        options.inBitmap = buffers.mBitmap;
+
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeByteArray(buffers.mJpeg, 0, length, options);
+        } catch (IllegalArgumentException e) {
+            options.inBitmap = null;    // the reused bitmap doesn't fit
+            bitmap = BitmapFactory.decodeByteArray(buffers.mJpeg, 0, length, options);
+        }
+        if(bitmap == null) {
+            return -1;
+        }
+        buffers.mBitmap = bitmap;
+
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        if(buffers.mPixels.length < width * height) {
+            buffers.mPixels = new int[width * height];
+        }
+        bitmap.getPixels(buffers.mPixels, 0, width, 0, 0, width, height);
+        return buffers.mScorer.laplacianVariance(buffers.mPixels, width, height);
+    }
+
+    /**
+     *      This method calculates the largest power of two, that keeps the picture at least as wide as the target
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param width the width of the picture in pixels
+     *      @param targetWidth the minimum width of the decoded picture
+     *      @return the sample size for BitmapFactory
+     * </p>
+     */
+    static int sampleSize(int width, int targetWidth) {
+        int sampleSize = 1;
+        while(width / (sampleSize * 2) >= targetWidth && sampleSize < 8) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+
+    // *************************************************************** Class Section ***************************************************************
+
+
+    /**
+     *      This class contains the buffers of one thread
+     * <p>
+     *      @version 1.0
+     *      @since 1.4
+     * </p>
+     */
+    private static class Buffers {
+        private final BitmapFactory.Options mOptions = new BitmapFactory.Options();
+        private final SharpnessScorer mScorer = new SharpnessScorer();
+        private byte[] mJpeg = new byte[0];
+        private int[] mPixels = new int[0];
+        private Bitmap mBitmap;
+    }
+}
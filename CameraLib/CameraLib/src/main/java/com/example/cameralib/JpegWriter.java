@@ -0,0 +1,59 @@
+package com.example.cameralib;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ *      This class writes encoded pictures to files. The buffer is written with a {@link FileChannel}, so a direct buffer (like the plane of an Image)
+ *      goes straight to the file without being copied into a byte array first
+ * <p>
+ *      @version 1.0
+ *      @since 1.4
+ * </p>
+ */
+final class JpegWriter {
+
+    private JpegWriter() {
+    }
+
+    /**
+     *      This method writes the remaining bytes of a buffer to a file. An existing file is overwritten
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param buffer the buffer with the picture, its position is moved to its limit
+     *      @param file the file, the picture is written to
+     *      @param preallocate true ... the file is set to its final length before writing. This only sets the size of the file, the file system
+     *                         doesn't reserve any space (the file is sparse until it is written), so the write can still fail on a full storage
+     *      @return the number of written bytes
+     *      @throws IOException is thrown, if the file can't be written
+     * </p>
+     */
+    static long write(ByteBuffer buffer, File file, boolean preallocate) throws IOException {
+        int length = buffer.remaining();
+
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = output.getChannel();
+            if(preallocate) {
+                output.setLength(length);
+            }
+
+            long written = 0;
+            while(buffer.hasRemaining()) {
+                written += channel.write(buffer, written);
+            }
+
+            // an existing file could be longer than the new picture
+            channel.truncate(length);
+            return written;
+        } finally {
+            output.close();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.cameralib;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ *      This class counts latencies in logarithmic buckets (every power of two is split into 8 buckets, so the error of a percentile is at most 12.5 %).
+ *      Recording a value doesn't allocate and doesn't lock, so it can be used in the camera callbacks
+ * <p>
+ *      @version 1.0
+ *      @since 1.4
+ * </p>
+ */
+public final class LatencyHistogram {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    /**
+     * every power of two is split into 2^SUB_BUCKET_BITS buckets
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * number of buckets for all positive long values
+     */
+    private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    /**
+     *      This method records a latency
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param nanos the latency in nanoseconds, negative values are recorded as 0
+     * </p>
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+
+        this.mCounts.incrementAndGet(bucketIndex(value));
+        this.mSum.addAndGet(value);
+
+        long max;
+        while(value > (max = this.mMax.get()) && !this.mMax.compareAndSet(max, value)) {
+            // retry, another thread changed the maximum
+        }
+    }
+
+    /**
+     *      This method deletes all recorded values
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    public void reset() {
+        for(int i = 0; i < BUCKETS; i++) {
+            this.mCounts.set(i, 0);
+        }
+        this.mSum.set(0);
+        this.mMax.set(0);
+    }
+
+    /**
+     *      This method copies the recorded values. Values, that are recorded while copying, may be missing in the snapshot
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @return the snapshot
+     * </p>
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.mCounts.get(i);
+            total += counts[i];
+        }
+        return new Snapshot(counts, total, this.mSum.get(), this.mMax.get());
+    }
+
+    /**
+     *      This method returns the bucket of a value. Values smaller than SUB_BUCKETS have their own bucket, bigger values share a bucket
+     *      with the values that have the same highest SUB_BUCKET_BITS + 1 bits
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param value the value, it must not be negative
+     *      @return the index of the bucket
+     * </p>
+     */
+    static int bucketIndex(long value) {
+        if(value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the smallest value of a bucket
+     */
+    static long bucketLowerBound(int index) {
+        if(index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * @return the biggest value of a bucket
+     */
+    static long bucketUpperBound(int index) {
+        if(index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return bucketLowerBound(index) + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+
+    // *************************************************************** Class Section ***************************************************************
+
+
+    /**
+     *      This class contains the values of a histogram at one point in time
+     * <p>
+     *      @version 1.0
+     *      @since 1.4
+     * </p>
+     */
+    public static final class Snapshot {
+        private final long[] mCounts;
+        private final long mCount;
+        private final long mSum;
+        private final long mMax;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.mCounts = counts;
+            this.mCount = count;
+            this.mSum = sum;
+            this.mMax = max;
+        }
+
+        /**
+         * @return the number of recorded values
+         */
+        public long getCount() {
+            return this.mCount;
+        }
+
+        /**
+         * @return the average of the recorded values in nanoseconds, 0 if there are no values
+         */
+        public long getMeanNanos() {
+            return this.mCount > 0 ? this.mSum / this.mCount : 0;
+        }
+
+        /**
+         * @return the biggest recorded value in nanoseconds
+         */
+        public long getMaxNanos() {
+            return this.mMax;
+        }
+
+        /**
+         *      This method returns a percentile of the recorded values. It is the middle of the bucket, that contains the percentile
+         * <p>
+         *      @version 1.0
+         * </p>
+         * <p>
+         *      @param percentile the percentile between 0 and 100 (for example 50 or 99)
+         *      @return the value of the percentile in nanoseconds, 0 if there are no values
+         * </p>
+         */
+        public long getPercentileNanos(double percentile) {
+            if(this.mCount == 0) {
+                return 0;
+            }
+
+            long rank = (long) Math.ceil(Math.max(0, Math.min(100, percentile)) / 100 * this.mCount);
+            rank = Math.max(1, rank);
+
+            long seen = 0;
+            for(int i = 0; i < this.mCounts.length; i++) {
+                seen += this.mCounts[i];
+                if(seen >= rank) {
+                    long middle = (bucketLowerBound(i) + bucketUpperBound(i)) / 2;
+                    return Math.min(middle, this.mMax);
+                }
+            }
+            return this.mMax;
+        }
+    }
+}
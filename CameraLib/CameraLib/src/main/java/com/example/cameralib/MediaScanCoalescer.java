@@ -0,0 +1,389 @@
+package com.example.cameralib;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.media.MediaScannerConnection;
+import android.net.Uri;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ *      This class tells the system about new pictures, after they are written. The paths of a burst or a time window are collected and
+ *      published with a single call, so the MediaScanner isn't started for every picture. Deleted pictures are removed from the MediaStore the same way
+ * <p>
+ *      @version 1.1
+ *      @since 1.4
+ * </p>
+ */
+public class MediaScanCoalescer {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    /**
+     * the maximum number of paths in one call, if more paths are collected they are published right away
+     */
+    private static final int MAX_BATCH_SIZE = 64;
+
+    /**
+     * the application context
+     */
+    private final Context mContext;
+
+    /**
+     * the thread, that publishes the collected paths
+     */
+    private final ScheduledThreadPoolExecutor mExecutor;
+
+    /**
+     * the collected paths and their mime types
+     */
+    private final List<String> mPaths = new ArrayList<>();
+    private final List<String> mMimeTypes = new ArrayList<>();
+
+    /**
+     * the times (System.nanoTime()) the collected paths were added, the index is the same as in mPaths
+     */
+    private long[] mAddNanos = new long[MAX_BATCH_SIZE];
+
+    /**
+     * the latency from adding a file until it is published is recorded here
+     */
+    private final CaptureMetrics mMetrics;
+
+    /**
+     * the flush, that is scheduled for the collected paths. null if nothing is scheduled
+     */
+    private ScheduledFuture<?> mScheduledFlush;
+
+    /**
+     * how the pictures are published
+     */
+    private volatile Mode mMode = Mode.MEDIA_SCANNER;
+
+    /**
+     * the time in milliseconds paths are collected, before they are published
+     */
+    private volatile long mWindowMillis = 500;
+
+    /**
+     * statistics
+     */
+    private final AtomicLong mPublishCallCount = new AtomicLong();
+    private final AtomicLong mPublishedFileCount = new AtomicLong();
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    /**
+     *      The constructor for a MediaScanCoalescer
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param context any context, the application context is used
+     *      @param metrics the metrics, the scan latency is recorded in
+     * </p>
+     */
+    MediaScanCoalescer(Context context, CaptureMetrics metrics) {
+        this.mContext = context.getApplicationContext();
+        this.mMetrics = metrics;
+        this.mExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "CameraMediaScan");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.mExecutor.setKeepAliveTime(5, TimeUnit.SECONDS);
+        this.mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    /**
+     *      This method adds a written file. It is published at the end of the current time window
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param file the written file
+     *      @param mimeType the mime type of the file
+     * </p>
+     */
+    void add(File file, String mimeType) {
+        if(this.mMode == Mode.NONE) {
+            return;
+        }
+
+        synchronized(this) {
+            if(this.mPaths.size() == this.mAddNanos.length) {
+                this.mAddNanos = Arrays.copyOf(this.mAddNanos, this.mAddNanos.length * 2);
+            }
+            this.mAddNanos[this.mPaths.size()] = System.nanoTime();
+            this.mPaths.add(file.getAbsolutePath());
+            this.mMimeTypes.add(mimeType);
+
+            if(this.mPaths.size() >= MAX_BATCH_SIZE) {
+                this.schedule(0);
+            } else if(this.mScheduledFlush == null) {
+                this.schedule(this.mWindowMillis);
+            }
+        }
+    }
+
+    /**
+     *      This method publishes the collected files right away (for example at the end of a burst)
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    synchronized void flush() {
+        if(!this.mPaths.isEmpty()) {
+            this.schedule(0);
+        }
+    }
+
+    /**
+     *      This method removes deleted files from the MediaStore, so the gallery doesn't show them anymore. Files, that aren't published yet, are
+     *      only dropped from the collected paths. It runs on the thread of the coalescer
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param files the deleted files
+     * </p>
+     */
+    void remove(@NonNull List<File> files) {
+        if(this.mMode == Mode.NONE || files.isEmpty()) {
+            return;
+        }
+
+        final HashSet<String> paths = new HashSet<>();
+        for(File file : files) {
+            paths.add(file.getAbsolutePath());
+        }
+        this.mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized(MediaScanCoalescer.this) {
+                    for(int i = mPaths.size() - 1; i >= 0; i--) {
+                        if(paths.remove(mPaths.get(i))) {
+                            mPaths.remove(i);
+                            mMimeTypes.remove(i);
+                            System.arraycopy(mAddNanos, i + 1, mAddNanos, i, mPaths.size() - i);
+                        }
+                    }
+                }
+                if(!paths.isEmpty()) {
+                    deleteFromMediaStore(paths.toArray(new String[0]));
+                }
+            }
+        });
+    }
+
+    /**
+     *      This method sets how the files are published and how long they are collected
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param mode how the files are published
+     *      @param windowMillis the time in milliseconds files are collected, before they are published
+     * </p>
+     */
+    void setConfig(Mode mode, long windowMillis) {
+        this.mMode = mode;
+        this.mWindowMillis = Math.max(0, windowMillis);
+    }
+
+    /**
+     * @return the number of calls to the MediaScanner / MediaStore
+     */
+    public long getPublishCallCount() {
+        return this.mPublishCallCount.get();
+    }
+
+    /**
+     * @return the number of files, that are published
+     */
+    public long getPublishedFileCount() {
+        return this.mPublishedFileCount.get();
+    }
+
+    private void schedule(long delayMillis) {
+        if(this.mScheduledFlush != null) {
+            this.mScheduledFlush.cancel(false);
+        }
+        this.mScheduledFlush = this.mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                publish();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     *      This method publishes all collected files with a single call. It runs on the thread of the executor
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    private void publish() {
+        String[] paths;
+        String[] mimeTypes;
+        long[] addNanos;
+        synchronized(this) {
+            this.mScheduledFlush = null;
+            if(this.mPaths.isEmpty()) {
+                return;
+            }
+            paths = this.mPaths.toArray(new String[0]);
+            mimeTypes = this.mMimeTypes.toArray(new String[0]);
+            addNanos = Arrays.copyOf(this.mAddNanos, paths.length);
+            this.mPaths.clear();
+            this.mMimeTypes.clear();
+        }
+
+        this.mPublishCallCount.incrementAndGet();
+        this.mPublishedFileCount.addAndGet(paths.length);
+
+        if(this.mMode == Mode.MEDIA_STORE) {
+            this.insertIntoMediaStore(paths, mimeTypes, addNanos);
+        } else {
+            this.scanFiles(paths, mimeTypes, addNanos);
+        }
+    }
+
+    /**
+     *      This method lets the MediaScanner read the files. The scan latency of every file is recorded, when the MediaScanner is finished with it
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param paths the paths of the files
+     *      @param mimeTypes the mime types of the files
+     *      @param addNanos the times the files were added
+     * </p>
+     */
+    private void scanFiles(final String[] paths, String[] mimeTypes, final long[] addNanos) {
+        MediaScannerConnection.scanFile(this.mContext, paths, mimeTypes, new MediaScannerConnection.OnScanCompletedListener() {
+            @Override
+            public void onScanCompleted(String path, Uri uri) {
+                for(int i = 0; i < paths.length; i++) {
+                    if(paths[i].equals(path)) {
+                        mMetrics.recordSince(CaptureMetrics.Stage.SAVED_TO_SCANNED, addNanos[i]);
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     *      This method inserts the files directly into the MediaStore, the MediaScanner doesn't have to read them
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param paths the paths of the files
+     *      @param mimeTypes the mime types of the files
+     *      @param addNanos the times the files were added
+     * </p>
+     */
+    @SuppressWarnings("deprecation")
+    private void insertIntoMediaStore(String[] paths, String[] mimeTypes, long[] addNanos) {
+        ContentValues[] values = new ContentValues[paths.length];
+        for(int i = 0; i < paths.length; i++) {
+            File file = new File(paths[i]);
+            values[i] = new ContentValues();
+            values[i].put(MediaStore.Images.Media.DATA, paths[i]);
+            values[i].put(MediaStore.Images.Media.DISPLAY_NAME, file.getName());
+            values[i].put(MediaStore.Images.Media.MIME_TYPE, mimeTypes[i]);
+            values[i].put(MediaStore.Images.Media.SIZE, file.length());
+            values[i].put(MediaStore.Images.Media.DATE_TAKEN, file.lastModified());
+        }
+
+        try {
+            this.mContext.getContentResolver().bulkInsert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
+            for(long added : addNanos) {
+                this.mMetrics.recordSince(CaptureMetrics.Stage.SAVED_TO_SCANNED, added);
+            }
+        } catch (RuntimeException e) {
+            // the MediaStore rejects the insert (for example with scoped storage), so the MediaScanner is used
+            Log.w("Camera2", "MediaStore insert failed, falling back to the MediaScanner", e);
+            this.scanFiles(paths, mimeTypes, addNanos);
+        }
+    }
+
+
+    /**
+     *      This method deletes the rows of deleted files from the MediaStore, a call deletes up to {@value #MAX_BATCH_SIZE} files. If the MediaStore
+     *      rejects the delete, the MediaScanner scans the paths, it removes the rows of missing files
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param paths the paths of the deleted files
+     * </p>
+     */
+    @SuppressWarnings("deprecation")
+    private void deleteFromMediaStore(String[] paths) {
+        for(int start = 0; start < paths.length; start += MAX_BATCH_SIZE) {
+            String[] batch = Arrays.copyOfRange(paths, start, Math.min(paths.length, start + MAX_BATCH_SIZE));
+            StringBuilder selection = new StringBuilder(MediaStore.Images.Media.DATA).append(" IN (");
+            for(int i = 0; i < batch.length; i++) {
+                selection.append(i == 0 ? "?" : ",?");
+            }
+            selection.append(')');
+
+            try {
+                this.mContext.getContentResolver().delete(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, selection.toString(), batch);
+            } catch (RuntimeException e) {
+                Log.w("Camera2", "MediaStore delete failed, falling back to the MediaScanner", e);
+                MediaScannerConnection.scanFile(this.mContext, batch, null, null);
+            }
+        }
+    }
+
+
+    // *************************************************************** Enum Section ***************************************************************
+
+
+    /**
+     *      This enum contains how new pictures are published to the system
+     * <p>
+     *      @since 1.4
+     * </p>
+     */
+    public enum Mode {
+        /**
+         * the MediaScanner reads the files
+         */
+        MEDIA_SCANNER,
+        /**
+         * the files are inserted directly into the MediaStore
+         */
+        MEDIA_STORE,
+        /**
+         * the files are not published
+         */
+        NONE
+    }
+}
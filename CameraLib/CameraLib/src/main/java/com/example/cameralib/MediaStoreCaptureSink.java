@@ -0,0 +1,224 @@
+package com.example.cameralib;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ *      This sink writes the pictures through the MediaStore, so no storage permission is needed with scoped storage (Android 10+). Every picture
+ *      is inserted as pending entry and written via an OutputStream of the ContentResolver. The pending flags of the written pictures are cleared
+ *      in batches, so the gallery is updated with a single call for a burst or a time window
+ * <p>
+ *      Before Android 10 there are no pending entries, the pictures are visible as soon as they are inserted
+ * </p>
+ * <p>
+ *      @version 1.0
+ *      @since 1.4
+ * </p>
+ */
+public class MediaStoreCaptureSink implements CaptureSink {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    /**
+     * the maximum number of pictures in one batch, if more pictures are collected they are published right away
+     */
+    private static final int MAX_BATCH_SIZE = 64;
+
+    private static final String MIME_TYPE_JPEG = "image/jpeg";
+
+    private final ContentResolver mContentResolver;
+
+    /**
+     * the folder of the pictures relative to the root of the storage (Android 10+)
+     */
+    private final String mRelativePath;
+
+    /**
+     * the thread, that publishes the collected pictures
+     */
+    private final ScheduledThreadPoolExecutor mExecutor;
+
+    /**
+     * the written pictures, that are still pending
+     */
+    private final ArrayList<Uri> mPending = new ArrayList<>();
+
+    /**
+     * the flush, that is scheduled for the pending pictures. null if nothing is scheduled
+     */
+    private ScheduledFuture<?> mScheduledFlush;
+
+    /**
+     * the time in milliseconds pictures are collected, before they are published
+     */
+    private volatile long mWindowMillis = 500;
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    /**
+     *      The constructor for a MediaStoreCaptureSink, that stores the pictures in DCIM/SickCameraApplication
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param context any context, the application context is used
+     * </p>
+     */
+    public MediaStoreCaptureSink(@NonNull Context context) {
+        this(context, "DCIM/SickCameraApplication");
+    }
+
+    /**
+     *      The constructor for a MediaStoreCaptureSink
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param context any context, the application context is used
+     *      @param relativePath the folder of the pictures relative to the root of the storage (for example "Pictures/MyApp"), only used on Android 10+
+     * </p>
+     */
+    public MediaStoreCaptureSink(@NonNull Context context, @NonNull String relativePath) {
+        this.mContentResolver = context.getApplicationContext().getContentResolver();
+        this.mRelativePath = relativePath;
+        this.mExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "CameraMediaStore");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.mExecutor.setKeepAliveTime(5, TimeUnit.SECONDS);
+        this.mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    @NonNull
+    @Override
+    public Output write(@NonNull ByteBuffer jpeg, @NonNull String name, long timestamp) throws IOException {
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.Images.Media.DISPLAY_NAME, name);
+        values.put(MediaStore.Images.Media.MIME_TYPE, MIME_TYPE_JPEG);
+        values.put(MediaStore.Images.Media.DATE_TAKEN, System.currentTimeMillis());
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            values.put(MediaStore.Images.Media.RELATIVE_PATH, this.mRelativePath);
+            values.put(MediaStore.Images.Media.IS_PENDING, 1);         // the gallery doesn't show the picture, until it is written
+        }
+
+        Uri uri = this.mContentResolver.insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
+        if(uri == null) {
+            throw new IOException("The MediaStore rejected the picture " + name);
+        }
+
+        try(OutputStream output = this.mContentResolver.openOutputStream(uri)) {
+            if(output == null) {
+                throw new IOException("The MediaStore has no stream for " + uri);
+            }
+            WritableByteChannel channel = Channels.newChannel(output);
+            while(jpeg.hasRemaining()) {
+                channel.write(jpeg);
+            }
+        } catch (IOException | RuntimeException e) {
+            this.mContentResolver.delete(uri, null, null);      // don't leave an empty entry in the gallery
+            throw e;
+        }
+
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            this.addPending(uri);
+        }
+        return Output.ofUri(uri);
+    }
+
+    @Override
+    public synchronized void flush() {
+        if(!this.mPending.isEmpty()) {
+            this.schedule(0);
+        }
+    }
+
+    /**
+     *      This method sets how long written pictures are collected, before they are published
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param windowMillis the time in milliseconds, 0 publishes every picture right away
+     * </p>
+     */
+    public void setWindowMillis(long windowMillis) {
+        this.mWindowMillis = Math.max(0, windowMillis);
+    }
+
+    private synchronized void addPending(Uri uri) {
+        this.mPending.add(uri);
+        if(this.mPending.size() >= MAX_BATCH_SIZE) {
+            this.schedule(0);
+        } else if(this.mScheduledFlush == null) {
+            this.schedule(this.mWindowMillis);
+        }
+    }
+
+    private void schedule(long delayMillis) {
+        if(this.mScheduledFlush != null) {
+            this.mScheduledFlush.cancel(false);
+        }
+        this.mScheduledFlush = this.mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                publish();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     *      This method clears the pending flag of all collected pictures with a single batch. It runs on the thread of the executor
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    private void publish() {
+        ArrayList<ContentProviderOperation> operations;
+        synchronized(this) {
+            this.mScheduledFlush = null;
+            if(this.mPending.isEmpty()) {
+                return;
+            }
+            operations = new ArrayList<>(this.mPending.size());
+            for(Uri uri : this.mPending) {
+                operations.add(ContentProviderOperation.newUpdate(uri).withValue(MediaStore.Images.Media.IS_PENDING, 0).build());
+            }
+            this.mPending.clear();
+        }
+
+        try {
+            this.mContentResolver.applyBatch(MediaStore.AUTHORITY, operations);
+        } catch (Exception e) {
+            Log.e("Camera2", "Can't publish " + operations.size() + " pictures", e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.cameralib;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ *      This sink keeps the pictures in memory. It is meant for pictures, that are uploaded right away and never have to appear in the gallery
+ * <p>
+ *      Every picture is copied into its own buffer, because the buffer of the camera is reused after the picture is stored. The copy is handed to the
+ *      listener and is also part of the {@link PictureResult}
+ * </p>
+ * <p>
+ *      @version 1.0
+ *      @since 1.4
+ * </p>
+ */
+public class MemoryCaptureSink implements CaptureSink {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    /**
+     * this listener gets every picture, it may be null
+     */
+    @Nullable
+    private final Listener mListener;
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    /**
+     *      The constructor for a MemoryCaptureSink
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param listener the listener, that gets every picture, it may be null
+     * </p>
+     */
+    public MemoryCaptureSink(@Nullable Listener listener) {
+        this.mListener = listener;
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    @NonNull
+    @Override
+    public Output write(@NonNull ByteBuffer jpeg, @NonNull String name, long timestamp) {
+        ByteBuffer copy = ByteBuffer.allocate(jpeg.remaining());
+        copy.put(jpeg);
+        copy.flip();
+
+        ByteBuffer data = copy.asReadOnlyBuffer();
+        if(this.mListener != null) {
+            this.mListener.onPicture(data.duplicate(), name, timestamp);
+        }
+        return Output.ofData(data);
+    }
+
+    @Override
+    public void flush() {
+        // the pictures are handed over right away
+    }
+
+
+    // *************************************************************** Interface Section ***************************************************************
+
+
+    /**
+     *      Listener, that gets the pictures of a MemoryCaptureSink. It is called in a thread of the ImageWriterPool, so it may upload the picture directly
+     * <p>
+     *      @since 1.4
+     * </p>
+     */
+    public interface Listener {
+        /**
+         * @param jpeg the JPEG data (read only), it can be kept
+         * @param name the file name of the picture
+         * @param timestamp the sensor timestamp of the picture in nanoseconds
+         */
+        void onPicture(@NonNull ByteBuffer jpeg, @NonNull String name, long timestamp);
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.cameralib;
+
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.graphics.YuvImage;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+
+/**
+ *      This analyzer encodes the frames of the analysis stream as JPEG and publishes them on a {@link MjpegStreamServer}. Frames are only
+ *      encoded, while a client is connected. The NV21 and JPEG buffers and the YuvImage are reused, if the size of the frames stays the same.
+ *      Only YuvImage.compressToJpeg allocates its small working buffers for every frame
+ * <p>
+ *      @version 1.1
+ *      @since 1.4
+ * </p>
+ */
+public final class MjpegStreamAnalyzer implements FrameAnalyzer {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    private final MjpegStreamServer mServer;
+    private final YuvConverter mConverter = new YuvConverter(1);
+    private final JpegBuffer mJpeg = new JpegBuffer();
+    private final Rect mRect = new Rect();
+
+    /**
+     * the image of the NV21 buffer, it is created again, when the buffer changes
+     */
+    private YuvImage mImage;
+
+    /**
+     * the JPEG quality of the stream (1 - 100)
+     */
+    private volatile int mQuality = 70;
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    /**
+     *      The constructor for a MjpegStreamAnalyzer
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param server the server, that sends the frames
+     * </p>
+     */
+    public MjpegStreamAnalyzer(@NonNull MjpegStreamServer server) {
+        this.mServer = server;
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    @Override
+    public void analyze(@NonNull YuvFrame frame) {
+        if(!this.mServer.hasClients()) {
+            return;
+        }
+
+        int width = frame.getWidth() & ~1;
+        int height = frame.getHeight() & ~1;
+        if(width != frame.getWidth() || height != frame.getHeight()) {
+            return;     // NV21 needs an even size, the analysis sizes of the camera are always even
+        }
+
+        byte[] nv21 = this.mConverter.nv21Buffer(width, height);
+        this.mConverter.toNv21(frame, nv21);
+
+        YuvImage image = this.mImage;
+        if(image == null || image.getYuvData() != nv21 || image.getWidth() != width || image.getHeight() != height) {
+            image = new YuvImage(nv21, ImageFormat.NV21, width, height, null);
+            this.mImage = image;
+        }
+        this.mRect.set(0, 0, width, height);
+        this.mJpeg.reset();
+        if(image.compressToJpeg(this.mRect, this.mQuality, this.mJpeg)) {
+            this.mServer.publish(this.mJpeg.asByteBuffer());
+        }
+    }
+
+    /**
+     *      This method sets the JPEG quality of the stream
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param quality the quality (1 - 100)
+     *      @throws IllegalArgumentException is thrown, if the quality is out of range
+     * </p>
+     */
+    public void setQuality(int quality) throws IllegalArgumentException {
+        if(quality < 1 || quality > 100) {
+            throw new IllegalArgumentException("The quality must be between 1 and 100!");
+        }
+        this.mQuality = quality;
+    }
+
+    /**
+     * @return the server, that sends the frames
+     */
+    public MjpegStreamServer getServer() {
+        return this.mServer;
+    }
+
+    /**
+     *      This method stops the converter of the analyzer. The server isn't stopped
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    public void release() {
+        this.mConverter.release();
+    }
+
+
+    // *************************************************************** Class Section ***************************************************************
+
+
+    /**
+     *      This class is a ByteArrayOutputStream, whose bytes can be read without a copy
+     * <p>
+     *      @version 1.0
+     *      @since 1.4
+     * </p>
+     */
+    private static class JpegBuffer extends ByteArrayOutputStream {
+        JpegBuffer() {
+            super(64 * 1024);
+        }
+
+        ByteBuffer asByteBuffer() {
+            return ByteBuffer.wrap(this.buf, 0, this.count);
+        }
+    }
+}
@@ -0,0 +1,664 @@
+package com.example.cameralib;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ *      This class is a small HTTP server, that streams JPEG frames as multipart MJPEG (multipart/x-mixed-replace), so the camera can be watched
+ *      in a browser or a video player on the same network. Every request gets the stream, the path is ignored
+ * <p>
+ *      All clients are served by one thread with non-blocking sockets. A published frame is copied once into a pooled buffer, all clients write
+ *      from this buffer. Every client has a bounded queue, if it is full the oldest frame is skipped. So a slow client never blocks the camera
+ *      or the other clients, it only gets fewer frames
+ * </p>
+ * <p>
+ *      A client, that doesn't send its request within the request timeout, is disconnected, so idle connections can't hold the places of the clients
+ * </p>
+ * <p>
+ *      @version 1.1
+ *      @since 1.4
+ * </p>
+ */
+public class MjpegStreamServer {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    private static final String BOUNDARY = "cameralibframe";
+
+    private static final byte[] RESPONSE_HEADER = ("HTTP/1.0 200 OK\r\n"
+            + "Content-Type: multipart/x-mixed-replace; boundary=" + BOUNDARY + "\r\n"
+            + "Cache-Control: no-cache, no-store\r\n"
+            + "Pragma: no-cache\r\n"
+            + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] BUSY_RESPONSE = "HTTP/1.0 503 Service Unavailable\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] PART_HEADER = ("--" + BOUNDARY + "\r\nContent-Type: image/jpeg\r\nContent-Length: ").getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    /**
+     * the maximum size of a request, longer requests are closed
+     */
+    private static final int MAX_REQUEST_BYTES = 4096;
+
+    /**
+     * the time in milliseconds a client has to send its request
+     */
+    private volatile long mRequestTimeoutMillis = 5000;
+
+    /**
+     * the number of frames, a client can have in its queue
+     */
+    private final int mQueueDepth;
+
+    /**
+     * the maximum number of clients at the same time
+     */
+    private final int mMaxClients;
+
+    /**
+     * the connected clients. The lock of the list also guards the queues of the clients
+     */
+    private final List<Client> mClients = new ArrayList<>();
+
+    /**
+     * the buffers of the frames, that are not used at the moment. Guarded by its own lock
+     */
+    private final ArrayDeque<Frame> mFreeFrames = new ArrayDeque<>();
+
+    /**
+     * the selector of the server thread, publish() reads it from the thread of the analyzer
+     */
+    private volatile Selector mSelector;
+    private ServerSocketChannel mServerChannel;
+    private Thread mThread;
+    private volatile boolean mRunning;
+
+    /**
+     * statistics of the server
+     */
+    private final AtomicLong mPublishedCount = new AtomicLong();
+    private final AtomicLong mSentCount = new AtomicLong();
+    private final AtomicLong mSkippedCount = new AtomicLong();
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    /**
+     *      The constructor for a MjpegStreamServer with a queue of 2 frames per client and at most 4 clients
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    public MjpegStreamServer() {
+        this(2, 4);
+    }
+
+    /**
+     *      The constructor for a MjpegStreamServer
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param queueDepth the number of frames, a client can have in its queue
+     *      @param maxClients the maximum number of clients at the same time, further clients get "503 Service Unavailable"
+     *      @throws IllegalArgumentException is thrown, if one of the values is smaller than 1
+     * </p>
+     */
+    public MjpegStreamServer(int queueDepth, int maxClients) throws IllegalArgumentException {
+        if(queueDepth < 1 || maxClients < 1) {
+            throw new IllegalArgumentException("The server needs a queue depth and a maximum number of clients of at least one!");
+        }
+        this.mQueueDepth = queueDepth;
+        this.mMaxClients = maxClients;
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    /**
+     *      This method starts the server on its own thread
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param port the port, 0 for any free port
+     *      @return the port, the server listens on
+     *      @throws IOException is thrown, if the port can't be opened
+     *      @throws IllegalStateException is thrown, if the server is already running
+     * </p>
+     */
+    public synchronized int start(int port) throws IOException, IllegalStateException {
+        if(this.mRunning) {
+            throw new IllegalStateException("The server is already running!");
+        }
+
+        this.mSelector = Selector.open();
+        try {
+            this.mServerChannel = ServerSocketChannel.open();
+            this.mServerChannel.socket().setReuseAddress(true);
+            this.mServerChannel.socket().bind(new InetSocketAddress(port));
+            this.mServerChannel.configureBlocking(false);
+            this.mServerChannel.register(this.mSelector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            this.closeQuietly();
+            throw e;
+        }
+
+        this.mRunning = true;
+        this.mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serve();
+            }
+        }, "CameraMjpegServer");
+        this.mThread.setDaemon(true);
+        this.mThread.start();
+        return this.mServerChannel.socket().getLocalPort();
+    }
+
+    /**
+     *      This method stops the server and disconnects all clients
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    public synchronized void stop() {
+        if(!this.mRunning) {
+            return;
+        }
+        this.mRunning = false;
+        this.mSelector.wakeup();
+        try {
+            this.mThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.mThread = null;
+    }
+
+    /**
+     * @return true ... a client is waiting for frames. If there is no client, the frames don't have to be encoded
+     */
+    public boolean hasClients() {
+        synchronized(this.mClients) {
+            for(Client client : this.mClients) {
+                if(client.mStreaming) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     *      This method sends a frame to all clients. The frame is copied, the buffer can be reused when the method returns. It never blocks
+     *      on the network, clients, whose queue is full, skip their oldest frame
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param jpeg the JPEG frame from its position to its limit, the position isn't changed
+     * </p>
+     */
+    public void publish(@NonNull ByteBuffer jpeg) {
+        if(!this.mRunning || !this.hasClients()) {
+            return;
+        }
+
+        Frame frame = this.obtainFrame(jpeg.remaining());
+        frame.mData.clear();
+        frame.mData.put(jpeg.duplicate());
+        frame.mData.flip();
+        frame.writeHeader();
+        this.mPublishedCount.incrementAndGet();
+
+        synchronized(this.mClients) {
+            for(Client client : this.mClients) {
+                if(!client.mStreaming) {
+                    continue;
+                }
+                if(client.mQueue.size() >= this.mQueueDepth) {
+                    this.releaseFrame(client.mQueue.poll());
+                    this.mSkippedCount.incrementAndGet();
+                }
+                frame.mReferences.incrementAndGet();
+                client.mQueue.add(frame);
+            }
+        }
+        this.releaseFrame(frame);       // the reference of the publisher
+
+        Selector selector = this.mSelector;
+        if(selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     *      This method sets the time a client has to send its request. Clients, that connect and send nothing, are disconnected afterwards
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param timeoutMillis the time in milliseconds, the default is 5000
+     *      @throws IllegalArgumentException is thrown, if the timeout is smaller than 1
+     * </p>
+     */
+    public void setRequestTimeoutMillis(long timeoutMillis) throws IllegalArgumentException {
+        if(timeoutMillis < 1) {
+            throw new IllegalArgumentException("The request timeout must be at least 1 ms!");
+        }
+        this.mRequestTimeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @return the number of connected clients
+     */
+    public int getClientCount() {
+        synchronized(this.mClients) {
+            return this.mClients.size();
+        }
+    }
+
+    /**
+     * @return the number of frames, that were published while a client was connected
+     */
+    public long getPublishedFrameCount() {
+        return this.mPublishedCount.get();
+    }
+
+    /**
+     * @return the number of frames, that were sent completely (a frame sent to two clients counts twice)
+     */
+    public long getSentFrameCount() {
+        return this.mSentCount.get();
+    }
+
+    /**
+     * @return the number of frames, that were skipped because the queue of a client was full
+     */
+    public long getSkippedFrameCount() {
+        return this.mSkippedCount.get();
+    }
+
+    /**
+     *      This method is the loop of the server thread
+     * <p>
+     *      @version 1.1
+     * </p>
+     */
+    private void serve() {
+        try {
+            long timeoutMillis = 0;
+            while(this.mRunning) {
+                this.mSelector.select(timeoutMillis);       // 0 ... no client waits for its request, so there is no timeout
+                if(!this.mRunning) {
+                    break;
+                }
+
+                Iterator<SelectionKey> keys = this.mSelector.selectedKeys().iterator();
+                while(keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if(!key.isValid()) {
+                        continue;
+                    }
+
+                    if(key.isAcceptable()) {
+                        this.accept();
+                        continue;
+                    }
+
+                    Client client = (Client) key.attachment();
+                    try {
+                        if(key.isReadable()) {
+                            this.read(client);
+                        }
+                        if(key.isValid() && key.isWritable()) {
+                            this.write(client);
+                        }
+                    } catch (IOException e) {
+                        this.disconnect(client);
+                    }
+                }
+
+                this.updateWriteInterest();
+                timeoutMillis = this.disconnectExpiredRequests();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            this.closeQuietly();
+        }
+    }
+
+    /**
+     *      This method disconnects the clients, that didn't send their request within the request timeout. It runs in the server thread after every select
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @return the time in milliseconds until the next request times out, 0 if no client waits for its request
+     * </p>
+     */
+    private long disconnectExpiredRequests() {
+        long now = System.nanoTime();
+        long timeoutNanos = this.mRequestTimeoutMillis * 1000000L;
+        long next = Long.MAX_VALUE;
+        List<Client> expired = null;
+
+        synchronized(this.mClients) {
+            for(Client client : this.mClients) {
+                if(client.mResponse != null) {
+                    continue;
+                }
+                long remaining = client.mConnectedNanos + timeoutNanos - now;
+                if(remaining <= 0) {
+                    if(expired == null) {
+                        expired = new ArrayList<>();
+                    }
+                    expired.add(client);
+                } else {
+                    next = Math.min(next, remaining);
+                }
+            }
+        }
+
+        for(int i = 0; expired != null && i < expired.size(); i++) {
+            this.disconnect(expired.get(i));
+        }
+        return next == Long.MAX_VALUE ? 0 : next / 1000000L + 1;
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = this.mServerChannel.accept();
+        if(channel == null) {
+            return;
+        }
+
+        if(this.getClientCount() >= this.mMaxClients) {
+            try {
+                channel.write(ByteBuffer.wrap(BUSY_RESPONSE));      // best effort, the socket buffer of a new connection is empty
+            } finally {
+                channel.close();
+            }
+            return;
+        }
+
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Client client = new Client(channel);
+        client.mKey = channel.register(this.mSelector, SelectionKey.OP_READ, client);
+        synchronized(this.mClients) {
+            this.mClients.add(client);
+        }
+    }
+
+    /**
+     *      This method reads the request of a client. The stream starts, as soon as the end of the request header is read. Anything the client
+     *      sends afterwards is ignored
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param client the client
+     *      @throws IOException is thrown, if the connection is closed or broken
+     * </p>
+     */
+    private void read(Client client) throws IOException {
+        ByteBuffer request = client.mRequest;
+        if(!request.hasRemaining()) {
+            if(client.mResponse == null) {
+                throw new IOException("The request is too long");
+            }
+            request.clear();        // the request is already answered
+        }
+        if(client.mChannel.read(request) < 0) {
+            throw new IOException("The client closed the connection");
+        }
+
+        if(client.mResponse == null && endsRequest(request)) {
+            client.mResponse = ByteBuffer.wrap(RESPONSE_HEADER);
+            client.mKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * @return true ... the buffer contains the empty line, that ends a HTTP request header
+     */
+    private static boolean endsRequest(ByteBuffer request) {
+        for(int i = 3; i < request.position(); i++) {
+            if(request.get(i - 3) == '\r' && request.get(i - 2) == '\n' && request.get(i - 1) == '\r' && request.get(i) == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     *      This method writes as much as possible to a client without blocking: first the response header, then the frames of its queue
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param client the client
+     *      @throws IOException is thrown, if the connection is broken
+     * </p>
+     */
+    private void write(Client client) throws IOException {
+        if(client.mResponse != null && client.mResponse.hasRemaining()) {
+            client.mChannel.write(client.mResponse);
+            if(client.mResponse.hasRemaining()) {
+                return;
+            }
+            synchronized(this.mClients) {
+                client.mStreaming = true;       // the client gets the frames, that are published from now on
+            }
+        }
+
+        while(true) {
+            if(client.mCurrent == null) {
+                synchronized(this.mClients) {
+                    client.mCurrent = client.mQueue.poll();
+                }
+                if(client.mCurrent == null) {
+                    return;
+                }
+                client.mBuffers[0] = client.mCurrent.mHeader.duplicate();
+                client.mBuffers[1] = client.mCurrent.mData.duplicate();
+                client.mBuffers[2] = ByteBuffer.wrap(CRLF);
+            }
+
+            client.mChannel.write(client.mBuffers);
+            if(client.mBuffers[2].hasRemaining()) {
+                return;         // the socket buffer is full, the rest is written when the socket is writable again
+            }
+            this.releaseFrame(client.mCurrent);
+            client.mCurrent = null;
+            this.mSentCount.incrementAndGet();
+        }
+    }
+
+    /**
+     *      This method registers the clients, that have something to write, for OP_WRITE. It runs in the server thread after every select
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    private void updateWriteInterest() {
+        synchronized(this.mClients) {
+            for(Client client : this.mClients) {
+                if(!client.mKey.isValid()) {
+                    continue;
+                }
+                boolean pending = (client.mResponse != null && client.mResponse.hasRemaining()) || client.mCurrent != null || !client.mQueue.isEmpty();
+                client.mKey.interestOps(pending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    private void disconnect(Client client) {
+        synchronized(this.mClients) {
+            this.mClients.remove(client);
+            while(!client.mQueue.isEmpty()) {
+                this.releaseFrame(client.mQueue.poll());
+            }
+        }
+        if(client.mCurrent != null) {
+            this.releaseFrame(client.mCurrent);
+            client.mCurrent = null;
+        }
+        client.mKey.cancel();
+        try {
+            client.mChannel.close();
+        } catch (IOException e) {
+            // the connection is gone anyway
+        }
+    }
+
+    /**
+     *      This method closes the selector, the server socket and all clients. It runs in the server thread, when it ends
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    private void closeQuietly() {
+        List<Client> clients;
+        synchronized(this.mClients) {
+            clients = new ArrayList<>(this.mClients);
+        }
+        for(Client client : clients) {
+            this.disconnect(client);
+        }
+
+        try {
+            if(this.mServerChannel != null) {
+                this.mServerChannel.close();
+            }
+            if(this.mSelector != null) {
+                this.mSelector.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        this.mRunning = false;
+    }
+
+    /**
+     *      This method returns a free frame buffer, that can hold the JPEG. Its reference count is 1
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param size the size of the JPEG in bytes
+     *      @return the frame
+     * </p>
+     */
+    private Frame obtainFrame(int size) {
+        Frame frame;
+        synchronized(this.mFreeFrames) {
+            frame = this.mFreeFrames.poll();
+        }
+        if(frame == null || frame.mData.capacity() < size) {
+            frame = new Frame(size + size / 4);        // some room for the next frames, that are a little bigger
+        }
+        frame.mReferences.set(1);
+        return frame;
+    }
+
+    private void releaseFrame(Frame frame) {
+        if(frame == null || frame.mReferences.decrementAndGet() > 0) {
+            return;
+        }
+        synchronized(this.mFreeFrames) {
+            // a frame is held by the publisher and the queues of the clients at most
+            if(this.mFreeFrames.size() < this.mMaxClients * (this.mQueueDepth + 1) + 1) {
+                this.mFreeFrames.add(frame);
+            }
+        }
+    }
+
+
+    // *************************************************************** Class Section ***************************************************************
+
+
+    /**
+     *      This class contains a published frame. It is shared by all clients and returned to the pool, when the last client has sent it
+     * <p>
+     *      @version 1.0
+     *      @since 1.4
+     * </p>
+     */
+    private static class Frame {
+        private final ByteBuffer mData;
+        private final ByteBuffer mHeader = ByteBuffer.allocate(PART_HEADER.length + 16);
+        private final AtomicInteger mReferences = new AtomicInteger();
+
+        Frame(int capacity) {
+            this.mData = ByteBuffer.allocateDirect(capacity);
+        }
+
+        /**
+         * writes the header of the part with the length of the data, without creating a String
+         */
+        void writeHeader() {
+            this.mHeader.clear();
+            this.mHeader.put(PART_HEADER);
+
+            int length = this.mData.remaining();
+            int divisor = 1;
+            while(length / divisor >= 10) {
+                divisor *= 10;
+            }
+            for(; divisor > 0; divisor /= 10) {
+                this.mHeader.put((byte) ('0' + length / divisor % 10));
+            }
+
+            this.mHeader.put(CRLF).put(CRLF);
+            this.mHeader.flip();
+        }
+    }
+
+    /**
+     *      This class contains the state of a connected client. Only the queue is used by other threads (with the lock of the client list)
+     * <p>
+     *      @version 1.0
+     *      @since 1.4
+     * </p>
+     */
+    private static class Client {
+        private final SocketChannel mChannel;
+        private final ByteBuffer mRequest = ByteBuffer.allocate(MAX_REQUEST_BYTES);
+        private final ArrayDeque<Frame> mQueue = new ArrayDeque<>();
+        private final ByteBuffer[] mBuffers = new ByteBuffer[3];
+        private SelectionKey mKey;
+        private ByteBuffer mResponse;
+        private Frame mCurrent;
+        private boolean mStreaming;
+        /**
+         * the time (System.nanoTime()) the client connected
+         */
+        private final long mConnectedNanos = System.nanoTime();
+
+        Client(SocketChannel channel) {
+            this.mChannel = channel;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.cameralib;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+
+/**
+ *      This analyzer detects motion in the Y plane of the analysis stream. The frame is divided into cells of {@value #CELL_SIZE} x {@value #CELL_SIZE}
+ *      pixels, the mean luma of every cell is compared with the one of the previous frame. A cell is changed, if its luma changed more than the threshold.
+ *      If the changed cells cover at least the minimum area, the listener is called
+ * <p>
+ *      Only every {@value #SAMPLE_STEP}. pixel of every {@value #SAMPLE_STEP}. row is read. The change of the mean luma of the whole frame is
+ *      subtracted, so a change of the exposure isn't detected as motion. The cells are kept in two arrays, that are only created again if the
+ *      size of the frames changes, so analyzing a frame doesn't allocate
+ * </p>
+ * <p>
+ *      @version 1.0
+ *      @since 1.4
+ * </p>
+ */
+public final class MotionDetector implements FrameAnalyzer {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    /**
+     * the width and height of a cell in pixels
+     */
+    static final int CELL_SIZE = 16;
+
+    /**
+     * the distance between two read pixels, so a cell is averaged over (CELL_SIZE / SAMPLE_STEP)^2 pixels
+     */
+    static final int SAMPLE_STEP = 2;
+    private static final int SAMPLES_PER_CELL = (CELL_SIZE / SAMPLE_STEP) * (CELL_SIZE / SAMPLE_STEP);
+
+    /**
+     * the minimum change of the mean luma of a cell (0 - 255)
+     */
+    private volatile int mThreshold = 12;
+
+    /**
+     * the minimum part of the frame (0 - 1), that must change
+     */
+    private volatile float mMinArea = 0.02f;
+
+    /**
+     * the minimum time between two triggers in nanoseconds
+     */
+    private volatile long mCooldownNanos = 2000000000L;
+
+    @Nullable
+    private volatile Listener mListener;
+
+    /**
+     * the luma sums of the cells of the current and the previous frame. Only used in the thread of the analyzer
+     */
+    private int[] mCells = new int[0];
+    private int[] mPreviousCells = new int[0];
+    private int mColumns;
+    private int mRows;
+    private boolean mHasPreviousFrame;
+    private long mLastTriggerTimestamp;
+    private boolean mTriggered;
+
+    /**
+     * the part of the frame, that changed in the last analyzed frame
+     */
+    private volatile float mLastChangedArea;
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    /**
+     *      The constructor for a MotionDetector
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param listener the listener, that is called when motion is detected, it may be null
+     * </p>
+     */
+    public MotionDetector(@Nullable Listener listener) {
+        this.mListener = listener;
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    @Override
+    public void analyze(@NonNull YuvFrame frame) {
+        int columns = frame.getWidth() / CELL_SIZE;
+        int rows = frame.getHeight() / CELL_SIZE;
+        if(columns == 0 || rows == 0) {
+            return;
+        }
+        if(columns != this.mColumns || rows != this.mRows) {
+            this.mColumns = columns;
+            this.mRows = rows;
+            this.mCells = new int[columns * rows];
+            this.mPreviousCells = new int[columns * rows];
+            this.mHasPreviousFrame = false;
+        }
+
+        int[] cells = this.mCells;
+        long total = this.sumCells(frame, cells);
+
+        if(this.mHasPreviousFrame) {
+            float area = this.compare(cells, this.mPreviousCells, total);
+            this.mLastChangedArea = area;
+
+            long timestamp = frame.getTimestamp();
+            Listener listener = this.mListener;
+            if(area >= this.mMinArea && (!this.mTriggered || timestamp - this.mLastTriggerTimestamp >= this.mCooldownNanos)) {
+                this.mTriggered = true;
+                this.mLastTriggerTimestamp = timestamp;
+                if(listener != null) {
+                    listener.onMotion(area, timestamp);
+                }
+            }
+        }
+
+        // the current frame is the reference for the next one
+        this.mCells = this.mPreviousCells;
+        this.mPreviousCells = cells;
+        this.mHasPreviousFrame = true;
+    }
+
+    /**
+     *      This method sums the sampled luma values of every cell
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param frame the frame
+     *      @param cells the sums of the cells, they are overwritten
+     *      @return the sum of all cells
+     * </p>
+     */
+    private long sumCells(YuvFrame frame, int[] cells) {
+        ByteBuffer plane = frame.getPlane(YuvFrame.PLANE_Y);
+        int rowStride = frame.getRowStride(YuvFrame.PLANE_Y);
+        int step = frame.getPixelStride(YuvFrame.PLANE_Y) * SAMPLE_STEP;
+        int cellStep = frame.getPixelStride(YuvFrame.PLANE_Y) * CELL_SIZE;
+
+        Arrays.fill(cells, 0);
+        long total = 0;
+        for(int cellRow = 0; cellRow < this.mRows; cellRow++) {
+            int cellOffset = cellRow * this.mColumns;
+            for(int y = cellRow * CELL_SIZE, yEnd = y + CELL_SIZE; y < yEnd; y += SAMPLE_STEP) {
+                int rowStart = y * rowStride;
+                for(int column = 0; column < this.mColumns; column++) {
+                    int sum = 0;
+                    for(int index = rowStart + column * cellStep, end = index + cellStep; index < end; index += step) {
+                        sum += plane.get(index) & 0xFF;
+                    }
+                    cells[cellOffset + column] += sum;
+                    total += sum;
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     *      This method compares the cells of two frames
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param cells the sums of the current frame
+     *      @param previous the sums of the previous frame
+     *      @param total the sum of all cells of the current frame
+     *      @return the part of the cells (0 - 1), that changed more than the threshold
+     * </p>
+     */
+    private float compare(int[] cells, int[] previous, long total) {
+        long previousTotal = 0;
+        for(int sum : previous) {
+            previousTotal += sum;
+        }
+        int shift = (int) ((total - previousTotal) / cells.length);       // the change of the exposure
+        int threshold = this.mThreshold * SAMPLES_PER_CELL;
+
+        int changed = 0;
+        for(int i = 0; i < cells.length; i++) {
+            if(Math.abs(cells[i] - previous[i] - shift) > threshold) {
+                changed++;
+            }
+        }
+        return (float) changed / cells.length;
+    }
+
+    /**
+     *      This method sets the minimum change of the mean luma of a cell, small values detect more noise
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param threshold the change (1 - 255), the default is 12
+     *      @throws IllegalArgumentException is thrown if the threshold is out of range
+     * </p>
+     */
+    public void setThreshold(int threshold) throws IllegalArgumentException {
+        if(threshold < 1 || threshold > 255) {
+            throw new IllegalArgumentException("The threshold must be between 1 and 255!");
+        }
+        this.mThreshold = threshold;
+    }
+
+    /**
+     *      This method sets the part of the frame, that must change
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param minArea the part of the frame (greater than 0 and at most 1), the default is 0.02
+     *      @throws IllegalArgumentException is thrown if the area is out of range
+     * </p>
+     */
+    public void setMinArea(float minArea) throws IllegalArgumentException {
+        if(!(minArea > 0 && minArea <= 1)) {
+            throw new IllegalArgumentException("The minimum area must be greater than 0 and at most 1!");
+        }
+        this.mMinArea = minArea;
+    }
+
+    /**
+     *      This method sets the minimum time between two triggers, so a lasting motion doesn't trigger on every frame
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param cooldownMillis the time in milliseconds, the default is 2000
+     * </p>
+     */
+    public void setCooldownMillis(long cooldownMillis) {
+        this.mCooldownNanos = Math.max(0, cooldownMillis) * 1000000L;
+    }
+
+    /**
+     * @param listener the listener, that is called when motion is detected, it may be null
+     */
+    public void setListener(@Nullable Listener listener) {
+        this.mListener = listener;
+    }
+
+    /**
+     * @return the part of the frame (0 - 1), that changed in the last analyzed frame. It helps to choose the minimum area
+     */
+    public float getLastChangedArea() {
+        return this.mLastChangedArea;
+    }
+
+
+    // *************************************************************** Interface Section ***************************************************************
+
+
+    /**
+     *      Listener, that is called when motion is detected. It is called in the thread of the analyzer
+     * <p>
+     *      @since 1.4
+     * </p>
+     */
+    public interface Listener {
+        /**
+         * @param changedArea the part of the frame (0 - 1), that changed
+         * @param timestamp the sensor timestamp of the frame in nanoseconds
+         */
+        void onMotion(float changedArea, long timestamp);
+    }
+}
@@ -0,0 +1,302 @@
+package com.example.cameralib;
+
+import android.util.Size;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+
+/**
+ *      This class describes the pictures, that are written: the resolution (by target megapixels or by a maximum number of bytes per picture), the JPEG
+ *      quality and the thumbnail. An OutputPolicy is immutable, the with-methods return a changed copy
+ * <p>
+ *      With adaptive quality the JPEG quality is lowered, when the writers can't keep up with the capture rate (for example on a slow flash during a
+ *      long burst), and raised again, when they catch up. See {@link AdaptiveJpegQuality}
+ * </p>
+ * <p>
+ *      @version 1.0
+ *      @since 1.4
+ * </p>
+ */
+public final class OutputPolicy {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    /**
+     * the largest resolution with JPEG quality 95 and the default thumbnail of the device
+     */
+    public static final OutputPolicy DEFAULT = new OutputPolicy(0, 0, 95, null, 0);
+
+    /**
+     * the estimated bytes per pixel of a camera JPEG for some qualities, the values in between are interpolated
+     */
+    private static final int[] QUALITY_POINTS = {0, 50, 70, 80, 85, 90, 95, 100};
+    private static final double[] BYTES_PER_PIXEL = {0.02, 0.08, 0.12, 0.16, 0.19, 0.25, 0.35, 0.80};
+
+    /**
+     * the maximum number of pixels, 0 for the largest resolution
+     */
+    private final long mTargetPixels;
+    /**
+     * the maximum estimated size of a picture in bytes, 0 for no limit
+     */
+    private final long mMaxBytes;
+    private final int mJpegQuality;
+    /**
+     * the size of the thumbnail, 0x0 for no thumbnail, null for the default of the device
+     */
+    @Nullable
+    private final Size mThumbnailSize;
+    /**
+     * the lowest quality of the adaptive quality, 0 if the quality isn't adapted
+     */
+    private final int mMinAdaptiveQuality;
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    private OutputPolicy(long targetPixels, long maxBytes, int jpegQuality, @Nullable Size thumbnailSize, int minAdaptiveQuality) {
+        this.mTargetPixels = targetPixels;
+        this.mMaxBytes = maxBytes;
+        this.mJpegQuality = jpegQuality;
+        this.mThumbnailSize = thumbnailSize;
+        this.mMinAdaptiveQuality = minAdaptiveQuality;
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    /**
+     * @param megapixels the maximum resolution in megapixels, 0 for the largest resolution
+     * @return a copy of this policy with the target resolution
+     * @throws IllegalArgumentException is thrown, if the megapixels are negative
+     */
+    @NonNull
+    public OutputPolicy withTargetMegapixels(double megapixels) throws IllegalArgumentException {
+        if(megapixels < 0) {
+            throw new IllegalArgumentException("The megapixels must not be negative!");
+        }
+        return new OutputPolicy(Math.round(megapixels * 1e6), this.mMaxBytes, this.mJpegQuality, this.mThumbnailSize, this.mMinAdaptiveQuality);
+    }
+
+    /**
+     * @param maxBytes the maximum estimated size of a picture in bytes, 0 for no limit. The resolution is lowered until a picture fits
+     * @return a copy of this policy with the byte budget
+     * @throws IllegalArgumentException is thrown, if the budget is negative
+     */
+    @NonNull
+    public OutputPolicy withMaxBytes(long maxBytes) throws IllegalArgumentException {
+        if(maxBytes < 0) {
+            throw new IllegalArgumentException("The byte budget must not be negative!");
+        }
+        return new OutputPolicy(this.mTargetPixels, maxBytes, this.mJpegQuality, this.mThumbnailSize, this.mMinAdaptiveQuality);
+    }
+
+    /**
+     * @param quality the JPEG quality (1 - 100)
+     * @return a copy of this policy with the quality
+     * @throws IllegalArgumentException is thrown, if the quality is out of range
+     */
+    @NonNull
+    public OutputPolicy withJpegQuality(int quality) throws IllegalArgumentException {
+        if(quality < 1 || quality > 100) {
+            throw new IllegalArgumentException("The JPEG quality must be between 1 and 100!");
+        }
+        return new OutputPolicy(this.mTargetPixels, this.mMaxBytes, quality, this.mThumbnailSize, Math.min(this.mMinAdaptiveQuality, quality));
+    }
+
+    /**
+     * @param size the size of the thumbnail in the EXIF data, 0x0 for no thumbnail, null for the default of the device. The camera uses the
+     *             nearest size, that it supports
+     * @return a copy of this policy with the thumbnail size
+     */
+    @NonNull
+    public OutputPolicy withThumbnailSize(@Nullable Size size) {
+        return new OutputPolicy(this.mTargetPixels, this.mMaxBytes, this.mJpegQuality, size, this.mMinAdaptiveQuality);
+    }
+
+    /**
+     * @param minQuality the lowest quality, the adaptive quality may use. 0 turns the adaptive quality off
+     * @return a copy of this policy with the adaptive quality
+     * @throws IllegalArgumentException is thrown, if the quality is out of range
+     */
+    @NonNull
+    public OutputPolicy withAdaptiveQuality(int minQuality) throws IllegalArgumentException {
+        if(minQuality < 0 || minQuality > 100) {
+            throw new IllegalArgumentException("The minimum JPEG quality must be between 0 and 100!");
+        }
+        return new OutputPolicy(this.mTargetPixels, this.mMaxBytes, this.mJpegQuality, this.mThumbnailSize, Math.min(minQuality, this.mJpegQuality));
+    }
+
+    /**
+     *      This method selects the resolution of the pictures: the largest size, that fits the target resolution and the byte budget.
+     *      If no size fits, the smallest size is used
+     * <p>
+     *      @version 1.1
+     * </p>
+     * <p>
+     *      @param choices the JPEG sizes of the camera
+     *      @param maxPixels an additional limit of the pixels (for example for a crop region), 0 for no limit
+     *      @return the selected size, null if there are no choices
+     * </p>
+     */
+    @Nullable
+    Size chooseSize(@Nullable Size[] choices, long maxPixels) {
+        if(choices == null || choices.length == 0) {
+            return null;
+        }
+
+        long[] pixels = new long[choices.length];
+        for(int i = 0; i < choices.length; i++) {
+            pixels[i] = (long) choices[i].getWidth() * choices[i].getHeight();
+        }
+        return choices[this.chooseIndex(pixels, maxPixels)];
+    }
+
+    /**
+     *      This method selects the resolution, the sizes are given by their number of pixels
+     * <p>
+     *      @version 1.1
+     * </p>
+     * <p>
+     *      @param pixels the number of pixels of every size, at least one size
+     *      @param maxPixels an additional limit of the pixels, 0 for no limit
+     *      @return the index of the selected size
+     * </p>
+     */
+    int chooseIndex(@NonNull long[] pixels, long maxPixels) {
+        long target = this.mTargetPixels;
+        if(maxPixels > 0 && (target == 0 || maxPixels < target)) {
+            target = maxPixels;
+        }
+
+        int best = -1;
+        int smallest = 0;
+        for(int i = 0; i < pixels.length; i++) {
+            if(pixels[i] < pixels[smallest]) {
+                smallest = i;
+            }
+            boolean fits = (target == 0 || pixels[i] <= target)
+                    && (this.mMaxBytes == 0 || estimateJpegBytes(pixels[i], this.mJpegQuality) <= this.mMaxBytes);
+            if(fits && (best < 0 || pixels[i] > pixels[best])) {
+                best = i;
+            }
+        }
+        return best >= 0 ? best : smallest;
+    }
+
+    /**
+     *      This method selects the thumbnail size, that the camera supports and that is nearest to the thumbnail size of this policy
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param choices the thumbnail sizes of the camera (JPEG_AVAILABLE_THUMBNAIL_SIZES)
+     *      @return the selected size, null for the default of the device or if there are no choices
+     * </p>
+     */
+    @Nullable
+    Size chooseThumbnailSize(@Nullable Size[] choices) {
+        Size thumbnail = this.mThumbnailSize;
+        if(thumbnail == null || choices == null || choices.length == 0) {
+            return null;
+        }
+
+        int[] widths = new int[choices.length];
+        int[] heights = new int[choices.length];
+        for(int i = 0; i < choices.length; i++) {
+            widths[i] = choices[i].getWidth();
+            heights[i] = choices[i].getHeight();
+        }
+        return choices[nearestIndex(widths, heights, thumbnail.getWidth(), thumbnail.getHeight())];
+    }
+
+    /**
+     *      This method finds the size, that is nearest to a requested size. 0x0 (no thumbnail) is only nearest to itself
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param widths the widths of the sizes, at least one size
+     *      @param heights the heights of the sizes
+     *      @param width the requested width
+     *      @param height the requested height
+     *      @return the index of the nearest size
+     * </p>
+     */
+    static int nearestIndex(@NonNull int[] widths, @NonNull int[] heights, int width, int height) {
+        boolean none = width == 0 || height == 0;
+        int best = -1;
+        long bestDistance = Long.MAX_VALUE;
+        for(int i = 0; i < widths.length; i++) {
+            if(none != (widths[i] == 0 || heights[i] == 0)) {
+                continue;
+            }
+            long distance = Math.abs((long) widths[i] - width) + Math.abs((long) heights[i] - height);
+            if(distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        return best >= 0 ? best : 0;
+    }
+
+    /**
+     *      This method estimates the size of a camera JPEG. The estimation is meant for a textured scene, plain scenes give smaller files
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param pixels the number of pixels of the picture
+     *      @param quality the JPEG quality (1 - 100)
+     *      @return the estimated size in bytes
+     * </p>
+     */
+    static long estimateJpegBytes(long pixels, int quality) {
+        int q = Math.max(0, Math.min(100, quality));
+        int i = 1;
+        while(QUALITY_POINTS[i] < q) {
+            i++;
+        }
+        double fraction = (double) (q - QUALITY_POINTS[i - 1]) / (QUALITY_POINTS[i] - QUALITY_POINTS[i - 1]);
+        double bytesPerPixel = BYTES_PER_PIXEL[i - 1] + fraction * (BYTES_PER_PIXEL[i] - BYTES_PER_PIXEL[i - 1]);
+        return Math.round(pixels * bytesPerPixel);
+    }
+
+    /**
+     * @return the maximum number of pixels, 0 for the largest resolution
+     */
+    public long getTargetPixels() {
+        return this.mTargetPixels;
+    }
+
+    /**
+     * @return the maximum estimated size of a picture in bytes, 0 for no limit
+     */
+    public long getMaxBytes() {
+        return this.mMaxBytes;
+    }
+
+    /**
+     * @return the JPEG quality, with adaptive quality it is the highest quality
+     */
+    public int getJpegQuality() {
+        return this.mJpegQuality;
+    }
+
+    /**
+     * @return the size of the thumbnail, 0x0 for no thumbnail, null for the default of the device
+     */
+    @Nullable
+    public Size getThumbnailSize() {
+        return this.mThumbnailSize;
+    }
+
+    /**
+     * @return the lowest quality of the adaptive quality, 0 if the quality isn't adapted
+     */
+    public int getMinAdaptiveQuality() {
+        return this.mMinAdaptiveQuality;
+    }
+}
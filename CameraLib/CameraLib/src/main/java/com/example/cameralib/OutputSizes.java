@@ -0,0 +1,92 @@
+package com.example.cameralib;
+
+import android.util.Log;
+import android.util.Size;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+
+/**
+ *      This class contains the selection of output sizes. It only depends on {@link Size}, so it can be benchmarked without a device
+ * <p>
+ *      @version 1.0
+ *      @since 1.4
+ * </p>
+ */
+final class OutputSizes {
+
+    private OutputSizes() {
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    /**
+     *      This method selects the best fitting Size for the Preview
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param choices  the available Sizes
+     *      @param textureViewWidth the width of the texture View element in activity_main.xml
+     *      @param textureViewHeight the height of the texture View element in activity_main.xml
+     *      @param maxWidth the maximum width = width of the display
+     *      @param maxHeight the maximum height = height of the display
+     *      @param aspectRatio the Ratio in which the display's height and width are (for example: 4:3, 16:4, ...)
+     *      @return The best fitting Size for the Preview
+     * </p>
+     */
+    static Size chooseOptimalSize(@NonNull Size[] choices, int textureViewWidth, int textureViewHeight, int maxWidth, int maxHeight, @NonNull Size aspectRatio) {
+        List<Size> bigEnough = new ArrayList<>();       // Sizes, that are bigger than the preview Surface
+        List<Size> notBigEnough = new ArrayList<>();    // Sizes, tat are smaller than the preview Surface
+
+        int w = aspectRatio.getWidth();
+        int h = aspectRatio.getHeight();
+
+        for(Size option : choices) {
+            if(option.getWidth() <= maxWidth && option.getHeight() <= maxHeight && option.getHeight() == (option.getWidth() * h / w)) {
+                if(option.getWidth() >= textureViewWidth && option.getHeight() >= textureViewHeight) {
+                    bigEnough.add(option);
+                } else {
+                    notBigEnough.add(option);
+                }
+            }
+        }
+
+        // Pick best fitting Size (smallest that is big enough or largest that is not big enough (if no size is big enough))
+        if(bigEnough.size() > 0) {
+            return Collections.min(bigEnough, new CompareSizesByArea());
+        } else if (notBigEnough.size() > 0) {
+            return Collections.max(notBigEnough, new CompareSizesByArea());
+        } else {
+            Log.e("Camera2", "Couldn't find any suitable preview size");
+            return choices[0];
+        }
+    }
+
+
+    // *************************************************************** Class Section ***************************************************************
+
+
+    /**
+     *      This class compares sizes based on their areas
+     * <p>
+     *      @version 1.0
+     *      @since 1.0
+     * </p>
+     */
+    static class CompareSizesByArea implements Comparator<Size> {
+
+        @Override
+        public int compare(Size o1, Size o2) {
+            // Casts to prevent overflows
+            return Long.signum((long) o1.getWidth() * o1.getHeight() -
+                    (long) o2.getWidth() * o2.getHeight());
+        }
+    }
+}
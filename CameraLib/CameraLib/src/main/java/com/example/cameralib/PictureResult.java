@@ -0,0 +1,91 @@
+package com.example.cameralib;
+
+import android.hardware.camera2.TotalCaptureResult;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+
+/**
+ *      This class contains the result of a single picture: where it is stored, the sensor timestamp and the metadata of the capture
+ * <p>
+ *      @version 1.1
+ *      @since 1.4
+ * </p>
+ */
+public final class PictureResult {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    private final CaptureSink.Output mOutput;
+    private final long mTimestamp;
+    @Nullable
+    private final TotalCaptureResult mCaptureResult;
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    /**
+     *      The constructor for a PictureResult
+     * <p>
+     *      @version 1.1
+     * </p>
+     * <p>
+     *      @param output where the picture is stored
+     *      @param timestamp the sensor timestamp of the picture in nanoseconds
+     *      @param captureResult the metadata of the capture, null if there is no capture request for the picture
+     * </p>
+     */
+    PictureResult(@NonNull CaptureSink.Output output, long timestamp, @Nullable TotalCaptureResult captureResult) {
+        this.mOutput = output;
+        this.mTimestamp = timestamp;
+        this.mCaptureResult = captureResult;
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    /**
+     * @return the written file, null if the CaptureSink doesn't write files (MediaStore, memory)
+     */
+    @Nullable
+    public File getFile() {
+        return this.mOutput.getFile();
+    }
+
+    /**
+     * @return the URI of the picture (file or content URI), null if the picture is kept in memory
+     */
+    @Nullable
+    public Uri getUri() {
+        return this.mOutput.getUri();
+    }
+
+    /**
+     * @return the JPEG data (read only), null if the picture isn't kept in memory
+     */
+    @Nullable
+    public ByteBuffer getData() {
+        return this.mOutput.getData();
+    }
+
+    /**
+     * @return the sensor timestamp of the picture in nanoseconds (the same as SENSOR_TIMESTAMP of the metadata)
+     */
+    public long getTimestamp() {
+        return this.mTimestamp;
+    }
+
+    /**
+     * @return the metadata of the capture, null in the zero shutter lag mode (the picture is taken from the running preview)
+     */
+    @Nullable
+    public TotalCaptureResult getCaptureResult() {
+        return this.mCaptureResult;
+    }
+}
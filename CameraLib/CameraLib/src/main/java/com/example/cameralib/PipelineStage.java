@@ -0,0 +1,363 @@
+package com.example.cameralib;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ *      This class describes one stage of the camera pipeline (camera callbacks, frame processing, writing). Every stage runs on its own thread and
+ *      takes its work from a queue. The stage counts the waiting tasks and measures how long a task takes, so the bottleneck of the pipeline can be found
+ * <p>
+ *      A stage with a bounded queue rejects new tasks, if the queue is full. The stage outlives its thread, a stopped thread can be replaced
+ *      with {@link #createHandler(Looper)} without losing the statistics
+ * </p>
+ * <p>
+ *      @version 1.1
+ *      @since 1.4
+ * </p>
+ */
+public final class PipelineStage {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    private final String mName;
+
+    /**
+     * the maximum number of waiting tasks, Integer.MAX_VALUE for an unbounded queue
+     */
+    private final int mCapacity;
+
+    /**
+     * the number of waiting tasks and the number of tasks, that are waiting or running
+     */
+    private final AtomicInteger mQueueDepth = new AtomicInteger();
+    private final AtomicInteger mPending = new AtomicInteger();
+
+    /**
+     * the callbacks, that run when all tasks are finished. Guarded by the lock of mPending
+     */
+    private final List<Runnable> mIdleCallbacks = new ArrayList<>();
+
+    /**
+     * statistics of the stage
+     */
+    private final AtomicInteger mMaxQueueDepth = new AtomicInteger();
+    private final AtomicLong mProcessedCount = new AtomicLong();
+    private final AtomicLong mRejectedCount = new AtomicLong();
+    private final LatencyHistogram mServiceTimes = new LatencyHistogram();
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    /**
+     *      The constructor for a PipelineStage
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param name the name of the stage, it is also the name of its thread
+     *      @param capacity the maximum number of waiting tasks, Integer.MAX_VALUE for an unbounded queue
+     *      @throws IllegalArgumentException is thrown if the capacity is less than 1
+     * </p>
+     */
+    PipelineStage(@NonNull String name, int capacity) throws IllegalArgumentException {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("A stage needs a capacity of at least one!");
+        }
+        this.mName = name;
+        this.mCapacity = capacity;
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    /**
+     *      This method creates the handler for the thread of the stage. All messages, that are posted through the handler, are counted and timed.
+     *      If the queue is full, post() returns false. The counters of a previous thread are reset, because its waiting tasks are gone.
+     *      postAtFrontOfQueue() can't be counted (it is final), so it must not be used
+     * <p>
+     *      @version 1.1
+     * </p>
+     * <p>
+     *      @param looper the looper of the thread of the stage
+     *      @return the handler
+     * </p>
+     */
+    @NonNull
+    Handler createHandler(@NonNull Looper looper) {
+        this.mQueueDepth.set(0);
+        this.mPending.set(0);
+        this.onIdle();
+        return new StageHandler(looper);
+    }
+
+    /**
+     *      This method reserves a place in the queue
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @return true ... the task can be queued -- false ... the queue is full, the task is counted as rejected
+     * </p>
+     */
+    boolean tryQueue() {
+        int depth;
+        do {
+            depth = this.mQueueDepth.get();
+            if(depth >= this.mCapacity) {
+                this.mRejectedCount.incrementAndGet();
+                return false;
+            }
+        } while(!this.mQueueDepth.compareAndSet(depth, depth + 1));
+
+        this.mPending.incrementAndGet();
+        this.updateMaxQueueDepth(depth + 1);
+        return true;
+    }
+
+    /**
+     *      This method counts a task, that is queued without checking the capacity (the queue of an executor checks it itself)
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    void onQueued() {
+        this.mPending.incrementAndGet();
+        this.updateMaxQueueDepth(this.mQueueDepth.incrementAndGet());
+    }
+
+    /**
+     *      This method is called, when a task leaves the queue, because it is started
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    void onDequeued() {
+        this.mQueueDepth.decrementAndGet();
+    }
+
+    /**
+     *      This method is called, when a started task is finished
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param serviceNanos the time the task took in nanoseconds
+     * </p>
+     */
+    void onProcessed(long serviceNanos) {
+        this.mServiceTimes.record(serviceNanos);
+        this.mProcessedCount.incrementAndGet();
+        this.onFinished();
+    }
+
+    /**
+     *      This method is called, when a queued task is dropped instead of started
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    void onRejected() {
+        this.mQueueDepth.decrementAndGet();
+        this.mRejectedCount.incrementAndGet();
+        this.onFinished();
+    }
+
+    /**
+     *      This method waits until all queued tasks are finished
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param timeout the maximum time to wait
+     *      @param unit the unit of the timeout
+     *      @return true ... all tasks are finished -- false ... the timeout elapsed
+     *      @throws InterruptedException is thrown, if the waiting thread is interrupted
+     * </p>
+     */
+    boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized(this.mPending) {
+            while(this.mPending.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if(remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this.mPending, remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     *      This method runs a callback, when all queued tasks are finished. It doesn't wait, the callback runs in the thread, that finishes
+     *      the last task, or right away if the stage is idle
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param onIdle the callback
+     * </p>
+     */
+    void whenIdle(@NonNull Runnable onIdle) {
+        synchronized(this.mPending) {
+            if(this.mPending.get() > 0) {
+                this.mIdleCallbacks.add(onIdle);
+                return;
+            }
+        }
+        onIdle.run();
+    }
+
+    private void onFinished() {
+        if(this.mPending.decrementAndGet() <= 0) {
+            this.onIdle();
+        }
+    }
+
+    private void onIdle() {
+        List<Runnable> callbacks;
+        synchronized(this.mPending) {
+            this.mPending.notifyAll();
+            if(this.mPending.get() > 0 || this.mIdleCallbacks.isEmpty()) {
+                return;     // another task was queued in the meantime
+            }
+            callbacks = new ArrayList<>(this.mIdleCallbacks);
+            this.mIdleCallbacks.clear();
+        }
+        for(Runnable callback : callbacks) {
+            callback.run();
+        }
+    }
+
+    private void updateMaxQueueDepth(int depth) {
+        int max;
+        while(depth > (max = this.mMaxQueueDepth.get()) && !this.mMaxQueueDepth.compareAndSet(max, depth)) {
+            // retry, another thread changed the maximum
+        }
+    }
+
+    /**
+     * @return the name of the stage
+     */
+    @NonNull
+    public String getName() {
+        return this.mName;
+    }
+
+    /**
+     * @return the number of tasks, that are waiting for the thread of the stage
+     */
+    public int getQueueDepth() {
+        return Math.max(0, this.mQueueDepth.get());
+    }
+
+    /**
+     * @return the highest number of waiting tasks since the stage was created
+     */
+    public int getMaxQueueDepth() {
+        return this.mMaxQueueDepth.get();
+    }
+
+    /**
+     * @return the maximum number of waiting tasks, Integer.MAX_VALUE for an unbounded queue
+     */
+    public int getQueueCapacity() {
+        return this.mCapacity;
+    }
+
+    /**
+     * @return the number of finished tasks
+     */
+    public long getProcessedCount() {
+        return this.mProcessedCount.get();
+    }
+
+    /**
+     * @return the number of tasks, that were rejected or dropped because the queue was full
+     */
+    public long getRejectedCount() {
+        return this.mRejectedCount.get();
+    }
+
+    /**
+     * @return the distribution of the time a task takes (service time)
+     */
+    @NonNull
+    public LatencyHistogram.Snapshot getServiceTimes() {
+        return this.mServiceTimes.snapshot();
+    }
+
+    /**
+     *      This method resets the statistics of the stage, the waiting tasks are still counted
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    public void resetStatistics() {
+        this.mMaxQueueDepth.set(this.getQueueDepth());
+        this.mProcessedCount.set(0);
+        this.mRejectedCount.set(0);
+        this.mServiceTimes.reset();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        LatencyHistogram.Snapshot serviceTimes = this.mServiceTimes.snapshot();
+        return this.mName + ": queue " + this.getQueueDepth() + "/" + (this.mCapacity == Integer.MAX_VALUE ? "-" : String.valueOf(this.mCapacity))
+                + " (max " + this.getMaxQueueDepth() + "), processed " + this.getProcessedCount() + ", rejected " + this.getRejectedCount()
+                + ", service p50 " + serviceTimes.getPercentileNanos(50) / 1000 + " us, p99 " + serviceTimes.getPercentileNanos(99) / 1000 + " us";
+    }
+
+
+    // *************************************************************** Class Section ***************************************************************
+
+
+    /**
+     *      This handler counts the posted messages and measures how long their dispatch takes. Messages, that don't fit in the queue, aren't posted
+     * <p>
+     *      @version 1.0
+     *      @since 1.4
+     * </p>
+     */
+    private class StageHandler extends Handler {
+
+        StageHandler(Looper looper) {
+            super(looper);
+        }
+
+        @Override
+        public boolean sendMessageAtTime(@NonNull Message msg, long uptimeMillis) {
+            if(!tryQueue()) {
+                return false;
+            }
+            if(!super.sendMessageAtTime(msg, uptimeMillis)) {
+                onRejected();       // the looper is quitting
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void dispatchMessage(@NonNull Message msg) {
+            onDequeued();
+            long start = System.nanoTime();
+            try {
+                super.dispatchMessage(msg);
+            } finally {
+                onProcessed(System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.cameralib;
+
+import androidx.annotation.NonNull;
+
+
+/**
+ *      This class measures the sharpness of a (downsampled) picture as variance of the Laplacian of its luma. A blurred picture has weak edges,
+ *      so its Laplacian is close to 0 everywhere and the variance is small
+ * <p>
+ *      A scorer reuses its luma buffer for every picture, so it must only be used by one thread at a time
+ * </p>
+ * <p>
+ *      @version 1.0
+ *      @since 1.4
+ * </p>
+ */
+final class SharpnessScorer {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    /**
+     * the luma of the last picture, it only grows
+     */
+    private int[] mLuma = new int[0];
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    /**
+     *      This method calculates the variance of the Laplacian (4 neighbours) of the luma. The border pixels are skipped
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param argb the pixels of the picture, row by row without padding
+     *      @param width the width of the picture in pixels
+     *      @param height the height of the picture in pixels
+     *      @return the sharpness, higher is sharper. 0 for pictures smaller than 3 x 3 pixels
+     * </p>
+     */
+    double laplacianVariance(@NonNull int[] argb, int width, int height) {
+        if(width < 3 || height < 3) {
+            return 0;
+        }
+
+        int pixels = width * height;
+        if(this.mLuma.length < pixels) {
+            this.mLuma = new int[pixels];
+        }
+        int[] luma = this.mLuma;
+        for(int i = 0; i < pixels; i++) {
+            int color = argb[i];
+            luma[i] = (77 * ((color >> 16) & 0xFF) + 150 * ((color >> 8) & 0xFF) + 29 * (color & 0xFF)) >> 8;
+        }
+
+        long sum = 0;
+        long sumOfSquares = 0;
+        for(int y = 1; y < height - 1; y++) {
+            int row = y * width;
+            for(int x = 1; x < width - 1; x++) {
+                int index = row + x;
+                int laplacian = 4 * luma[index] - luma[index - 1] - luma[index + 1] - luma[index - width] - luma[index + width];
+                sum += laplacian;
+                sumOfSquares += laplacian * laplacian;
+            }
+        }
+
+        double count = (double) (width - 2) * (height - 2);
+        double mean = sum / count;
+        return sumOfSquares / count - mean * mean;
+    }
+}
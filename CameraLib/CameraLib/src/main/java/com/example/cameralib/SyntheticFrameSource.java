@@ -0,0 +1,355 @@
+package com.example.cameralib;
+
+import android.graphics.ImageFormat;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ *      This FrameSource generates frames without a camera, so the pipeline behind the camera (saving, analysis, bursts) can be driven and load tested
+ *      on any JVM, also at rates a real sensor can't reach
+ * <p>
+ *      The frames behave like the frames of an ImageReader: the source has a fixed number of buffers, a frame that isn't closed blocks its buffer, and
+ *      a frame is dropped if no buffer is free. The timestamps follow a fixed frame interval (System.nanoTime() base) with a small jitter, frames that
+ *      are missed because the listener is too slow are counted as dropped, like on a sensor that keeps running
+ * </p>
+ * <p>
+ *      JPEG frames have the markers of a JPEG (SOI, APP0, EOI) and a size of a typical camera JPEG, but the content isn't decodable.
+ *      YUV_420_888 frames are semi-planar (like most devices) and contain a diagonal pattern, that moves with every frame
+ * </p>
+ * <p>
+ *      @version 1.0
+ *      @since 1.4
+ * </p>
+ */
+public class SyntheticFrameSource implements FrameSource {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    /**
+     * the size of a synthetic JPEG, a camera JPEG of a textured scene has about 0.3 bytes per pixel
+     */
+    private static final double JPEG_BYTES_PER_PIXEL = 0.3;
+
+    /**
+     * the pattern of the YUV frames moves this many pixels per frame
+     */
+    private static final int PATTERN_STEP = 4;
+
+    private final int mFormat;
+    private final int mWidth;
+    private final int mHeight;
+
+    /**
+     * the time between two frames in nanoseconds, 0 generates the frames as fast as possible
+     */
+    private final long mFrameIntervalNanos;
+
+    /**
+     * the frames, that are not held by the listener
+     */
+    private final ArrayBlockingQueue<SyntheticFrame> mFreeFrames;
+
+    /**
+     * one row of the YUV pattern, twice as wide as the frame, so a shifted row can be copied in one step
+     */
+    private final byte[] mRowPattern;
+
+    /**
+     * statistics
+     */
+    private final AtomicLong mDeliveredFrames = new AtomicLong();
+    private final AtomicLong mDroppedFrames = new AtomicLong();
+
+    private volatile Thread mThread;
+    private volatile boolean mRunning;
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    /**
+     *      The constructor for a SyntheticFrameSource
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param format {@link ImageFormat#JPEG} or {@link ImageFormat#YUV_420_888}
+     *      @param width the width of the frames in pixels
+     *      @param height the height of the frames in pixels
+     *      @param framesPerSecond the frame rate, 0 generates the frames as fast as possible
+     *      @param maxFrames the number of buffers, like maxImages of an ImageReader
+     *      @throws IllegalArgumentException is thrown if a passed argument is not valid
+     * </p>
+     */
+    public SyntheticFrameSource(int format, int width, int height, double framesPerSecond, int maxFrames) throws IllegalArgumentException {
+        if((format != ImageFormat.JPEG && format != ImageFormat.YUV_420_888) || width <= 0 || height <= 0 || framesPerSecond < 0 || maxFrames < 1) {
+            throw new IllegalArgumentException("A SyntheticFrameSource needs JPEG or YUV_420_888, a size, a frame rate >= 0 and at least one buffer!");
+        }
+
+        this.mFormat = format;
+        this.mWidth = width;
+        this.mHeight = height;
+        this.mFrameIntervalNanos = framesPerSecond > 0 ? Math.round(1e9 / framesPerSecond) : 0;
+
+        this.mRowPattern = new byte[2 * width];
+        for(int x = 0; x < this.mRowPattern.length; x++) {
+            this.mRowPattern[x] = (byte) (16 + (x % width) * 219 / width);   // a ramp in the video range of Y
+        }
+
+        this.mFreeFrames = new ArrayBlockingQueue<>(maxFrames);
+        Random random = new Random(width * 31L + height);
+        for(int i = 0; i < maxFrames; i++) {
+            this.mFreeFrames.add(format == ImageFormat.JPEG ? this.createJpegFrame(random) : this.createYuvFrame());
+        }
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    @Override
+    public synchronized void start(@NonNull final Listener listener) {
+        if(this.mThread != null) {
+            throw new IllegalStateException("The SyntheticFrameSource is already started!");
+        }
+
+        this.mRunning = true;
+        this.mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                generate(listener);
+            }
+        }, "SyntheticCamera");
+        this.mThread.setDaemon(true);
+        this.mThread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        Thread thread = this.mThread;
+        if(thread == null) {
+            return;
+        }
+
+        this.mRunning = false;
+        this.mThread = null;
+        LockSupport.unpark(thread);
+        if(thread != Thread.currentThread()) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return the number of frames, that are delivered to the listener
+     */
+    public long getDeliveredFrameCount() {
+        return this.mDeliveredFrames.get();
+    }
+
+    /**
+     * @return the number of frames, that are dropped because no buffer was free or the listener was too slow
+     */
+    public long getDroppedFrameCount() {
+        return this.mDroppedFrames.get();
+    }
+
+    /**
+     * @return the time between two frames in nanoseconds, 0 if the frames are generated as fast as possible
+     */
+    public long getFrameIntervalNanos() {
+        return this.mFrameIntervalNanos;
+    }
+
+    /**
+     *      This method generates the frames until the source is stopped. It runs in the thread of the source
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param listener gets the frames
+     * </p>
+     */
+    private void generate(Listener listener) {
+        Random jitter = new Random(this.mFrameIntervalNanos);
+        long maxJitter = this.mFrameIntervalNanos / 200;         // +-0.5% of the frame interval, so the timestamps stay in order
+        long startNanos = System.nanoTime();
+        long frameNumber = 0;
+
+        while(this.mRunning) {
+            long timestamp;
+            if(this.mFrameIntervalNanos > 0) {
+                long deadline = startNanos + frameNumber * this.mFrameIntervalNanos;
+                long waitNanos;
+                while(this.mRunning && (waitNanos = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(waitNanos);
+                }
+                timestamp = deadline + (maxJitter > 0 ? (long) ((jitter.nextDouble() * 2 - 1) * maxJitter) : 0);
+            } else {
+                timestamp = System.nanoTime();
+            }
+
+            SyntheticFrame frame = this.mFreeFrames.poll();
+            if(frame == null) {
+                this.mDroppedFrames.incrementAndGet();      // all buffers are held by the listener
+            } else {
+                frame.prepare(timestamp, frameNumber);
+                this.mDeliveredFrames.incrementAndGet();
+                listener.onFrame(frame);
+            }
+            frameNumber++;
+
+            if(this.mFrameIntervalNanos > 0) {
+                long due = (System.nanoTime() - startNanos) / this.mFrameIntervalNanos;
+                if(due > frameNumber) {
+                    this.mDroppedFrames.addAndGet(due - frameNumber);       // the sensor kept running while the listener was busy
+                    frameNumber = due;
+                }
+            }
+        }
+    }
+
+    private SyntheticFrame createJpegFrame(Random random) {
+        int size = (int) Math.max(64, this.mWidth * (long) this.mHeight * JPEG_BYTES_PER_PIXEL);
+        byte[] jpeg = new byte[size];
+        random.nextBytes(jpeg);
+        for(int i = 0; i < size; i++) {
+            if(jpeg[i] == (byte) 0xFF) {
+                jpeg[i] = (byte) 0xFE;      // no markers inside the entropy coded data
+            }
+        }
+
+        byte[] header = {(byte) 0xFF, (byte) 0xD8,                                         // SOI
+                (byte) 0xFF, (byte) 0xE0, 0x00, 0x10, 'J', 'F', 'I', 'F', 0x00, 0x01, 0x01,  // APP0
+                0x00, 0x00, 0x01, 0x00, 0x01, 0x00, 0x00};
+        System.arraycopy(header, 0, jpeg, 0, header.length);
+        jpeg[size - 2] = (byte) 0xFF;                                                       // EOI
+        jpeg[size - 1] = (byte) 0xD9;
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        buffer.put(jpeg).flip();
+        return new SyntheticFrame(new ByteBuffer[] {buffer}, new int[] {0}, new int[] {0});
+    }
+
+    private SyntheticFrame createYuvFrame() {
+        int rowStride = (this.mWidth + 63) & ~63;
+        ByteBuffer yPlane = ByteBuffer.allocateDirect(rowStride * this.mHeight);
+
+        byte[] chroma = new byte[rowStride * ((this.mHeight + 1) / 2)];
+        Arrays.fill(chroma, (byte) 128);                                                   // gray
+        ByteBuffer uvPlane = ByteBuffer.allocateDirect(chroma.length);
+        uvPlane.put(chroma).flip();
+
+        ByteBuffer uPlane = uvPlane.duplicate();
+        uvPlane.position(1);
+        ByteBuffer vPlane = uvPlane.slice();
+
+        return new SyntheticFrame(new ByteBuffer[] {yPlane, uPlane, vPlane}, new int[] {rowStride, rowStride, rowStride}, new int[] {1, 2, 2});
+    }
+
+
+    // *************************************************************** Class Section ***************************************************************
+
+
+    /**
+     *      This class is a buffer of the source. It is given back to the source, when it is closed
+     * <p>
+     *      @version 1.0
+     *      @since 1.4
+     * </p>
+     */
+    private final class SyntheticFrame implements CameraFrame {
+        private final ByteBuffer[] mPlanes;
+        private final int[] mRowStrides;
+        private final int[] mPixelStrides;
+        private final AtomicBoolean mOpen = new AtomicBoolean();
+        private long mTimestamp;
+
+        SyntheticFrame(ByteBuffer[] planes, int[] rowStrides, int[] pixelStrides) {
+            this.mPlanes = planes;
+            this.mRowStrides = rowStrides;
+            this.mPixelStrides = pixelStrides;
+        }
+
+        /**
+         * resets the buffers and draws the content of the frame
+         */
+        void prepare(long timestamp, long frameNumber) {
+            this.mTimestamp = timestamp;
+            for(ByteBuffer plane : this.mPlanes) {
+                plane.rewind();
+            }
+
+            if(mFormat == ImageFormat.YUV_420_888) {
+                ByteBuffer y = this.mPlanes[YuvFrame.PLANE_Y];
+                int phase = (int) ((frameNumber * PATTERN_STEP) % mWidth);
+                for(int row = 0; row < mHeight; row++) {
+                    y.position(row * this.mRowStrides[YuvFrame.PLANE_Y]);
+                    y.put(mRowPattern, (phase + row) % mWidth, mWidth);
+                }
+                y.rewind();
+            }
+            this.mOpen.set(true);
+        }
+
+        @Override
+        public int getFormat() {
+            return mFormat;
+        }
+
+        @Override
+        public int getWidth() {
+            return mWidth;
+        }
+
+        @Override
+        public int getHeight() {
+            return mHeight;
+        }
+
+        @Override
+        public long getTimestamp() {
+            return this.mTimestamp;
+        }
+
+        @Override
+        public int getPlaneCount() {
+            return this.mPlanes.length;
+        }
+
+        @NonNull
+        @Override
+        public ByteBuffer getPlane(int plane) {
+            return this.mPlanes[plane];
+        }
+
+        @Override
+        public int getRowStride(int plane) {
+            return this.mRowStrides[plane];
+        }
+
+        @Override
+        public int getPixelStride(int plane) {
+            return this.mPixelStrides[plane];
+        }
+
+        @Override
+        public void close() {
+            if(this.mOpen.compareAndSet(true, false)) {
+                mFreeFrames.offer(this);
+            }
+        }
+    }
+}
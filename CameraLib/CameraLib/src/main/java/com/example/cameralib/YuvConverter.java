@@ -0,0 +1,387 @@
+package com.example.cameralib;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ *      This class converts YUV_420_888 frames to ARGB pixels or to NV21. It handles the row strides and pixel strides of the planes
+ *      and writes into arrays of the caller (or into arrays, that are reused by the converter), so nothing is allocated per frame
+ * <p>
+ *      Large frames are split into bands of rows, that are converted on several cores. A converter converts one frame at a time
+ * </p>
+ * <p>
+ *      @version 1.0
+ *      @since 1.4
+ * </p>
+ */
+public class YuvConverter {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    /**
+     * frames with fewer pixels are always converted on the calling thread
+     */
+    private static final int PARALLEL_MIN_PIXELS = 300_000;
+
+    private static final int MODE_ARGB = 0;
+    private static final int MODE_NV21 = 1;
+
+    /**
+     * the threads for the bands, null if the converter uses only the calling thread
+     */
+    private final ThreadPoolExecutor mExecutor;
+
+    /**
+     * the bands of rows, they are reused for every frame. The last band is converted on the calling thread
+     */
+    private final Band[] mBands;
+
+    /**
+     * the number of bands, that are not finished yet
+     */
+    private int mRemainingBands;
+
+    /**
+     * the frame, that is converted at the moment and its output
+     */
+    private YuvFrame mFrame;
+    private int mMode;
+    private int[] mArgbOutput;
+    private byte[] mNv21Output;
+
+    /**
+     * the arrays, that are reused by argbBuffer() / nv21Buffer()
+     */
+    private int[] mArgbBuffer;
+    private byte[] mNv21Buffer;
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    /**
+     *      The constructor for a YuvConverter
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param threads the number of threads, a large frame is converted on (including the calling thread). 1 ... only the calling thread is used
+     *      @throws IllegalArgumentException is thrown, if threads is smaller than 1
+     * </p>
+     */
+    public YuvConverter(int threads) throws IllegalArgumentException {
+        if(threads < 1) {
+            throw new IllegalArgumentException("A YuvConverter needs at least one thread!");
+        }
+
+        this.mBands = new Band[threads];
+        for(int i = 0; i < threads; i++) {
+            this.mBands[i] = new Band();
+        }
+
+        if(threads > 1) {
+            // an ArrayBlockingQueue doesn't allocate nodes, when a band is submitted
+            this.mExecutor = new ThreadPoolExecutor(threads - 1, threads - 1, 5, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(threads),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "CameraYuvConverter");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            this.mExecutor.allowCoreThreadTimeOut(true);
+        } else {
+            this.mExecutor = null;
+        }
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    /**
+     *      This method converts a frame to ARGB_8888 pixels (full range BT.601, like the camera delivers it)
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param frame the frame
+     *      @param output the pixels, row by row. It must have at least width * height elements
+     *      @throws IllegalArgumentException is thrown, if the output is too small
+     * </p>
+     */
+    public synchronized void toArgb(YuvFrame frame, int[] output) throws IllegalArgumentException {
+        if(output == null || output.length < frame.getWidth() * frame.getHeight()) {
+            throw new IllegalArgumentException("The output must have at least width * height elements!");
+        }
+
+        this.mArgbOutput = output;
+        this.convert(frame, MODE_ARGB);
+        this.mArgbOutput = null;
+    }
+
+    /**
+     *      This method converts a frame to NV21 (Y plane, followed by interleaved V and U samples)
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param frame the frame, its width and height must be even
+     *      @param output the NV21 bytes. It must have at least width * height * 3 / 2 elements
+     *      @throws IllegalArgumentException is thrown, if the output is too small or the size of the frame is odd
+     * </p>
+     */
+    public synchronized void toNv21(YuvFrame frame, byte[] output) throws IllegalArgumentException {
+        if((frame.getWidth() & 1) != 0 || (frame.getHeight() & 1) != 0) {
+            throw new IllegalArgumentException("NV21 needs an even width and height!");
+        }
+        if(output == null || output.length < frame.getWidth() * frame.getHeight() * 3 / 2) {
+            throw new IllegalArgumentException("The output must have at least width * height * 3 / 2 elements!");
+        }
+
+        this.mNv21Output = output;
+        this.convert(frame, MODE_NV21);
+        this.mNv21Output = null;
+    }
+
+    /**
+     *      This method returns an array for ARGB pixels, that is reused by the converter. It is only allocated, if the last one is too small
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param width the width of the frame
+     *      @param height the height of the frame
+     *      @return an array with at least width * height elements
+     * </p>
+     */
+    public synchronized int[] argbBuffer(int width, int height) {
+        if(this.mArgbBuffer == null || this.mArgbBuffer.length < width * height) {
+            this.mArgbBuffer = new int[width * height];
+        }
+        return this.mArgbBuffer;
+    }
+
+    /**
+     *      This method returns an array for NV21 bytes, that is reused by the converter. It is only allocated, if the last one is too small
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param width the width of the frame
+     *      @param height the height of the frame
+     *      @return an array with at least width * height * 3 / 2 elements
+     * </p>
+     */
+    public synchronized byte[] nv21Buffer(int width, int height) {
+        if(this.mNv21Buffer == null || this.mNv21Buffer.length < width * height * 3 / 2) {
+            this.mNv21Buffer = new byte[width * height * 3 / 2];
+        }
+        return this.mNv21Buffer;
+    }
+
+    /**
+     *      This method stops the threads of the converter
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    public void release() {
+        if(this.mExecutor != null) {
+            this.mExecutor.shutdown();
+        }
+    }
+
+    /**
+     *      This method splits the frame into bands and converts them. It returns, when all bands are converted
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param frame the frame
+     *      @param mode MODE_ARGB or MODE_NV21
+     * </p>
+     */
+    private void convert(YuvFrame frame, int mode) {
+        this.mFrame = frame;
+        this.mMode = mode;
+
+        int height = frame.getHeight();
+        int bands = frame.getWidth() * height >= PARALLEL_MIN_PIXELS ? this.mBands.length : 1;
+
+        // the bands start at even rows, so every band has its own chroma rows
+        int rowsPerBand = ((height / bands) + 1) & ~1;
+        int start = 0;
+        int used = 0;
+        for(int i = 0; i < bands && start < height; i++) {
+            int end = i == bands - 1 ? height : Math.min(height, start + rowsPerBand);
+            this.mBands[used].mStartRow = start;
+            this.mBands[used].mEndRow = end;
+            used++;
+            start = end;
+        }
+
+        synchronized(this.mBands) {
+            this.mRemainingBands = used - 1;
+        }
+        for(int i = 0; i < used - 1; i++) {
+            this.mExecutor.execute(this.mBands[i]);
+        }
+
+        this.convertRows(this.mBands[used - 1].mStartRow, this.mBands[used - 1].mEndRow);
+
+        synchronized(this.mBands) {
+            boolean interrupted = false;
+            while(this.mRemainingBands > 0) {
+                try {
+                    this.mBands.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;     // the other threads still write into the output, so we have to wait for them
+                }
+            }
+            if(interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        this.mFrame = null;
+    }
+
+    private void convertRows(int startRow, int endRow) {
+        if(this.mMode == MODE_ARGB) {
+            convertToArgb(this.mFrame, this.mArgbOutput, startRow, endRow);
+        } else {
+            convertToNv21(this.mFrame, this.mNv21Output, startRow, endRow);
+        }
+    }
+
+    /**
+     *      This method converts rows of a frame to ARGB pixels
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param frame the frame
+     *      @param output the ARGB pixels
+     *      @param startRow the first row (inclusive)
+     *      @param endRow the last row (exclusive)
+     * </p>
+     */
+    static void convertToArgb(YuvFrame frame, int[] output, int startRow, int endRow) {
+        int width = frame.getWidth();
+        ByteBuffer yPlane = frame.getPlane(YuvFrame.PLANE_Y);
+        ByteBuffer uPlane = frame.getPlane(YuvFrame.PLANE_U);
+        ByteBuffer vPlane = frame.getPlane(YuvFrame.PLANE_V);
+        int yRowStride = frame.getRowStride(YuvFrame.PLANE_Y);
+        int yPixelStride = frame.getPixelStride(YuvFrame.PLANE_Y);
+        int uRowStride = frame.getRowStride(YuvFrame.PLANE_U);
+        int uPixelStride = frame.getPixelStride(YuvFrame.PLANE_U);
+        int vRowStride = frame.getRowStride(YuvFrame.PLANE_V);
+        int vPixelStride = frame.getPixelStride(YuvFrame.PLANE_V);
+
+        for(int row = startRow; row < endRow; row++) {
+            int yIndex = row * yRowStride;
+            int uRow = (row >> 1) * uRowStride;
+            int vRow = (row >> 1) * vRowStride;
+            int outIndex = row * width;
+
+            for(int col = 0; col < width; col++) {
+                int y = (yPlane.get(yIndex) & 0xff) << 10;
+                int u = (uPlane.get(uRow + (col >> 1) * uPixelStride) & 0xff) - 128;
+                int v = (vPlane.get(vRow + (col >> 1) * vPixelStride) & 0xff) - 128;
+
+                // BT.601 full range, fixed point with 10 fractional bits
+                int r = (y + 1436 * v) >> 10;
+                int g = (y - 352 * u - 731 * v) >> 10;
+                int b = (y + 1815 * u) >> 10;
+
+                r = r < 0 ? 0 : (r > 255 ? 255 : r);
+                g = g < 0 ? 0 : (g > 255 ? 255 : g);
+                b = b < 0 ? 0 : (b > 255 ? 255 : b);
+
+                output[outIndex++] = 0xff000000 | (r << 16) | (g << 8) | b;
+                yIndex += yPixelStride;
+            }
+        }
+    }
+
+    /**
+     *      This method converts rows of a frame to NV21. startRow must be even
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param frame the frame
+     *      @param output the NV21 bytes
+     *      @param startRow the first row (inclusive)
+     *      @param endRow the last row (exclusive)
+     * </p>
+     */
+    static void convertToNv21(YuvFrame frame, byte[] output, int startRow, int endRow) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        ByteBuffer yPlane = frame.getPlane(YuvFrame.PLANE_Y);
+        ByteBuffer uPlane = frame.getPlane(YuvFrame.PLANE_U);
+        ByteBuffer vPlane = frame.getPlane(YuvFrame.PLANE_V);
+        int yRowStride = frame.getRowStride(YuvFrame.PLANE_Y);
+        int yPixelStride = frame.getPixelStride(YuvFrame.PLANE_Y);
+        int uRowStride = frame.getRowStride(YuvFrame.PLANE_U);
+        int uPixelStride = frame.getPixelStride(YuvFrame.PLANE_U);
+        int vRowStride = frame.getRowStride(YuvFrame.PLANE_V);
+        int vPixelStride = frame.getPixelStride(YuvFrame.PLANE_V);
+
+        for(int row = startRow; row < endRow; row++) {
+            int yIndex = row * yRowStride;
+            int outIndex = row * width;
+            for(int col = 0; col < width; col++) {
+                output[outIndex++] = yPlane.get(yIndex);
+                yIndex += yPixelStride;
+            }
+        }
+
+        int chromaOffset = width * height;
+        for(int chromaRow = startRow >> 1; chromaRow < (endRow + 1) >> 1; chromaRow++) {
+            int uIndex = chromaRow * uRowStride;
+            int vIndex = chromaRow * vRowStride;
+            int outIndex = chromaOffset + chromaRow * width;
+            for(int col = 0; col < width >> 1; col++) {
+                output[outIndex++] = vPlane.get(vIndex);
+                output[outIndex++] = uPlane.get(uIndex);
+                uIndex += uPixelStride;
+                vIndex += vPixelStride;
+            }
+        }
+    }
+
+
+    // *************************************************************** Class Section ***************************************************************
+
+
+    /**
+     *      This class converts a band of rows on a thread of the converter
+     * <p>
+     *      @version 1.0
+     *      @since 1.4
+     * </p>
+     */
+    private class Band implements Runnable {
+        private int mStartRow;
+        private int mEndRow;
+
+        @Override
+        public void run() {
+            try {
+                convertRows(this.mStartRow, this.mEndRow);
+            } finally {
+                synchronized(mBands) {
+                    mRemainingBands--;
+                    mBands.notifyAll();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.cameralib;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ *      This class is a view on a YUV_420_888 frame. It contains the three planes with their row strides and pixel strides, the buffers are not copied
+ * <p>
+ *      A frame (and its buffers) is only valid, while it is analyzed. The buffers must not be kept after that. The frames of the camera are
+ *      reused, every analyzer gets the same YuvFrame object for each of its frames
+ * </p>
+ * <p>
+ *      @version 1.1
+ *      @since 1.4
+ * </p>
+ */
+public final class YuvFrame {
+
+    /**
+     * the indices of the planes
+     */
+    public static final int PLANE_Y = 0;
+    public static final int PLANE_U = 1;
+    public static final int PLANE_V = 2;
+
+    private int mWidth;
+    private int mHeight;
+    private long mTimestamp;
+    private final ByteBuffer[] mPlanes;
+    private final int[] mRowStrides;
+    private final int[] mPixelStrides;
+
+    /**
+     *      The constructor for a YuvFrame
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param width the width of the frame in pixels
+     *      @param height the height of the frame in pixels
+     *      @param timestamp the sensor timestamp of the frame in nanoseconds
+     *      @param planes the Y, U and V plane
+     *      @param rowStrides the row strides of the planes in bytes
+     *      @param pixelStrides the pixel strides of the planes in bytes
+     *      @throws IllegalArgumentException is thrown if a passed argument is not valid
+     * </p>
+     */
+    public YuvFrame(int width, int height, long timestamp, ByteBuffer[] planes, int[] rowStrides, int[] pixelStrides) throws IllegalArgumentException {
+        if(width <= 0 || height <= 0 || planes == null || planes.length != 3 || rowStrides == null || rowStrides.length != 3
+                || pixelStrides == null || pixelStrides.length != 3) {
+            throw new IllegalArgumentException("A YuvFrame needs a size and three planes with their strides!");
+        }
+
+        this.mWidth = width;
+        this.mHeight = height;
+        this.mTimestamp = timestamp;
+        this.mPlanes = planes;
+        this.mRowStrides = rowStrides;
+        this.mPixelStrides = pixelStrides;
+    }
+
+    /**
+     *      The constructor for a YuvFrame, that is filled with set() and setPlane() for every frame
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    YuvFrame() {
+        this.mPlanes = new ByteBuffer[3];
+        this.mRowStrides = new int[3];
+        this.mPixelStrides = new int[3];
+    }
+
+    /**
+     *      This method sets the size and the timestamp of a reused frame
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param width the width of the frame in pixels
+     *      @param height the height of the frame in pixels
+     *      @param timestamp the sensor timestamp of the frame in nanoseconds
+     * </p>
+     */
+    void set(int width, int height, long timestamp) {
+        this.mWidth = width;
+        this.mHeight = height;
+        this.mTimestamp = timestamp;
+    }
+
+    /**
+     *      This method sets a plane of a reused frame
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param plane PLANE_Y, PLANE_U or PLANE_V
+     *      @param buffer the buffer of the plane, null to release the buffer of the last frame
+     *      @param rowStride the row stride of the plane in bytes
+     *      @param pixelStride the pixel stride of the plane in bytes
+     * </p>
+     */
+    void setPlane(int plane, ByteBuffer buffer, int rowStride, int pixelStride) {
+        this.mPlanes[plane] = buffer;
+        this.mRowStrides[plane] = rowStride;
+        this.mPixelStrides[plane] = pixelStride;
+    }
+
+    /**
+     * @return the width of the frame in pixels
+     */
+    public int getWidth() {
+        return this.mWidth;
+    }
+
+    /**
+     * @return the height of the frame in pixels
+     */
+    public int getHeight() {
+        return this.mHeight;
+    }
+
+    /**
+     * @return the sensor timestamp of the frame in nanoseconds
+     */
+    public long getTimestamp() {
+        return this.mTimestamp;
+    }
+
+    /**
+     * @param plane PLANE_Y, PLANE_U or PLANE_V
+     * @return the buffer of the plane
+     */
+    public ByteBuffer getPlane(int plane) {
+        return this.mPlanes[plane];
+    }
+
+    /**
+     * @param plane PLANE_Y, PLANE_U or PLANE_V
+     * @return the distance between the starts of two rows in bytes
+     */
+    public int getRowStride(int plane) {
+        return this.mRowStrides[plane];
+    }
+
+    /**
+     * @param plane PLANE_Y, PLANE_U or PLANE_V
+     * @return the distance between two pixels of a row in bytes
+     */
+    public int getPixelStride(int plane) {
+        return this.mPixelStrides[plane];
+    }
+}
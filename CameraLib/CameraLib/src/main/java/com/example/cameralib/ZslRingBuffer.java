@@ -0,0 +1,205 @@
+package com.example.cameralib;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ *      This class keeps the last frames of a continuous stream for the zero shutter lag mode. When the ring is full, the oldest frame is released.
+ *      The frames are reference counted: a frame, that is taken out of the ring via {@link #acquireClosest(long)}, stays open until it is released,
+ *      even if the ring drops it in the meantime
+ * <p>
+ *      @version 1.0
+ *      @since 1.4
+ * </p>
+ * <p>
+ *      @param <T> the type of the frames (for example {@link android.media.Image})
+ * </p>
+ */
+public final class ZslRingBuffer<T extends AutoCloseable> {
+
+    // *************************************************************** Variable Section ***************************************************************
+
+    /**
+     * the frames, mRing[mHead] is the place for the next frame
+     */
+    private final Handle<T>[] mRing;
+    private int mHead;
+    private int mSize;
+
+
+    // *************************************************************** Constructor Section ***************************************************************
+
+
+    /**
+     *      The constructor for a ZslRingBuffer
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param capacity the maximum number of frames in the ring
+     *      @throws IllegalArgumentException is thrown, if the capacity is smaller than 1
+     * </p>
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    ZslRingBuffer(int capacity) throws IllegalArgumentException {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be at least 1!");
+        }
+        this.mRing = (Handle<T>[]) new Handle[capacity];
+    }
+
+
+    // *************************************************************** Method Section ***************************************************************
+
+    /**
+     *      This method calculates the depth of a ring, that doesn't use more memory than the budget
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param budgetBytes the memory budget for the frames in bytes
+     *      @param frameBytes the size of one frame in bytes
+     *      @param maxDepth the maximum depth (for example limited by the ImageReader)
+     *      @return the depth, at least 1
+     * </p>
+     */
+    static int depthForBudget(long budgetBytes, long frameBytes, int maxDepth) {
+        long depth = frameBytes > 0 ? budgetBytes / frameBytes : maxDepth;
+        return (int) Math.max(1, Math.min(depth, maxDepth));
+    }
+
+    /**
+     *      This method adds a frame. If the ring is full, the oldest frame is released
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param timestamp the timestamp of the frame
+     *      @param frame the frame, the ring takes its ownership
+     * </p>
+     */
+    synchronized void add(long timestamp, T frame) {
+        Handle<T> oldest = this.mRing[this.mHead];
+        if(oldest != null) {
+            oldest.release();
+        }
+
+        this.mRing[this.mHead] = new Handle<>(frame, timestamp);
+        this.mHead = (this.mHead + 1) % this.mRing.length;
+        this.mSize = Math.min(this.mSize + 1, this.mRing.length);
+    }
+
+    /**
+     *      This method returns the frame, whose timestamp is the closest to a timestamp. The frame stays open until the handle is released
+     * <p>
+     *      @version 1.0
+     * </p>
+     * <p>
+     *      @param timestamp the timestamp, the frame should have
+     *      @return the handle of the frame, null if the ring is empty. {@link Handle#release()} must be called after the frame is used
+     * </p>
+     */
+    synchronized Handle<T> acquireClosest(long timestamp) {
+        Handle<T> closest = null;
+        long closestDistance = Long.MAX_VALUE;
+        for(Handle<T> handle : this.mRing) {
+            if(handle == null) {
+                continue;
+            }
+            long distance = Math.abs(handle.mTimestamp - timestamp);
+            if(distance < closestDistance) {
+                closest = handle;
+                closestDistance = distance;
+            }
+        }
+
+        if(closest != null) {
+            closest.mReferences.incrementAndGet();      // the ring still holds a reference, so the frame can't be closed in between
+        }
+        return closest;
+    }
+
+    /**
+     *      This method releases all frames of the ring. Frames, that are acquired, stay open until their handles are released
+     * <p>
+     *      @version 1.0
+     * </p>
+     */
+    synchronized void clear() {
+        for(int i = 0; i < this.mRing.length; i++) {
+            if(this.mRing[i] != null) {
+                this.mRing[i].release();
+                this.mRing[i] = null;
+            }
+        }
+        this.mHead = 0;
+        this.mSize = 0;
+    }
+
+    /**
+     * @return the number of frames in the ring
+     */
+    public synchronized int size() {
+        return this.mSize;
+    }
+
+    /**
+     * @return the maximum number of frames in the ring
+     */
+    public int getCapacity() {
+        return this.mRing.length;
+    }
+
+
+    // *************************************************************** Class Section ***************************************************************
+
+
+    /**
+     *      This class is a reference counted frame. The frame is closed, when the last reference is released
+     * <p>
+     *      @version 1.0
+     *      @since 1.4
+     * </p>
+     */
+    public static final class Handle<T extends AutoCloseable> {
+        private final T mFrame;
+        private final long mTimestamp;
+        private final AtomicInteger mReferences = new AtomicInteger(1);
+
+        Handle(T frame, long timestamp) {
+            this.mFrame = frame;
+            this.mTimestamp = timestamp;
+        }
+
+        /**
+         * @return the frame, it must not be used after the handle is released
+         */
+        public T get() {
+            return this.mFrame;
+        }
+
+        /**
+         * @return the timestamp of the frame
+         */
+        public long getTimestamp() {
+            return this.mTimestamp;
+        }
+
+        /**
+         *      This method releases a reference, the frame is closed with the last reference
+         * <p>
+         *      @version 1.0
+         * </p>
+         */
+        public void release() {
+            if(this.mReferences.decrementAndGet() != 0) {
+                return;
+            }
+            try {
+                this.mFrame.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
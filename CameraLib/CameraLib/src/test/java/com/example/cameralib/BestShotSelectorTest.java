@@ -0,0 +1,201 @@
+package com.example.cameralib;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link BestShotSelector} and {@link SharpnessScorer}.
+ */
+public class BestShotSelectorTest {
+
+    @Test
+    public void laplacianVariance_isHigherForSharpEdges() {
+        int size = 64;
+        int[] sharp = new int[size * size];
+        int[] blurred = new int[size * size];
+        for(int y = 0; y < size; y++) {
+            for(int x = 0; x < size; x++) {
+                int gray = ((x / 8 + y / 8) & 1) == 0 ? 0 : 255;
+                int ramp = (int) (127.5 + 127.5 * Math.sin(x * Math.PI / 16));
+                sharp[y * size + x] = 0xFF000000 | gray << 16 | gray << 8 | gray;
+                blurred[y * size + x] = 0xFF000000 | ramp << 16 | ramp << 8 | ramp;
+            }
+        }
+
+        SharpnessScorer scorer = new SharpnessScorer();
+        double sharpScore = scorer.laplacianVariance(sharp, size, size);
+        double blurredScore = scorer.laplacianVariance(blurred, size, size);
+        assertTrue(sharpScore + " > " + blurredScore, sharpScore > 10 * blurredScore);
+        assertEquals(0, scorer.laplacianVariance(new int[size * size], size, size), 0);
+    }
+
+    @Test
+    public void sharpestFramesAreWrittenOthersDropped() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        ImageWriterPool pool = new ImageWriterPool(1, 8, ImageWriterPool.OverflowPolicy.BLOCK);
+        BestShotSelector selector = new BestShotSelector(6, 2, new BestShotSelector.Scorer() {
+            @Override
+            public double score(@NonNull CameraFrame frame) {
+                return frame.getPlane(0).get(0);       // the test frames carry their score
+            }
+        }, executor, pool);
+
+        List<String> written = Collections.synchronizedList(new ArrayList<String>());
+        List<String> dropped = Collections.synchronizedList(new ArrayList<String>());
+        int[] scores = {3, 9, 1, 7, 5};
+        for(int i = 0; i < scores.length; i++) {
+            selector.expect(i);
+        }
+        selector.expect(99);
+        assertFalse(selector.offer(new TestFrame(42, 0), new TestTask("single", written, dropped)));
+
+        for(int i = 0; i < scores.length; i++) {
+            assertTrue(selector.offer(new TestFrame(i, scores[i]), new TestTask("frame" + scores[i], written, dropped)));
+        }
+        assertTrue(Double.isNaN(selector.getBestScore()));      // the 6th picture is still expected
+        selector.onFrameFailed();
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(pool.awaitIdle(5, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        Collections.sort(written);
+        assertEquals(2, written.size());
+        assertEquals("frame7", written.get(0));
+        assertEquals("frame9", written.get(1));
+        assertEquals(3, dropped.size());
+        assertEquals(9, selector.getBestScore(), 0);
+    }
+
+    @Test
+    public void cancel_dropsHeldFrames() throws InterruptedException {
+        ImageWriterPool pool = new ImageWriterPool(1, 8, ImageWriterPool.OverflowPolicy.BLOCK);
+        BestShotSelector selector = new BestShotSelector(3, 1, new BestShotSelector.Scorer() {
+            @Override
+            public double score(@NonNull CameraFrame frame) {
+                return 1;
+            }
+        }, new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                command.run();
+            }
+        }, pool);
+
+        List<String> written = new ArrayList<>();
+        List<String> dropped = new ArrayList<>();
+        selector.expect(1);
+        selector.expect(2);
+        selector.offer(new TestFrame(1, 1), new TestTask("first", written, dropped));
+
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        selector.cancel(new Runnable() {
+            @Override
+            public void run() {
+                cancelled.set(true);
+            }
+        });
+        assertTrue(cancelled.get());
+        selector.offer(new TestFrame(2, 1), new TestTask("second", written, dropped));
+        pool.shutdown();
+
+        assertTrue(written.isEmpty());
+        assertEquals(2, dropped.size());
+    }
+
+    @Test
+    public void cancel_callsBackWhenTheScoringIsFinished() {
+        ImageWriterPool pool = new ImageWriterPool(1, 8, ImageWriterPool.OverflowPolicy.BLOCK);
+        final List<Runnable> scoring = new ArrayList<>();
+        BestShotSelector selector = new BestShotSelector(2, 1, new BestShotSelector.Scorer() {
+            @Override
+            public double score(@NonNull CameraFrame frame) {
+                return 1;
+            }
+        }, new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                scoring.add(command);
+            }
+        }, pool);
+
+        final List<String> written = new ArrayList<>();
+        final List<String> dropped = new ArrayList<>();
+        selector.expect(1);
+        selector.offer(new TestFrame(1, 1), new TestTask("first", written, dropped));
+
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        selector.cancel(new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(1, dropped.size());      // the picture is dropped before
+                cancelled.set(true);
+            }
+        });
+        assertFalse(cancelled.get());       // the picture is still scored, the caller doesn't wait for it
+
+        scoring.get(0).run();
+        assertTrue(cancelled.get());
+        assertTrue(written.isEmpty());
+        pool.shutdown();
+    }
+
+    /**
+     * a JPEG frame, whose first byte is its score
+     */
+    private static class TestFrame implements CameraFrame {
+        private final long mTimestamp;
+        private final ByteBuffer mData;
+
+        TestFrame(long timestamp, int score) {
+            this.mTimestamp = timestamp;
+            this.mData = ByteBuffer.wrap(new byte[] {(byte) score});
+        }
+
+        @Override public int getFormat() { return 0x100; }
+        @Override public int getWidth() { return 1; }
+        @Override public int getHeight() { return 1; }
+        @Override public long getTimestamp() { return this.mTimestamp; }
+        @Override public int getPlaneCount() { return 1; }
+        @NonNull @Override public ByteBuffer getPlane(int plane) { return this.mData; }
+        @Override public int getRowStride(int plane) { return 0; }
+        @Override public int getPixelStride(int plane) { return 0; }
+        @Override public void close() { }
+    }
+
+    private static class TestTask implements ImageWriterPool.WriteTask {
+        private final String mName;
+        private final List<String> mWritten;
+        private final List<String> mDropped;
+
+        TestTask(String name, List<String> written, List<String> dropped) {
+            this.mName = name;
+            this.mWritten = written;
+            this.mDropped = dropped;
+        }
+
+        @Override
+        public void run() {
+            this.mWritten.add(this.mName);
+        }
+
+        @Override
+        public void discard() {
+            this.mDropped.add(this.mName);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.cameralib;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link CaptureCatalog} and {@link CaptureFileNames}.
+ */
+public class CaptureCatalogTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void existingFolderIsIndexedOnceAndOldestAreEvicted() throws Exception {
+        File folder = this.mFolder.getRoot();
+        for(int i = 0; i < 5; i++) {
+            write(new File(folder, "IMG_2020010" + i + "_120000.jpg"), 100);
+        }
+
+        CaptureCatalog catalog = new CaptureCatalog(folder);
+        assertTrue(catalog.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(5, catalog.getCount());
+        assertEquals(500, catalog.getTotalBytes());
+        assertTrue(new File(folder, CaptureCatalog.INDEX_NAME).exists());
+
+        FileCaptureSink sink = new FileCaptureSink(folder, null);
+        sink.setCatalog(catalog);
+        catalog.setQuota(0, 4);
+        sink.write(ByteBuffer.wrap(new byte[50]), "IMG_20200106_120000.jpg", 1);
+        assertTrue(catalog.awaitIdle(5, TimeUnit.SECONDS));
+
+        assertEquals(4, catalog.getCount());
+        assertEquals(350, catalog.getTotalBytes());
+        assertFalse(new File(folder, "IMG_20200100_120000.jpg").exists());
+        assertFalse(new File(folder, "IMG_20200101_120000.jpg").exists());
+        assertEquals("IMG_20200102_120000.jpg", catalog.getEntries().get(0).getName());
+
+        // the index is loaded from its file
+        CaptureCatalog reloaded = new CaptureCatalog(folder);
+        assertTrue(reloaded.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(4, reloaded.getCount());
+        assertEquals(350, reloaded.getTotalBytes());
+        assertEquals("IMG_20200106_120000.jpg", reloaded.getEntries().get(3).getName());
+    }
+
+    @Test
+    public void picturesWrittenOutsideTheIndexAreReconciledOnLoad() throws Exception {
+        File folder = this.mFolder.getRoot();
+        write(new File(folder, "IMG_20200101_120000.jpg"), 100);
+        write(new File(folder, "IMG_20200102_120000.jpg"), 100);
+        CaptureCatalog catalog = new CaptureCatalog(folder);
+        assertTrue(catalog.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(2, catalog.getCount());
+
+        // a session without a catalog writes and deletes pictures
+        File untracked = new File(folder, "IMG_20200103_120000.jpg");
+        write(untracked, 50);
+        assertTrue(untracked.setLastModified(System.currentTimeMillis() + 60000));
+        assertTrue(new File(folder, "IMG_20200101_120000.jpg").delete());
+
+        CaptureCatalog reloaded = new CaptureCatalog(folder);
+        reloaded.setQuota(0, 1);
+        assertTrue(reloaded.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(1, reloaded.getCount());
+        assertEquals(50, reloaded.getTotalBytes());
+        assertEquals("IMG_20200103_120000.jpg", reloaded.getEntries().get(0).getName());
+        assertFalse(new File(folder, "IMG_20200102_120000.jpg").exists());     // the oldest picture is evicted
+
+        // the reconciled index is written again
+        CaptureCatalog again = new CaptureCatalog(folder);
+        assertTrue(again.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(1, again.getCount());
+        assertEquals(50, again.getTotalBytes());
+    }
+
+    @Test
+    public void byteQuotaEvictsUntilItIsMet() throws Exception {
+        File folder = this.mFolder.getRoot();
+        CaptureCatalog catalog = new CaptureCatalog(folder);
+        final List<String> evicted = Collections.synchronizedList(new ArrayList<String>());
+        catalog.setListener(new CaptureCatalog.Listener() {
+            @Override
+            public void onEvicted(@NonNull List<File> files) {
+                for(File file : files) {
+                    evicted.add(file.getName());
+                }
+            }
+        });
+        catalog.setQuota(1000, 0);
+
+        for(int i = 0; i < 10; i++) {
+            String name = "IMG_" + i + ".jpg";
+            write(new File(folder, name), 300);
+            catalog.add(name, 300);
+        }
+        assertTrue(catalog.awaitIdle(5, TimeUnit.SECONDS));
+
+        assertEquals(3, catalog.getCount());
+        assertEquals(900, catalog.getTotalBytes());
+        assertEquals(7, evicted.size());
+        assertEquals("IMG_0.jpg", evicted.get(0));
+        assertEquals("IMG_6.jpg", evicted.get(6));
+        assertTrue(new File(folder, "IMG_7.jpg").exists());
+    }
+
+    @Test
+    public void fileNamesAreUniqueAndMonotonic() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2020, Calendar.MARCH, 7, 9, 5, 3);
+        calendar.set(Calendar.MILLISECOND, 42);
+        long millis = calendar.getTimeInMillis();
+
+        CaptureFileNames names = new CaptureFileNames();
+        assertEquals("IMG_20200307_090503_042.jpg", names.next(millis));
+        assertEquals("IMG_20200307_090503_042_000001.jpg", names.next(millis));
+        assertEquals("IMG_20200307_090503_042_000002.jpg", names.next(millis - 5000));     // the clock went back
+        assertEquals("IMG_20200307_090503_043.jpg", names.next(millis + 1));
+
+        String last = "";
+        for(int i = 0; i < 1000; i++) {
+            String name = names.next(millis + i / 3);
+            assertTrue(name + " > " + last, name.compareTo(last) > 0);
+            last = name;
+        }
+    }
+
+    @Test
+    public void fileNamesKeepTheirOrderPastAThousandPictures() {
+        long millis = 1583571903042L;
+        CaptureFileNames names = new CaptureFileNames();
+
+        String last = names.next(millis);
+        for(int i = 0; i < 1500; i++) {
+            String name = names.next(millis - i);      // the clock stays behind the first picture
+            assertEquals("IMG_yyyyMMdd_HHmmss_SSS_000000.jpg".length(), name.length());
+            assertTrue(name + " > " + last, name.compareTo(last) > 0);
+            last = name;
+        }
+        assertTrue(last, last.endsWith("_001500.jpg"));
+    }
+
+    @Test
+    public void fileNamesContinueAfterThePicturesOfTheFolder() throws IOException {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2020, Calendar.MARCH, 7, 9, 5, 3);
+        calendar.set(Calendar.MILLISECOND, 42);
+        long millis = calendar.getTimeInMillis();
+
+        File folder = this.mFolder.newFolder("seed");
+        write(new File(folder, "IMG_20200307_090503_042.jpg"), 1);
+        write(new File(folder, "IMG_20200307_090503_042_000003.jpg"), 1);
+        write(new File(folder, GroupCommitter.TEMP_PREFIX + "IMG_20200307_090503_042_000004.jpg"), 1);     // not committed yet
+        write(new File(folder, "notes.txt"), 1);
+
+        // the clock went back since the last session
+        CaptureFileNames names = new CaptureFileNames();
+        names.seed(folder);
+        String name = names.next(millis - 60000);
+        assertEquals("IMG_20200307_090503_042_000005.jpg", name);
+        assertFalse(new File(folder, name).exists());
+
+        // a later picture gets its own base
+        assertEquals("IMG_20200307_090503_043.jpg", names.next(millis + 1));
+    }
+
+    private static void write(File file, int size) throws IOException {
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(new byte[size]);
+        } finally {
+            output.close();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.cameralib;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link CaptureJournal}.
+ */
+public class CaptureJournalTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void entriesSurviveReopenAndGrowth() throws IOException {
+        File file = new File(this.mFolder.getRoot(), "captures.journal");
+
+        CaptureJournal journal = new CaptureJournal(file, 256);
+        for(int i = 0; i < 20; i++) {
+            journal.append(1000L + i, "IMG_" + i + ".jpg", 10000000L + i, 100 + i, 0.5f);
+        }
+        journal.append(5000L, "Bild_\u00e4.jpg", CaptureJournal.UNKNOWN, CaptureJournal.UNKNOWN, Float.NaN);
+        journal.close();
+        assertTrue(file.length() > 256);        // grown in chunks
+
+        journal = new CaptureJournal(file, 256);
+        assertEquals(21, journal.getEntryCount());
+        journal.append(6000L, "IMG_last.jpg", 1L, 50, 2f);
+        journal.close();
+
+        List<CaptureJournal.Entry> entries = CaptureJournal.read(file);
+        assertEquals(22, entries.size());
+        CaptureJournal.Entry entry = entries.get(7);
+        assertEquals(1007L, entry.getTimestamp());
+        assertEquals("IMG_7.jpg", entry.getName());
+        assertEquals(10000007L, entry.getExposureTime());
+        assertEquals(107, entry.getIso());
+        assertEquals(0.5f, entry.getFocusDistance(), 0);
+        assertTrue(entry.getWallTime() > 0);
+
+        assertEquals("Bild_\u00e4.jpg", entries.get(20).getName());
+        assertEquals(CaptureJournal.UNKNOWN, entries.get(20).getIso());
+        assertTrue(Float.isNaN(entries.get(20).getFocusDistance()));
+        assertEquals("IMG_last.jpg", entries.get(21).getName());
+    }
+
+    @Test
+    public void brokenEntryEndsTheJournal() throws IOException {
+        File file = new File(this.mFolder.getRoot(), "captures.journal");
+        CaptureJournal journal = new CaptureJournal(file);
+        journal.append(1L, "IMG_1.jpg", 1L, 100, 0f);
+        journal.append(2L, "IMG_2.jpg", 1L, 100, 0f);
+        journal.close();
+
+        // a torn write: the second entry is damaged
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        long second = 8 + 8 + 34 + "IMG_1.jpg".length();
+        randomAccessFile.seek(second + 8 + 4);
+        randomAccessFile.write(0x7F);
+        randomAccessFile.close();
+
+        assertEquals(1, CaptureJournal.read(file).size());
+
+        // the damaged entry is overwritten by the next one
+        journal = new CaptureJournal(file);
+        assertEquals(1, journal.getEntryCount());
+        journal.append(3L, "IMG_3.jpg", 1L, 100, 0f);
+        journal.close();
+
+        List<CaptureJournal.Entry> entries = CaptureJournal.read(file);
+        assertEquals(2, entries.size());
+        assertEquals("IMG_3.jpg", entries.get(1).getName());
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFilesAreRejected() throws IOException {
+        File file = this.mFolder.newFile("picture.jpg");
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.writeLong(0xFFD8FFE000104A46L);
+        randomAccessFile.close();
+
+        new CaptureJournal(file);
+    }
+}
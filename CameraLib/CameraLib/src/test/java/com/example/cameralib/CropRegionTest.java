@@ -0,0 +1,55 @@
+package com.example.cameralib;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link CropRegion}.
+ */
+public class CropRegionTest {
+
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 3000;
+
+    @Test
+    public void fit_centeredZoom() {
+        int[] crop = CropRegion.fit(WIDTH, HEIGHT, 0.25f, 0.25f, 0.75f, 0.75f, 4);
+        assertArrayEquals(new int[] {1000, 750, 3000, 2250}, crop);
+        assertEquals(12000000 / 4, CropRegion.outputPixels(crop, WIDTH, HEIGHT, 12000000));
+    }
+
+    @Test
+    public void fit_growsToSensorAspectRatio() {
+        // a tall region keeps its height, the width grows to 4:3
+        int[] crop = CropRegion.fit(WIDTH, HEIGHT, 0.45f, 0.3f, 0.55f, 0.7f, 8);
+        int width = crop[CropRegion.RIGHT] - crop[CropRegion.LEFT];
+        int height = crop[CropRegion.BOTTOM] - crop[CropRegion.TOP];
+        assertEquals(1200, height);
+        assertEquals(1600, width);
+        assertEquals(2000, (crop[CropRegion.LEFT] + crop[CropRegion.RIGHT]) / 2);
+    }
+
+    @Test
+    public void fit_limitedByMaxZoomAndArray() {
+        int[] tiny = CropRegion.fit(WIDTH, HEIGHT, 0.5f, 0.5f, 0.51f, 0.51f, 2);
+        assertEquals(WIDTH / 2, tiny[CropRegion.RIGHT] - tiny[CropRegion.LEFT]);
+        assertEquals(HEIGHT / 2, tiny[CropRegion.BOTTOM] - tiny[CropRegion.TOP]);
+
+        // a region at the corner is moved into the array
+        int[] corner = CropRegion.fit(WIDTH, HEIGHT, 0.9f, 0.9f, 1.1f, 1.1f, 4);
+        assertEquals(WIDTH, corner[CropRegion.RIGHT]);
+        assertEquals(HEIGHT, corner[CropRegion.BOTTOM]);
+        assertTrue(corner[CropRegion.LEFT] >= 0 && corner[CropRegion.TOP] >= 0);
+
+        assertArrayEquals(new int[] {0, 0, WIDTH, HEIGHT}, CropRegion.fit(WIDTH, HEIGHT, -1, -1, 2, 2, 4));
+    }
+
+    @Test
+    public void fit_evenCoordinates() {
+        int[] crop = CropRegion.fit(4032, 3024, 0.123f, 0.377f, 0.456f, 0.611f, 10);
+        for(int value : crop) {
+            assertEquals(0, value % 2);
+        }
+    }
+}
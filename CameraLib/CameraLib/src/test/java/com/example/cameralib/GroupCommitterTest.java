@@ -0,0 +1,159 @@
+package com.example.cameralib;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link GroupCommitter} and the atomic writes of {@link FileCaptureSink}.
+ */
+public class GroupCommitterTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void picturesAppearWhenTheirGroupIsCommitted() throws Exception {
+        File folder = this.mFolder.getRoot();
+        FileCaptureSink sink = new FileCaptureSink(folder, null);
+        sink.setAtomicWrites(true, 60000, 3);
+
+        byte[][] pictures = new byte[3][];
+        CaptureSink.Output[] outputs = new CaptureSink.Output[3];
+        for(int i = 0; i < 2; i++) {
+            pictures[i] = picture(1000 + i);
+            outputs[i] = sink.write(ByteBuffer.wrap(pictures[i]), "IMG_" + i + ".jpg", i);
+            assertTrue(outputs[i].isPending());
+            assertFalse(new File(folder, "IMG_" + i + ".jpg").exists());      // waits for the window or the group
+            assertEquals(pictures[i].length, new File(folder, GroupCommitter.TEMP_PREFIX + "IMG_" + i + ".jpg").length());
+        }
+
+        pictures[2] = picture(1002);
+        outputs[2] = sink.write(ByteBuffer.wrap(pictures[2]), "IMG_2.jpg", 2);      // the group is full
+        assertTrue(sink.awaitCommitted(5, TimeUnit.SECONDS));
+
+        for(int i = 0; i < 3; i++) {
+            File file = new File(folder, "IMG_" + i + ".jpg");
+            assertArrayEquals(pictures[i], Files.readAllBytes(file.toPath()));
+            assertFalse(GroupCommitter.tempFile(file).exists());
+            assertFalse(outputs[i].isPending());
+            assertEquals(file, outputs[i].getFile());
+        }
+        GroupCommitter committer = sink.getCommitter();
+        assertEquals(1, committer.getCommitCount());
+        assertEquals(3, committer.getCommittedFileCount());
+        assertEquals(0, committer.getFailedFileCount());
+        assertEquals(3, committer.getCommitLatency().getCount());
+    }
+
+    @Test
+    public void flushCommitsBeforeTheWindowAndAbandonedFilesAreDeleted() throws Exception {
+        File folder = this.mFolder.getRoot();
+        File abandoned = new File(folder, GroupCommitter.TEMP_PREFIX + "IMG_old.jpg");
+        FileOutputStream output = new FileOutputStream(abandoned);
+        output.write(picture(10), 0, 5);        // killed while writing
+        output.close();
+        assertTrue(abandoned.setLastModified(System.currentTimeMillis() - 60000));
+
+        FileCaptureSink sink = new FileCaptureSink(folder, null);
+        sink.setAtomicWrites(true, 60000, 16);
+        sink.write(ByteBuffer.wrap(picture(100)), "IMG_new.jpg", 1);
+        sink.flush();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while(!new File(folder, "IMG_new.jpg").exists() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(new File(folder, "IMG_new.jpg").exists());
+        assertFalse(abandoned.exists());
+        assertEquals(Arrays.asList("IMG_new.jpg"), Arrays.asList(folder.list()));
+
+        // without atomic writes the picture is written directly
+        sink.setAtomicWrites(false, 0, 1);
+        sink.write(ByteBuffer.wrap(picture(100)), "IMG_direct.jpg", 2);
+        assertTrue(new File(folder, "IMG_direct.jpg").exists());
+    }
+
+    @Test
+    public void outputFailsWhenTheCommitFails() throws Exception {
+        File folder = this.mFolder.getRoot();
+        FileCaptureSink sink = new FileCaptureSink(folder, null);
+        sink.setAtomicWrites(true, 60000, 16);
+
+        CaptureSink.Output output = sink.write(ByteBuffer.wrap(picture(100)), "IMG_lost.jpg", 1);
+        final AtomicReference<Boolean> stored = new AtomicReference<>();
+        output.whenStored(new CaptureSink.Output.OnStoredListener() {
+            @Override
+            public void onStored(boolean result) {
+                stored.set(result);
+            }
+        });
+        assertNull(stored.get());
+
+        assertTrue(GroupCommitter.tempFile(new File(folder, "IMG_lost.jpg")).delete());     // the storage lost the file
+        assertTrue(sink.awaitCommitted(5, TimeUnit.SECONDS));
+
+        assertEquals(Boolean.FALSE, stored.get());
+        assertFalse(output.isPending());
+        assertFalse(new File(folder, "IMG_lost.jpg").exists());
+        assertEquals(1, sink.getCommitter().getFailedFileCount());
+    }
+
+    @Test
+    public void completeAbandonedPicturesAreCommittedAgain() throws Exception {
+        File folder = this.mFolder.getRoot();
+        byte[] jpeg = picture(100);
+        jpeg[0] = (byte) 0xFF;
+        jpeg[1] = (byte) 0xD8;
+        jpeg[98] = (byte) 0xFF;
+        jpeg[99] = (byte) 0xD9;
+
+        // the data was synced, but the rename wasn't on the storage before the power was lost
+        File complete = new File(folder, "IMG_complete.jpg");
+        Files.write(GroupCommitter.tempFile(complete).toPath(), jpeg);
+        File truncated = new File(folder, "IMG_truncated.jpg");
+        Files.write(GroupCommitter.tempFile(truncated).toPath(), Arrays.copyOf(jpeg, 50));
+        assertTrue(GroupCommitter.tempFile(complete).setLastModified(System.currentTimeMillis() - 60000));
+        assertTrue(GroupCommitter.tempFile(truncated).setLastModified(System.currentTimeMillis() - 60000));
+
+        final List<File> committed = Collections.synchronizedList(new ArrayList<File>());
+        GroupCommitter committer = new GroupCommitter(new GroupCommitter.Listener() {
+            @Override
+            public void onCommitted(@NonNull List<File> files, @NonNull List<File> failed, boolean flushed) {
+                committed.addAll(files);
+                assertTrue(failed.isEmpty());
+            }
+        });
+        committer.recoverAbandoned(folder);
+        assertTrue(committer.awaitCommitted(5, TimeUnit.SECONDS));
+
+        assertEquals(Collections.singletonList(complete), committed);
+        assertArrayEquals(jpeg, Files.readAllBytes(complete.toPath()));
+        assertFalse(truncated.exists());
+        assertEquals(Arrays.asList("IMG_complete.jpg"), Arrays.asList(folder.list()));
+        assertEquals(1, committer.getCommittedFileCount());
+    }
+
+    private static byte[] picture(int size) {
+        byte[] picture = new byte[size];
+        for(int i = 0; i < size; i++) {
+            picture[i] = (byte) (i * 31 + size);
+        }
+        return picture;
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.cameralib;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the overflow policies of {@link ImageWriterPool}.
+ */
+public class ImageWriterPoolTest {
+
+    @Test
+    public void fail_dropsTheNewPicture() throws InterruptedException {
+        ImageWriterPool pool = new ImageWriterPool(1, 2, ImageWriterPool.OverflowPolicy.FAIL);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> written = Collections.synchronizedList(new ArrayList<Integer>());
+        List<Integer> discarded = Collections.synchronizedList(new ArrayList<Integer>());
+
+        assertTrue(pool.submit(new Task(0, release, written, discarded)));
+        awaitRunning(pool);
+        assertTrue(pool.submit(new Task(1, release, written, discarded)));
+        assertTrue(pool.submit(new Task(2, release, written, discarded)));
+        assertFalse(pool.submit(new Task(3, release, written, discarded)));
+        assertEquals(Collections.singletonList(3), discarded);
+
+        release.countDown();
+        assertTrue(pool.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(3, written.size());
+        assertEquals(3, pool.getWrittenCount());
+        assertEquals(1, pool.getDroppedCount());
+        pool.shutdown();
+    }
+
+    @Test
+    public void dropOldest_dropsTheOldestWaitingPicture() throws InterruptedException {
+        ImageWriterPool pool = new ImageWriterPool(1, 2, ImageWriterPool.OverflowPolicy.DROP_OLDEST);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> written = Collections.synchronizedList(new ArrayList<Integer>());
+        List<Integer> discarded = Collections.synchronizedList(new ArrayList<Integer>());
+
+        assertTrue(pool.submit(new Task(0, release, written, discarded)));
+        awaitRunning(pool);
+        for(int i = 1; i <= 4; i++) {
+            assertTrue(pool.submit(new Task(i, release, written, discarded)));
+        }
+        assertEquals(2, pool.getQueueDepth());
+        assertEquals(Arrays.asList(1, 2), discarded);
+
+        release.countDown();
+        assertTrue(pool.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(0, 3, 4), written);
+        assertEquals(2, pool.getDroppedCount());
+        pool.shutdown();
+    }
+
+    @Test
+    public void block_waitsForAPlaceAndShutdownDropsWaitingPictures() throws InterruptedException {
+        final ImageWriterPool pool = new ImageWriterPool(1, 1, ImageWriterPool.OverflowPolicy.BLOCK);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> written = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Integer> discarded = Collections.synchronizedList(new ArrayList<Integer>());
+
+        assertTrue(pool.submit(new Task(0, release, written, discarded)));
+        awaitRunning(pool);
+        assertTrue(pool.submit(new Task(1, release, written, discarded)));
+
+        final AtomicInteger result = new AtomicInteger(-1);
+        Thread camera = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                result.set(pool.submit(new Task(2, release, written, discarded)) ? 1 : 0);
+            }
+        });
+        camera.start();
+        camera.join(100);
+        assertTrue(camera.isAlive());       // the camera waits for a place
+
+        pool.shutdown();
+        release.countDown();
+        camera.join(5000);
+        assertFalse(camera.isAlive());
+
+        // the waiting picture is either written or dropped, but it is never lost in the queue
+        assertTrue(pool.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(3, written.size() + discarded.size());
+        assertEquals(result.get() == 1, written.contains(2));
+        assertFalse(pool.submit(new Task(3, release, written, discarded)));
+        assertTrue(discarded.contains(3));
+    }
+
+    @Test
+    public void failedWritesArentCountedAsWritten() throws InterruptedException {
+        ImageWriterPool pool = new ImageWriterPool(1, 4, ImageWriterPool.OverflowPolicy.BLOCK);
+        pool.submit(new ImageWriterPool.WriteTask() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("test");
+            }
+
+            @Override
+            public void discard() {
+                // nothing to release
+            }
+        });
+        List<Integer> written = Collections.synchronizedList(new ArrayList<Integer>());
+        pool.submit(new Task(1, new CountDownLatch(0), written, written));
+
+        assertTrue(pool.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(1, pool.getWrittenCount());
+        assertEquals(1, pool.getFailedCount());
+        assertEquals(2, pool.getStage().getProcessedCount());
+        pool.shutdown();
+    }
+
+    @Test
+    public void picturesOfAFailingSinkAreCountedAsFailed() throws InterruptedException {
+        ImageWriterPool pool = new ImageWriterPool(1, 4, ImageWriterPool.OverflowPolicy.BLOCK);
+        CaptureSink sink = new CaptureSink() {
+            @NonNull
+            @Override
+            public Output write(@NonNull ByteBuffer jpeg, @NonNull String name, long timestamp) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void flush() {
+                // nothing to publish
+            }
+        };
+        JpegFrame frame = new JpegFrame();
+        FrameSaver saver = new FrameSaver(frame, sink, "IMG_1.jpg", new CaptureMetrics(), System.nanoTime());
+
+        assertTrue(pool.submit(saver));
+        assertTrue(pool.awaitIdle(5, TimeUnit.SECONDS));
+        assertFalse(saver.isWritten());
+        assertTrue(frame.mClosed);
+        assertEquals(0, pool.getWrittenCount());
+        assertEquals(1, pool.getFailedCount());
+
+        // the thread survives the failure
+        List<Integer> written = Collections.synchronizedList(new ArrayList<Integer>());
+        assertTrue(pool.submit(new Task(1, new CountDownLatch(0), written, written)));
+        assertTrue(pool.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(1, pool.getWrittenCount());
+        pool.shutdown();
+    }
+
+    private static void awaitRunning(ImageWriterPool pool) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while(pool.getStage().getQueueDepth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, pool.getStage().getQueueDepth());
+    }
+
+    private static class Task implements ImageWriterPool.WriteTask {
+        private final int mNumber;
+        private final CountDownLatch mRelease;
+        private final List<Integer> mWritten;
+        private final List<Integer> mDiscarded;
+
+        Task(int number, CountDownLatch release, List<Integer> written, List<Integer> discarded) {
+            this.mNumber = number;
+            this.mRelease = release;
+            this.mWritten = written;
+            this.mDiscarded = discarded;
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.mRelease.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.mWritten.add(this.mNumber);
+        }
+
+        @Override
+        public void discard() {
+            this.mDiscarded.add(this.mNumber);
+        }
+    }
+
+    /**
+     * a JPEG frame, that remembers whether it was closed
+     */
+    private static class JpegFrame implements CameraFrame {
+        private volatile boolean mClosed;
+
+        @Override public int getFormat() { return 0x100; }
+        @Override public int getWidth() { return 1; }
+        @Override public int getHeight() { return 1; }
+        @Override public long getTimestamp() { return 1; }
+        @Override public int getPlaneCount() { return 1; }
+        @NonNull @Override public ByteBuffer getPlane(int plane) { return ByteBuffer.wrap(new byte[] {(byte) 0xFF, (byte) 0xD8}); }
+        @Override public int getRowStride(int plane) { return 0; }
+        @Override public int getPixelStride(int plane) { return 0; }
+        @Override public void close() { this.mClosed = true; }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.cameralib;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_areContiguous() {
+        for(int index = 1; index < 400; index++) {
+            assertEquals(LatencyHistogram.bucketUpperBound(index - 1) + 1, LatencyHistogram.bucketLowerBound(index));
+            assertEquals(index, LatencyHistogram.bucketIndex(LatencyHistogram.bucketLowerBound(index)));
+            assertEquals(index, LatencyHistogram.bucketIndex(LatencyHistogram.bucketUpperBound(index)));
+        }
+        assertTrue(LatencyHistogram.bucketIndex(Long.MAX_VALUE) >= 0);
+    }
+
+    @Test
+    public void percentiles_withinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for(long value = 1; value <= 1000; value++) {
+            histogram.record(value * 1000000L);     // 1 ms ... 1000 ms
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500500000L, snapshot.getMeanNanos());
+        assertEquals(1000000000L, snapshot.getMaxNanos());
+        assertEquals(500000000L, snapshot.getPercentileNanos(50), 500000000L * 0.125);
+        assertEquals(990000000L, snapshot.getPercentileNanos(99), 990000000L * 0.125);
+        assertTrue(snapshot.getPercentileNanos(100) <= snapshot.getMaxNanos());
+    }
+
+    @Test
+    public void percentiles_matchSortedValues() {
+        Random random = new Random(7);
+        long[] values = new long[5000];
+        LatencyHistogram histogram = new LatencyHistogram();
+        for(int i = 0; i < values.length; i++) {
+            values[i] = (long) (Math.exp(random.nextGaussian() * 2 + 15));
+            histogram.record(values[i]);
+        }
+        java.util.Arrays.sort(values);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        for(double percentile : new double[] {10, 50, 90, 99}) {
+            long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            assertEquals(expected, snapshot.getPercentileNanos(percentile), expected * 0.125);
+        }
+    }
+
+    @Test
+    public void reset_andEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.snapshot().getPercentileNanos(50));
+
+        histogram.record(-5);
+        histogram.record(42);
+        assertEquals(2, histogram.snapshot().getCount());
+        assertEquals(0, histogram.snapshot().getPercentileNanos(50));
+
+        histogram.reset();
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMaxNanos());
+    }
+
+    @Test
+    public void captureMetrics_recordsPerStage() {
+        CaptureMetrics metrics = new CaptureMetrics();
+        final long[] notified = new long[1];
+        metrics.setListener(new CaptureMetrics.Listener() {
+            @Override
+            public void onLatencyRecorded(CaptureMetrics.Stage stage, long nanos) {
+                notified[0] += nanos;
+            }
+        });
+
+        metrics.record(CaptureMetrics.Stage.CAMERA_OPEN, 300);
+        metrics.record(CaptureMetrics.Stage.IMAGE_AVAILABLE_TO_SAVED, 700);
+
+        CaptureMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.get(CaptureMetrics.Stage.CAMERA_OPEN).getCount());
+        assertEquals(1, snapshot.get(CaptureMetrics.Stage.IMAGE_AVAILABLE_TO_SAVED).getCount());
+        assertEquals(0, snapshot.get(CaptureMetrics.Stage.SESSION_CONFIGURE).getCount());
+        assertEquals(1000, notified[0]);
+    }
+}
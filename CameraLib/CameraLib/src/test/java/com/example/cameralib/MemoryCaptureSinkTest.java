@@ -0,0 +1,64 @@
+package com.example.cameralib;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link MemoryCaptureSink}.
+ */
+public class MemoryCaptureSinkTest {
+
+    @Test
+    public void write_copiesJpegAndCallsListener() {
+        final List<ByteBuffer> received = new ArrayList<>();
+        MemoryCaptureSink sink = new MemoryCaptureSink(new MemoryCaptureSink.Listener() {
+            @Override
+            public void onPicture(@NonNull ByteBuffer jpeg, @NonNull String name, long timestamp) {
+                assertEquals("IMG_1.jpg", name);
+                assertEquals(42, timestamp);
+                received.add(jpeg);
+            }
+        });
+
+        ByteBuffer camera = ByteBuffer.allocateDirect(8);
+        camera.put(new byte[] {(byte) 0xFF, (byte) 0xD8, 1, 2, 3, (byte) 0xFF, (byte) 0xD9, 9});
+        camera.position(0).limit(7);
+
+        CaptureSink.Output output = sink.write(camera, "IMG_1.jpg", 42);
+        camera.clear();
+        camera.put(0, (byte) 0);        // the camera reuses its buffer
+
+        ByteBuffer data = output.getData();
+        assertNotNull(data);
+        assertTrue(data.isReadOnly());
+        assertEquals(7, data.remaining());
+        assertEquals((byte) 0xFF, data.get(0));
+        assertEquals((byte) 0xD9, data.get(6));
+        assertNull(output.getFile());
+        assertNull(output.getUri());
+
+        assertEquals(1, received.size());
+        assertEquals(7, received.get(0).remaining());
+    }
+
+    @Test
+    public void getData_returnsIndependentViews() {
+        CaptureSink.Output output = new MemoryCaptureSink(null).write(ByteBuffer.wrap(new byte[] {1, 2, 3}), "IMG_2.jpg", 0);
+
+        ByteBuffer first = output.getData();
+        assertNotNull(first);
+        first.get();
+        first.get();
+
+        ByteBuffer second = output.getData();
+        assertNotNull(second);
+        assertEquals(3, second.remaining());
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.cameralib;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link MjpegStreamServer}, the clients connect over loopback.
+ */
+public class MjpegStreamServerTest {
+
+    private MjpegStreamServer mServer;
+
+    @After
+    public void stopServer() {
+        if(this.mServer != null) {
+            this.mServer.stop();
+        }
+    }
+
+    @Test
+    public void slowClientSkipsFramesWithoutBlockingFastClient() throws Exception {
+        this.mServer = new MjpegStreamServer(2, 4);
+        int port = this.mServer.start(0);
+
+        Socket slow = new Socket();
+        slow.setReceiveBufferSize(4096);
+        slow.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 5000);
+        Socket fast = connect(port);
+        String header = readHeader(fast.getInputStream());
+        assertTrue(header, header.startsWith("HTTP/1.0 200 OK\r\n"));
+        assertTrue(header, header.contains("Content-Type: multipart/x-mixed-replace; boundary=cameralibframe\r\n"));
+        request(slow);
+        readHeader(slow.getInputStream());      // the slow client never reads a frame
+        awaitClients(2);
+
+        final int frameCount = 200;
+        final AtomicInteger lastReceived = new AtomicInteger(-1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final DataInputStream input = new DataInputStream(fast.getInputStream());
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while(lastReceived.get() < frameCount - 1) {
+                        byte[] frame = readPart(input);
+                        int sequence = ByteBuffer.wrap(frame).getInt();
+                        assertTrue(sequence > lastReceived.get());
+                        for(int i = 4; i < frame.length; i++) {
+                            assertEquals((byte) (sequence + i), frame[i]);
+                        }
+                        lastReceived.set(sequence);
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }
+        });
+        reader.start();
+
+        ByteBuffer jpeg = ByteBuffer.allocate(64 * 1024);
+        for(int sequence = 0; sequence < frameCount; sequence++) {
+            jpeg.clear();
+            jpeg.putInt(sequence);
+            for(int i = 4; i < jpeg.capacity(); i++) {
+                jpeg.put((byte) (sequence + i));
+            }
+            jpeg.flip();
+            this.mServer.publish(jpeg);
+            assertEquals(0, jpeg.position());
+            Thread.sleep(1);
+        }
+
+        reader.join(10000);
+        assertNull(failure.get());
+        assertEquals(frameCount - 1, lastReceived.get());
+        assertEquals(frameCount, this.mServer.getPublishedFrameCount());
+        assertTrue(this.mServer.getSkippedFrameCount() > frameCount / 2);     // most frames of the slow client
+
+        slow.close();
+        fast.close();
+    }
+
+    @Test
+    public void clientsOverTheLimitAreRejected() throws Exception {
+        this.mServer = new MjpegStreamServer(1, 1);
+        int port = this.mServer.start(0);
+
+        Socket first = connect(port);
+        readHeader(first.getInputStream());
+        awaitClients(1);
+
+        Socket second = connect(port);
+        String header = readHeader(second.getInputStream());
+        assertTrue(header, header.startsWith("HTTP/1.0 503"));
+        assertEquals(1, this.mServer.getClientCount());
+
+        first.close();
+        second.close();
+        long deadline = System.currentTimeMillis() + 5000;
+        while(this.mServer.getClientCount() > 0 && System.currentTimeMillis() < deadline) {
+            this.mServer.publish(ByteBuffer.wrap(new byte[16]));       // writing finds the closed connection
+            Thread.sleep(10);
+        }
+        assertEquals(0, this.mServer.getClientCount());
+    }
+
+    @Test
+    public void idleClientIsDisconnectedAfterTheRequestTimeout() throws Exception {
+        this.mServer = new MjpegStreamServer(1, 1);
+        this.mServer.setRequestTimeoutMillis(200);
+        int port = this.mServer.start(0);
+
+        Socket idle = new Socket(InetAddress.getLoopbackAddress(), port);       // never sends a request
+        idle.setSoTimeout(5000);
+        long deadline = System.currentTimeMillis() + 5000;
+        while(this.mServer.getClientCount() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, this.mServer.getClientCount());
+
+        assertEquals(-1, idle.getInputStream().read());
+        assertEquals(0, this.mServer.getClientCount());
+
+        Socket viewer = connect(port);
+        String header = readHeader(viewer.getInputStream());
+        assertTrue(header, header.startsWith("HTTP/1.0 200 OK\r\n"));
+        awaitClients(1);
+
+        Thread.sleep(400);
+        assertEquals(1, this.mServer.getClientCount());        // a streaming client has no timeout
+
+        idle.close();
+        viewer.close();
+    }
+
+    private void awaitClients(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while(System.currentTimeMillis() < deadline) {
+            if(this.mServer.getClientCount() == count && this.mServer.hasClients()) {
+                return;
+            }
+            Thread.sleep(5);
+        }
+        fail("The clients didn't connect");
+    }
+
+    private static Socket connect(int port) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setSoTimeout(5000);
+        request(socket);
+        return socket;
+    }
+
+    private static void request(Socket socket) throws IOException {
+        socket.setSoTimeout(5000);
+        OutputStream output = socket.getOutputStream();
+        output.write("GET /stream HTTP/1.0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        output.flush();
+    }
+
+    /**
+     * reads until the empty line, that ends a header
+     */
+    private static String readHeader(InputStream input) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        int matched = 0;
+        while(matched < 4) {
+            int b = input.read();
+            if(b < 0) {
+                break;
+            }
+            header.write(b);
+            matched = (b == (matched % 2 == 0 ? '\r' : '\n')) ? matched + 1 : (b == '\r' ? 1 : 0);
+        }
+        return new String(header.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] readPart(DataInputStream input) throws IOException {
+        String header = readHeader(input);
+        assertTrue(header, header.startsWith("--cameralibframe\r\nContent-Type: image/jpeg\r\n"));
+        int start = header.indexOf("Content-Length: ") + "Content-Length: ".length();
+        int length = Integer.parseInt(header.substring(start, header.indexOf('\r', start)));
+
+        byte[] frame = new byte[length];
+        input.readFully(frame);
+        assertEquals('\r', input.read());
+        assertEquals('\n', input.read());
+        return frame;
+    }
+}
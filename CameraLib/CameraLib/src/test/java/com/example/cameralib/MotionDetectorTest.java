@@ -0,0 +1,85 @@
+package com.example.cameralib;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link MotionDetector}.
+ */
+public class MotionDetectorTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 128;
+    private static final int ROW_STRIDE = 192;
+    private static final long FRAME_NANOS = 33000000;
+
+    private final List<Float> mTriggers = new ArrayList<>();
+
+    private final MotionDetector mDetector = new MotionDetector(new MotionDetector.Listener() {
+        @Override
+        public void onMotion(float changedArea, long timestamp) {
+            mTriggers.add(changedArea);
+        }
+    });
+
+    @Test
+    public void staticScene_doesNotTrigger() {
+        for(int i = 0; i < 5; i++) {
+            this.mDetector.analyze(frame(i, 100, 0, 0, 0));
+        }
+        assertTrue(this.mTriggers.isEmpty());
+        assertEquals(0, this.mDetector.getLastChangedArea(), 0);
+    }
+
+    @Test
+    public void movingSquare_triggersWithItsArea() {
+        this.mDetector.analyze(frame(0, 100, 0, 0, 0));
+        this.mDetector.analyze(frame(1, 100, 32, 32, 32));       // 4 of 80 cells
+
+        assertEquals(1, this.mTriggers.size());
+        assertEquals(4 / 80f, this.mTriggers.get(0), 1e-6);
+    }
+
+    @Test
+    public void exposureChange_isNotMotion() {
+        this.mDetector.analyze(frame(0, 100, 0, 0, 0));
+        this.mDetector.analyze(frame(1, 140, 0, 0, 0));
+        assertTrue(this.mTriggers.isEmpty());
+    }
+
+    @Test
+    public void areaAndCooldown_limitTriggers() {
+        this.mDetector.setMinArea(0.1f);
+        this.mDetector.analyze(frame(0, 100, 0, 0, 0));
+        this.mDetector.analyze(frame(1, 100, 32, 32, 32));
+        assertTrue(this.mTriggers.isEmpty());               // 5 % of the frame
+
+        this.mDetector.setMinArea(0.02f);
+        this.mDetector.setCooldownMillis(100);
+        this.mDetector.analyze(frame(2, 100, 64, 32, 32));
+        this.mDetector.analyze(frame(3, 100, 96, 32, 32));  // 33 ms later
+        this.mDetector.analyze(frame(6, 100, 64, 32, 32));  // 132 ms later
+        assertEquals(2, this.mTriggers.size());
+    }
+
+    /**
+     * creates a frame with padded rows, a uniform luma and a bright square (size 0 for no square)
+     */
+    private static YuvFrame frame(int index, int luma, int squareX, int squareY, int squareSize) {
+        ByteBuffer y = ByteBuffer.allocateDirect(ROW_STRIDE * HEIGHT);
+        for(int row = 0; row < HEIGHT; row++) {
+            for(int column = 0; column < ROW_STRIDE; column++) {
+                boolean square = column >= squareX && column < squareX + squareSize && row >= squareY && row < squareY + squareSize;
+                y.put(row * ROW_STRIDE + column, (byte) (square ? 250 : luma));
+            }
+        }
+        ByteBuffer uv = ByteBuffer.allocateDirect(ROW_STRIDE * HEIGHT / 2);
+        return new YuvFrame(WIDTH, HEIGHT, index * FRAME_NANOS, new ByteBuffer[] {y, uv, uv.duplicate()},
+                new int[] {ROW_STRIDE, ROW_STRIDE, ROW_STRIDE}, new int[] {1, 2, 2});
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.cameralib;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link OutputPolicy} and {@link AdaptiveJpegQuality}.
+ */
+public class OutputPolicyTest {
+
+    /**
+     * 12 MP, 8 MP, 2 MP and VGA, not sorted like on most devices
+     */
+    private static final long[] PIXELS = {4000L * 3000, 640L * 480, 3264L * 2448, 1920L * 1080};
+
+    @Test
+    public void chooseIndex_defaultIsLargest() {
+        assertEquals(0, OutputPolicy.DEFAULT.chooseIndex(PIXELS, 0));
+    }
+
+    @Test
+    public void chooseIndex_targetMegapixels() {
+        assertEquals(2, OutputPolicy.DEFAULT.withTargetMegapixels(8).chooseIndex(PIXELS, 0));
+        assertEquals(3, OutputPolicy.DEFAULT.withTargetMegapixels(5).chooseIndex(PIXELS, 0));
+        assertEquals(1, OutputPolicy.DEFAULT.withTargetMegapixels(0.1).chooseIndex(PIXELS, 0));   // nothing fits, the smallest size is used
+        assertEquals(0, OutputPolicy.DEFAULT.chooseIndex(new long[] {640L * 480}, 0));
+    }
+
+    @Test
+    public void chooseIndex_byteBudgetDependsOnQuality() {
+        OutputPolicy budget = OutputPolicy.DEFAULT.withMaxBytes(1500000);
+        assertEquals(3, budget.chooseIndex(PIXELS, 0));
+        assertEquals(2, budget.withJpegQuality(80).chooseIndex(PIXELS, 0));
+        assertTrue(OutputPolicy.estimateJpegBytes(PIXELS[2], 80) <= 1500000);
+    }
+
+    @Test
+    public void estimateJpegBytes_growsWithQuality() {
+        long previous = 0;
+        for(int quality = 1; quality <= 100; quality++) {
+            long bytes = OutputPolicy.estimateJpegBytes(PIXELS[0], quality);
+            assertTrue(bytes >= previous);
+            previous = bytes;
+        }
+        assertEquals(Math.round(PIXELS[0] * 0.35), OutputPolicy.estimateJpegBytes(PIXELS[0], 95));
+    }
+
+    @Test
+    public void nearestIndex_snapsThumbnailToSupportedSize() {
+        int[] widths = {0, 160, 320, 256};
+        int[] heights = {0, 120, 240, 144};
+        assertEquals(2, OutputPolicy.nearestIndex(widths, heights, 300, 200));
+        assertEquals(3, OutputPolicy.nearestIndex(widths, heights, 256, 144));
+        assertEquals(1, OutputPolicy.nearestIndex(widths, heights, 1, 1));           // a tiny thumbnail isn't turned off
+        assertEquals(0, OutputPolicy.nearestIndex(widths, heights, 0, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withJpegQuality_rejectsOutOfRange() {
+        OutputPolicy.DEFAULT.withJpegQuality(101);
+    }
+
+    @Test
+    public void adaptiveQuality_followsWriteThroughput() {
+        AdaptiveJpegQuality quality = new AdaptiveJpegQuality(95, 70);
+        long now = 0;
+
+        // 100 pictures per second, but a write needs 20 ms
+        for(int i = 0; i < 30; i++) {
+            now += 10000000;
+            quality.onPictureAvailable(now);
+            quality.onPictureWritten(20000000, 1);
+        }
+        assertEquals(70, quality.getQuality());
+
+        // the storage is fast again
+        for(int i = 0; i < 60; i++) {
+            now += 10000000;
+            quality.onPictureAvailable(now);
+            quality.onPictureWritten(2000000, 1);
+        }
+        assertEquals(95, quality.getQuality());
+    }
+
+    @Test
+    public void adaptiveQuality_resetsAfterPause() {
+        AdaptiveJpegQuality quality = new AdaptiveJpegQuality(90, 50);
+        long now = 0;
+        for(int i = 0; i < 10; i++) {
+            now += 10000000;
+            quality.onPictureAvailable(now);
+            quality.onPictureWritten(40000000, 2);
+        }
+        assertTrue(quality.getQuality() < 90);
+
+        quality.onPictureAvailable(now + 5000000000L);
+        assertEquals(90, quality.getQuality());
+    }
+
+    @Test
+    public void adaptiveQuality_offKeepsQuality() {
+        AdaptiveJpegQuality quality = new AdaptiveJpegQuality(95, 95);
+        for(int i = 1; i <= 20; i++) {
+            quality.onPictureAvailable(i * 10000000L);
+            quality.onPictureWritten(100000000, 1);
+        }
+        assertEquals(95, quality.getQuality());
+    }
+}
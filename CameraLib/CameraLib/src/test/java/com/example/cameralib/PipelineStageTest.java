@@ -0,0 +1,115 @@
+package com.example.cameralib;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link PipelineStage}.
+ */
+public class PipelineStageTest {
+
+    @Test
+    public void tryQueue_rejectsWhenFull() throws InterruptedException {
+        PipelineStage stage = new PipelineStage("Test", 2);
+        assertTrue(stage.tryQueue());
+        assertTrue(stage.tryQueue());
+        assertFalse(stage.tryQueue());
+        assertEquals(2, stage.getQueueDepth());
+        assertEquals(1, stage.getRejectedCount());
+        assertFalse(stage.awaitIdle(10, TimeUnit.MILLISECONDS));
+
+        stage.onDequeued();
+        stage.onProcessed(2000000);
+        stage.onDequeued();
+        stage.onProcessed(4000000);
+
+        assertTrue(stage.awaitIdle(10, TimeUnit.MILLISECONDS));
+        assertEquals(0, stage.getQueueDepth());
+        assertEquals(2, stage.getMaxQueueDepth());
+        assertEquals(2, stage.getProcessedCount());
+        assertEquals(2, stage.getServiceTimes().getCount());
+        assertTrue(stage.getServiceTimes().getMaxNanos() >= 4000000);
+    }
+
+    @Test
+    public void whenIdle_runsAfterTheLastTask() {
+        PipelineStage stage = new PipelineStage("Test", 2);
+        final AtomicInteger idle = new AtomicInteger();
+        Runnable onIdle = new Runnable() {
+            @Override
+            public void run() {
+                idle.incrementAndGet();
+            }
+        };
+        stage.whenIdle(onIdle);
+        assertEquals(1, idle.get());        // the stage is idle already
+
+        assertTrue(stage.tryQueue());
+        assertTrue(stage.tryQueue());
+        stage.whenIdle(onIdle);
+        stage.onDequeued();
+        stage.onProcessed(1000);
+        assertEquals(1, idle.get());
+
+        stage.onRejected();
+        assertEquals(2, idle.get());
+        assertTrue(stage.tryQueue());
+        stage.onDequeued();
+        stage.onProcessed(1000);
+        assertEquals(2, idle.get());        // the callback runs only once
+    }
+
+    @Test
+    public void imageWriterPool_reportsQueueAndServiceTime() throws InterruptedException {
+        ImageWriterPool pool = new ImageWriterPool(1, 4, ImageWriterPool.OverflowPolicy.FAIL);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        for(int i = 0; i < 6; i++) {
+            pool.submit(new ImageWriterPool.WriteTask() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                @Override
+                public void discard() {
+                    // nothing to release
+                }
+            });
+        }
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        PipelineStage stage = pool.getStage();
+        assertEquals(4, stage.getQueueDepth());        // one task runs, one is dropped
+        assertEquals(1, stage.getRejectedCount());
+
+        final CountDownLatch idle = new CountDownLatch(1);
+        pool.whenIdle(new Runnable() {
+            @Override
+            public void run() {
+                idle.countDown();
+            }
+        });
+        assertEquals(1, idle.getCount());
+
+        release.countDown();
+        assertTrue(idle.await(5, TimeUnit.SECONDS));
+        assertTrue(pool.awaitIdle(5, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        assertEquals(0, stage.getQueueDepth());
+        assertEquals(5, stage.getProcessedCount());
+        assertEquals(5, stage.getServiceTimes().getCount());
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.cameralib;
+
+import android.graphics.ImageFormat;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SyntheticFrameSource}.
+ */
+public class SyntheticFrameSourceTest {
+
+    @Test
+    public void yuvFrames_haveFrameIntervalTimestampsAndMovingPattern() throws InterruptedException {
+        SyntheticFrameSource source = new SyntheticFrameSource(ImageFormat.YUV_420_888, 64, 16, 500, 3);
+        final List<Long> timestamps = new ArrayList<>();
+        final List<Byte> firstPixels = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(20);
+
+        source.start(new FrameSource.Listener() {
+            @Override
+            public void onFrame(@NonNull CameraFrame frame) {
+                assertEquals(3, frame.getPlaneCount());
+                assertEquals(2, frame.getPixelStride(YuvFrame.PLANE_U));
+                timestamps.add(frame.getTimestamp());
+                firstPixels.add(frame.getPlane(YuvFrame.PLANE_Y).get(0));
+                frame.close();
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        source.stop();
+
+        long interval = source.getFrameIntervalNanos();
+        assertEquals(2000000, interval);
+        for(int i = 1; i < 20; i++) {
+            long delta = timestamps.get(i) - timestamps.get(i - 1);
+            long offGrid = (delta + interval / 2) % interval - interval / 2;     // dropped frames leave multiples of the interval
+            assertTrue("delta " + delta, delta > 0 && Math.abs(offGrid) <= interval / 100);
+        }
+        assertNotEquals(firstPixels.get(0), firstPixels.get(1));
+    }
+
+    @Test
+    public void heldFrames_areDropped() throws InterruptedException {
+        SyntheticFrameSource source = new SyntheticFrameSource(ImageFormat.JPEG, 32, 32, 1000, 2);
+        final List<CameraFrame> held = new ArrayList<>();
+        source.start(new FrameSource.Listener() {
+            @Override
+            public void onFrame(@NonNull CameraFrame frame) {
+                held.add(frame);            // never closed, like a stuck consumer
+            }
+        });
+        Thread.sleep(50);
+        source.stop();
+
+        assertEquals(2, source.getDeliveredFrameCount());
+        assertTrue(source.getDroppedFrameCount() > 0);
+    }
+
+    @Test
+    public void jpegFrames_areSavedThroughWriterPool() throws InterruptedException {
+        final int frames = 200;
+        SyntheticFrameSource source = new SyntheticFrameSource(ImageFormat.JPEG, 320, 240, 0, 4);
+        final ImageWriterPool pool = new ImageWriterPool(2, 4, ImageWriterPool.OverflowPolicy.BLOCK);
+        final CaptureMetrics metrics = new CaptureMetrics();
+        final AtomicInteger saved = new AtomicInteger();
+        final CaptureSink sink = new MemoryCaptureSink(new MemoryCaptureSink.Listener() {
+            @Override
+            public void onPicture(@NonNull ByteBuffer jpeg, @NonNull String name, long timestamp) {
+                assertEquals((byte) 0xFF, jpeg.get(0));
+                assertEquals((byte) 0xD8, jpeg.get(1));
+                assertEquals((byte) 0xD9, jpeg.get(jpeg.limit() - 1));
+                saved.incrementAndGet();
+            }
+        });
+        final AtomicInteger submitted = new AtomicInteger();
+
+        source.start(new FrameSource.Listener() {
+            @Override
+            public void onFrame(@NonNull CameraFrame frame) {
+                if(submitted.getAndIncrement() >= frames) {
+                    frame.close();
+                    return;
+                }
+                pool.submit(new FrameSaver(frame, sink, "IMG_" + frame.getTimestamp() + ".jpg", metrics, System.nanoTime()));
+            }
+        });
+        while(submitted.get() < frames) {
+            Thread.sleep(5);
+        }
+        source.stop();
+        assertTrue(pool.awaitIdle(5, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        assertEquals(frames, saved.get());
+        assertEquals(frames, metrics.snapshot().get(CaptureMetrics.Stage.IMAGE_AVAILABLE_TO_SAVED).getCount());
+    }
+}
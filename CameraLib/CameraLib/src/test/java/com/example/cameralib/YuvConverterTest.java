@@ -0,0 +1,130 @@
+package com.example.cameralib;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link YuvConverter}, the frames are synthetic semi-planar frames with padded rows (like most camera HALs deliver them).
+ */
+public class YuvConverterTest {
+
+    @Test
+    public void toArgb_grayFrame() {
+        YuvFrame frame = createFrame(8, 4, 16, new Random(1), true);
+        int[] output = new int[8 * 4];
+
+        new YuvConverter(1).toArgb(frame, output);
+
+        for(int pixel : output) {
+            assertEquals(0xff808080, pixel);
+        }
+    }
+
+    @Test
+    public void toArgb_matchesBt601() {
+        YuvFrame frame = createFrame(16, 8, 20, new Random(2), false);
+        int[] output = new int[16 * 8];
+
+        new YuvConverter(1).toArgb(frame, output);
+
+        for(int row = 0; row < 8; row++) {
+            for(int col = 0; col < 16; col++) {
+                int y = frame.getPlane(YuvFrame.PLANE_Y).get(row * 20 + col) & 0xff;
+                int u = (frame.getPlane(YuvFrame.PLANE_U).get((row / 2) * 20 + (col / 2) * 2) & 0xff) - 128;
+                int v = (frame.getPlane(YuvFrame.PLANE_V).get((row / 2) * 20 + (col / 2) * 2) & 0xff) - 128;
+                int pixel = output[row * 16 + col];
+
+                assertEquals(clamp(y + 1.402 * v), (pixel >> 16) & 0xff, 2);
+                assertEquals(clamp(y - 0.344 * u - 0.714 * v), (pixel >> 8) & 0xff, 2);
+                assertEquals(clamp(y + 1.772 * u), pixel & 0xff, 2);
+            }
+        }
+    }
+
+    @Test
+    public void toNv21_layout() {
+        YuvFrame frame = createFrame(4, 2, 6, new Random(3), false);
+        byte[] output = new byte[4 * 2 * 3 / 2];
+
+        new YuvConverter(1).toNv21(frame, output);
+
+        for(int row = 0; row < 2; row++) {
+            for(int col = 0; col < 4; col++) {
+                assertEquals(frame.getPlane(YuvFrame.PLANE_Y).get(row * 6 + col), output[row * 4 + col]);
+            }
+        }
+        for(int col = 0; col < 2; col++) {
+            assertEquals(frame.getPlane(YuvFrame.PLANE_V).get(col * 2), output[8 + col * 2]);
+            assertEquals(frame.getPlane(YuvFrame.PLANE_U).get(col * 2), output[8 + col * 2 + 1]);
+        }
+    }
+
+    @Test
+    public void parallel_matchesSingleThread() {
+        YuvFrame frame = createFrame(1280, 720, 1344, new Random(4), false);
+        YuvConverter single = new YuvConverter(1);
+        YuvConverter parallel = new YuvConverter(4);
+
+        int[] expectedArgb = new int[1280 * 720];
+        int[] actualArgb = new int[1280 * 720];
+        single.toArgb(frame, expectedArgb);
+        parallel.toArgb(frame, actualArgb);
+        assertArrayEquals(expectedArgb, actualArgb);
+
+        byte[] expectedNv21 = new byte[1280 * 720 * 3 / 2];
+        byte[] actualNv21 = new byte[1280 * 720 * 3 / 2];
+        single.toNv21(frame, expectedNv21);
+        parallel.toNv21(frame, actualNv21);
+        assertArrayEquals(expectedNv21, actualNv21);
+
+        parallel.release();
+    }
+
+    @Test
+    public void buffers_areReused() {
+        YuvConverter converter = new YuvConverter(1);
+
+        assertSame(converter.argbBuffer(640, 480), converter.argbBuffer(320, 240));
+        assertSame(converter.nv21Buffer(640, 480), converter.nv21Buffer(640, 480));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void toNv21_oddSize() {
+        YuvFrame frame = createFrame(5, 4, 6, new Random(5), false);
+        new YuvConverter(1).toNv21(frame, new byte[100]);
+    }
+
+    /**
+     * creates a semi-planar frame (U and V share a buffer with a pixel stride of 2), the chroma plane has the same row stride as the Y plane
+     */
+    static YuvFrame createFrame(int width, int height, int rowStride, Random random, boolean gray) {
+        byte[] y = new byte[rowStride * height];
+        byte[] uv = new byte[rowStride * height / 2];
+        if(gray) {
+            java.util.Arrays.fill(y, (byte) 128);
+            java.util.Arrays.fill(uv, (byte) 128);
+        } else {
+            random.nextBytes(y);
+            random.nextBytes(uv);
+        }
+
+        ByteBuffer yPlane = ByteBuffer.allocateDirect(y.length);
+        yPlane.put(y).flip();
+        ByteBuffer uvPlane = ByteBuffer.allocateDirect(uv.length);
+        uvPlane.put(uv).flip();
+
+        ByteBuffer uPlane = uvPlane.duplicate();
+        uvPlane.position(1);
+        ByteBuffer vPlane = uvPlane.slice();
+
+        return new YuvFrame(width, height, 0, new ByteBuffer[] {yPlane, uPlane, vPlane}, new int[] {rowStride, rowStride, rowStride}, new int[] {1, 2, 2});
+    }
+
+    private static int clamp(double value) {
+        return (int) Math.max(0, Math.min(255, Math.round(value)));
+    }
+}
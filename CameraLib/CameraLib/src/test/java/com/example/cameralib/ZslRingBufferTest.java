@@ -0,0 +1,92 @@
+package com.example.cameralib;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ZslRingBuffer}.
+ */
+public class ZslRingBufferTest {
+
+    @Test
+    public void add_releasesOldestFrame() {
+        ZslRingBuffer<Frame> ring = new ZslRingBuffer<>(3);
+        Frame[] frames = new Frame[5];
+        for(int i = 0; i < frames.length; i++) {
+            frames[i] = new Frame();
+            ring.add(i * 100, frames[i]);
+        }
+
+        assertEquals(3, ring.size());
+        assertTrue(frames[0].mClosed);
+        assertTrue(frames[1].mClosed);
+        assertFalse(frames[2].mClosed);
+        assertFalse(frames[4].mClosed);
+    }
+
+    @Test
+    public void acquireClosest_picksNearestTimestamp() {
+        ZslRingBuffer<Frame> ring = new ZslRingBuffer<>(4);
+        for(int i = 0; i < 4; i++) {
+            ring.add(1000 + i * 33, new Frame());
+        }
+
+        assertEquals(1066, ring.acquireClosest(1070).getTimestamp());
+        assertEquals(1000, ring.acquireClosest(0).getTimestamp());
+        assertEquals(1099, ring.acquireClosest(5000).getTimestamp());
+        assertNull(new ZslRingBuffer<Frame>(2).acquireClosest(1000));
+    }
+
+    @Test
+    public void acquiredFrame_staysOpenUntilReleased() {
+        ZslRingBuffer<Frame> ring = new ZslRingBuffer<>(1);
+        Frame first = new Frame();
+        ring.add(1, first);
+
+        ZslRingBuffer.Handle<Frame> handle = ring.acquireClosest(1);
+        ring.add(2, new Frame());       // the ring drops the first frame
+        assertFalse(first.mClosed);
+        assertSame(first, handle.get());
+
+        handle.release();
+        assertTrue(first.mClosed);
+        assertEquals(1, first.mCloseCount);
+    }
+
+    @Test
+    public void clear_keepsAcquiredFrames() {
+        ZslRingBuffer<Frame> ring = new ZslRingBuffer<>(2);
+        Frame acquired = new Frame();
+        Frame other = new Frame();
+        ring.add(1, acquired);
+        ring.add(2, other);
+
+        ZslRingBuffer.Handle<Frame> handle = ring.acquireClosest(1);
+        ring.clear();
+
+        assertEquals(0, ring.size());
+        assertTrue(other.mClosed);
+        assertFalse(acquired.mClosed);
+        handle.release();
+        assertTrue(acquired.mClosed);
+    }
+
+    @Test
+    public void depthForBudget() {
+        assertEquals(3, ZslRingBuffer.depthForBudget(64L * 1024 * 1024, 4000L * 3000 * 3 / 2, 8));
+        assertEquals(8, ZslRingBuffer.depthForBudget(Long.MAX_VALUE, 1000, 8));
+        assertEquals(1, ZslRingBuffer.depthForBudget(10, 1000, 8));
+    }
+
+    private static class Frame implements AutoCloseable {
+        boolean mClosed;
+        int mCloseCount;
+
+        @Override
+        public void close() {
+            this.mClosed = true;
+            this.mCloseCount++;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.cameralib;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the creation of a file name for a picture
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CaptureFileNamesBenchmark {
+
+    private final CaptureFileNames mFileNames = new CaptureFileNames();
+
+    @Benchmark
+    public String next() {
+        return this.mFileNames.next(System.currentTimeMillis());
+    }
+}
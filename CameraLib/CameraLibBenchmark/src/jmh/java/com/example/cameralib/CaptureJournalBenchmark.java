@@ -0,0 +1,70 @@
+package com.example.cameralib;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares appending the metadata of a picture to the {@link CaptureJournal} with writing a small sidecar file per picture.
+ * The files are written to /dev/shm (tmpfs) if it exists, so the sidecar files are measured without the disk
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CaptureJournalBenchmark {
+
+    private File mDirectory;
+    private CaptureJournal mJournal;
+    private long mTimestamp;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        File shm = new File("/dev/shm");
+        File parent = shm.isDirectory() && shm.canWrite() ? shm : new File(System.getProperty("java.io.tmpdir"));
+        this.mDirectory = new File(parent, "CaptureJournalBenchmark" + System.nanoTime());
+        //noinspection ResultOfMethodCallIgnored
+        this.mDirectory.mkdirs();
+        this.mJournal = new CaptureJournal(new File(this.mDirectory, "captures.journal"));
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        this.mJournal.close();
+        File[] files = this.mDirectory.listFiles();
+        if(files != null) {
+            for(File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        this.mDirectory.delete();
+    }
+
+    @Benchmark
+    public void journal() throws IOException {
+        this.mJournal.append(this.mTimestamp++, "IMG_20201016_101010_12.jpg", 16666666L, 400, 1.25f);
+    }
+
+    @Benchmark
+    public void sidecarFile() throws IOException {
+        long timestamp = this.mTimestamp++;
+        FileOutputStream output = new FileOutputStream(new File(this.mDirectory, "IMG_" + timestamp + ".json"));
+        try {
+            output.write(("{\"timestamp\":" + timestamp + ",\"exposure\":16666666,\"iso\":400,\"focus\":1.25}").getBytes("US-ASCII"));
+        } finally {
+            output.close();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.cameralib;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old ImageSaver path (copy into a byte[] and write with a FileOutputStream) with {@link JpegWriter}.
+ * The files are written to /dev/shm (tmpfs) if it exists, so the benchmark measures the write path and not the disk
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JpegWriterBenchmark {
+
+    /**
+     * size of the picture in bytes: about a 5 MP and a 12 MP JPEG
+     */
+    @Param({"1500000", "4000000"})
+    public int size;
+
+    private ByteBuffer mPicture;
+    private File mFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] bytes = new byte[this.size];
+        new Random(42).nextBytes(bytes);
+        this.mPicture = ByteBuffer.allocateDirect(this.size);
+        this.mPicture.put(bytes).flip();
+
+        File shm = new File("/dev/shm");
+        File directory = shm.isDirectory() && shm.canWrite() ? shm : new File(System.getProperty("java.io.tmpdir"));
+        this.mFile = File.createTempFile("JpegWriterBenchmark", ".jpg", directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        //noinspection ResultOfMethodCallIgnored
+        this.mFile.delete();
+    }
+
+    @Benchmark
+    public long byteArrayCopy() throws IOException {
+        ByteBuffer buffer = this.mPicture.duplicate();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        FileOutputStream output = new FileOutputStream(this.mFile);
+        try {
+            output.write(bytes);
+        } finally {
+            output.close();
+        }
+        return bytes.length;
+    }
+
+    @Benchmark
+    public long fileChannel() throws IOException {
+        return JpegWriter.write(this.mPicture.duplicate(), this.mFile, false);
+    }
+
+    @Benchmark
+    public long fileChannelPreallocated() throws IOException {
+        return JpegWriter.write(this.mPicture.duplicate(), this.mFile, true);
+    }
+}
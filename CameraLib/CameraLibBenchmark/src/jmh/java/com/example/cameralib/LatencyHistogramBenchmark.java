@@ -0,0 +1,35 @@
+package com.example.cameralib;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the recording of a latency, it is done in the camera callbacks and must not allocate (check with -prof gc)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LatencyHistogramBenchmark {
+
+    private final LatencyHistogram mHistogram = new LatencyHistogram();
+    private long mValue = 12345678;
+
+    @Benchmark
+    public void record() {
+        this.mValue = this.mValue * 6364136223846793005L + 1442695040888963407L;
+        this.mHistogram.record((this.mValue >>> 34) & 0x3fffffffL);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordContended() {
+        this.mHistogram.record(System.nanoTime() & 0x3fffffffL);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.cameralib;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the motion analysis of one frame of the analysis stream. Two different frames alternate, so every frame is compared with a changed one.
+ * Run it with -prof gc to see, that the analysis doesn't allocate
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MotionDetectorBenchmark {
+
+    @Param({"320x240", "640x480"})
+    public String resolution;
+
+    private YuvFrame[] mFrames;
+    private MotionDetector mDetector;
+    private int mIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] parts = this.resolution.split("x");
+        int width = Integer.parseInt(parts[0]);
+        int height = Integer.parseInt(parts[1]);
+        this.mFrames = new YuvFrame[] {SyntheticFrames.semiPlanar(width, height, 1), SyntheticFrames.semiPlanar(width, height, 2)};
+        this.mDetector = new MotionDetector(null);
+        this.mDetector.setCooldownMillis(0);
+    }
+
+    @Benchmark
+    public float analyze() {
+        this.mDetector.analyze(this.mFrames[this.mIndex++ & 1]);
+        return this.mDetector.getLastChangedArea();
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.cameralib;
+
+import android.util.Size;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the size selection of CameraObject with the output sizes of a typical 12 MP back camera
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OutputSizesBenchmark {
+
+    private static final Size[] JPEG_SIZES = sizes(
+            4032, 3024, 4000, 3000, 4032, 2268, 3984, 2988, 3264, 2448, 3200, 2400, 2976, 2976, 2688, 1512, 2592, 1944, 2048, 1536,
+            1920, 1440, 1920, 1080, 1600, 1200, 1440, 1080, 1280, 960, 1280, 720, 1024, 768, 800, 600, 720, 480, 640, 480, 640, 360,
+            352, 288, 320, 240, 176, 144);
+
+    private static final Size[] PREVIEW_SIZES = sizes(
+            1920, 1440, 1920, 1080, 1600, 1200, 1440, 1080, 1280, 960, 1280, 720, 1024, 768, 960, 720, 800, 600, 720, 480, 640, 480,
+            640, 360, 480, 480, 352, 288, 320, 240, 176, 144);
+
+    private final List<Size> mJpegSizeList = Arrays.asList(JPEG_SIZES);
+    private final Size mLargest = new Size(4032, 3024);
+
+    @Benchmark
+    public Size largestJpegSize() {
+        return Collections.max(this.mJpegSizeList, new OutputSizes.CompareSizesByArea());
+    }
+
+    @Benchmark
+    public Size previewSize() {
+        // Vuzix Blade: 480 x 480 display
+        return OutputSizes.chooseOptimalSize(PREVIEW_SIZES, 480, 480, 480, 480, this.mLargest);
+    }
+
+    @Benchmark
+    public Size analysisSize() {
+        return OutputSizes.chooseOptimalSize(PREVIEW_SIZES, 640, 480, 640, 480, this.mLargest);
+    }
+
+    private static Size[] sizes(int... dimensions) {
+        Size[] sizes = new Size[dimensions.length / 2];
+        for(int i = 0; i < sizes.length; i++) {
+            sizes[i] = new Size(dimensions[2 * i], dimensions[2 * i + 1]);
+        }
+        return sizes;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.cameralib;
+
+import android.graphics.ImageFormat;
+
+import androidx.annotation.NonNull;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test of the saving pipeline without a camera: a {@link SyntheticFrameSource} generates JPEG frames as fast as possible, they are written by the
+ * {@link ImageWriterPool} like the frames of a burst. One operation is a burst of {@link #BURST} frames, the files are written to /dev/shm if it exists
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SyntheticCaptureBenchmark {
+
+    private static final int BURST = 30;
+
+    /**
+     * about 2 MP and 12 MP
+     */
+    @Param({"1920x1080", "4000x3000"})
+    public String resolution;
+
+    @Param({"1", "2"})
+    public int writerThreads;
+
+    private SyntheticFrameSource mSource;
+    private ImageWriterPool mPool;
+    private CaptureSink mSink;
+    private final CaptureMetrics mMetrics = new CaptureMetrics();
+    private File mDirectory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String[] size = this.resolution.split("x");
+        this.mSource = new SyntheticFrameSource(ImageFormat.JPEG, Integer.parseInt(size[0]), Integer.parseInt(size[1]), 0, 8);
+        this.mPool = new ImageWriterPool(this.writerThreads, 6, ImageWriterPool.OverflowPolicy.BLOCK);
+
+        File shm = new File("/dev/shm");
+        this.mDirectory = File.createTempFile("SyntheticCaptureBenchmark", "", shm.isDirectory() && shm.canWrite() ? shm : null);
+        //noinspection ResultOfMethodCallIgnored
+        this.mDirectory.delete();
+        //noinspection ResultOfMethodCallIgnored
+        this.mDirectory.mkdirs();
+
+        this.mSink = new CaptureSink() {
+            @NonNull
+            @Override
+            public Output write(@NonNull ByteBuffer jpeg, @NonNull String name, long timestamp) throws IOException {
+                File file = new File(mDirectory, name);
+                JpegWriter.write(jpeg, file, true);
+                return Output.ofFile(file);
+            }
+
+            @Override
+            public void flush() {
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.mPool.shutdown();
+        File[] files = this.mDirectory.listFiles();
+        if(files != null) {
+            for(File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        this.mDirectory.delete();
+    }
+
+    @Benchmark
+    public long burst() throws InterruptedException {
+        final AtomicInteger submitted = new AtomicInteger();
+        final CountDownLatch burstSubmitted = new CountDownLatch(1);
+
+        this.mSource.start(new FrameSource.Listener() {
+            @Override
+            public void onFrame(@NonNull CameraFrame frame) {
+                int index = submitted.getAndIncrement();
+                if(index >= BURST) {
+                    frame.close();
+                    return;
+                }
+                mPool.submit(new FrameSaver(frame, mSink, "IMG_" + (index % 4) + ".jpg", mMetrics, System.nanoTime()));
+                if(index == BURST - 1) {
+                    burstSubmitted.countDown();
+                }
+            }
+        });
+        burstSubmitted.await();
+        this.mSource.stop();
+        this.mPool.awaitIdle(10, TimeUnit.SECONDS);
+        return this.mPool.getWrittenCount();
+    }
+}
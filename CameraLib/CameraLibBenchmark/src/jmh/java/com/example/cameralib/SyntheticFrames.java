@@ -0,0 +1,37 @@
+package com.example.cameralib;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Creates synthetic YUV_420_888 frames for the benchmarks
+ */
+final class SyntheticFrames {
+
+    private SyntheticFrames() {
+    }
+
+    /**
+     * creates a semi-planar frame with random content (U and V share a buffer with a pixel stride of 2), the rows are padded to a multiple of 64 bytes
+     */
+    static YuvFrame semiPlanar(int width, int height, long seed) {
+        int rowStride = (width + 63) & ~63;
+        Random random = new Random(seed);
+
+        byte[] y = new byte[rowStride * height];
+        byte[] uv = new byte[rowStride * height / 2];
+        random.nextBytes(y);
+        random.nextBytes(uv);
+
+        ByteBuffer yPlane = ByteBuffer.allocateDirect(y.length);
+        yPlane.put(y).flip();
+        ByteBuffer uvPlane = ByteBuffer.allocateDirect(uv.length);
+        uvPlane.put(uv).flip();
+
+        ByteBuffer uPlane = uvPlane.duplicate();
+        uvPlane.position(1);
+        ByteBuffer vPlane = uvPlane.slice();
+
+        return new YuvFrame(width, height, 0, new ByteBuffer[] {yPlane, uPlane, vPlane}, new int[] {rowStride, rowStride, rowStride}, new int[] {1, 2, 2});
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.cameralib;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversion of a synthetic semi-planar frame with padded rows. Divide the time by the megapixels of the frame for the time per megapixel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class YuvConverterBenchmark {
+
+    @Param({"640x480", "1920x1080"})
+    public String resolution;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private YuvFrame mFrame;
+    private YuvConverter mConverter;
+    private int[] mArgb;
+    private byte[] mNv21;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] parts = this.resolution.split("x");
+        this.mFrame = SyntheticFrames.semiPlanar(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), 42);
+        this.mConverter = new YuvConverter(this.threads);
+        this.mArgb = this.mConverter.argbBuffer(this.mFrame.getWidth(), this.mFrame.getHeight());
+        this.mNv21 = this.mConverter.nv21Buffer(this.mFrame.getWidth(), this.mFrame.getHeight());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.mConverter.release();
+    }
+
+    @Benchmark
+    public int[] toArgb() {
+        this.mConverter.toArgb(this.mFrame, this.mArgb);
+        return this.mArgb;
+    }
+
+    @Benchmark
+    public byte[] toNv21() {
+        this.mConverter.toNv21(this.mFrame, this.mNv21);
+        return this.mNv21;
+    }
+}
@@ -0,0 +1,10 @@
+package android.graphics;
+
+/**
+ * JVM version of android.graphics.ImageFormat for the benchmarks, it only contains the formats of the camera streams
+ */
+public class ImageFormat {
+
+    public static final int YUV_420_888 = 0x23;
+    public static final int JPEG = 0x100;
+}
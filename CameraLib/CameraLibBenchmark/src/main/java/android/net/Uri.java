@@ -0,0 +1,24 @@
+package android.net;
+
+import java.io.File;
+
+/**
+ * JVM version of android.net.Uri for the benchmarks, it only supports file URIs
+ */
+public final class Uri {
+
+    private final String mUri;
+
+    private Uri(String uri) {
+        this.mUri = uri;
+    }
+
+    public static Uri fromFile(File file) {
+        return new Uri("file://" + file.getAbsolutePath());
+    }
+
+    @Override
+    public String toString() {
+        return this.mUri;
+    }
+}
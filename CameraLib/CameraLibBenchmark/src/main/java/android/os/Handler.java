@@ -0,0 +1,27 @@
+package android.os;
+
+/**
+ * JVM version of android.os.Handler for the benchmarks. The benchmarks don't use handlers, messages run right away on the calling thread
+ */
+public class Handler {
+
+    public Handler(Looper looper) {
+    }
+
+    public final boolean post(Runnable r) {
+        Message message = new Message();
+        message.callback = r;
+        return this.sendMessageAtTime(message, 0);
+    }
+
+    public boolean sendMessageAtTime(Message msg, long uptimeMillis) {
+        this.dispatchMessage(msg);
+        return true;
+    }
+
+    public void dispatchMessage(Message msg) {
+        if(msg.callback != null) {
+            msg.callback.run();
+        }
+    }
+}
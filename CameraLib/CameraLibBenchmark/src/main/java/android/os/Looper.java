@@ -0,0 +1,10 @@
+package android.os;
+
+/**
+ * JVM version of android.os.Looper for the benchmarks, it is never started (the benchmarks don't use handlers)
+ */
+public final class Looper {
+
+    private Looper() {
+    }
+}
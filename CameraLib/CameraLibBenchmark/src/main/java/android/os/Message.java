@@ -0,0 +1,9 @@
+package android.os;
+
+/**
+ * JVM version of android.os.Message for the benchmarks, it only carries a callback
+ */
+public final class Message {
+
+    Runnable callback;
+}
@@ -0,0 +1,41 @@
+package android.util;
+
+/**
+ * JVM version of android.util.Size for the benchmarks (the class of android.jar only throws "Stub!")
+ */
+public final class Size {
+    private final int mWidth;
+    private final int mHeight;
+
+    public Size(int width, int height) {
+        this.mWidth = width;
+        this.mHeight = height;
+    }
+
+    public int getWidth() {
+        return this.mWidth;
+    }
+
+    public int getHeight() {
+        return this.mHeight;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if(!(obj instanceof Size)) {
+            return false;
+        }
+        Size other = (Size) obj;
+        return this.mWidth == other.mWidth && this.mHeight == other.mHeight;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.mHeight ^ ((this.mWidth << (Integer.SIZE / 2)) | (this.mWidth >>> (Integer.SIZE / 2)));
+    }
+
+    @Override
+    public String toString() {
+        return this.mWidth + "x" + this.mHeight;
+    }
+}